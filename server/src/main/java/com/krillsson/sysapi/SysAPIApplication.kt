@@ -25,10 +25,15 @@ import com.google.common.eventbus.EventBus
 import com.google.common.util.concurrent.ThreadFactoryBuilder
 import com.krillsson.server.BuildConfig
 import com.krillsson.sysapi.client.Clients
+import com.krillsson.sysapi.config.HistoryStorage
 import com.krillsson.sysapi.config.SysAPIConfiguration
 import com.krillsson.sysapi.core.connectivity.ConnectivityCheckManager
 import com.krillsson.sysapi.core.domain.system.SystemLoad
 import com.krillsson.sysapi.core.history.*
+import com.krillsson.sysapi.core.history.columnar.ColumnarHistoryRepository
+import com.krillsson.sysapi.core.history.db.HistoryRollupDAO
+import com.krillsson.sysapi.core.history.rollup.HistoryRollupRepository
+import com.krillsson.sysapi.core.history.rollup.HistoryRollups
 import com.krillsson.sysapi.core.history.db.*
 import com.krillsson.sysapi.core.metrics.Metrics
 import com.krillsson.sysapi.core.metrics.MetricsFactory
@@ -40,6 +45,9 @@ import com.krillsson.sysapi.core.monitoring.event.EventManager
 import com.krillsson.sysapi.core.monitoring.event.EventRepository
 import com.krillsson.sysapi.core.monitoring.event.EventStore
 import com.krillsson.sysapi.core.query.MetricQueryManager
+import com.krillsson.sysapi.core.query.SnapshotMetrics
+import com.krillsson.sysapi.core.query.SystemLoadSnapshotManager
+import com.krillsson.sysapi.core.speed.CounterRegistry
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager
 import com.krillsson.sysapi.docker.DockerClient
 import com.krillsson.sysapi.graphql.GraphQLBundle
@@ -58,7 +66,9 @@ import io.dropwizard.setup.Bootstrap
 import io.dropwizard.setup.Environment
 import io.dropwizard.sslreload.SslReloadBundle
 import oshi.SystemInfo
-import java.time.Clock
+import com.krillsson.sysapi.util.Clock
+import java.io.File
+import java.time.Duration
 import java.util.concurrent.Executors
 
 
@@ -70,15 +80,6 @@ class SysAPIApplication : Application<SysAPIConfiguration>() {
 
     val logger by logger()
 
-    val speedMeasurementManager = SpeedMeasurementManager(
-        Executors.newScheduledThreadPool(
-            1,
-            ThreadFactoryBuilder()
-                .setNameFormat("speed-mgr-%d")
-                .build()
-        ), Clock.systemUTC(), 5
-    )
-
     val queryScheduledExecutor = Executors.newScheduledThreadPool(
         2,
         ThreadFactoryBuilder()
@@ -86,14 +87,8 @@ class SysAPIApplication : Application<SysAPIConfiguration>() {
             .build()
     )
 
-    val ticker = Ticker(
-        Executors.newScheduledThreadPool(
-            1,
-            ThreadFactoryBuilder()
-                .setNameFormat("tick-mgr-%d")
-                .build()
-        ), 5
-    )
+    val counterRegistry = CounterRegistry(System::nanoTime)
+
     private val hibernate: HibernateBundle<SysAPIConfiguration> = createHibernateBundle()
     private val flyWay: FlywayBundle<SysAPIConfiguration> = createFlywayBundle()
 
@@ -111,6 +106,8 @@ class SysAPIApplication : Application<SysAPIConfiguration>() {
     lateinit var eventManager: EventManager
     lateinit var dockerClient: DockerClient
     lateinit var metricsFactory: MetricsFactory
+    lateinit var ticker: Ticker
+    lateinit var speedMeasurementManager: SpeedMeasurementManager
 
     override fun initialize(bootstrap: Bootstrap<SysAPIConfiguration>) {
 
@@ -136,10 +133,16 @@ class SysAPIApplication : Application<SysAPIConfiguration>() {
 
     override fun run(config: SysAPIConfiguration, environment: Environment) {
         environment.healthChecks().disableHealthChecks()
+        // drops the default JVM and Jetty metrics, the metrics caches register later on are kept
         environment.metrics().disableMetrics()
         environment.jersey().registerFeatures(config.user)
         environment.servlets().configureCrossOriginFilter()
 
+        val sampling = config.metricsConfig.sampling
+        ticker = createTicker(sampling.tickInterval())
+        ticker.registerMetrics(environment.metrics())
+        speedMeasurementManager = SpeedMeasurementManager(ticker, System::nanoTime, sampling.shortestInterval())
+
         if (config.forwardHttpToHttps) {
             EnvironmentUtils.addHttpsForward(environment.applicationContext)
         }
@@ -169,11 +172,21 @@ class SysAPIApplication : Application<SysAPIConfiguration>() {
             os,
             SystemInfo.getCurrentPlatform(),
             speedMeasurementManager,
+            counterRegistry,
             ticker,
-            connectivityCheckManager
+            connectivityCheckManager,
+            environment.metrics()
         )
+        // post-tick so process counters are diffed after the process list was refreshed
+        ticker.registerPostTick(counterRegistry)
 
-        val metrics = metricsFactory.get(config)
+        val collectingMetrics = metricsFactory.get(config)
+        val snapshotManager = SystemLoadSnapshotManager(
+            collectingMetrics.systemMetrics(),
+            ticker,
+            com.krillsson.sysapi.util.Clock()
+        )
+        val metrics = SnapshotMetrics(collectingMetrics, snapshotManager)
 
         val selfSignedCertificates = config.selfSignedCertificates
         if (selfSignedCertificates.enabled) {
@@ -185,7 +198,7 @@ class SysAPIApplication : Application<SysAPIConfiguration>() {
             queryScheduledExecutor,
             config.metricsConfig.history.interval,
             config.metricsConfig.history.unit,
-            metrics,
+            snapshotManager,
             eventBus
         ) {
             override fun event(load: SystemLoad): HistoryMetricQueryEvent {
@@ -196,39 +209,54 @@ class SysAPIApplication : Application<SysAPIConfiguration>() {
             queryScheduledExecutor,
             config.metricsConfig.monitor.interval,
             config.metricsConfig.monitor.unit,
-            metrics,
+            snapshotManager,
             eventBus
         ) {
             override fun event(load: SystemLoad): MonitorMetricQueryEvent {
                 return MonitorMetricQueryEvent(load, dockerClient.listContainers())
             }
         }
-        val historyRepository = proxyFactory.create(
-            /* clazz = */ HistoryRepository::class.java,
-            /* constructorParamTypes = */ arrayOf(
-                com.krillsson.sysapi.util.Clock::class.java,
-                HistorySystemLoadDAO::class.java,
-                BasicHistorySystemLoadDAO::class.java,
-                CpuLoadDAO::class.java,
-                MemoryLoadDAO::class.java,
-                NetworkLoadDAO::class.java,
-                DriveLoadDAO::class.java,
-                DiskLoadDAO::class.java,
-                FileSystemLoadDAO::class.java,
-                ConnectivityDAO::class.java
-            ),
-            /* constructorArguments = */ arrayOf(
-                com.krillsson.sysapi.util.Clock(),
-                historyDao,
-                basicHistoryDao,
-                CpuLoadDAO(hibernate.sessionFactory),
-                MemoryLoadDAO(hibernate.sessionFactory),
-                NetworkLoadDAO(hibernate.sessionFactory),
-                DriveLoadDAO(hibernate.sessionFactory),
-                DiskLoadDAO(hibernate.sessionFactory),
-                FileSystemLoadDAO(hibernate.sessionFactory),
-                ConnectivityDAO(hibernate.sessionFactory)
+        val historyRepository: HistoryRepository = when (config.metricsConfig.history.storage) {
+            HistoryStorage.COLUMNAR -> ColumnarHistoryRepository(
+                File(FileSystem.data, "history"),
+                com.krillsson.sysapi.util.Clock()
+            ).also { environment.lifecycle().manage(it) }
+            HistoryStorage.SQLITE -> proxyFactory.create(
+                /* clazz = */ SqlHistoryRepository::class.java,
+                /* constructorParamTypes = */ arrayOf(
+                    com.krillsson.sysapi.util.Clock::class.java,
+                    HistorySystemLoadDAO::class.java,
+                    BasicHistorySystemLoadDAO::class.java,
+                    CpuLoadDAO::class.java,
+                    MemoryLoadDAO::class.java,
+                    NetworkLoadDAO::class.java,
+                    DriveLoadDAO::class.java,
+                    DiskLoadDAO::class.java,
+                    FileSystemLoadDAO::class.java,
+                    ConnectivityDAO::class.java
+                ),
+                /* constructorArguments = */ arrayOf(
+                    com.krillsson.sysapi.util.Clock(),
+                    historyDao,
+                    basicHistoryDao,
+                    CpuLoadDAO(hibernate.sessionFactory),
+                    MemoryLoadDAO(hibernate.sessionFactory),
+                    NetworkLoadDAO(hibernate.sessionFactory),
+                    DriveLoadDAO(hibernate.sessionFactory),
+                    DiskLoadDAO(hibernate.sessionFactory),
+                    FileSystemLoadDAO(hibernate.sessionFactory),
+                    ConnectivityDAO(hibernate.sessionFactory)
+                )
             )
+        }
+        val historyRollups = HistoryRollups(
+            proxyFactory.create(
+                HistoryRollupRepository::class.java,
+                arrayOf(HistoryRollupDAO::class.java),
+                arrayOf(HistoryRollupDAO(hibernate.sessionFactory))
+            ),
+            historyRepository,
+            config.metricsConfig.history
         )
         val historyManager = LegacyHistoryManager(historyRepository)
         val monitorManager = MonitorManager(
@@ -238,16 +266,29 @@ class SysAPIApplication : Application<SysAPIConfiguration>() {
             metrics,
             com.krillsson.sysapi.util.Clock()
         )
-        val historyRecorder = HistoryRecorder(config.metricsConfig.history, eventBus, historyRepository)
+        val historyRecorder = HistoryRecorder(
+            eventBus,
+            historyRepository,
+            com.krillsson.sysapi.util.Clock(),
+            metrics = environment.metrics(),
+            rollups = historyRollups
+        )
+        val historyPurger = HistoryPurger(
+            config.metricsConfig.history.purging,
+            historyRepository,
+            rollups = historyRollups
+        )
         environment.lifecycle().registerManagedObjects(
             monitorManager,
             eventManager,
             speedMeasurementManager,
+            snapshotManager,
             ticker,
             monitorMetricQueryManager,
             historyMetricQueryManager,
             keyValueRepository,
             historyRecorder,
+            historyPurger,
             Mdns(config, connectivityCheckManager)
         )
         registerEndpoints(
@@ -255,15 +296,33 @@ class SysAPIApplication : Application<SysAPIConfiguration>() {
             monitorManager,
             historyManager,
             historyRepository,
+            historyRollups,
             environment
         )
     }
 
+    private fun createTicker(interval: Duration) = Ticker(
+        Executors.newScheduledThreadPool(
+            1,
+            ThreadFactoryBuilder()
+                .setNameFormat("tick-mgr-%d")
+                .build()
+        ),
+        Executors.newCachedThreadPool(
+            ThreadFactoryBuilder()
+                .setNameFormat("tick-worker-%d")
+                .setDaemon(true)
+                .build()
+        ),
+        interval
+    )
+
     private fun registerEndpoints(
         metrics: Metrics,
         monitorManager: MonitorManager,
         historyManager: LegacyHistoryManager,
         historyRepository: HistoryRepository,
+        historyRollups: HistoryRollups,
         environment: Environment
     ) {
         val endpoints = EnvironmentUtils.getEndpoints(environment)
@@ -272,6 +331,7 @@ class SysAPIApplication : Application<SysAPIConfiguration>() {
             monitorManager,
             eventManager,
             historyRepository,
+            historyRollups,
             dockerClient,
             os.asOperatingSystem(),
             SystemInfo.getCurrentPlatform().asPlatform(),
@@ -288,6 +348,7 @@ class SysAPIApplication : Application<SysAPIConfiguration>() {
             historyManager,
             monitorManager,
             eventManager,
+            environment.metrics(),
             endpoints
         )
     }
@@ -6,5 +6,19 @@ import java.util.concurrent.TimeUnit
 data class CacheConfiguration(
     @JsonProperty val enabled: Boolean = true,
     @JsonProperty val duration: Long,
-    @JsonProperty val unit: TimeUnit
-)
\ No newline at end of file
+    @JsonProperty val unit: TimeUnit,
+    @JsonProperty val mode: CacheMode = CacheMode.EXPIRE_AFTER_WRITE
+)
+
+enum class CacheMode {
+    /**
+     * A value is loaded by the first request after it expired, concurrent requests wait for that load.
+     */
+    EXPIRE_AFTER_WRITE,
+
+    /**
+     * Requests are always served the last loaded value, values older than the duration are reloaded in the background
+     * on the next tick. Only the very first request for a value, or one after a long idle period, waits for a load.
+     */
+    STALE_WHILE_REVALIDATE
+}
@@ -6,5 +6,20 @@ import java.util.concurrent.TimeUnit
 class HistoryConfiguration(
     @JsonProperty val purging: HistoryPurgingConfiguration,
     @JsonProperty val interval: Long,
-    @JsonProperty val unit: TimeUnit
-)
\ No newline at end of file
+    @JsonProperty val unit: TimeUnit,
+    @JsonProperty val storage: HistoryStorage = HistoryStorage.SQLITE,
+    @JsonProperty val rollups: HistoryRollupConfiguration = HistoryRollupConfiguration()
+)
+
+enum class HistoryStorage {
+    /**
+     * Every sample is stored as a graph of rows in the SQLite database through Hibernate.
+     */
+    SQLITE,
+
+    /**
+     * Every sample is appended to per-metric column files in data/history, one directory per day. Range reads are
+     * sequential scans over memory-mapped files and purging deletes whole days.
+     */
+    COLUMNAR
+}
@@ -4,9 +4,14 @@ import com.fasterxml.jackson.annotation.JsonProperty
 import java.time.temporal.ChronoUnit
 import java.util.concurrent.TimeUnit
 
-class HistoryPurgingConfiguration(
+class HistoryPurgingConfiguration @JvmOverloads constructor(
     @JsonProperty val olderThan: Long,
     @JsonProperty val unit: ChronoUnit,
     @JsonProperty val purgeEvery: Long,
-    @JsonProperty val purgeEveryUnit: TimeUnit
+    @JsonProperty val purgeEveryUnit: TimeUnit,
+    /**
+     * Converts an existing database to incremental auto_vacuum at the next start. This rewrites the whole file with a
+     * full VACUUM, which needs as much free disk space again and may hold up the start for minutes.
+     */
+    @JsonProperty val enableIncrementalVacuum: Boolean = false
 )
\ No newline at end of file
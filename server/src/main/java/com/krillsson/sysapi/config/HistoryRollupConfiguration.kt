@@ -0,0 +1,18 @@
+package com.krillsson.sysapi.config
+
+import com.fasterxml.jackson.annotation.JsonProperty
+import java.time.temporal.ChronoUnit
+
+/**
+ * How long the rollups of each [com.krillsson.sysapi.core.domain.history.HistoryTier] are kept, raw samples are kept
+ * for [HistoryPurgingConfiguration.olderThan].
+ */
+class HistoryRollupConfiguration(
+    @JsonProperty val minute: HistoryRetentionConfiguration = HistoryRetentionConfiguration(30, ChronoUnit.DAYS),
+    @JsonProperty val hour: HistoryRetentionConfiguration = HistoryRetentionConfiguration(365, ChronoUnit.DAYS)
+)
+
+class HistoryRetentionConfiguration(
+    @JsonProperty val olderThan: Long,
+    @JsonProperty val unit: ChronoUnit
+)
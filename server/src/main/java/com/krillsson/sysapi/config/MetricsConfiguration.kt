@@ -5,5 +5,6 @@ import com.fasterxml.jackson.annotation.JsonProperty
 data class MetricsConfiguration(
     @JsonProperty val monitor: MonitorConfiguration,
     @JsonProperty val history: HistoryConfiguration,
-    @JsonProperty val cache: CacheConfiguration
-)
\ No newline at end of file
+    @JsonProperty val cache: CacheConfiguration,
+    @JsonProperty val sampling: SamplingConfiguration = SamplingConfiguration()
+)
@@ -0,0 +1,65 @@
+package com.krillsson.sysapi.config
+
+import com.fasterxml.jackson.annotation.JsonProperty
+import io.dropwizard.util.Duration
+
+/**
+ * How often each subsystem is sampled. The interval is also how long values of that subsystem are cached, so a
+ * subsystem that is only read on request, like file systems or drives, is refreshed at the same pace.
+ *
+ * Subsystems without an interval are sampled on every [tick] and cached for the [CacheConfiguration] duration.
+ * Intervals shorter than the tick shorten the tick.
+ */
+data class SamplingConfiguration(
+    @JsonProperty val tick: Duration = Duration.seconds(5),
+    @JsonProperty val cpu: Duration? = null,
+    @JsonProperty val memory: Duration? = null,
+    @JsonProperty val processes: Duration? = null,
+    @JsonProperty val network: Duration? = null,
+    @JsonProperty val disks: Duration? = null,
+    @JsonProperty val fileSystems: Duration? = null,
+    @JsonProperty val drives: Duration? = null,
+    @JsonProperty val sensors: Duration? = null
+) {
+    fun tickInterval(): java.time.Duration = tick.asJavaDuration()
+
+    fun interval(subsystem: Subsystem): java.time.Duration? {
+        val interval = when (subsystem) {
+            Subsystem.CPU -> cpu
+            Subsystem.MEMORY -> memory
+            Subsystem.PROCESSES -> processes
+            Subsystem.NETWORK -> network
+            Subsystem.DISKS -> disks
+            Subsystem.FILE_SYSTEMS -> fileSystems
+            Subsystem.DRIVES -> drives
+            Subsystem.SENSORS -> sensors
+        }
+        return interval?.asJavaDuration()
+    }
+
+    /**
+     * The shortest interval anything is sampled at.
+     */
+    fun shortestInterval(): java.time.Duration {
+        return Subsystem.values()
+            .mapNotNull { interval(it) }
+            .fold(tickInterval()) { shortest, interval -> if (interval < shortest) interval else shortest }
+    }
+
+    private fun Duration.asJavaDuration(): java.time.Duration = java.time.Duration.ofNanos(toNanoseconds())
+}
+
+enum class Subsystem {
+    CPU,
+    MEMORY,
+    PROCESSES,
+    NETWORK,
+    DISKS,
+    FILE_SYSTEMS,
+    DRIVES,
+
+    /**
+     * CPU temperatures and fans, motherboard and GPU sensors, and vcgencmd readings on Raspbian
+     */
+    SENSORS
+}
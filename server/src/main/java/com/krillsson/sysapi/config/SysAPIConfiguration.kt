@@ -43,7 +43,13 @@ class SysAPIConfiguration(
             url = "jdbc:sqlite:${FileSystem.data.absolutePath}/database.sqlite"
             properties = mapOf(
                 "charSet" to "UTF-8",
-                "hibernate.dialect" to "org.hibernate.dialect.SQLiteDialect"
+                // readers no longer block the history writer, and a commit is only synced at checkpoints
+                "journal_mode" to "WAL",
+                "synchronous" to "NORMAL",
+                "hibernate.dialect" to "org.hibernate.dialect.SQLiteDialect",
+                // inserts of a batch of history entries are grouped per table into JDBC batches
+                "hibernate.jdbc.batch_size" to "50",
+                "hibernate.order_inserts" to "true"
                 /**
                 for troubleshooting SQL
                 "hibernate.show_sql" to "true",
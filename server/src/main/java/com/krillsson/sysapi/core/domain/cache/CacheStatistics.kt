@@ -0,0 +1,23 @@
+package com.krillsson.sysapi.core.domain.cache
+
+/**
+ * Usage of one metrics cache since start. Durations are in milliseconds, distributions are over recent requests.
+ */
+data class CacheStatistics(
+    val name: String,
+    val hits: Long,
+    val misses: Long,
+    val hitRatio: Double,
+    val loads: Long,
+    val loadFailures: Long,
+    val loadTime: Distribution,
+    val servedAge: Distribution
+) {
+    data class Distribution(
+        val mean: Double,
+        val median: Double,
+        val p95: Double,
+        val p99: Double,
+        val max: Double
+    )
+}
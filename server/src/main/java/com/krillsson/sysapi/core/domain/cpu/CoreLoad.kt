@@ -1,5 +1,14 @@
 package com.krillsson.sysapi.core.domain.cpu
 
-data class CoreLoad(
+/**
+ * Load of one core since the previous tick. Every value is a percentage of the core's time, [percentage] being the
+ * time it was not idle.
+ */
+data class CoreLoad @JvmOverloads constructor(
     val percentage: Double,
-) 
\ No newline at end of file
+    val user: Double = 0.0,
+    val system: Double = 0.0,
+    val ioWait: Double = 0.0,
+    val steal: Double = 0.0,
+    val irq: Double = 0.0
+)
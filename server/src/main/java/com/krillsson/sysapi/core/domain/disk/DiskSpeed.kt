@@ -1,3 +1,8 @@
 package com.krillsson.sysapi.core.domain.disk
 
-class DiskSpeed(val readBytesPerSecond: Long, val writeBytesPerSecond: Long)
\ No newline at end of file
+class DiskSpeed @JvmOverloads constructor(
+    val readBytesPerSecond: Long,
+    val writeBytesPerSecond: Long,
+    val readsPerSecond: Long = 0,
+    val writesPerSecond: Long = 0
+)
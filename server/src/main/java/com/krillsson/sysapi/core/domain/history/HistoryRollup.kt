@@ -0,0 +1,30 @@
+package com.krillsson.sysapi.core.domain.history
+
+import java.time.OffsetDateTime
+
+/**
+ * The [samples] of [series] recorded in the bucket starting at [date].
+ */
+data class HistoryRollup(
+    val series: String,
+    val date: OffsetDateTime,
+    val samples: Int,
+    val min: Double,
+    val max: Double,
+    val mean: Double,
+    val last: Double
+) {
+    /**
+     * Combines this with [later], the rollup of the same series and bucket of samples recorded after these.
+     */
+    fun merge(later: HistoryRollup): HistoryRollup {
+        val total = samples + later.samples
+        return copy(
+            samples = total,
+            min = minOf(min, later.min),
+            max = maxOf(max, later.max),
+            mean = (mean * samples + later.mean * later.samples) / total,
+            last = later.last
+        )
+    }
+}
@@ -0,0 +1,30 @@
+package com.krillsson.sysapi.core.domain.history
+
+import java.time.Duration
+
+/**
+ * Resolutions history is kept at. [RAW] is every recorded sample, the others are rollups of the samples in buckets of
+ * [resolution], aligned to the epoch.
+ */
+enum class HistoryTier(val resolution: Duration) {
+    RAW(Duration.ZERO),
+    MINUTE(Duration.ofMinutes(1)),
+    HOUR(Duration.ofHours(1));
+
+    /**
+     * The start of the bucket [epochMillis] falls in.
+     */
+    fun bucketOf(epochMillis: Long): Long {
+        val size = resolution.toMillis()
+        return if (size == 0L) epochMillis else Math.floorDiv(epochMillis, size) * size
+    }
+
+    companion object {
+        val ROLLUPS = listOf(MINUTE, HOUR)
+
+        /**
+         * The coarsest tier that is at least as fine as [resolution].
+         */
+        fun forResolution(resolution: Duration): HistoryTier = values().last { it.resolution <= resolution }
+    }
+}
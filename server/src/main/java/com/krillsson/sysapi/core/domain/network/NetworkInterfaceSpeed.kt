@@ -1,3 +1,10 @@
 package com.krillsson.sysapi.core.domain.network
 
-class NetworkInterfaceSpeed(val receiveBytesPerSecond: Long, val sendBytesPerSecond: Long) 
\ No newline at end of file
+class NetworkInterfaceSpeed @JvmOverloads constructor(
+    val receiveBytesPerSecond: Long,
+    val sendBytesPerSecond: Long,
+    val packetsReceivedPerSecond: Long = 0,
+    val packetsSentPerSecond: Long = 0,
+    val inErrorsPerSecond: Long = 0,
+    val outErrorsPerSecond: Long = 0
+)
@@ -23,14 +23,20 @@ package com.krillsson.sysapi.core.domain.processes
 import com.krillsson.sysapi.core.domain.memory.MemoryLoad
 import oshi.software.os.OSProcess
 
-class Process(
+/**
+ * A process at one point in time.
+ *
+ * The details that are expensive to read, path, command line and owner, are open so that a collector may read them
+ * lazily, only for processes that are actually looked at.
+ */
+open class Process @JvmOverloads constructor(
     val name: String,
-    val path: String,
-    val commandLine: String,
-    val user: String,
-    val userID: String,
-    val group: String,
-    val groupID: String,
+    open val path: String,
+    open val commandLine: String,
+    open val user: String,
+    open val userID: String,
+    open val group: String,
+    open val groupID: String,
     val state: OSProcess.State,
     val processID: Int,
     val parentProcessID: Int,
@@ -45,7 +51,9 @@ class Process(
     val cpuPercent: Double,
     val startTime: Long,
     val bytesRead: Long,
-    val bytesWritten: Long
+    val bytesWritten: Long,
+    val bytesReadPerSecond: Long = 0,
+    val bytesWrittenPerSecond: Long = 0
 ) {
 
     companion object {
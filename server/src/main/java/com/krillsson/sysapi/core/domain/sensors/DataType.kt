@@ -21,5 +21,5 @@
 package com.krillsson.sysapi.core.domain.sensors
 
 enum class DataType {
-    CLOCK, VOLTAGE, PERCENT, RPM, CELCIUS, GIGABYTE
+    CLOCK, VOLTAGE, PERCENT, RPM, CELCIUS, GIGABYTE, FLAGS
 }
\ No newline at end of file
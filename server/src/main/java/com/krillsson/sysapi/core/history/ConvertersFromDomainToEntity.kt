@@ -4,35 +4,38 @@ import com.krillsson.sysapi.core.domain.history.HistorySystemLoad
 import com.krillsson.sysapi.core.domain.history.SystemHistoryEntry
 import com.krillsson.sysapi.core.history.db.*
 import java.time.OffsetDateTime
-import java.util.*
 
+/**
+ * The id of the entry is not kept, the entities are given ids when they are persisted.
+ */
 fun SystemHistoryEntry.asEntity(): HistorySystemLoadEntity {
-    return value.asEntity(id, date)
+    return value.asEntity(date)
 }
 
-fun HistorySystemLoad.asEntity(id: UUID, dateTime: OffsetDateTime): HistorySystemLoadEntity {
+fun HistorySystemLoad.asEntity(dateTime: OffsetDateTime): HistorySystemLoadEntity {
     return HistorySystemLoadEntity(
-        id,
+        NEW_ID,
         dateTime,
         uptime,
         systemLoadAverage,
-        cpuLoad.asCpuLoadEntity(id),
-        networkInterfaceLoads.map { it.asNetworkInterfaceLoad(id) },
-        connectivity.asConnectivity(id),
-        driveLoads.map { it.asDiskLoad(id) },
-        diskLoads.map { it.asDiskLoad(id) },
-        fileSystemLoads.map { it.asFileSystemLoad(id) },
-        memory.asMemoryLoad(id),
-        gpuLoads.map { it.asGpuLoad(id) },
-        motherboardHealth.map { it.asMotherboardHealthData(id) }
+        cpuLoad.asCpuLoadEntity(),
+        networkInterfaceLoads.map { it.asNetworkInterfaceLoad() },
+        connectivity.asConnectivity(),
+        driveLoads.map { it.asDiskLoad() },
+        diskLoads.map { it.asDiskLoad() },
+        fileSystemLoads.map { it.asFileSystemLoad() },
+        memory.asMemoryLoad(),
+        gpuLoads.map { it.asGpuLoad() },
+        motherboardHealth.map { it.asMotherboardHealthData() }
     )
 }
 
-private fun com.krillsson.sysapi.core.domain.filesystem.FileSystemLoad.asFileSystemLoad(id: UUID): FileSystemLoad {
+// unsaved, the id is generated on persist
+private const val NEW_ID = 0L
+
+private fun com.krillsson.sysapi.core.domain.filesystem.FileSystemLoad.asFileSystemLoad(): FileSystemLoad {
     return FileSystemLoad(
-        UUID.randomUUID(),
-        null,
-        id,
+        NEW_ID,
         name,
         freeSpaceBytes,
         usableSpaceBytes,
@@ -40,11 +43,9 @@ private fun com.krillsson.sysapi.core.domain.filesystem.FileSystemLoad.asFileSys
     )
 }
 
-private fun com.krillsson.sysapi.core.domain.disk.DiskLoad.asDiskLoad(id: UUID): DiskLoad {
+private fun com.krillsson.sysapi.core.domain.disk.DiskLoad.asDiskLoad(): DiskLoad {
     return DiskLoad(
-        UUID.randomUUID(),
-        null,
-        id,
+        NEW_ID,
         name,
         serial,
         values.asDiskValues(),
@@ -64,22 +65,18 @@ private fun com.krillsson.sysapi.core.domain.disk.DiskValues.asDiskValues(): Dis
     )
 }
 
-private fun com.krillsson.sysapi.core.domain.sensors.HealthData.asMotherboardHealthData(id: UUID): HealthData {
+private fun com.krillsson.sysapi.core.domain.sensors.HealthData.asMotherboardHealthData(): HealthData {
     return HealthData(
-        UUID.randomUUID(),
-        null,
-        id,
+        NEW_ID,
         description,
         data,
         dataType.asDataType()
     )
 }
 
-private fun com.krillsson.sysapi.core.domain.gpu.GpuLoad.asGpuLoad(id: UUID): GpuLoad {
+private fun com.krillsson.sysapi.core.domain.gpu.GpuLoad.asGpuLoad(): GpuLoad {
     return GpuLoad(
-        UUID.randomUUID(),
-        null,
-        id,
+        NEW_ID,
         name,
         coreLoad,
         memoryLoad,
@@ -93,9 +90,9 @@ private fun com.krillsson.sysapi.core.domain.gpu.GpuHealth.asGpuHealth(): GpuHea
     )
 }
 
-private fun com.krillsson.sysapi.core.domain.memory.MemoryLoad.asMemoryLoad(id: UUID): MemoryLoad {
+private fun com.krillsson.sysapi.core.domain.memory.MemoryLoad.asMemoryLoad(): MemoryLoad {
     return MemoryLoad(
-        id,
+        NEW_ID,
         numberOfProcesses,
         swapTotalBytes,
         swapUsedBytes,
@@ -105,27 +102,22 @@ private fun com.krillsson.sysapi.core.domain.memory.MemoryLoad.asMemoryLoad(id:
     )
 }
 
-private fun com.krillsson.sysapi.core.domain.drives.DriveLoad.asDiskLoad(id: UUID): DriveLoad {
-    val uuid = UUID.randomUUID()
+private fun com.krillsson.sysapi.core.domain.drives.DriveLoad.asDiskLoad(): DriveLoad {
     return DriveLoad(
-        uuid,
-        null,
-        id,
+        NEW_ID,
         name,
         serial,
         values.asDriveValues(),
         speed.asSpeed(),
         health.temperature,
-        health.healthData.map { it.asHealthData(id) }
+        health.healthData.map { it.asHealthData() }
 
     )
 }
 
-private fun com.krillsson.sysapi.core.domain.sensors.HealthData.asHealthData(id: UUID): DriveHealthData {
+private fun com.krillsson.sysapi.core.domain.sensors.HealthData.asHealthData(): DriveHealthData {
     return DriveHealthData(
-        UUID.randomUUID(),
-        null,
-        id,
+        NEW_ID,
         description,
         data,
         dataType.asDataType()
@@ -140,6 +132,7 @@ private fun com.krillsson.sysapi.core.domain.sensors.DataType.asDataType(): Data
         com.krillsson.sysapi.core.domain.sensors.DataType.RPM -> DataType.RPM
         com.krillsson.sysapi.core.domain.sensors.DataType.CELCIUS -> DataType.CELCIUS
         com.krillsson.sysapi.core.domain.sensors.DataType.GIGABYTE -> DataType.GIGABYTE
+        com.krillsson.sysapi.core.domain.sensors.DataType.FLAGS -> DataType.FLAGS
     }
 }
 
@@ -155,9 +148,9 @@ private fun com.krillsson.sysapi.core.domain.drives.DriveValues.asDriveValues():
     )
 }
 
-private fun com.krillsson.sysapi.core.domain.network.Connectivity.asConnectivity(id: UUID): Connectivity {
+private fun com.krillsson.sysapi.core.domain.network.Connectivity.asConnectivity(): Connectivity {
     return Connectivity(
-        id,
+        NEW_ID,
         externalIp,
         previousExternalIp,
         localIp,
@@ -165,11 +158,9 @@ private fun com.krillsson.sysapi.core.domain.network.Connectivity.asConnectivity
     )
 }
 
-private fun com.krillsson.sysapi.core.domain.network.NetworkInterfaceLoad.asNetworkInterfaceLoad(id: UUID): NetworkInterfaceLoad {
+private fun com.krillsson.sysapi.core.domain.network.NetworkInterfaceLoad.asNetworkInterfaceLoad(): NetworkInterfaceLoad {
     return NetworkInterfaceLoad(
-        UUID.randomUUID(),
-        null,
-        id,
+        NEW_ID,
         name,
         mac,
         isUp,
@@ -190,21 +181,20 @@ private fun com.krillsson.sysapi.core.domain.network.NetworkInterfaceValues.asNe
     )
 }
 
-private fun com.krillsson.sysapi.core.domain.cpu.CpuLoad.asCpuLoadEntity(id: UUID): CpuLoad {
+private fun com.krillsson.sysapi.core.domain.cpu.CpuLoad.asCpuLoadEntity(): CpuLoad {
     return CpuLoad(
-        id,
+        NEW_ID,
         usagePercentage,
         systemLoadAverage,
-        coreLoads.map { it.asCoreLoad(id) },
-        cpuHealth.asCpuHealth(id),
+        coreLoads.map { it.asCoreLoad() },
+        cpuHealth.asCpuHealth(),
         processCount,
         threadCount
     )
 }
 
-private fun com.krillsson.sysapi.core.domain.cpu.CpuHealth.asCpuHealth(id: UUID): CpuHealth {
+private fun com.krillsson.sysapi.core.domain.cpu.CpuHealth.asCpuHealth(): CpuHealth {
     return CpuHealth(
-        id,
         temperatures,
         voltage,
         fanRpm,
@@ -212,11 +202,9 @@ private fun com.krillsson.sysapi.core.domain.cpu.CpuHealth.asCpuHealth(id: UUID)
     )
 }
 
-private fun com.krillsson.sysapi.core.domain.cpu.CoreLoad.asCoreLoad(id: UUID): CoreLoad {
+private fun com.krillsson.sysapi.core.domain.cpu.CoreLoad.asCoreLoad(): CoreLoad {
     return CoreLoad(
-        UUID.randomUUID(),
-        null,
-        id,
+        NEW_ID,
         percentage
     )
 }
\ No newline at end of file
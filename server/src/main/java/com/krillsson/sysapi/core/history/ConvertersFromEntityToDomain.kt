@@ -8,10 +8,11 @@ import com.krillsson.sysapi.core.domain.history.HistorySystemLoad
 import com.krillsson.sysapi.core.domain.history.SystemHistoryEntry
 import com.krillsson.sysapi.core.domain.sensors.HealthData
 import com.krillsson.sysapi.core.history.db.*
+import java.util.*
 
 fun HistorySystemLoadEntity.asSystemHistoryEntry(): SystemHistoryEntry {
     return SystemHistoryEntry(
-        id,
+        historyEntryId(id),
         date,
         HistorySystemLoad(
             uptime,
@@ -109,6 +110,7 @@ fun DataType.asDataType(): com.krillsson.sysapi.core.domain.sensors.DataType {
         DataType.RPM -> com.krillsson.sysapi.core.domain.sensors.DataType.RPM
         DataType.CELCIUS -> com.krillsson.sysapi.core.domain.sensors.DataType.CELCIUS
         DataType.GIGABYTE -> com.krillsson.sysapi.core.domain.sensors.DataType.GIGABYTE
+        DataType.FLAGS -> com.krillsson.sysapi.core.domain.sensors.DataType.FLAGS
     }
 }
 
@@ -169,4 +171,9 @@ fun com.krillsson.sysapi.core.history.db.CoreLoad.asCoreLoad(): CoreLoad {
     return CoreLoad(
         percentage
     )
-}
\ No newline at end of file
+}
+
+/**
+ * Entries are stored by integer id, the REST API keeps exposing them as UUIDs.
+ */
+fun historyEntryId(id: Long): UUID = UUID(0L, id)
@@ -0,0 +1,115 @@
+package com.krillsson.sysapi.core.history
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import com.krillsson.sysapi.config.HistoryPurgingConfiguration
+import com.krillsson.sysapi.core.history.rollup.HistoryRollups
+import com.krillsson.sysapi.util.Clock
+import io.dropwizard.lifecycle.Managed
+import org.slf4j.LoggerFactory
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Deletes history older than [HistoryPurgingConfiguration.olderThan] every
+ * [HistoryPurgingConfiguration.purgeEvery], starting a minute after start.
+ *
+ * Entries are deleted [chunkSize] at a time, each chunk in its own transaction, so a large backlog never holds the
+ * database write lock for long and the history writer gets its turn between chunks. The pages freed by the purge are
+ * then returned to the file system [vacuumPages] at a time, otherwise the database file never shrinks. [rollups] are
+ * purged by their own retention in the same run.
+ */
+class HistoryPurger @JvmOverloads constructor(
+    private val configuration: HistoryPurgingConfiguration,
+    private val history: HistoryRepository,
+    private val clock: Clock = Clock(),
+    private val chunkSize: Int = DEFAULT_CHUNK_SIZE,
+    private val vacuumPages: Int = DEFAULT_VACUUM_PAGES,
+    private val executor: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor(
+        ThreadFactoryBuilder()
+            .setNameFormat("history-purger-%d")
+            .setDaemon(true)
+            .build()
+    ),
+    private val rollups: HistoryRollups? = null
+) : Managed {
+
+    private var scheduled: ScheduledFuture<*>? = null
+
+    override fun start() {
+        scheduled = executor.scheduleWithFixedDelay(
+            {
+                purge()
+                purgeRollups()
+                vacuum()
+            },
+            TimeUnit.MINUTES.toMillis(INITIAL_DELAY_MINUTES),
+            configuration.purgeEveryUnit.toMillis(configuration.purgeEvery),
+            TimeUnit.MILLISECONDS
+        )
+    }
+
+    override fun stop() {
+        scheduled?.cancel(false)
+        executor.shutdown()
+    }
+
+    /**
+     * @return the number of deleted entries
+     */
+    fun purge(): Int {
+        val maxAge = clock.now().minus(configuration.olderThan, configuration.unit)
+        var total = 0
+        try {
+            do {
+                val deleted = history.purgeOldest(maxAge, chunkSize)
+                total += deleted
+            } while (deleted >= chunkSize && !executor.isShutdown)
+        } catch (e: Exception) {
+            // thrown out of a scheduled task it would cancel all later runs
+            LOGGER.error("Error occurred while purging history older than {}", maxAge, e)
+        }
+        LOGGER.info("Purged {} history entries older than {}", total, maxAge)
+        return total
+    }
+
+    /**
+     * @return the number of deleted rollups
+     */
+    fun purgeRollups(): Int {
+        return try {
+            rollups?.purge() ?: 0
+        } catch (e: Exception) {
+            LOGGER.error("Error occurred while purging history rollups", e)
+            0
+        }
+    }
+
+    /**
+     * @return the number of free pages left
+     */
+    fun vacuum(): Int {
+        var free = 0
+        try {
+            var previous = Int.MAX_VALUE
+            free = history.vacuum(vacuumPages)
+            // the free pages only shrink while auto_vacuum is INCREMENTAL, stop as soon as they do not
+            while (free in 1 until previous && !executor.isShutdown) {
+                previous = free
+                free = history.vacuum(vacuumPages)
+            }
+        } catch (e: Exception) {
+            LOGGER.error("Error occurred while vacuuming history", e)
+        }
+        LOGGER.debug("{} free pages left after vacuuming history", free)
+        return free
+    }
+
+    companion object {
+        private const val DEFAULT_CHUNK_SIZE = 500
+        private const val DEFAULT_VACUUM_PAGES = 1024
+        private const val INITIAL_DELAY_MINUTES = 1L
+        private val LOGGER = LoggerFactory.getLogger(HistoryPurger::class.java)
+    }
+}
@@ -1,29 +1,151 @@
 package com.krillsson.sysapi.core.history
 
+import com.codahale.metrics.Gauge
+import com.codahale.metrics.MetricRegistry
 import com.google.common.eventbus.EventBus
 import com.google.common.eventbus.Subscribe
-import com.krillsson.sysapi.config.HistoryConfiguration
+import com.google.common.util.concurrent.ThreadFactoryBuilder
 import com.krillsson.sysapi.core.domain.history.HistorySystemLoad
+import com.krillsson.sysapi.core.domain.history.SystemHistoryEntry
+import com.krillsson.sysapi.core.history.rollup.HistoryRollups
+import com.krillsson.sysapi.util.Clock
 import io.dropwizard.lifecycle.Managed
+import org.slf4j.LoggerFactory
+import java.util.*
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 
-class HistoryRecorder(
-    private val configuration: HistoryConfiguration,
+/**
+ * Records history behind the event bus: samples are stamped and put in a queue of [queueCapacity] and written by a
+ * single writer thread, up to [batchSize] per transaction. A slow disk therefore never holds up the event bus and the
+ * monitors subscribed to it. When the queue is full the new sample is dropped and counted in [dropped] instead of
+ * waiting for the writer. Whatever is queued when stopping is written before the writer exits.
+ *
+ * With a [MetricRegistry] the queue is reported as `history.recorder.*`. Written samples are also added to [rollups],
+ * which first roll up the samples recorded before they were kept.
+ */
+class HistoryRecorder @JvmOverloads constructor(
     private val eventBus: EventBus,
-    private val history: HistoryRepository
+    private val history: HistoryRepository,
+    private val clock: Clock = Clock(),
+    private val queueCapacity: Int = DEFAULT_QUEUE_CAPACITY,
+    private val batchSize: Int = DEFAULT_BATCH_SIZE,
+    metrics: MetricRegistry? = null,
+    private val executor: ExecutorService = Executors.newSingleThreadExecutor(
+        ThreadFactoryBuilder()
+            .setNameFormat("history-writer-%d")
+            .setDaemon(true)
+            .build()
+    ),
+    private val rollups: HistoryRollups? = null
 ) : Managed {
 
+    private val queue = ArrayBlockingQueue<SystemHistoryEntry>(queueCapacity)
+    private val droppedCount = AtomicLong()
+    private val writtenCount = AtomicLong()
+    private val flushes = metrics?.timer(MetricRegistry.name(PREFIX, "flushes"))
+
+    @Volatile
+    private var running = false
+
+    /**
+     * Samples that were not recorded, because the queue was full or writing them failed.
+     */
+    val dropped: Long
+        get() = droppedCount.get()
+
+    val written: Long
+        get() = writtenCount.get()
+
+    val queued: Int
+        get() = queue.size
+
+    init {
+        metrics?.apply {
+            register(MetricRegistry.name(PREFIX, "queued"), Gauge { queued })
+            register(MetricRegistry.name(PREFIX, "dropped"), Gauge { dropped })
+            register(MetricRegistry.name(PREFIX, "written"), Gauge { written })
+        }
+    }
+
     @Subscribe
     fun onEvent(event: HistoryMetricQueryEvent) {
-        history.record(event.load().asHistorySystemLoad())
-        history.purge(configuration.purging.olderThan, configuration.purging.unit)
+        val entry = SystemHistoryEntry(UUID.randomUUID(), clock.now(), event.load().asHistorySystemLoad())
+        if (!queue.offer(entry)) {
+            val count = droppedCount.incrementAndGet()
+            if (count == 1L || count % DROP_LOG_INTERVAL == 0L) {
+                LOGGER.warn("History queue is full with {} samples, dropped {} so far", queueCapacity, count)
+            }
+        }
     }
 
     override fun start() {
+        running = true
+        executor.execute {
+            backfill()
+            write()
+        }
         eventBus.register(this)
     }
 
     override fun stop() {
         eventBus.unregister(this)
+        running = false
+        executor.shutdown()
+        if (!executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            LOGGER.warn("History writer did not finish within {}s, {} samples were not written", STOP_TIMEOUT_SECONDS, queued)
+        }
+        try {
+            rollups?.flush()
+        } catch (e: Exception) {
+            LOGGER.error("Error occurred while writing open history rollups", e)
+        }
+    }
+
+    private fun backfill() {
+        try {
+            rollups?.backfill()
+        } catch (e: Exception) {
+            LOGGER.error("Error occurred while rolling up recorded history", e)
+        }
+    }
+
+    private fun write() {
+        val batch = ArrayList<SystemHistoryEntry>(batchSize)
+        while (running || queue.isNotEmpty()) {
+            val first = try {
+                queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+            } catch (e: InterruptedException) {
+                Thread.currentThread().interrupt()
+                return
+            } ?: continue
+            batch.add(first)
+            queue.drainTo(batch, batchSize - 1)
+            flush(batch)
+            batch.clear()
+        }
+    }
+
+    private fun flush(batch: List<SystemHistoryEntry>) {
+        val context = flushes?.time()
+        try {
+            history.recordAll(batch)
+            writtenCount.addAndGet(batch.size.toLong())
+        } catch (e: Exception) {
+            droppedCount.addAndGet(batch.size.toLong())
+            LOGGER.error("Error occurred while recording {} history samples", batch.size, e)
+            return
+        } finally {
+            context?.stop()
+        }
+        try {
+            rollups?.add(batch)
+        } catch (e: Exception) {
+            LOGGER.error("Error occurred while rolling up {} history samples", batch.size, e)
+        }
     }
 
     private fun com.krillsson.sysapi.core.domain.system.SystemLoad.asHistorySystemLoad(): HistorySystemLoad {
@@ -41,4 +163,14 @@ class HistoryRecorder(
             motherboardHealth
         )
     }
-}
\ No newline at end of file
+
+    companion object {
+        const val PREFIX = "history.recorder"
+        private const val DEFAULT_QUEUE_CAPACITY = 256
+        private const val DEFAULT_BATCH_SIZE = 32
+        private const val POLL_TIMEOUT_MILLIS = 500L
+        private const val STOP_TIMEOUT_SECONDS = 10L
+        private const val DROP_LOG_INTERVAL = 100L
+        private val LOGGER = LoggerFactory.getLogger(HistoryRecorder::class.java)
+    }
+}
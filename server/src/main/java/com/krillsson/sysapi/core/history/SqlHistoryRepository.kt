@@ -0,0 +1,148 @@
+package com.krillsson.sysapi.core.history
+
+import com.krillsson.sysapi.core.domain.cpu.CpuLoad
+import com.krillsson.sysapi.core.domain.disk.DiskLoad
+import com.krillsson.sysapi.core.domain.drives.DriveLoad
+import com.krillsson.sysapi.core.domain.filesystem.FileSystemLoad
+import com.krillsson.sysapi.core.domain.history.HistorySystemLoad
+import com.krillsson.sysapi.core.domain.history.SystemHistoryEntry
+import com.krillsson.sysapi.core.domain.memory.MemoryLoad
+import com.krillsson.sysapi.core.domain.network.Connectivity
+import com.krillsson.sysapi.core.domain.network.NetworkInterfaceLoad
+import com.krillsson.sysapi.core.history.db.*
+import com.krillsson.sysapi.util.Clock
+import com.krillsson.sysapi.util.logger
+import com.krillsson.sysapi.util.measureTimeMillis
+import io.dropwizard.hibernate.UnitOfWork
+import java.time.OffsetDateTime
+import java.time.temporal.ChronoUnit
+import java.util.*
+
+open class SqlHistoryRepository constructor(
+    private val clock: Clock,
+    private val dao: HistorySystemLoadDAO,
+    private val basicDao: BasicHistorySystemLoadDAO,
+    private val cpuLoadDAO: CpuLoadDAO,
+    private val memoryLoadDAO: MemoryLoadDAO,
+    private val networkLoadDAO: NetworkLoadDAO,
+    private val driveLoadDAO: DriveLoadDAO,
+    private val diskLoadDAO: DiskLoadDAO,
+    private val fileSystemLoadDAO: FileSystemLoadDAO,
+    private val connectivityDAO: ConnectivityDAO
+) : HistoryRepository {
+
+    val logger by logger()
+
+    @UnitOfWork
+    override fun get(): List<BasicHistorySystemLoadEntity> {
+        return basicDao.findAll()
+    }
+
+    @UnitOfWork
+    override fun getExtended(): List<SystemHistoryEntry> {
+        return dao.findAll().map { it.asSystemHistoryEntry() }
+    }
+
+    @UnitOfWork
+    override fun getExtendedHistoryLimitedToDates(
+        fromDate: OffsetDateTime,
+        toDate: OffsetDateTime
+    ): List<SystemHistoryEntry> {
+        return dao.findAllBetween(fromDate, toDate).map { it.asSystemHistoryEntry() }
+    }
+
+    @UnitOfWork
+    override fun record(load: HistorySystemLoad) {
+        val entry = SystemHistoryEntry(UUID.randomUUID(), clock.now(), load)
+        logger.trace("Recording history for {}", entry)
+        dao.insert(entry.asEntity())
+    }
+
+    @UnitOfWork
+    override fun recordAll(entries: List<SystemHistoryEntry>) {
+        logger.trace("Recording history for {} entries", entries.size)
+        // flushed as JDBC batches, see hibernate.jdbc.batch_size
+        dao.insert(entries.map { it.asEntity() })
+    }
+
+    @UnitOfWork
+    override fun purge(olderThan: Long, unit: ChronoUnit) {
+        val maxAge = clock.now().minus(olderThan, unit)
+        logger.info("Purging history older than {}", maxAge)
+        val deleted = dao.purge(maxAge)
+        logger.info("Purged {} history entries", deleted)
+    }
+
+    @UnitOfWork
+    override fun purgeOldest(maxAge: OffsetDateTime, limit: Int): Int {
+        return dao.purgeOldest(maxAge, limit)
+    }
+
+    @UnitOfWork
+    override fun vacuum(pages: Int): Int {
+        return dao.incrementalVacuum(pages)
+    }
+
+    @UnitOfWork
+    override fun getHistoryLimitedToDates(
+        fromDate: OffsetDateTime?,
+        toDate: OffsetDateTime?
+    ): List<BasicHistorySystemLoadEntity> {
+
+
+        val result = measureTimeMillis {
+            if (fromDate == null || toDate == null) {
+                basicDao.findAll()
+            } else {
+                basicDao.findAllBetween(fromDate, toDate)
+            }
+        }
+        logger.info(
+            "Took {} to fetch {} history entries",
+            "${result.first.toInt()}ms",
+            result.second.size
+        )
+        return result.second
+    }
+
+    @UnitOfWork
+    override fun getBasic(): List<BasicHistorySystemLoadEntity> {
+        return getHistoryLimitedToDates(null, null)
+    }
+
+    @UnitOfWork
+    override fun getCpuLoadById(id: Long): CpuLoad {
+        return cpuLoadDAO.findByHistoryId(id).asCpuLoad()
+    }
+
+    @UnitOfWork
+    override fun getMemoryLoadById(id: Long): MemoryLoad {
+        return memoryLoadDAO.findByHistoryId(id).asMemoryLoad()
+    }
+
+    @UnitOfWork
+    override fun getConnectivityById(id: Long): Connectivity {
+        return connectivityDAO.findByHistoryId(id).asConnectivity()
+    }
+
+    @UnitOfWork
+    override fun getNetworkInterfaceLoadsById(id: Long): List<NetworkInterfaceLoad> {
+        return networkLoadDAO.findById(id).map { it.asNetworkInterfaceLoad() }
+    }
+
+    @UnitOfWork
+    override fun getDriveLoadsById(id: Long): List<DriveLoad> {
+        return driveLoadDAO.findById(id).map { it.asDriveLoad() }
+    }
+
+    @UnitOfWork
+    override fun getDiskLoadsById(id: Long): List<DiskLoad> {
+        return diskLoadDAO.findById(id).map { it.asDiskLoad() }
+    }
+
+    @UnitOfWork
+    override fun getFileSystemLoadsById(id: Long): List<FileSystemLoad> {
+        return fileSystemLoadDAO.findById(id).map { it.asFileSystemLoad() }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,309 @@
+package com.krillsson.sysapi.core.history.columnar
+
+import com.krillsson.sysapi.core.domain.cpu.CpuLoad
+import com.krillsson.sysapi.core.domain.disk.DiskLoad
+import com.krillsson.sysapi.core.domain.drives.DriveLoad
+import com.krillsson.sysapi.core.domain.filesystem.FileSystemLoad
+import com.krillsson.sysapi.core.domain.history.HistorySystemLoad
+import com.krillsson.sysapi.core.domain.history.SystemHistoryEntry
+import com.krillsson.sysapi.core.domain.memory.MemoryLoad
+import com.krillsson.sysapi.core.domain.network.Connectivity
+import com.krillsson.sysapi.core.domain.network.NetworkInterfaceLoad
+import com.krillsson.sysapi.core.history.HistoryRepository
+import com.krillsson.sysapi.core.history.historyEntryId
+import com.krillsson.sysapi.core.history.db.BasicHistorySystemLoadEntity
+import com.krillsson.sysapi.util.Clock
+import com.krillsson.sysapi.util.logger
+import com.krillsson.sysapi.util.measureTimeMillis
+import io.dropwizard.lifecycle.Managed
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption.ATOMIC_MOVE
+import java.nio.file.StandardCopyOption.REPLACE_EXISTING
+import java.time.*
+import java.time.format.DateTimeParseException
+import java.time.temporal.ChronoUnit
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
+
+/**
+ * History stored as append-only columns, one [Segment] directory per UTC day in [directory].
+ *
+ * A sample is one row of 8 byte values instead of a graph of rows in a dozen tables, a range read is a binary search for
+ * the first row followed by a sequential scan of memory-mapped files. Purging deletes the directories of whole days and
+ * hides the rows of the partially expired day until it is deleted as well. The time rows are hidden before is kept in
+ * purged.dat, so they stay hidden after a restart.
+ *
+ * The id of an entry is made of its day and row, see [idOf].
+ */
+class ColumnarHistoryRepository @JvmOverloads constructor(
+    private val directory: File,
+    private val clock: Clock,
+    private val zoneId: ZoneId = ZoneId.systemDefault()
+) : HistoryRepository, Managed {
+
+    val logger by logger()
+
+    private val lock = ReentrantReadWriteLock()
+
+    // only touched while holding the write lock
+    private var current: Segment? = null
+    private val sealed = ConcurrentHashMap<LocalDate, Segment>()
+
+    @Volatile
+    private var purgedBefore = readPurgedBefore()
+
+    override fun get(): List<BasicHistorySystemLoadEntity> {
+        return scan(null, null) { id, date -> basic(id, date) }
+    }
+
+    override fun getExtended(): List<SystemHistoryEntry> {
+        return scan(null, null) { id, date -> SystemHistoryEntry(historyEntryId(id), date, historySystemLoad()) }
+    }
+
+    override fun getExtendedHistoryLimitedToDates(
+        fromDate: OffsetDateTime,
+        toDate: OffsetDateTime
+    ): List<SystemHistoryEntry> {
+        return scan(fromDate, toDate) { id, date -> SystemHistoryEntry(historyEntryId(id), date, historySystemLoad()) }
+    }
+
+    override fun record(load: HistorySystemLoad) {
+        val now = clock.now().toInstant().toEpochMilli()
+        lock.write {
+            append(now, load)
+        }
+    }
+
+    /**
+     * The ids of [entries] are not kept, ids are made of the day and row the entry ends up in.
+     */
+    override fun recordAll(entries: List<SystemHistoryEntry>) {
+        lock.write {
+            entries.forEach { append(it.date.toInstant().toEpochMilli(), it.value) }
+        }
+    }
+
+    private fun append(time: Long, load: HistorySystemLoad) {
+        val segment = writable(dayOf(time))
+        val writer = RowWriter(segment::intern)
+        load.writeTo(writer)
+        logger.trace("Recording {} values of history for {}", writer.values.size, segment.day)
+        segment.append(time, writer.values)
+    }
+
+    override fun purge(olderThan: Long, unit: ChronoUnit) {
+        val maxAge = clock.now().minus(olderThan, unit)
+        logger.info("Purging history older than {}", maxAge)
+        purgeOldest(maxAge, Int.MAX_VALUE)
+    }
+
+    /**
+     * Deleting a day is cheap regardless of its size, so every day before [maxAge] is deleted at once.
+     */
+    override fun purgeOldest(maxAge: OffsetDateTime, limit: Int): Int {
+        val cutoff = maxAge.toInstant().toEpochMilli()
+        var deleted = 0
+        lock.write {
+            if (cutoff > purgedBefore) {
+                purgedBefore = cutoff
+                writePurgedBefore(cutoff)
+            }
+            for (day in days(null, null)) {
+                if (day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() > cutoff) {
+                    break
+                }
+                val segmentDirectory = File(directory, day.toString())
+                val rows = Segment.rows(segmentDirectory)
+                if (current?.day == day) {
+                    current?.close()
+                    current = null
+                }
+                sealed.remove(day)?.close()
+                // mapped files can not be deleted on Windows until they are unmapped, the next purge tries again
+                if (segmentDirectory.deleteRecursively()) {
+                    deleted += rows
+                } else {
+                    logger.warn("Unable to delete history of {}", day)
+                }
+            }
+        }
+        return deleted
+    }
+
+    /**
+     * Deleted days are deleted files, there is no space to return.
+     */
+    override fun vacuum(pages: Int): Int = 0
+
+    override fun getHistoryLimitedToDates(
+        fromDate: OffsetDateTime?,
+        toDate: OffsetDateTime?
+    ): List<BasicHistorySystemLoadEntity> {
+        val result = measureTimeMillis {
+            scan(fromDate, toDate) { id, date -> basic(id, date) }
+        }
+        logger.info(
+            "Took {} to fetch {} history entries",
+            "${result.first.toInt()}ms",
+            result.second.size
+        )
+        return result.second
+    }
+
+    override fun getBasic(): List<BasicHistorySystemLoadEntity> {
+        return getHistoryLimitedToDates(null, null)
+    }
+
+    override fun getCpuLoadById(id: Long): CpuLoad = readRow(id) { cpuLoad() }
+
+    override fun getMemoryLoadById(id: Long): MemoryLoad = readRow(id) { memoryLoad() }
+
+    override fun getConnectivityById(id: Long): Connectivity = readRow(id) { connectivity() }
+
+    override fun getNetworkInterfaceLoadsById(id: Long): List<NetworkInterfaceLoad> =
+        readRow(id) { networkInterfaceLoads() }
+
+    override fun getDriveLoadsById(id: Long): List<DriveLoad> = readRow(id) { driveLoads() }
+
+    override fun getDiskLoadsById(id: Long): List<DiskLoad> = readRow(id) { diskLoads() }
+
+    override fun getFileSystemLoadsById(id: Long): List<FileSystemLoad> = readRow(id) { fileSystemLoads() }
+
+    override fun start() {
+        directory.mkdirs()
+    }
+
+    override fun stop() {
+        lock.write {
+            current?.close()
+            current = null
+            sealed.values.forEach { it.close() }
+            sealed.clear()
+        }
+    }
+
+    private fun RowReader.basic(id: Long, date: OffsetDateTime): BasicHistorySystemLoadEntity {
+        val system = entity(SYSTEM)
+        return BasicHistorySystemLoadEntity(id, date, system.long("uptime"), system.double("systemLoadAverage"))
+    }
+
+    /**
+     * Reads every row between [fromDate] and [toDate], both inclusive, in the order they were recorded.
+     */
+    private fun <T> scan(
+        fromDate: OffsetDateTime?,
+        toDate: OffsetDateTime?,
+        read: RowReader.(id: Long, date: OffsetDateTime) -> T
+    ): List<T> {
+        val from = maxOf(fromDate?.toInstant()?.toEpochMilli() ?: Long.MIN_VALUE, purgedBefore)
+        val to = toDate?.toInstant()?.toEpochMilli() ?: Long.MAX_VALUE
+        val result = ArrayList<T>()
+        lock.read {
+            for (day in days(fromDate?.let { dayOf(from) }, toDate?.let { dayOf(to) })) {
+                val segment = segment(day) ?: continue
+                val reader = RowReader(segment)
+                val rows = segment.rows
+                var row = segment.firstRowAtOrAfter(from)
+                while (row < rows) {
+                    val time = segment.time(row)
+                    if (time > to) {
+                        break
+                    }
+                    reader.row = row
+                    result.add(reader.read(idOf(day, row), dateOf(time)))
+                    row++
+                }
+            }
+        }
+        return result
+    }
+
+    private fun <T> readRow(id: Long, read: RowReader.() -> T): T {
+        return lock.read {
+            val day = try {
+                LocalDate.ofEpochDay(id shr ROW_BITS)
+            } catch (e: DateTimeException) {
+                null
+            }
+            val row = id and ROW_MASK
+            val segment = day?.let { segment(it) }
+                ?.takeIf { row >= 0 && row < it.rows && it.time(row.toInt()) >= purgedBefore }
+                ?: throw NoSuchElementException("No history entry with id $id")
+            RowReader(segment).apply { this.row = row.toInt() }.read()
+        }
+    }
+
+    private fun writable(day: LocalDate): Segment {
+        current?.takeIf { it.day == day }?.let { return it }
+        current?.close()
+        sealed.remove(day)?.close()
+        return Segment.open(File(directory, day.toString()), day, true).also { current = it }
+    }
+
+    private fun segment(day: LocalDate): Segment? {
+        current?.takeIf { it.day == day }?.let { return it }
+        val segmentDirectory = File(directory, day.toString())
+        if (!segmentDirectory.isDirectory) {
+            return null
+        }
+        return sealed.computeIfAbsent(day) { Segment.open(segmentDirectory, it, false) }
+    }
+
+    private fun days(from: LocalDate?, to: LocalDate?): List<LocalDate> {
+        val names = directory.list() ?: return emptyList()
+        return names
+            .mapNotNull { name ->
+                try {
+                    LocalDate.parse(name)
+                } catch (e: DateTimeParseException) {
+                    null
+                }
+            }
+            .filter { (from == null || it >= from) && (to == null || it <= to) }
+            .sorted()
+    }
+
+    private fun readPurgedBefore(): Long {
+        val file = File(directory, PURGED_BEFORE)
+        if (!file.exists()) {
+            return Long.MIN_VALUE
+        }
+        return file.readText().trim().toLongOrNull() ?: Long.MIN_VALUE.also {
+            logger.warn("Ignoring unreadable {}", file)
+        }
+    }
+
+    private fun writePurgedBefore(cutoff: Long) {
+        directory.mkdirs()
+        val file = File(directory, PURGED_BEFORE)
+        val temporary = File(directory, "$PURGED_BEFORE.tmp")
+        try {
+            temporary.writeText(cutoff.toString())
+            // replaced in one step, a crash leaves the previous cutoff rather than a torn one
+            Files.move(temporary.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE)
+        } catch (e: IOException) {
+            logger.warn("Unable to keep the purge cutoff in {}, purged rows show again after a restart", file, e)
+        }
+    }
+
+    private fun dayOf(epochMillis: Long): LocalDate = LocalDate.ofEpochDay(Math.floorDiv(epochMillis, MILLIS_PER_DAY))
+
+    private fun dateOf(epochMillis: Long): OffsetDateTime =
+        OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zoneId)
+
+    companion object {
+        private const val MILLIS_PER_DAY = 24 * 60 * 60 * 1000L
+        private const val PURGED_BEFORE = "purged.dat"
+        private const val ROW_BITS = 32
+        private const val ROW_MASK = (1L shl ROW_BITS) - 1
+
+        /**
+         * The id of the entry in [row] of the segment of [day], the epoch day in the upper and the row in the lower 32 bits.
+         */
+        internal fun idOf(day: LocalDate, row: Int): Long = (day.toEpochDay() shl ROW_BITS) or row.toLong()
+    }
+}
@@ -0,0 +1,394 @@
+package com.krillsson.sysapi.core.history.columnar
+
+import com.krillsson.sysapi.core.domain.cpu.CoreLoad
+import com.krillsson.sysapi.core.domain.cpu.CpuHealth
+import com.krillsson.sysapi.core.domain.cpu.CpuLoad
+import com.krillsson.sysapi.core.domain.disk.DiskLoad
+import com.krillsson.sysapi.core.domain.disk.DiskSpeed
+import com.krillsson.sysapi.core.domain.disk.DiskValues
+import com.krillsson.sysapi.core.domain.drives.DriveHealth
+import com.krillsson.sysapi.core.domain.drives.DriveLoad
+import com.krillsson.sysapi.core.domain.drives.DriveSpeed
+import com.krillsson.sysapi.core.domain.drives.DriveValues
+import com.krillsson.sysapi.core.domain.filesystem.FileSystemLoad
+import com.krillsson.sysapi.core.domain.gpu.GpuHealth
+import com.krillsson.sysapi.core.domain.gpu.GpuLoad
+import com.krillsson.sysapi.core.domain.history.HistorySystemLoad
+import com.krillsson.sysapi.core.domain.memory.MemoryLoad
+import com.krillsson.sysapi.core.domain.network.Connectivity
+import com.krillsson.sysapi.core.domain.network.NetworkInterfaceLoad
+import com.krillsson.sysapi.core.domain.network.NetworkInterfaceSpeed
+import com.krillsson.sysapi.core.domain.network.NetworkInterfaceValues
+import com.krillsson.sysapi.core.domain.sensors.DataType
+import com.krillsson.sysapi.core.domain.sensors.HealthData
+
+/*
+ * Every value of a HistorySystemLoad is a column named by group, entity and field. Singletons like the CPU use an empty
+ * entity, lists use the name of each item and store its position in the list in the "order" column, which is
+ * [Segment.MISSING] on rows the item was not there. Nested lists are flattened into indexed fields.
+ */
+
+internal const val SYSTEM = "system"
+internal const val CPU = "cpu"
+internal const val MEMORY = "memory"
+internal const val CONNECTIVITY = "connectivity"
+internal const val NETWORK = "network"
+internal const val DRIVE = "drive"
+internal const val DISK = "disk"
+internal const val FILE_SYSTEM = "fileSystem"
+internal const val GPU = "gpu"
+internal const val MOTHERBOARD = "motherboard"
+
+private const val ORDER = "order"
+private const val NAME = "name"
+
+/**
+ * Collects the column values of one row.
+ */
+internal class RowWriter(private val intern: (String) -> Long) {
+    val values = LinkedHashMap<ColumnKey, Long>()
+
+    fun entity(group: String, entity: String = ""): Entity = Entity(group, entity)
+
+    /**
+     * Items sharing a name are told apart by their position among those, e.g. "GPU#2".
+     */
+    fun <T> list(group: String, items: List<T>, name: (T) -> String, write: Entity.(T) -> Unit) {
+        val seen = HashMap<String, Int>()
+        items.forEachIndexed { index, item ->
+            val itemName = name(item)
+            val count = (seen[itemName] ?: 0) + 1
+            seen[itemName] = count
+            val key = if (count == 1) itemName else "$itemName#$count"
+            entity(group, key).apply {
+                long(ORDER, index.toLong())
+                string(NAME, itemName)
+                write(item)
+            }
+        }
+    }
+
+    inner class Entity(private val group: String, private val entity: String) {
+        fun long(field: String, value: Long) {
+            values[ColumnKey(group, entity, field)] = value
+        }
+
+        fun double(field: String, value: Double) {
+            // -0.0 shares its bits with MISSING
+            long(field, if (value == 0.0) 0L else value.toRawBits())
+        }
+
+        fun string(field: String, value: String?) {
+            long(field, value?.let(intern) ?: Segment.MISSING)
+        }
+
+        fun boolean(field: String, value: Boolean) {
+            long(field, if (value) 1L else 0L)
+        }
+
+        fun healthData(prefix: String, healthData: List<HealthData>) {
+            long("$prefix.count", healthData.size.toLong())
+            healthData.forEachIndexed { index, data ->
+                string("$prefix.$index.description", data.description)
+                double("$prefix.$index.data", data.data)
+                string("$prefix.$index.dataType", data.dataType.name)
+            }
+        }
+    }
+}
+
+/**
+ * Reads the column values of [row], values missing on the row read as zero, false or null.
+ */
+internal class RowReader(private val segment: Segment) {
+    var row: Int = 0
+
+    fun entity(group: String, entity: String = ""): Entity = Entity(segment.fields(group, entity))
+
+    fun <T> list(group: String, read: Entity.(name: String) -> T): List<T> {
+        val present = ArrayList<Pair<Long, T>>()
+        for (fields in segment.entities(group)) {
+            val entity = Entity(fields)
+            val order = entity.raw(ORDER)
+            if (order != Segment.MISSING) {
+                present.add(order to entity.read(entity.string(NAME).orEmpty()))
+            }
+        }
+        present.sortBy { it.first }
+        return present.map { it.second }
+    }
+
+    inner class Entity(private val fields: Map<String, Segment.Column>) {
+        fun raw(field: String): Long = fields[field]?.get(row) ?: Segment.MISSING
+
+        fun long(field: String): Long = raw(field).takeIf { it != Segment.MISSING } ?: 0L
+
+        fun int(field: String): Int = long(field).toInt()
+
+        fun double(field: String): Double = Double.fromBits(long(field))
+
+        fun string(field: String): String? = raw(field).takeIf { it != Segment.MISSING }?.let { segment.string(it) }
+
+        fun boolean(field: String): Boolean = long(field) == 1L
+
+        fun healthData(prefix: String): List<HealthData> {
+            return (0 until int("$prefix.count")).map { index ->
+                HealthData(
+                    string("$prefix.$index.description").orEmpty(),
+                    double("$prefix.$index.data"),
+                    string("$prefix.$index.dataType")
+                        ?.let { name -> DataType.values().firstOrNull { it.name == name } }
+                        ?: DataType.CELCIUS
+                )
+            }
+        }
+    }
+}
+
+internal fun HistorySystemLoad.writeTo(writer: RowWriter) {
+    writer.entity(SYSTEM).apply {
+        long("uptime", uptime)
+        double("systemLoadAverage", systemLoadAverage)
+    }
+    writer.entity(CPU).apply {
+        double("usagePercentage", cpuLoad.usagePercentage)
+        double("systemLoadAverage", cpuLoad.systemLoadAverage)
+        long("processCount", cpuLoad.processCount.toLong())
+        long("threadCount", cpuLoad.threadCount.toLong())
+        double("voltage", cpuLoad.cpuHealth.voltage)
+        double("fanRpm", cpuLoad.cpuHealth.fanRpm)
+        double("fanPercent", cpuLoad.cpuHealth.fanPercent)
+        long("temperature.count", cpuLoad.cpuHealth.temperatures.size.toLong())
+        cpuLoad.cpuHealth.temperatures.forEachIndexed { index, temperature ->
+            double("temperature.$index", temperature)
+        }
+        long("core.count", cpuLoad.coreLoads.size.toLong())
+        cpuLoad.coreLoads.forEachIndexed { index, core ->
+            double("core.$index.percentage", core.percentage)
+            double("core.$index.user", core.user)
+            double("core.$index.system", core.system)
+            double("core.$index.ioWait", core.ioWait)
+            double("core.$index.steal", core.steal)
+            double("core.$index.irq", core.irq)
+        }
+    }
+    writer.entity(MEMORY).apply {
+        long("numberOfProcesses", memory.numberOfProcesses.toLong())
+        long("swapTotalBytes", memory.swapTotalBytes)
+        long("swapUsedBytes", memory.swapUsedBytes)
+        long("totalBytes", memory.totalBytes)
+        long("availableBytes", memory.availableBytes)
+        double("usedPercent", memory.usedPercent)
+    }
+    writer.entity(CONNECTIVITY).apply {
+        string("externalIp", connectivity.externalIp)
+        string("previousExternalIp", connectivity.previousExternalIp)
+        string("localIp", connectivity.localIp)
+        boolean("connected", connectivity.connected)
+    }
+    writer.list(NETWORK, networkInterfaceLoads, { it.name }) { load ->
+        string("mac", load.mac)
+        boolean("isUp", load.isUp)
+        long("speed", load.values.speed)
+        long("bytesReceived", load.values.bytesReceived)
+        long("bytesSent", load.values.bytesSent)
+        long("packetsReceived", load.values.packetsReceived)
+        long("packetsSent", load.values.packetsSent)
+        long("inErrors", load.values.inErrors)
+        long("outErrors", load.values.outErrors)
+        long("receiveBytesPerSecond", load.speed.receiveBytesPerSecond)
+        long("sendBytesPerSecond", load.speed.sendBytesPerSecond)
+        long("packetsReceivedPerSecond", load.speed.packetsReceivedPerSecond)
+        long("packetsSentPerSecond", load.speed.packetsSentPerSecond)
+        long("inErrorsPerSecond", load.speed.inErrorsPerSecond)
+        long("outErrorsPerSecond", load.speed.outErrorsPerSecond)
+    }
+    writer.list(DRIVE, driveLoads, { it.name }) { load ->
+        string("serial", load.serial)
+        long("usableSpace", load.values.usableSpace)
+        long("totalSpace", load.values.totalSpace)
+        long("openFileDescriptors", load.values.openFileDescriptors)
+        long("maxFileDescriptors", load.values.maxFileDescriptors)
+        long("reads", load.values.reads)
+        long("readBytes", load.values.readBytes)
+        long("writes", load.values.writes)
+        long("writeBytes", load.values.writeBytes)
+        long("readBytesPerSecond", load.speed.readBytesPerSecond)
+        long("writeBytesPerSecond", load.speed.writeBytesPerSecond)
+        double("temperature", load.health.temperature)
+        healthData("health", load.health.healthData)
+    }
+    writer.list(DISK, diskLoads, { it.name }) { load ->
+        string("serial", load.serial)
+        long("reads", load.values.reads)
+        long("readBytes", load.values.readBytes)
+        long("writes", load.values.writes)
+        long("writeBytes", load.values.writeBytes)
+        long("readBytesPerSecond", load.speed.readBytesPerSecond)
+        long("writeBytesPerSecond", load.speed.writeBytesPerSecond)
+        long("readsPerSecond", load.speed.readsPerSecond)
+        long("writesPerSecond", load.speed.writesPerSecond)
+    }
+    writer.list(FILE_SYSTEM, fileSystemLoads, { it.name }) { load ->
+        long("freeSpaceBytes", load.freeSpaceBytes)
+        long("usableSpaceBytes", load.usableSpaceBytes)
+        long("totalSpaceBytes", load.totalSpaceBytes)
+    }
+    writer.list(GPU, gpuLoads, { it.name }) { load ->
+        double("coreLoad", load.coreLoad)
+        double("memoryLoad", load.memoryLoad)
+        double("fanRpm", load.health.fanRpm)
+        double("fanPercent", load.health.fanPercent)
+        double("temperature", load.health.temperature)
+    }
+    writer.entity(MOTHERBOARD).healthData("health", motherboardHealth)
+}
+
+internal fun RowReader.historySystemLoad(): HistorySystemLoad {
+    val system = entity(SYSTEM)
+    return HistorySystemLoad(
+        system.long("uptime"),
+        system.double("systemLoadAverage"),
+        cpuLoad(),
+        networkInterfaceLoads(),
+        connectivity(),
+        driveLoads(),
+        diskLoads(),
+        fileSystemLoads(),
+        memoryLoad(),
+        gpuLoads(),
+        entity(MOTHERBOARD).healthData("health")
+    )
+}
+
+internal fun RowReader.cpuLoad(): CpuLoad {
+    return entity(CPU).run {
+        CpuLoad(
+            double("usagePercentage"),
+            double("systemLoadAverage"),
+            (0 until int("core.count")).map { index ->
+                CoreLoad(
+                    double("core.$index.percentage"),
+                    double("core.$index.user"),
+                    double("core.$index.system"),
+                    double("core.$index.ioWait"),
+                    double("core.$index.steal"),
+                    double("core.$index.irq")
+                )
+            },
+            CpuHealth(
+                (0 until int("temperature.count")).map { index -> double("temperature.$index") },
+                double("voltage"),
+                double("fanRpm"),
+                double("fanPercent")
+            ),
+            int("processCount"),
+            int("threadCount")
+        )
+    }
+}
+
+internal fun RowReader.memoryLoad(): MemoryLoad {
+    return entity(MEMORY).run {
+        MemoryLoad(
+            int("numberOfProcesses"),
+            long("swapTotalBytes"),
+            long("swapUsedBytes"),
+            long("totalBytes"),
+            long("availableBytes"),
+            double("usedPercent")
+        )
+    }
+}
+
+internal fun RowReader.connectivity(): Connectivity {
+    return entity(CONNECTIVITY).run {
+        Connectivity(
+            string("externalIp"),
+            string("previousExternalIp"),
+            string("localIp"),
+            boolean("connected")
+        )
+    }
+}
+
+internal fun RowReader.networkInterfaceLoads(): List<NetworkInterfaceLoad> {
+    return list(NETWORK) { name ->
+        NetworkInterfaceLoad(
+            name,
+            string("mac").orEmpty(),
+            boolean("isUp"),
+            NetworkInterfaceValues(
+                long("speed"),
+                long("bytesReceived"),
+                long("bytesSent"),
+                long("packetsReceived"),
+                long("packetsSent"),
+                long("inErrors"),
+                long("outErrors")
+            ),
+            NetworkInterfaceSpeed(
+                long("receiveBytesPerSecond"),
+                long("sendBytesPerSecond"),
+                long("packetsReceivedPerSecond"),
+                long("packetsSentPerSecond"),
+                long("inErrorsPerSecond"),
+                long("outErrorsPerSecond")
+            )
+        )
+    }
+}
+
+internal fun RowReader.driveLoads(): List<DriveLoad> {
+    return list(DRIVE) { name ->
+        DriveLoad(
+            name,
+            string("serial").orEmpty(),
+            DriveValues(
+                long("usableSpace"),
+                long("totalSpace"),
+                long("openFileDescriptors"),
+                long("maxFileDescriptors"),
+                long("reads"),
+                long("readBytes"),
+                long("writes"),
+                long("writeBytes")
+            ),
+            DriveSpeed(long("readBytesPerSecond"), long("writeBytesPerSecond")),
+            DriveHealth(double("temperature"), healthData("health"))
+        )
+    }
+}
+
+internal fun RowReader.diskLoads(): List<DiskLoad> {
+    return list(DISK) { name ->
+        DiskLoad(
+            name,
+            string("serial").orEmpty(),
+            DiskValues(long("reads"), long("readBytes"), long("writes"), long("writeBytes")),
+            DiskSpeed(
+                long("readBytesPerSecond"),
+                long("writeBytesPerSecond"),
+                long("readsPerSecond"),
+                long("writesPerSecond")
+            )
+        )
+    }
+}
+
+internal fun RowReader.fileSystemLoads(): List<FileSystemLoad> {
+    return list(FILE_SYSTEM) { name ->
+        FileSystemLoad(name, long("freeSpaceBytes"), long("usableSpaceBytes"), long("totalSpaceBytes"))
+    }
+}
+
+internal fun RowReader.gpuLoads(): List<GpuLoad> {
+    return list(GPU) { name ->
+        GpuLoad(
+            name,
+            double("coreLoad"),
+            double("memoryLoad"),
+            GpuHealth(double("fanRpm"), double("fanPercent"), double("temperature"))
+        )
+    }
+}
@@ -0,0 +1,323 @@
+package com.krillsson.sysapi.core.history.columnar
+
+import org.slf4j.LoggerFactory
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption.*
+import java.time.LocalDate
+
+internal data class ColumnKey(val group: String, val entity: String, val field: String)
+
+/**
+ * The samples of one UTC day, stored column by column.
+ *
+ * Every column is a file of 8 byte values, one per row, where `c<n>.col` holds column n of catalog.dat. Strings are
+ * stored as indexes into strings.dat. A row is written to every column first and to time.col last, so the length of
+ * time.col is the number of complete rows: columns are written at the row offset and whatever a crash left behind them
+ * is overwritten by the next row. A column that first shows up after the segment has rows is padded with [MISSING].
+ *
+ * A segment of an earlier day is opened read-only, its columns are mapped once and their channels closed right away. The
+ * segment of the current day keeps its channels open. Its value columns grow by doubling their file, so a column is only
+ * mapped again each time its file doubled instead of for every row appended, and are cut back to their rows on [close].
+ * time.col can not grow ahead of its rows, the times of the current day are kept on the heap instead.
+ */
+internal class Segment private constructor(
+    val day: LocalDate,
+    private val directory: File,
+    private val writable: Boolean
+) : Closeable {
+
+    inner class Column(val key: ColumnKey, private var channel: FileChannel?, private val growable: Boolean) {
+        @Volatile
+        private var mapped: ByteBuffer = EMPTY
+
+        operator fun get(row: Int): Long {
+            val end = (row + 1) * VALUE_SIZE
+            var buffer = mapped
+            if (buffer.capacity() < end) {
+                buffer = remap(end)
+            }
+            return if (buffer.capacity() >= end) buffer.getLong(row * VALUE_SIZE) else MISSING
+        }
+
+        @Synchronized
+        private fun remap(end: Int): ByteBuffer {
+            val current = mapped
+            val channel = channel
+            if (current.capacity() >= end || channel == null) {
+                return current
+            }
+            // a growable file is ahead of its rows, mapping all of it covers the rows appended until it doubles again
+            val size = if (growable) channel.size() else minOf(rows.toLong() * VALUE_SIZE, channel.size())
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size).also { mapped = it }
+        }
+
+        internal fun write(value: Long, row: Int) {
+            val channel = checkNotNull(channel) { "${key.field} of $day is read-only" }
+            var position = row.toLong() * VALUE_SIZE
+            if (growable && position + VALUE_SIZE > channel.size()) {
+                grow(channel, position + VALUE_SIZE)
+            }
+            val buffer = ByteBuffer.allocate(VALUE_SIZE).putLong(value)
+            buffer.flip()
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position)
+            }
+        }
+
+        internal fun seal() {
+            channel?.let { channel ->
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, minOf(rows.toLong() * VALUE_SIZE, channel.size()))
+                channel.close()
+            }
+            channel = null
+        }
+
+        internal fun close() {
+            channel?.let { channel ->
+                if (growable) {
+                    try {
+                        channel.truncate(rows.toLong() * VALUE_SIZE)
+                    } catch (e: IOException) {
+                        // Windows does not truncate a file that is still mapped, reads stop at the rows regardless
+                        LOGGER.debug("Leaving {} of {} at its grown size", key.field, day, e)
+                    }
+                }
+                channel.close()
+            }
+            channel = null
+        }
+
+        private fun grow(channel: FileChannel, end: Long) {
+            val size = maxOf(end, channel.size() * 2, MIN_GROWN_SIZE)
+            // the file is extended with zeros up to the last byte written
+            channel.write(ByteBuffer.allocate(1), size - 1)
+        }
+    }
+
+    /**
+     * Number of complete rows.
+     */
+    @Volatile
+    var rows: Int = 0
+        private set
+
+    private lateinit var time: Column
+
+    // the times of the rows of a writable segment, read by every binary search
+    @Volatile
+    private var times = LongArray(0)
+    private val columns = ArrayList<Column>()
+    private val byKey = HashMap<ColumnKey, Column>()
+    private val strings = ArrayList<String>()
+    private val stringIds = HashMap<String, Long>()
+    private var catalog: DataOutputStream? = null
+    private var dictionary: DataOutputStream? = null
+
+    // group -> entity -> field
+    @Volatile
+    private var groups: Map<String, Map<String, Map<String, Column>>> = emptyMap()
+
+    fun time(row: Int): Long = if (writable) times[row] else time[row]
+
+    /**
+     * @return the first row at or after [time], [rows] if there is none
+     */
+    fun firstRowAtOrAfter(time: Long): Int {
+        var low = 0
+        var high = rows
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (time(middle) < time) {
+                low = middle + 1
+            } else {
+                high = middle
+            }
+        }
+        return low
+    }
+
+    fun fields(group: String, entity: String): Map<String, Column> = groups[group]?.get(entity) ?: emptyMap()
+
+    fun entities(group: String): Collection<Map<String, Column>> = groups[group]?.values ?: emptyList()
+
+    fun string(id: Long): String? = if (id >= 0 && id < strings.size) strings[id.toInt()] else null
+
+    fun intern(value: String): Long {
+        return stringIds[value] ?: run {
+            val output = checkNotNull(dictionary) { "$day is read-only" }
+            output.writeUTF(value)
+            output.flush()
+            strings.add(value)
+            (strings.size - 1L).also { stringIds[value] = it }
+        }
+    }
+
+    fun append(time: Long, values: Map<ColumnKey, Long>) {
+        for (key in values.keys) {
+            if (!byKey.containsKey(key)) {
+                addColumn(key)
+            }
+        }
+        val row = rows
+        for (column in columns) {
+            column.write(values[column.key] ?: MISSING, row)
+        }
+        // commits the row
+        this.time.write(time, row)
+        if (row == times.size) {
+            times = times.copyOf(maxOf(MIN_TIMES, times.size * 2))
+        }
+        times[row] = time
+        rows = row + 1
+    }
+
+    private fun addColumn(key: ColumnKey) {
+        val file = File(directory, "c${columns.size}.col")
+        val channel = FileChannel.open(file.toPath(), READ, WRITE, CREATE)
+        // left behind if a crash happened before its catalog entry was written
+        channel.truncate(0)
+        pad(channel)
+        val output = checkNotNull(catalog) { "$day is read-only" }
+        output.writeUTF(key.group)
+        output.writeUTF(key.entity)
+        output.writeUTF(key.field)
+        output.flush()
+        add(Column(key, channel, true))
+    }
+
+    private fun add(column: Column) {
+        columns.add(column)
+        byKey[column.key] = column
+        val next = HashMap<String, MutableMap<String, MutableMap<String, Column>>>()
+        for (each in columns) {
+            next.getOrPut(each.key.group) { LinkedHashMap() }
+                .getOrPut(each.key.entity) { HashMap() }[each.key.field] = each
+        }
+        groups = next
+    }
+
+    private fun pad(channel: FileChannel) {
+        val end = rows.toLong() * VALUE_SIZE
+        var position = channel.size() / VALUE_SIZE * VALUE_SIZE
+        val buffer = ByteBuffer.allocate(PAD_CHUNK)
+        while (position < end) {
+            buffer.clear()
+            while (buffer.hasRemaining() && position + buffer.position() < end) {
+                buffer.putLong(MISSING)
+            }
+            buffer.flip()
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position)
+            }
+        }
+    }
+
+    private fun load() {
+        if (writable) {
+            directory.mkdirs()
+        }
+        val timeChannel = open(File(directory, TIME))
+        rows = timeChannel?.let { (it.size() / VALUE_SIZE).toInt() } ?: 0
+        time = Column(TIME_KEY, timeChannel, false)
+        if (writable) {
+            times = LongArray(maxOf(MIN_TIMES, rows * 2))
+            for (row in 0 until rows) {
+                times[row] = time[row]
+            }
+        }
+
+        for (entry in readEntries(File(directory, STRINGS), 1)) {
+            stringIds[entry[0]] = strings.size.toLong()
+            strings.add(entry[0])
+        }
+        readEntries(File(directory, CATALOG), 3).forEachIndexed { index, entry ->
+            val channel = open(File(directory, "c$index.col"))
+            if (writable && channel != null) {
+                pad(channel)
+            }
+            add(Column(ColumnKey(entry[0], entry[1], entry[2]), channel, writable))
+        }
+        if (writable) {
+            catalog = appendTo(File(directory, CATALOG))
+            dictionary = appendTo(File(directory, STRINGS))
+        } else {
+            time.seal()
+            columns.forEach { it.seal() }
+        }
+    }
+
+    private fun open(file: File): FileChannel? {
+        return when {
+            writable -> FileChannel.open(file.toPath(), READ, WRITE, CREATE)
+            file.exists() -> FileChannel.open(file.toPath(), READ)
+            else -> null
+        }
+    }
+
+    /**
+     * Reads the entries of [fieldCount] strings each, an entry torn by a crash is dropped and, when [writable], cut off.
+     */
+    private fun readEntries(file: File, fieldCount: Int): List<Array<String>> {
+        if (!file.exists()) {
+            return emptyList()
+        }
+        val bytes = file.readBytes()
+        val input = DataInputStream(ByteArrayInputStream(bytes))
+        val entries = ArrayList<Array<String>>()
+        var valid = 0L
+        try {
+            while (input.available() > 0) {
+                entries.add(Array(fieldCount) { input.readUTF() })
+                valid = (bytes.size - input.available()).toLong()
+            }
+        } catch (e: IOException) {
+            LOGGER.warn("Dropping torn entry at the end of {}", file)
+            if (writable) {
+                RandomAccessFile(file, "rw").use { it.setLength(valid) }
+            }
+        }
+        return entries
+    }
+
+    private fun appendTo(file: File): DataOutputStream {
+        return DataOutputStream(BufferedOutputStream(FileOutputStream(file, true)))
+    }
+
+    override fun close() {
+        catalog?.close()
+        dictionary?.close()
+        catalog = null
+        dictionary = null
+        time.close()
+        columns.forEach { it.close() }
+    }
+
+    companion object {
+        /**
+         * Stored for values a row does not have, e.g. of an interface that was not there yet.
+         */
+        const val MISSING = Long.MIN_VALUE
+
+        private const val VALUE_SIZE = 8
+        private const val PAD_CHUNK = 64 * VALUE_SIZE
+        private const val MIN_TIMES = 1024
+        private const val MIN_GROWN_SIZE = 1024L * VALUE_SIZE
+        private const val TIME = "time.col"
+        private const val CATALOG = "catalog.dat"
+        private const val STRINGS = "strings.dat"
+        private val TIME_KEY = ColumnKey("", "", "time")
+        private val EMPTY: ByteBuffer = ByteBuffer.allocate(0)
+        private val LOGGER = LoggerFactory.getLogger(Segment::class.java)
+
+        /**
+         * Number of complete rows of the segment in [directory], without opening it.
+         */
+        fun rows(directory: File): Int = (File(directory, TIME).length() / VALUE_SIZE).toInt()
+
+        fun open(directory: File, day: LocalDate, writable: Boolean): Segment {
+            return Segment(day, directory, writable).apply { load() }
+        }
+    }
+}
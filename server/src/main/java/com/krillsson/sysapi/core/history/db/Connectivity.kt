@@ -2,14 +2,17 @@ package com.krillsson.sysapi.core.history.db
 
 import io.dropwizard.hibernate.AbstractDAO
 import org.hibernate.SessionFactory
-import java.util.*
+import org.hibernate.annotations.GenericGenerator
 import javax.persistence.Entity
+import javax.persistence.GeneratedValue
 import javax.persistence.Id
 
 @Entity
 class Connectivity(
     @Id
-    val id: UUID,
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
     val externalIp: String?,
     val previousExternalIp: String?,
     val localIp: String?,
@@ -17,7 +20,13 @@ class Connectivity(
 )
 
 class ConnectivityDAO(sessionFactory: SessionFactory) : AbstractDAO<Connectivity>(sessionFactory) {
-    fun findById(id: UUID): Connectivity {
-        return get(id)
+    fun findByHistoryId(historyId: Long): Connectivity {
+        return currentSession()
+            .createQuery(
+                "SELECT e.connectivity FROM HistorySystemLoadEntity e WHERE e.id = :historyId",
+                Connectivity::class.java
+            )
+            .setParameter("historyId", historyId)
+            .singleResult
     }
 }
\ No newline at end of file
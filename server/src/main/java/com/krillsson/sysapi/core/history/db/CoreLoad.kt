@@ -1,15 +1,17 @@
 package com.krillsson.sysapi.core.history.db
 
-import java.util.*
+import org.hibernate.annotations.GenericGenerator
 import javax.persistence.*
 
 @Entity
 class CoreLoad(
     @Id
-    val id: UUID,
-    @JoinColumn(name = "cpuLoadId", insertable = false, updatable = false)
-    @ManyToOne(fetch = FetchType.LAZY)
-    val cpuLoad: CpuLoad? = null,
-    val cpuLoadId: UUID,
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
     val percentage: Double,
-)
\ No newline at end of file
+) {
+    @JoinColumn(name = "cpuLoadId")
+    @ManyToOne(fetch = FetchType.LAZY)
+    var cpuLoad: CpuLoad? = null
+}
@@ -2,13 +2,15 @@ package com.krillsson.sysapi.core.history.db
 
 import io.dropwizard.hibernate.AbstractDAO
 import org.hibernate.SessionFactory
-import java.util.*
+import org.hibernate.annotations.GenericGenerator
 import javax.persistence.*
 
 @Entity
 class CpuLoad(
     @Id
-    val id: UUID,
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
     val usagePercentage: Double,
     val systemLoadAverage: Double,
     @OneToMany(mappedBy = "cpuLoad", cascade = [CascadeType.ALL], orphanRemoval = true)
@@ -17,10 +19,20 @@ class CpuLoad(
     val cpuHealth: CpuHealth,
     val processCount: Int,
     val threadCount: Int
-)
+) {
+    init {
+        coreLoads.forEach { it.cpuLoad = this }
+    }
+}
 
 class CpuLoadDAO(sessionFactory: SessionFactory) : AbstractDAO<CpuLoad>(sessionFactory) {
-    fun findById(id: UUID): CpuLoad {
-        return get(id)
+    fun findByHistoryId(historyId: Long): CpuLoad {
+        return currentSession()
+            .createQuery(
+                "SELECT e.cpuLoad FROM HistorySystemLoadEntity e WHERE e.id = :historyId",
+                CpuLoad::class.java
+            )
+            .setParameter("historyId", historyId)
+            .singleResult
     }
 }
\ No newline at end of file
@@ -1,5 +1,5 @@
 package com.krillsson.sysapi.core.history.db
 
 enum class DataType {
-    CLOCK, VOLTAGE, PERCENT, RPM, CELCIUS, GIGABYTE
+    CLOCK, VOLTAGE, PERCENT, RPM, CELCIUS, GIGABYTE, FLAGS
 }
\ No newline at end of file
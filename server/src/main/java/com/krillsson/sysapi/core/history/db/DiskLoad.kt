@@ -2,7 +2,7 @@ package com.krillsson.sysapi.core.history.db
 
 import io.dropwizard.hibernate.AbstractDAO
 import org.hibernate.SessionFactory
-import java.util.*
+import org.hibernate.annotations.GenericGenerator
 import javax.persistence.*
 import javax.persistence.criteria.CriteriaQuery
 import javax.persistence.criteria.Root
@@ -10,18 +10,20 @@ import javax.persistence.criteria.Root
 @Entity
 data class DiskLoad(
     @Id
-    val id: UUID,
-    @JoinColumn(name = "historyId", insertable = false, updatable = false)
-    @ManyToOne(fetch = FetchType.LAZY)
-    val history: HistorySystemLoadEntity? = null,
-    val historyId: UUID,
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
     val name: String,
     val serial: String,
     @Embedded
     val values: DiskValues,
     @Embedded
     val speed: DiskSpeed,
-)
+) {
+    @JoinColumn(name = "historyId")
+    @ManyToOne(fetch = FetchType.LAZY)
+    var history: HistorySystemLoadEntity? = null
+}
 @Embeddable
 data class DiskValues(
     val reads: Long,
@@ -36,11 +38,11 @@ class DiskSpeed(
 )
 
 class DiskLoadDAO(sessionFactory: SessionFactory) : AbstractDAO<DiskLoad>(sessionFactory) {
-    fun findById(id: UUID): List<DiskLoad> {
+    fun findById(id: Long): List<DiskLoad> {
         val builder = currentSession().criteriaBuilder
         val query: CriteriaQuery<DiskLoad> = builder.createQuery(DiskLoad::class.java)
         val root: Root<DiskLoad> = query.from(DiskLoad::class.java)
-        val equals = builder.equal(root.get<UUID>("historyId"), id)
+        val equals = builder.equal(root.get<HistorySystemLoadEntity>("history").get<Long>("id"), id)
         return list(query.where(equals))
     }
 }
\ No newline at end of file
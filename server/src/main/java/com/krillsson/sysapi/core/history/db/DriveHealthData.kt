@@ -1,17 +1,19 @@
 package com.krillsson.sysapi.core.history.db
 
-import java.util.*
+import org.hibernate.annotations.GenericGenerator
 import javax.persistence.*
 
 @Entity
 class DriveHealthData(
     @Id
-    val id: UUID,
-    @JoinColumn(name = "driveLoadId", insertable = false, updatable = false)
-    @ManyToOne(fetch = FetchType.LAZY)
-    val driveLoad: DriveLoad? = null,
-    val driveLoadId: UUID,
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
     val description: String,
     val data: Double,
     val dataType: DataType
-)
\ No newline at end of file
+) {
+    @JoinColumn(name = "driveLoadId")
+    @ManyToOne(fetch = FetchType.LAZY)
+    var driveLoad: DriveLoad? = null
+}
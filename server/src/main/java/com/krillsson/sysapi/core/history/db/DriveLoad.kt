@@ -2,7 +2,7 @@ package com.krillsson.sysapi.core.history.db
 
 import io.dropwizard.hibernate.AbstractDAO
 import org.hibernate.SessionFactory
-import java.util.*
+import org.hibernate.annotations.GenericGenerator
 import javax.persistence.*
 import javax.persistence.criteria.CriteriaQuery
 import javax.persistence.criteria.Root
@@ -10,11 +10,9 @@ import javax.persistence.criteria.Root
 @Entity
 class DriveLoad(
     @Id
-    val id: UUID,
-    @JoinColumn(name = "historyId", insertable = false, updatable = false)
-    @ManyToOne(fetch = FetchType.LAZY)
-    val history: HistorySystemLoadEntity? = null,
-    val historyId: UUID,
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
     val name: String,
     val serial: String,
     @Embedded
@@ -24,7 +22,15 @@ class DriveLoad(
     val temperature: Double,
     @OneToMany(mappedBy = "driveLoad", cascade = [CascadeType.ALL], orphanRemoval = true)
     val healthData: List<DriveHealthData>
-)
+) {
+    @JoinColumn(name = "historyId")
+    @ManyToOne(fetch = FetchType.LAZY)
+    var history: HistorySystemLoadEntity? = null
+
+    init {
+        healthData.forEach { it.driveLoad = this }
+    }
+}
 
 @Embeddable
 class DriveValues(
@@ -42,11 +48,11 @@ class DriveValues(
 class DriveSpeed(val readBytesPerSecond: Long, val writeBytesPerSecond: Long)
 
 class DriveLoadDAO(sessionFactory: SessionFactory) : AbstractDAO<DriveLoad>(sessionFactory) {
-    fun findById(id: UUID): List<DriveLoad> {
+    fun findById(id: Long): List<DriveLoad> {
         val builder = currentSession().criteriaBuilder
         val query: CriteriaQuery<DriveLoad> = builder.createQuery(DriveLoad::class.java)
         val root: Root<DriveLoad> = query.from(DriveLoad::class.java)
-        val equals = builder.equal(root.get<UUID>("historyId"), id)
+        val equals = builder.equal(root.get<HistorySystemLoadEntity>("history").get<Long>("id"), id)
         return list(query.where(equals))
     }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.krillsson.sysapi.core.history.db
+
+import java.time.Instant
+import java.time.OffsetDateTime
+import java.time.ZoneId
+import javax.persistence.AttributeConverter
+import javax.persistence.Converter
+
+/**
+ * Stores dates as integer epoch milliseconds, which SQLite compares and indexes as plain numbers.
+ */
+@Converter
+class EpochMillisConverter : AttributeConverter<OffsetDateTime, Long> {
+    override fun convertToDatabaseColumn(attribute: OffsetDateTime?): Long? {
+        return attribute?.toInstant()?.toEpochMilli()
+    }
+
+    override fun convertToEntityAttribute(dbData: Long?): OffsetDateTime? {
+        return dbData?.let { OffsetDateTime.ofInstant(Instant.ofEpochMilli(it), ZoneId.systemDefault()) }
+    }
+}
@@ -2,7 +2,7 @@ package com.krillsson.sysapi.core.history.db
 
 import io.dropwizard.hibernate.AbstractDAO
 import org.hibernate.SessionFactory
-import java.util.*
+import org.hibernate.annotations.GenericGenerator
 import javax.persistence.*
 import javax.persistence.criteria.CriteriaQuery
 import javax.persistence.criteria.Root
@@ -10,23 +10,25 @@ import javax.persistence.criteria.Root
 @Entity
 data class FileSystemLoad(
     @Id
-    val id: UUID,
-    @JoinColumn(name = "historyId", insertable = false, updatable = false)
-    @ManyToOne(fetch = FetchType.LAZY)
-    val history: HistorySystemLoadEntity? = null,
-    val historyId: UUID,
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
     val name: String,
     val freeSpaceBytes: Long,
     val usableSpaceBytes: Long,
     val totalSpaceBytes: Long
-)
+) {
+    @JoinColumn(name = "historyId")
+    @ManyToOne(fetch = FetchType.LAZY)
+    var history: HistorySystemLoadEntity? = null
+}
 
 class FileSystemLoadDAO(sessionFactory: SessionFactory) : AbstractDAO<FileSystemLoad>(sessionFactory) {
-    fun findById(id: UUID): List<FileSystemLoad> {
+    fun findById(id: Long): List<FileSystemLoad> {
         val builder = currentSession().criteriaBuilder
         val query: CriteriaQuery<FileSystemLoad> = builder.createQuery(FileSystemLoad::class.java)
         val root: Root<FileSystemLoad> = query.from(FileSystemLoad::class.java)
-        val equals = builder.equal(root.get<UUID>("historyId"), id)
+        val equals = builder.equal(root.get<HistorySystemLoadEntity>("history").get<Long>("id"), id)
         return list(query.where(equals))
     }
 }
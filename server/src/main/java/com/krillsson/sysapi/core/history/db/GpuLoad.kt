@@ -1,22 +1,24 @@
 package com.krillsson.sysapi.core.history.db
 
-import java.util.*
+import org.hibernate.annotations.GenericGenerator
 import javax.persistence.*
 
 @Entity
 class GpuLoad(
     @Id
-    val id: UUID,
-    @JoinColumn(name = "historyId", insertable = false, updatable = false)
-    @ManyToOne(fetch = FetchType.LAZY)
-    val history: HistorySystemLoadEntity? = null,
-    val historyId: UUID,
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
     val name: String,
     val coreLoad: Double,
     val memoryLoad: Double,
     @Embedded
     val health: GpuHealth
-)
+) {
+    @JoinColumn(name = "historyId")
+    @ManyToOne(fetch = FetchType.LAZY)
+    var history: HistorySystemLoadEntity? = null
+}
 
 @Embeddable
-class GpuHealth(val fanRpm: Double, val fanPercent: Double, val temperature: Double)
\ No newline at end of file
+class GpuHealth(val fanRpm: Double, val fanPercent: Double, val temperature: Double)
@@ -1,17 +1,19 @@
 package com.krillsson.sysapi.core.history.db
 
-import java.util.*
+import org.hibernate.annotations.GenericGenerator
 import javax.persistence.*
 
 @Entity
 class HealthData(
     @Id
-    val id: UUID,
-    @JoinColumn(name = "historyId", insertable = false, updatable = false)
-    @ManyToOne(fetch = FetchType.LAZY)
-    val history: HistorySystemLoadEntity? = null,
-    val historyId: UUID,
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
     val description: String,
     val data: Double,
     val dataType: DataType
-)
\ No newline at end of file
+) {
+    @JoinColumn(name = "historyId")
+    @ManyToOne(fetch = FetchType.LAZY)
+    var history: HistorySystemLoadEntity? = null
+}
@@ -0,0 +1,78 @@
+package com.krillsson.sysapi.core.history.db
+
+import com.krillsson.sysapi.core.domain.history.HistoryTier
+import io.dropwizard.hibernate.AbstractDAO
+import org.hibernate.SessionFactory
+import org.hibernate.annotations.GenericGenerator
+import java.time.OffsetDateTime
+import javax.persistence.*
+
+@Entity
+@Table(name = "HistoryRollup")
+class HistoryRollupEntity(
+    @Id
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
+    val tier: HistoryTier,
+    @Convert(converter = EpochMillisConverter::class)
+    val bucket: OffsetDateTime,
+    val series: String,
+    var samples: Int,
+    var minimum: Double,
+    var maximum: Double,
+    var mean: Double,
+    var last: Double
+)
+
+class HistoryRollupDAO(sessionFactory: SessionFactory) : AbstractDAO<HistoryRollupEntity>(sessionFactory) {
+
+    fun insert(entity: HistoryRollupEntity): Long {
+        return persist(entity).id
+    }
+
+    fun findBucket(tier: HistoryTier, bucket: OffsetDateTime): List<HistoryRollupEntity> {
+        return list(
+            query("SELECT r FROM HistoryRollupEntity r WHERE r.tier = :tier AND r.bucket = :bucket")
+                .setParameter("tier", tier)
+                .setParameter("bucket", bucket)
+        )
+    }
+
+    /**
+     * The rollups of [tier] in buckets starting between [from] and [to], of [series] unless it is null.
+     */
+    fun findAllBetween(
+        tier: HistoryTier,
+        from: OffsetDateTime,
+        to: OffsetDateTime,
+        series: Collection<String>?
+    ): List<HistoryRollupEntity> {
+        val query = query(
+            "SELECT r FROM HistoryRollupEntity r WHERE r.tier = :tier AND r.bucket BETWEEN :from AND :to" +
+                    (if (series != null) " AND r.series IN (:series)" else "") +
+                    " ORDER BY r.bucket"
+        )
+            .setParameter("tier", tier)
+            .setParameter("from", from)
+            .setParameter("to", to)
+        series?.let { query.setParameterList("series", it) }
+        return list(query)
+    }
+
+    fun isEmpty(): Boolean {
+        return currentSession()
+            .createQuery("SELECT r.id FROM HistoryRollupEntity r")
+            .setMaxResults(1)
+            .list()
+            .isEmpty()
+    }
+
+    fun purge(tier: HistoryTier, maxAge: OffsetDateTime): Int {
+        return currentSession()
+            .createQuery("DELETE FROM HistoryRollupEntity r WHERE r.tier = :tier AND r.bucket < :maxAge")
+            .setParameter("tier", tier)
+            .setParameter("maxAge", maxAge)
+            .executeUpdate()
+    }
+}
@@ -3,16 +3,15 @@ package com.krillsson.sysapi.core.history.db
 import io.dropwizard.hibernate.AbstractDAO
 import org.hibernate.SessionFactory
 import java.time.OffsetDateTime
-import java.util.*
 import javax.persistence.criteria.CriteriaQuery
 import javax.persistence.criteria.Root
 
 class HistorySystemLoadDAO(sessionFactory: SessionFactory) : AbstractDAO<HistorySystemLoadEntity>(sessionFactory) {
-    fun insert(entity: HistorySystemLoadEntity): UUID {
+    fun insert(entity: HistorySystemLoadEntity): Long {
         return persist(entity).id
     }
 
-    fun insert(entities: List<HistorySystemLoadEntity>): List<UUID> {
+    fun insert(entities: List<HistorySystemLoadEntity>): List<Long> {
         return entities.map {
             val createdId = insert(it)
             createdId
@@ -27,13 +26,93 @@ class HistorySystemLoadDAO(sessionFactory: SessionFactory) : AbstractDAO<History
         return list(query.where(between))
     }
 
+    /**
+     * Deletes every entry older than [maxAge] and everything recorded with it, [PURGE_CHUNK_SIZE] entries at a time.
+     */
     fun purge(maxAge: OffsetDateTime): Int {
-        val builder = currentSession().criteriaBuilder
-        val delete = builder.createCriteriaDelete(HistorySystemLoadEntity::class.java)
-        val table = delete.from(HistorySystemLoadEntity::class.java)
-        val lessThan = builder.lessThan(table.get("date"), maxAge)
+        var total = 0
+        do {
+            val deleted = purgeOldest(maxAge, PURGE_CHUNK_SIZE)
+            total += deleted
+        } while (deleted >= PURGE_CHUNK_SIZE)
+        return total
+    }
+
+    /**
+     * Deletes the [limit] oldest entries older than [maxAge] together with every row recorded with them.
+     *
+     * Bulk deletes bypass the cascades of the mappings, so the children are deleted first by the ids of the chunk and the
+     * one-to-one rows the entries point at are deleted after them.
+     */
+    fun purgeOldest(maxAge: OffsetDateTime, limit: Int): Int {
+        val session = currentSession()
+        val rows = session
+            .createQuery(
+                "SELECT e.id, c.id, n.id, m.id FROM HistorySystemLoadEntity e " +
+                        "LEFT JOIN e.cpuLoad c LEFT JOIN e.connectivity n LEFT JOIN e.memory m " +
+                        "WHERE e.date < :maxAge ORDER BY e.date",
+                Array<Any?>::class.java
+            )
+            .setParameter("maxAge", maxAge)
+            .setMaxResults(limit)
+            .list()
+        if (rows.isEmpty()) {
+            return 0
+        }
+        val ids = rows.map { it[0] as Long }
+        val cpuLoadIds = rows.mapNotNull { it[1] as Long? }
+        val connectivityIds = rows.mapNotNull { it[2] as Long? }
+        val memoryIds = rows.mapNotNull { it[3] as Long? }
+
+        deleteWhereIn(
+            "DELETE FROM DriveHealthData d WHERE d.driveLoad.id IN " +
+                    "(SELECT l.id FROM DriveLoad l WHERE l.history.id IN (:ids))",
+            ids
+        )
+        HISTORY_CHILDREN.forEach { entity ->
+            deleteWhereIn("DELETE FROM $entity c WHERE c.history.id IN (:ids)", ids)
+        }
+        val deleted = deleteWhereIn("DELETE FROM HistorySystemLoadEntity e WHERE e.id IN (:ids)", ids)
+        if (cpuLoadIds.isNotEmpty()) {
+            deleteWhereIn("DELETE FROM CoreLoad c WHERE c.cpuLoad.id IN (:ids)", cpuLoadIds)
+            // an element collection of the embedded CpuHealth, which has no entity to bulk delete through
+            session.createNativeQuery("DELETE FROM CpuLoad_temperatures WHERE CpuLoad_id IN (:ids)")
+                .setParameterList("ids", cpuLoadIds)
+                .executeUpdate()
+            deleteWhereIn("DELETE FROM CpuLoad c WHERE c.id IN (:ids)", cpuLoadIds)
+        }
+        if (connectivityIds.isNotEmpty()) {
+            deleteWhereIn("DELETE FROM Connectivity c WHERE c.id IN (:ids)", connectivityIds)
+        }
+        if (memoryIds.isNotEmpty()) {
+            deleteWhereIn("DELETE FROM MemoryLoad m WHERE m.id IN (:ids)", memoryIds)
+        }
+        return deleted
+    }
+
+    /**
+     * Returns up to [pages] free pages to the file system, which only works once auto_vacuum is INCREMENTAL.
+     *
+     * @return the number of free pages left in the database file
+     */
+    fun incrementalVacuum(pages: Int): Int {
+        return currentSession().doReturningWork { connection ->
+            connection.createStatement().use { statement ->
+                // each freed page is a row of the result, the vacuum only runs while they are stepped through
+                if (statement.execute("PRAGMA incremental_vacuum($pages)")) {
+                    statement.resultSet.use { result -> while (result.next()) { } }
+                }
+                statement.executeQuery("PRAGMA freelist_count").use { result ->
+                    if (result.next()) result.getInt(1) else 0
+                }
+            }
+        }
+    }
+
+    private fun deleteWhereIn(hql: String, ids: List<Long>): Int {
         return currentSession()
-            .createQuery(delete.where(lessThan))
+            .createQuery(hql)
+            .setParameterList("ids", ids)
             .executeUpdate()
     }
 
@@ -41,9 +120,23 @@ class HistorySystemLoadDAO(sessionFactory: SessionFactory) : AbstractDAO<History
         return list(namedTypedQuery("com.krillsson.sysapi.core.history.db.HistorySystemLoadEntity.findAll"))
     }
 
-    fun findById(id: UUID): HistorySystemLoadEntity? {
+    fun findById(id: Long): HistorySystemLoadEntity? {
         return get(id)
     }
+
+    companion object {
+        private const val PURGE_CHUNK_SIZE = 500
+
+        // entities pointing at an entry through their history
+        private val HISTORY_CHILDREN = listOf(
+            "DriveLoad",
+            "DiskLoad",
+            "FileSystemLoad",
+            "GpuLoad",
+            "HealthData",
+            "NetworkInterfaceLoad"
+        )
+    }
 }
 
 class BasicHistorySystemLoadDAO(sessionFactory: SessionFactory) : AbstractDAO<BasicHistorySystemLoadEntity>(sessionFactory) {
@@ -55,21 +148,11 @@ class BasicHistorySystemLoadDAO(sessionFactory: SessionFactory) : AbstractDAO<Ba
         return list(query.where(between))
     }
 
-    fun purge(maxAge: OffsetDateTime): Int {
-        val builder = currentSession().criteriaBuilder
-        val delete = builder.createCriteriaDelete(BasicHistorySystemLoadEntity::class.java)
-        val table = delete.from(BasicHistorySystemLoadEntity::class.java)
-        val lessThan = builder.lessThan(table.get("date"), maxAge)
-        return currentSession()
-            .createQuery(delete.where(lessThan))
-            .executeUpdate()
-    }
-
     fun findAll(): List<BasicHistorySystemLoadEntity> {
         return list(namedTypedQuery("com.krillsson.sysapi.core.history.db.BasicHistorySystemLoadEntity.findAll"))
     }
 
-    fun findById(id: UUID): BasicHistorySystemLoadEntity? {
+    fun findById(id: Long): BasicHistorySystemLoadEntity? {
         return get(id)
     }
 }
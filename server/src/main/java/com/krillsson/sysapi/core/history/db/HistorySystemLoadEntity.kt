@@ -1,7 +1,7 @@
 package com.krillsson.sysapi.core.history.db
 
+import org.hibernate.annotations.GenericGenerator
 import java.time.OffsetDateTime
-import java.util.*
 import javax.persistence.*
 
 // https://vladmihalcea.com/the-best-way-to-map-a-onetomany-association-with-jpa-and-hibernate/
@@ -9,7 +9,10 @@ import javax.persistence.*
 @MappedSuperclass
 open class BasicHistorySystemLoadEntity(
     @Id
-    val id: UUID,
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
+    @Convert(converter = EpochMillisConverter::class)
     val date: OffsetDateTime,
     val uptime: Long,
     val systemLoadAverage: Double,
@@ -27,7 +30,7 @@ open class BasicHistorySystemLoadEntity(
     query = "SELECT e FROM HistorySystemLoadEntity e"
 )
 class HistorySystemLoadEntity(
-    id: UUID,
+    id: Long,
     date: OffsetDateTime,
     uptime: Long,
     systemLoadAverage: Double,
@@ -49,4 +52,13 @@ class HistorySystemLoadEntity(
     val gpuLoads: List<GpuLoad>,
     @OneToMany(mappedBy = "history", cascade = [CascadeType.ALL], orphanRemoval = true)
     val motherboardHealth: List<HealthData>
-) : BasicHistorySystemLoadEntity(id, date, uptime, systemLoadAverage)
\ No newline at end of file
+) : BasicHistorySystemLoadEntity(id, date, uptime, systemLoadAverage) {
+    init {
+        networkInterfaceLoads.forEach { it.history = this }
+        driveLoads.forEach { it.history = this }
+        diskLoads?.forEach { it.history = this }
+        fileSystemLoads?.forEach { it.history = this }
+        gpuLoads.forEach { it.history = this }
+        motherboardHealth.forEach { it.history = this }
+    }
+}
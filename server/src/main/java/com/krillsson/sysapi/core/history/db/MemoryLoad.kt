@@ -2,14 +2,17 @@ package com.krillsson.sysapi.core.history.db
 
 import io.dropwizard.hibernate.AbstractDAO
 import org.hibernate.SessionFactory
-import java.util.*
+import org.hibernate.annotations.GenericGenerator
 import javax.persistence.Entity
+import javax.persistence.GeneratedValue
 import javax.persistence.Id
 
 @Entity
 class MemoryLoad(
     @Id
-    val id: UUID,
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
     val numberOfProcesses: Int,
     val swapTotalBytes: Long,
     val swapUsedBytes: Long,
@@ -19,7 +22,13 @@ class MemoryLoad(
 )
 
 class MemoryLoadDAO(sessionFactory: SessionFactory) : AbstractDAO<MemoryLoad>(sessionFactory) {
-    fun findById(id: UUID): MemoryLoad {
-        return get(id)
+    fun findByHistoryId(historyId: Long): MemoryLoad {
+        return currentSession()
+            .createQuery(
+                "SELECT e.memory FROM HistorySystemLoadEntity e WHERE e.id = :historyId",
+                MemoryLoad::class.java
+            )
+            .setParameter("historyId", historyId)
+            .singleResult
     }
 }
\ No newline at end of file
@@ -2,7 +2,7 @@ package com.krillsson.sysapi.core.history.db
 
 import io.dropwizard.hibernate.AbstractDAO
 import org.hibernate.SessionFactory
-import java.util.*
+import org.hibernate.annotations.GenericGenerator
 import javax.persistence.*
 import javax.persistence.criteria.CriteriaQuery
 import javax.persistence.criteria.Root
@@ -10,11 +10,9 @@ import javax.persistence.criteria.Root
 @Entity
 class NetworkInterfaceLoad(
     @Id
-    val id: UUID,
-    @JoinColumn(name = "historyId", insertable = false, updatable = false)
-    @ManyToOne(fetch = FetchType.LAZY)
-    val history: HistorySystemLoadEntity? = null,
-    val historyId: UUID,
+    @GeneratedValue(generator = "increment")
+    @GenericGenerator(name = "increment", strategy = "increment")
+    val id: Long,
     val name: String,
     val mac: String,
     val isUp: Boolean,
@@ -22,7 +20,11 @@ class NetworkInterfaceLoad(
     val values: NetworkInterfaceValues,
     @Embedded
     val speed: NetworkInterfaceSpeed
-)
+) {
+    @JoinColumn(name = "historyId")
+    @ManyToOne(fetch = FetchType.LAZY)
+    var history: HistorySystemLoadEntity? = null
+}
 
 @Embeddable
 class NetworkInterfaceValues(
@@ -39,11 +41,11 @@ class NetworkInterfaceValues(
 class NetworkInterfaceSpeed(val receiveBytesPerSecond: Long, val sendBytesPerSecond: Long)
 
 class NetworkLoadDAO(sessionFactory: SessionFactory) : AbstractDAO<NetworkInterfaceLoad>(sessionFactory) {
-    fun findById(id: UUID): List<NetworkInterfaceLoad> {
+    fun findById(id: Long): List<NetworkInterfaceLoad> {
         val builder = currentSession().criteriaBuilder
         val query: CriteriaQuery<NetworkInterfaceLoad> = builder.createQuery(NetworkInterfaceLoad::class.java)
         val root: Root<NetworkInterfaceLoad> = query.from(NetworkInterfaceLoad::class.java)
-        val equals = builder.equal(root.get<UUID>("historyId"), id)
+        val equals = builder.equal(root.get<HistorySystemLoadEntity>("history").get<Long>("id"), id)
         return list(query.where(equals))
     }
 }
\ No newline at end of file
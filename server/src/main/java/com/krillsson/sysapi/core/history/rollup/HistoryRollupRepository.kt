@@ -0,0 +1,95 @@
+package com.krillsson.sysapi.core.history.rollup
+
+import com.krillsson.sysapi.core.domain.history.HistoryRollup
+import com.krillsson.sysapi.core.domain.history.HistoryTier
+import com.krillsson.sysapi.core.history.db.HistoryRollupDAO
+import com.krillsson.sysapi.core.history.db.HistoryRollupEntity
+import io.dropwizard.hibernate.UnitOfWork
+import java.time.OffsetDateTime
+
+/**
+ * Rollups are few and small, so they are kept in the database whichever [com.krillsson.sysapi.config.HistoryStorage]
+ * the raw samples are kept in.
+ */
+open class HistoryRollupRepository(private val dao: HistoryRollupDAO) {
+
+    /**
+     * Stores [rollups] of [tier], in the order they were recorded, merging them into the rollups already stored for
+     * the same bucket and series.
+     */
+    @UnitOfWork
+    open fun merge(tier: HistoryTier, rollups: List<HistoryRollup>) {
+        rollups.groupBy { it.date.toInstant() }.values.forEach { inBucket ->
+            val stored = dao.findBucket(tier, inBucket.first().date).associateBy { it.series }
+            inBucket.groupBy { it.series }.forEach { (series, ofSeries) ->
+                val rollup = ofSeries.reduce { earlier, later -> earlier.merge(later) }
+                val entity = stored[series]
+                if (entity == null) {
+                    dao.insert(rollup.asEntity(tier))
+                } else {
+                    entity.mergeWith(rollup)
+                }
+            }
+        }
+    }
+
+    @UnitOfWork
+    open fun isEmpty(): Boolean {
+        return dao.isEmpty()
+    }
+
+    @UnitOfWork
+    open fun findAllBetween(
+        tier: HistoryTier,
+        from: OffsetDateTime,
+        to: OffsetDateTime,
+        series: Collection<String>?
+    ): List<HistoryRollup> {
+        if (series != null && series.isEmpty()) {
+            return emptyList()
+        }
+        return dao.findAllBetween(tier, from, to, series).map { it.asRollup() }
+    }
+
+    /**
+     * @return the number of deleted rollups
+     */
+    @UnitOfWork
+    open fun purge(tier: HistoryTier, maxAge: OffsetDateTime): Int {
+        return dao.purge(tier, maxAge)
+    }
+
+    private fun HistoryRollupEntity.mergeWith(rollup: HistoryRollup) {
+        // stored rollups are of samples recorded earlier
+        val merged = asRollup().merge(rollup)
+        samples = merged.samples
+        minimum = merged.min
+        maximum = merged.max
+        mean = merged.mean
+        last = merged.last
+    }
+
+    private fun HistoryRollup.asEntity(tier: HistoryTier) = HistoryRollupEntity(
+        NEW_ID,
+        tier,
+        date,
+        series,
+        samples,
+        min,
+        max,
+        mean,
+        last
+    )
+
+    private fun HistoryRollupEntity.asRollup() = HistoryRollup(
+        series,
+        bucket,
+        samples,
+        minimum,
+        maximum,
+        mean,
+        last
+    )
+}
+
+private const val NEW_ID = 0L
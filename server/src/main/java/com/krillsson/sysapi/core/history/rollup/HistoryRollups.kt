@@ -0,0 +1,203 @@
+package com.krillsson.sysapi.core.history.rollup
+
+import com.krillsson.sysapi.config.HistoryConfiguration
+import com.krillsson.sysapi.core.domain.history.HistoryRollup
+import com.krillsson.sysapi.core.domain.history.HistoryTier
+import com.krillsson.sysapi.core.domain.history.SystemHistoryEntry
+import com.krillsson.sysapi.core.history.HistoryRepository
+import com.krillsson.sysapi.util.Clock
+import org.slf4j.LoggerFactory
+import java.time.Duration
+import java.time.Instant
+import java.time.OffsetDateTime
+import java.time.ZoneOffset
+import java.util.*
+
+/**
+ * Rolls recorded samples up into the [HistoryTier.ROLLUPS] as they arrive. Each tier keeps the bucket of the latest
+ * sample open in memory and updates its min, max, mean and last per series with every sample, the bucket is written
+ * to [repository] once a sample falls in a later one, or on [flush]. Since the repository merges what is written into
+ * what it has stored, the coarser buckets are also written, and restarted empty, whenever a finer one is. A crash
+ * therefore loses at most the samples of the open [HistoryTier.MINUTE] bucket. Queries read the raw samples from
+ * [history] and the rollups from [repository], with the open buckets on top.
+ */
+class HistoryRollups @JvmOverloads constructor(
+    private val repository: HistoryRollupRepository,
+    private val history: HistoryRepository,
+    private val configuration: HistoryConfiguration,
+    private val clock: Clock = Clock()
+) {
+
+    private val open = EnumMap<HistoryTier, Bucket>(HistoryTier::class.java)
+
+    /**
+     * Adds [entries], in the order they were recorded, to the open buckets.
+     */
+    fun add(entries: List<SystemHistoryEntry>) {
+        val closed = EnumMap<HistoryTier, MutableList<HistoryRollup>>(HistoryTier::class.java)
+        synchronized(this) {
+            entries.forEach { entry ->
+                val millis = entry.date.toInstant().toEpochMilli()
+                val series = entry.value.series()
+                var written = false
+                HistoryTier.ROLLUPS.forEach { tier ->
+                    val start = tier.bucketOf(millis)
+                    val current = open[tier]
+                    if (current != null && (written || current.start != start)) {
+                        closed.getOrPut(tier) { mutableListOf() }.addAll(current.rollups())
+                        written = true
+                    }
+                    val bucket = if (current == null || written) {
+                        Bucket(start, entry.date.offset).also { open[tier] = it }
+                    } else {
+                        current
+                    }
+                    bucket.add(series)
+                }
+            }
+        }
+        closed.forEach { (tier, rollups) -> repository.merge(tier, rollups) }
+    }
+
+    /**
+     * Rolls up the raw samples still kept when no rollups are stored yet, which is the case on the first start with
+     * rollups. Called before any sample is [add]ed.
+     */
+    fun backfill() {
+        if (!repository.isEmpty()) {
+            return
+        }
+        val now = clock.now()
+        var from = now.minus(retention(HistoryTier.RAW))
+        var count = 0
+        while (from.isBefore(now)) {
+            val to = minOf(from.plus(BACKFILL_WINDOW), now)
+            // the range of the raw history is inclusive at both ends
+            val entries = history.getExtendedHistoryLimitedToDates(from, to.minus(BACKFILL_WINDOW_OVERLAP))
+            add(entries.sortedBy { it.date })
+            count += entries.size
+            from = to
+        }
+        LOGGER.info("Rolled up {} recorded history samples", count)
+    }
+
+    /**
+     * Writes the open buckets, samples added later in the same buckets are merged into them.
+     */
+    fun flush() {
+        val buckets = synchronized(this) {
+            EnumMap(open).also { open.clear() }
+        }
+        buckets.forEach { (tier, bucket) -> repository.merge(tier, bucket.rollups()) }
+    }
+
+    /**
+     * The coarsest tier at least as fine as [resolution], or a coarser one when it is not kept back to [from].
+     */
+    fun tierFor(from: OffsetDateTime, resolution: Duration): HistoryTier {
+        val now = clock.now()
+        var tier = HistoryTier.forResolution(resolution)
+        while (tier.ordinal < HistoryTier.values().lastIndex && now.minus(retention(tier)).isAfter(from)) {
+            tier = HistoryTier.values()[tier.ordinal + 1]
+        }
+        return tier
+    }
+
+    /**
+     * The values of [series], or of all series when null, in the buckets of [tier] starting between [from] and [to],
+     * ordered by date. Raw samples are returned as rollups of one sample.
+     */
+    fun query(
+        tier: HistoryTier,
+        from: OffsetDateTime,
+        to: OffsetDateTime,
+        series: Collection<String>?
+    ): List<HistoryRollup> {
+        if (tier == HistoryTier.RAW) {
+            return history.getExtendedHistoryLimitedToDates(from, to).flatMap { entry ->
+                entry.value.series()
+                    .filterKeys { series == null || it in series }
+                    .map { (name, value) -> HistoryRollup(name, entry.date, 1, value, value, value, value) }
+            }
+        }
+        val pending = synchronized(this) {
+            open[tier]?.takeIf { !it.date.isBefore(from) && !it.date.isAfter(to) }?.rollups().orEmpty()
+        }.filter { series == null || it.series in series }
+        val stored = repository.findAllBetween(tier, from, to, series)
+        if (pending.isEmpty()) {
+            return stored
+        }
+        val merged = LinkedHashMap<Pair<String, Instant>, HistoryRollup>()
+        stored.forEach { merged[it.series to it.date.toInstant()] = it }
+        pending.forEach { rollup ->
+            merged.merge(rollup.series to rollup.date.toInstant(), rollup) { earlier, later -> earlier.merge(later) }
+        }
+        return merged.values.sortedBy { it.date }
+    }
+
+    /**
+     * Deletes the rollups older than their tier is kept.
+     *
+     * @return the number of deleted rollups
+     */
+    fun purge(): Int {
+        val now = clock.now()
+        return HistoryTier.ROLLUPS.sumOf { tier ->
+            val maxAge = now.minus(retention(tier))
+            repository.purge(tier, maxAge).also {
+                LOGGER.info("Purged {} {} history rollups older than {}", it, tier, maxAge)
+            }
+        }
+    }
+
+    private fun retention(tier: HistoryTier): Duration {
+        return when (tier) {
+            HistoryTier.RAW -> Duration.of(configuration.purging.olderThan, configuration.purging.unit)
+            HistoryTier.MINUTE -> Duration.of(configuration.rollups.minute.olderThan, configuration.rollups.minute.unit)
+            HistoryTier.HOUR -> Duration.of(configuration.rollups.hour.olderThan, configuration.rollups.hour.unit)
+        }
+    }
+
+    private class Bucket(val start: Long, offset: ZoneOffset) {
+        val date: OffsetDateTime = Instant.ofEpochMilli(start).atOffset(offset)
+        private val aggregates = LinkedHashMap<String, Aggregate>()
+
+        fun add(series: Map<String, Double>) {
+            series.forEach { (name, value) -> aggregates.getOrPut(name) { Aggregate() }.add(value) }
+        }
+
+        fun rollups(): List<HistoryRollup> {
+            return aggregates
+                .filterValues { it.samples > 0 }
+                .map { (name, aggregate) -> aggregate.asRollup(name, date) }
+        }
+    }
+
+    private class Aggregate {
+        var samples = 0
+        private var min = Double.MAX_VALUE
+        private var max = -Double.MAX_VALUE
+        private var sum = 0.0
+        private var last = 0.0
+
+        fun add(value: Double) {
+            // sensors report NaN when they have no reading, it would poison the mean
+            if (!value.isFinite()) {
+                return
+            }
+            samples++
+            min = minOf(min, value)
+            max = maxOf(max, value)
+            sum += value
+            last = value
+        }
+
+        fun asRollup(series: String, date: OffsetDateTime) = HistoryRollup(series, date, samples, min, max, sum / samples, last)
+    }
+
+    companion object {
+        private val LOGGER = LoggerFactory.getLogger(HistoryRollups::class.java)
+        private val BACKFILL_WINDOW = Duration.ofHours(1)
+        private val BACKFILL_WINDOW_OVERLAP = Duration.ofMillis(1)
+    }
+}
@@ -0,0 +1,83 @@
+package com.krillsson.sysapi.core.history.rollup
+
+import com.krillsson.sysapi.core.domain.history.HistorySystemLoad
+import com.krillsson.sysapi.core.domain.sensors.HealthData
+
+/**
+ * The numeric values of a sample by series name, e.g. "cpu.usagePercentage" or "network.eth0.receiveBytesPerSecond".
+ * Items of lists are named by their name, items sharing a name by their position among those, e.g. "gpu.GPU#2.coreLoad".
+ */
+fun HistorySystemLoad.series(): Map<String, Double> {
+    val series = LinkedHashMap<String, Double>()
+    fun put(name: String, value: Number) {
+        series[name] = value.toDouble()
+    }
+
+    fun healthData(prefix: String, healthData: List<HealthData>) {
+        named(healthData) { it.description }.forEach { (name, data) -> put("$prefix.$name", data.data) }
+    }
+
+    put("system.uptime", uptime)
+    put("system.systemLoadAverage", systemLoadAverage)
+    put("cpu.usagePercentage", cpuLoad.usagePercentage)
+    put("cpu.systemLoadAverage", cpuLoad.systemLoadAverage)
+    put("cpu.processCount", cpuLoad.processCount)
+    put("cpu.threadCount", cpuLoad.threadCount)
+    put("cpu.voltage", cpuLoad.cpuHealth.voltage)
+    put("cpu.fanRpm", cpuLoad.cpuHealth.fanRpm)
+    put("cpu.fanPercent", cpuLoad.cpuHealth.fanPercent)
+    cpuLoad.cpuHealth.temperatures.forEachIndexed { index, temperature -> put("cpu.temperature.$index", temperature) }
+    cpuLoad.coreLoads.forEachIndexed { index, core -> put("cpu.core.$index.percentage", core.percentage) }
+    put("memory.numberOfProcesses", memory.numberOfProcesses)
+    put("memory.swapTotalBytes", memory.swapTotalBytes)
+    put("memory.swapUsedBytes", memory.swapUsedBytes)
+    put("memory.totalBytes", memory.totalBytes)
+    put("memory.availableBytes", memory.availableBytes)
+    put("memory.usedPercent", memory.usedPercent)
+    put("connectivity.connected", if (connectivity.connected) 1 else 0)
+    named(networkInterfaceLoads) { it.name }.forEach { (name, load) ->
+        put("network.$name.isUp", if (load.isUp) 1 else 0)
+        put("network.$name.bytesReceived", load.values.bytesReceived)
+        put("network.$name.bytesSent", load.values.bytesSent)
+        put("network.$name.receiveBytesPerSecond", load.speed.receiveBytesPerSecond)
+        put("network.$name.sendBytesPerSecond", load.speed.sendBytesPerSecond)
+    }
+    named(driveLoads) { it.name }.forEach { (name, load) ->
+        put("drive.$name.usableSpace", load.values.usableSpace)
+        put("drive.$name.totalSpace", load.values.totalSpace)
+        put("drive.$name.readBytesPerSecond", load.speed.readBytesPerSecond)
+        put("drive.$name.writeBytesPerSecond", load.speed.writeBytesPerSecond)
+        put("drive.$name.temperature", load.health.temperature)
+        healthData("drive.$name.health", load.health.healthData)
+    }
+    named(diskLoads) { it.name }.forEach { (name, load) ->
+        put("disk.$name.readBytes", load.values.readBytes)
+        put("disk.$name.writeBytes", load.values.writeBytes)
+        put("disk.$name.readBytesPerSecond", load.speed.readBytesPerSecond)
+        put("disk.$name.writeBytesPerSecond", load.speed.writeBytesPerSecond)
+    }
+    named(fileSystemLoads) { it.name }.forEach { (name, load) ->
+        put("fileSystem.$name.freeSpaceBytes", load.freeSpaceBytes)
+        put("fileSystem.$name.usableSpaceBytes", load.usableSpaceBytes)
+        put("fileSystem.$name.totalSpaceBytes", load.totalSpaceBytes)
+    }
+    named(gpuLoads) { it.name }.forEach { (name, load) ->
+        put("gpu.$name.coreLoad", load.coreLoad)
+        put("gpu.$name.memoryLoad", load.memoryLoad)
+        put("gpu.$name.fanRpm", load.health.fanRpm)
+        put("gpu.$name.fanPercent", load.health.fanPercent)
+        put("gpu.$name.temperature", load.health.temperature)
+    }
+    healthData("motherboard", motherboardHealth)
+    return series
+}
+
+private fun <T> named(items: List<T>, name: (T) -> String): List<Pair<String, T>> {
+    val seen = HashMap<String, Int>()
+    return items.map { item ->
+        val itemName = name(item)
+        val count = (seen[itemName] ?: 0) + 1
+        seen[itemName] = count
+        (if (count == 1) itemName else "$itemName#$count") to item
+    }
+}
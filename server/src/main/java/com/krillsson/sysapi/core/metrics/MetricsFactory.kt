@@ -20,13 +20,18 @@
  */
 package com.krillsson.sysapi.core.metrics
 
+import com.codahale.metrics.MetricRegistry
 import com.google.common.annotations.VisibleForTesting
 import com.krillsson.sysapi.config.SysAPIConfiguration
 import com.krillsson.sysapi.core.connectivity.ConnectivityCheckManager
 import com.krillsson.sysapi.core.metrics.cache.Cache
 import com.krillsson.sysapi.core.metrics.defaultimpl.DefaultMetricsFactory
+import com.krillsson.sysapi.core.metrics.defaultimpl.LinuxProcessCollector
+import com.krillsson.sysapi.core.metrics.defaultimpl.OshiProcessCollector
+import com.krillsson.sysapi.core.metrics.defaultimpl.ProcessCollector
 import com.krillsson.sysapi.core.metrics.rasbian.RaspbianMetricsFactory
 import com.krillsson.sysapi.core.metrics.windows.WindowsMetricsFactory
+import com.krillsson.sysapi.core.speed.CounterRegistry
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager
 import com.krillsson.sysapi.util.Ticker
 import com.krillsson.sysapi.util.Utils
@@ -42,8 +47,10 @@ class MetricsFactory(
     private val operatingSystem: OperatingSystem,
     private val platform: PlatformEnum,
     private val speedMeasurementManager: SpeedMeasurementManager,
+    private val counterRegistry: CounterRegistry,
     private val ticker: Ticker,
-    private val connectivityCheckManager: ConnectivityCheckManager
+    private val connectivityCheckManager: ConnectivityCheckManager,
+    private val metricRegistry: MetricRegistry
 ) {
     private val utils: Utils = Utils()
     private var cache = true
@@ -57,6 +64,9 @@ class MetricsFactory(
         return if (configuration.metricsConfig.cache.enabled) Cache.wrap(
             platformSpecific,
             configuration.metricsConfig.cache,
+            configuration.metricsConfig.sampling,
+            ticker,
+            metricRegistry,
             platform.asPlatform(),
             operatingSystem.asOperatingSystem()
         ) else platformSpecific
@@ -74,7 +84,9 @@ class MetricsFactory(
                     ticker,
                     utils,
                     speedMeasurementManager,
-                    connectivityCheckManager
+                    counterRegistry,
+                    connectivityCheckManager,
+                    configuration.metricsConfig.sampling
                 )
                 if (metrics != null) {
                     metrics
@@ -86,7 +98,10 @@ class MetricsFactory(
                         platform,
                         ticker,
                         speedMeasurementManager,
-                        connectivityCheckManager
+                        counterRegistry,
+                        connectivityCheckManager,
+                        createProcessCollector(),
+                        configuration.metricsConfig.sampling
                     )
                 }
             }
@@ -99,7 +114,10 @@ class MetricsFactory(
                     platform,
                     ticker,
                     speedMeasurementManager,
-                    connectivityCheckManager
+                    counterRegistry,
+                    connectivityCheckManager,
+                    createProcessCollector(),
+                    configuration.metricsConfig.sampling
                 )
             }
             else -> DefaultMetricsFactory.create(
@@ -108,11 +126,23 @@ class MetricsFactory(
                 platform,
                 ticker,
                 speedMeasurementManager,
-                connectivityCheckManager
+                counterRegistry,
+                connectivityCheckManager,
+                createProcessCollector(),
+                configuration.metricsConfig.sampling
             )
         }
     }
 
+    private fun createProcessCollector(): ProcessCollector {
+        return if (platform == PlatformEnum.LINUX && LinuxProcessCollector.isSupported()) {
+            LOGGER.info("Collecting processes from procfs")
+            LinuxProcessCollector(hal)
+        } else {
+            OshiProcessCollector(operatingSystem, hal)
+        }
+    }
+
     @VisibleForTesting
     fun setCache(cache: Boolean) {
         this.cache = cache
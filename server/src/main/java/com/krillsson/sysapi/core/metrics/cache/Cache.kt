@@ -1,13 +1,18 @@
 package com.krillsson.sysapi.core.metrics.cache
 
+import com.codahale.metrics.MetricRegistry
 import com.krillsson.sysapi.config.CacheConfiguration
+import com.krillsson.sysapi.config.SamplingConfiguration
+import com.krillsson.sysapi.config.Subsystem
 import com.krillsson.sysapi.core.domain.system.OperatingSystem
 import com.krillsson.sysapi.core.domain.system.Platform
 import com.krillsson.sysapi.core.metrics.*
+import com.krillsson.sysapi.util.Ticker
 
 class Cache private constructor(
     metrics: Metrics,
-    cacheConfiguration: CacheConfiguration,
+    cacheFactory: CacheFactory,
+    sampling: SamplingConfiguration,
     platform: Platform,
     operatingSystem: OperatingSystem
 ) : Metrics {
@@ -68,23 +73,27 @@ class Cache private constructor(
         fun wrap(
             factory: Metrics,
             cacheConfiguration: CacheConfiguration,
+            sampling: SamplingConfiguration,
+            ticker: Ticker,
+            registry: MetricRegistry,
             platform: Platform,
             operatingSystem: OperatingSystem
         ): Metrics {
-            return Cache(factory, cacheConfiguration, platform, operatingSystem)
+            return Cache(factory, CacheFactory(cacheConfiguration, ticker, registry = registry), sampling, platform, operatingSystem)
         }
     }
 
     init {
-        cpuMetrics = CachingCpuMetrics(metrics.cpuMetrics(), cacheConfiguration)
-        networkMetrics = CachingNetworkMetrics(metrics.networkMetrics(), cacheConfiguration)
-        gpuMetrics = CachingGpuMetrics(metrics.gpuMetrics(), cacheConfiguration)
-        driveMetrics = CachingDriveMetrics(metrics.driveMetrics(), cacheConfiguration)
-        diskMetrics = CachingDiskMetrics(metrics.diskMetrics(), cacheConfiguration)
-        fileSystemMetrics = CachingFileSystemMetrics(metrics.fileSystemMetrics(), cacheConfiguration)
-        processesMetrics = CachingProcessesMetrics(metrics.processesMetrics(), cacheConfiguration)
-        motherboardMetrics = CachingMotherboardMetrics(metrics.motherboardMetrics(), cacheConfiguration)
-        memoryMetrics = CachingMemoryMetrics(metrics.memoryMetrics(), cacheConfiguration)
+        fun cachesFor(subsystem: Subsystem) = cacheFactory.withMaxAge(sampling.interval(subsystem))
+        cpuMetrics = CachingCpuMetrics(metrics.cpuMetrics(), cachesFor(Subsystem.CPU))
+        networkMetrics = CachingNetworkMetrics(metrics.networkMetrics(), cachesFor(Subsystem.NETWORK))
+        gpuMetrics = CachingGpuMetrics(metrics.gpuMetrics(), cachesFor(Subsystem.SENSORS))
+        driveMetrics = CachingDriveMetrics(metrics.driveMetrics(), cachesFor(Subsystem.DRIVES))
+        diskMetrics = CachingDiskMetrics(metrics.diskMetrics(), cachesFor(Subsystem.DISKS))
+        fileSystemMetrics = CachingFileSystemMetrics(metrics.fileSystemMetrics(), cachesFor(Subsystem.FILE_SYSTEMS))
+        processesMetrics = CachingProcessesMetrics(metrics.processesMetrics(), cachesFor(Subsystem.PROCESSES))
+        motherboardMetrics = CachingMotherboardMetrics(metrics.motherboardMetrics(), cachesFor(Subsystem.SENSORS))
+        memoryMetrics = CachingMemoryMetrics(metrics.memoryMetrics(), cachesFor(Subsystem.MEMORY))
         systemMetrics = CachingSystemMetrics(
             cpuMetrics,
             networkMetrics,
@@ -0,0 +1,147 @@
+package com.krillsson.sysapi.core.metrics.cache
+
+import com.codahale.metrics.MetricRegistry
+import com.google.common.base.Supplier
+import com.google.common.cache.CacheBuilder
+import com.google.common.cache.CacheLoader
+import com.google.common.cache.LoadingCache
+import com.krillsson.sysapi.config.CacheConfiguration
+import com.krillsson.sysapi.config.CacheMode
+import com.krillsson.sysapi.util.Ticker
+import java.time.Duration
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+import java.util.function.LongSupplier
+
+/**
+ * A cache of one value per key.
+ */
+fun interface KeyedCache<K, V> {
+    fun get(key: K): V
+}
+
+/**
+ * Creates the caches behind the caching metrics wrappers, in the [CacheMode] of the [CacheConfiguration].
+ */
+class CacheFactory private constructor(
+    private val mode: CacheMode,
+    private val maxAgeNanos: Long,
+    private val revalidator: Lazy<Revalidator>,
+    private val nanoTime: LongSupplier,
+    private val registry: MetricRegistry
+) {
+
+    /**
+     * @param registry receives the [CacheMetrics] of every cache
+     * @param revalidation runs the reloads of revalidating caches, a small pool of daemon threads unless given
+     */
+    @JvmOverloads
+    constructor(
+        configuration: CacheConfiguration,
+        ticker: Ticker,
+        nanoTime: LongSupplier = LongSupplier { System.nanoTime() },
+        registry: MetricRegistry = MetricRegistry(),
+        revalidation: Executor? = null
+    ) : this(
+        configuration.mode,
+        configuration.unit.toNanos(configuration.duration),
+        lazy { Revalidator(revalidation ?: Revalidator.newExecutor()).also { ticker.register(it) } },
+        nanoTime,
+        registry
+    )
+
+    /**
+     * A factory for caches holding values for [maxAge] instead of the configured duration, e.g. the sampling interval
+     * of a subsystem. Revalidating caches of all derived factories share one tick listener.
+     */
+    fun withMaxAge(maxAge: Duration?): CacheFactory {
+        if (maxAge == null || maxAge.toNanos() == maxAgeNanos) {
+            return this
+        }
+        return CacheFactory(mode, maxAge.toNanos(), revalidator, nanoTime, registry)
+    }
+
+    fun <T> value(name: String, loader: () -> T): Supplier<T> {
+        val metrics = CacheMetrics(registry, name)
+        return when (mode) {
+            CacheMode.EXPIRE_AFTER_WRITE -> ExpiringValue(loader, maxAgeNanos, nanoTime, metrics)
+            CacheMode.STALE_WHILE_REVALIDATE -> RevalidatingValue(name, loader, maxAgeNanos, nanoTime, metrics)
+                .also { revalidator.value.add(it) }
+        }
+    }
+
+    fun <K : Any, V> keyed(name: String, loader: (K) -> V): KeyedCache<K, V> {
+        val metrics = CacheMetrics(registry, name)
+        return when (mode) {
+            CacheMode.EXPIRE_AFTER_WRITE -> {
+                // boxed so that loaders may return null, which a LoadingCache does not accept
+                val cache: LoadingCache<K, Entry<V>> = CacheBuilder.newBuilder()
+                    .expireAfterWrite(maxAgeNanos, TimeUnit.NANOSECONDS)
+                    .build(object : CacheLoader<K, Entry<V>>() {
+                        override fun load(key: K): Entry<V> {
+                            metrics.miss()
+                            return Entry(metrics.load { loader(key) }, nanoTime.asLong)
+                        }
+                    })
+                KeyedCache { key ->
+                    val cached = cache.getIfPresent(key)
+                    if (cached != null) {
+                        metrics.hit(nanoTime.asLong - cached.loadedAt)
+                        cached.value
+                    } else {
+                        cache.getUnchecked(key).value
+                    }
+                }
+            }
+            CacheMode.STALE_WHILE_REVALIDATE -> RevalidatingKeyedCache(name, loader, maxAgeNanos, nanoTime, metrics)
+                .also { revalidator.value.add(it) }
+        }
+    }
+
+    private class Entry<V>(val value: V, val loadedAt: Long)
+}
+
+/**
+ * A single value that is loaded by the first request after it expired, concurrent requests wait for that load.
+ */
+internal class ExpiringValue<T>(
+    private val loader: () -> T,
+    private val maxAgeNanos: Long,
+    private val nanoTime: LongSupplier,
+    private val metrics: CacheMetrics
+) : Supplier<T> {
+
+    private class Entry<T>(val value: T, val loadedAt: Long)
+
+    @Volatile
+    private var entry: Entry<T>? = null
+
+    override fun get(): T {
+        val current = entry
+        if (current != null) {
+            val age = nanoTime.asLong - current.loadedAt
+            if (age < maxAgeNanos) {
+                metrics.hit(age)
+                return current.value
+            }
+        }
+        return load()
+    }
+
+    @Synchronized
+    private fun load(): T {
+        // another request may have loaded it while this one waited
+        val current = entry
+        if (current != null) {
+            val age = nanoTime.asLong - current.loadedAt
+            if (age < maxAgeNanos) {
+                metrics.hit(age)
+                return current.value
+            }
+        }
+        metrics.miss()
+        val loaded = Entry(metrics.load(loader), nanoTime.asLong)
+        entry = loaded
+        return loaded.value
+    }
+}
@@ -0,0 +1,91 @@
+package com.krillsson.sysapi.core.metrics.cache
+
+import com.codahale.metrics.MetricRegistry
+import com.codahale.metrics.Snapshot
+import com.krillsson.sysapi.core.domain.cache.CacheStatistics
+import java.util.concurrent.TimeUnit
+
+/**
+ * Hits, misses, load times and the age of served values of one cache, registered as `cache.<name>.*` in the
+ * [MetricRegistry]. Served age is recorded for every request, a miss is served a value of age 0.
+ */
+class CacheMetrics internal constructor(registry: MetricRegistry, name: String) {
+
+    private val hits = registry.counter(MetricRegistry.name(PREFIX, name, HITS))
+    private val misses = registry.counter(MetricRegistry.name(PREFIX, name, MISSES))
+    private val loadFailures = registry.counter(MetricRegistry.name(PREFIX, name, LOAD_FAILURES))
+    private val loads = registry.timer(MetricRegistry.name(PREFIX, name, LOADS))
+    private val servedAge = registry.histogram(MetricRegistry.name(PREFIX, name, SERVED_AGE))
+
+    fun hit(ageNanos: Long) {
+        hits.inc()
+        servedAge.update(TimeUnit.NANOSECONDS.toMillis(ageNanos))
+    }
+
+    fun miss() {
+        misses.inc()
+        servedAge.update(0)
+    }
+
+    fun <T> load(loader: () -> T): T {
+        val context = loads.time()
+        try {
+            return loader()
+        } catch (e: Exception) {
+            loadFailures.inc()
+            throw e
+        } finally {
+            context.stop()
+        }
+    }
+
+    companion object {
+        const val PREFIX = "cache"
+        private const val HITS = "hits"
+        private const val MISSES = "misses"
+        private const val LOAD_FAILURES = "loadFailures"
+        private const val LOADS = "loads"
+        private const val SERVED_AGE = "servedAgeMillis"
+
+        /**
+         * Statistics of every cache that registered its metrics in the [registry], by name.
+         */
+        @JvmStatic
+        fun statistics(registry: MetricRegistry): List<CacheStatistics> {
+            val counters = registry.counters
+            val timers = registry.timers
+            val histograms = registry.histograms
+            return timers.keys
+                .filter { it.startsWith("$PREFIX.") && it.endsWith(".$LOADS") }
+                .map { it.substring(PREFIX.length + 1, it.length - LOADS.length - 1) }
+                .sorted()
+                .map { name ->
+                    val hits = counters[MetricRegistry.name(PREFIX, name, HITS)]?.count ?: 0
+                    val misses = counters[MetricRegistry.name(PREFIX, name, MISSES)]?.count ?: 0
+                    val loads = checkNotNull(timers[MetricRegistry.name(PREFIX, name, LOADS)])
+                    val servedAge = histograms[MetricRegistry.name(PREFIX, name, SERVED_AGE)]
+                    CacheStatistics(
+                        name,
+                        hits,
+                        misses,
+                        if (hits + misses == 0L) 0.0 else hits.toDouble() / (hits + misses),
+                        loads.count,
+                        counters[MetricRegistry.name(PREFIX, name, LOAD_FAILURES)]?.count ?: 0,
+                        loads.snapshot.asDistribution(NANOS_PER_MILLI),
+                        servedAge?.snapshot?.asDistribution(1.0) ?: EMPTY
+                    )
+                }
+        }
+
+        private const val NANOS_PER_MILLI = 1_000_000.0
+        private val EMPTY = CacheStatistics.Distribution(0.0, 0.0, 0.0, 0.0, 0.0)
+
+        private fun Snapshot.asDistribution(divisor: Double) = CacheStatistics.Distribution(
+            mean / divisor,
+            median / divisor,
+            get95thPercentile() / divisor,
+            get99thPercentile() / divisor,
+            max / divisor
+        )
+    }
+}
@@ -1,32 +1,18 @@
 package com.krillsson.sysapi.core.metrics.cache
 
 import com.google.common.base.Supplier
-import com.google.common.base.Suppliers
-import com.krillsson.sysapi.config.CacheConfiguration
 import com.krillsson.sysapi.core.domain.cpu.CpuInfo
 import com.krillsson.sysapi.core.domain.cpu.CpuLoad
 import com.krillsson.sysapi.core.metrics.CpuMetrics
 
 class CachingCpuMetrics internal constructor(
     cpuMetrics: CpuMetrics,
-    cacheConfiguration: CacheConfiguration
+    cacheFactory: CacheFactory
 ) : CpuMetrics {
 
-    private val cpuInfoCache: Supplier<CpuInfo> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ cpuMetrics.cpuInfo() },
-        cacheConfiguration.duration,
-        cacheConfiguration.unit
-    )
-    private val cpuLoadCache: Supplier<CpuLoad> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ cpuMetrics.cpuLoad() },
-        cacheConfiguration.duration,
-        cacheConfiguration.unit
-    )
-    private val uptimeCache: Supplier<Long> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ cpuMetrics.uptime() },
-        cacheConfiguration.duration,
-        cacheConfiguration.unit
-    )
+    private val cpuInfoCache: Supplier<CpuInfo> = cacheFactory.value("cpuInfo") { cpuMetrics.cpuInfo() }
+    private val cpuLoadCache: Supplier<CpuLoad> = cacheFactory.value("cpuLoad") { cpuMetrics.cpuLoad() }
+    private val uptimeCache: Supplier<Long> = cacheFactory.value("uptime") { cpuMetrics.uptime() }
 
     override fun cpuInfo(): CpuInfo {
         return cpuInfoCache.get()
@@ -39,4 +25,4 @@ class CachingCpuMetrics internal constructor(
     override fun uptime(): Long {
         return uptimeCache.get()
     }
-}
\ No newline at end of file
+}
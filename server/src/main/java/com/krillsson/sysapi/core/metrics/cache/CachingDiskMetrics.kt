@@ -1,42 +1,18 @@
 package com.krillsson.sysapi.core.metrics.cache
 
 import com.google.common.base.Supplier
-import com.google.common.base.Suppliers
-import com.google.common.cache.CacheBuilder
-import com.google.common.cache.CacheLoader
-import com.google.common.cache.LoadingCache
-import com.krillsson.sysapi.config.CacheConfiguration
 import com.krillsson.sysapi.core.domain.disk.Disk
 import com.krillsson.sysapi.core.domain.disk.DiskLoad
 import com.krillsson.sysapi.core.metrics.DiskMetrics
 
-class CachingDiskMetrics(diskMetrics: DiskMetrics, cacheConfiguration: CacheConfiguration) :
+class CachingDiskMetrics(diskMetrics: DiskMetrics, cacheFactory: CacheFactory) :
     DiskMetrics {
-    private val disksCache: Supplier<List<Disk>> = Suppliers.memoizeWithExpiration(
-        { diskMetrics.disks() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
-    private val diskLoadsCache: Supplier<List<DiskLoad>> = Suppliers.memoizeWithExpiration(
-        { diskMetrics.diskLoads() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
-    private val diskQueryCache: LoadingCache<String, Disk?> = CacheBuilder.newBuilder()
-        .expireAfterWrite(cacheConfiguration.duration, cacheConfiguration.unit)
-        .build(object : CacheLoader<String, Disk>() {
-            @Throws(Exception::class)
-            override fun load(s: String): Disk? {
-                return diskMetrics.diskByName(s)
-            }
-        })
-    private val diskLoadsQueryCache: LoadingCache<String, DiskLoad?> =
-        CacheBuilder.newBuilder()
-            .expireAfterWrite(cacheConfiguration.duration, cacheConfiguration.unit)
-            .build(object : CacheLoader<String, DiskLoad?>() {
-                @Throws(Exception::class)
-                override fun load(s: String): DiskLoad? {
-                    return diskMetrics.diskLoadByName(s)
-                }
-            })
+    private val disksCache: Supplier<List<Disk>> = cacheFactory.value("disks") { diskMetrics.disks() }
+    private val diskLoadsCache: Supplier<List<DiskLoad>> = cacheFactory.value("diskLoads") { diskMetrics.diskLoads() }
+    private val diskQueryCache: KeyedCache<String, Disk?> =
+        cacheFactory.keyed("diskByName") { name: String -> diskMetrics.diskByName(name) }
+    private val diskLoadsQueryCache: KeyedCache<String, DiskLoad?> =
+        cacheFactory.keyed("diskLoadByName") { name: String -> diskMetrics.diskLoadByName(name) }
 
     override fun disks(): List<Disk> {
         return disksCache.get()
@@ -47,10 +23,10 @@ class CachingDiskMetrics(diskMetrics: DiskMetrics, cacheConfiguration: CacheConf
     }
 
     override fun diskByName(name: String): Disk? {
-        return diskQueryCache.getUnchecked(name)
+        return diskQueryCache.get(name)
     }
 
     override fun diskLoadByName(name: String): DiskLoad? {
-        return diskLoadsQueryCache.getUnchecked(name)
+        return diskLoadsQueryCache.get(name)
     }
-}
\ No newline at end of file
+}
@@ -1,43 +1,19 @@
 package com.krillsson.sysapi.core.metrics.cache
 
 import com.google.common.base.Supplier
-import com.google.common.base.Suppliers
-import com.google.common.cache.CacheBuilder
-import com.google.common.cache.CacheLoader
-import com.google.common.cache.LoadingCache
-import com.krillsson.sysapi.config.CacheConfiguration
 import com.krillsson.sysapi.core.domain.drives.Drive
 import com.krillsson.sysapi.core.domain.drives.DriveLoad
 import com.krillsson.sysapi.core.metrics.DriveMetrics
 import java.util.*
 
-class CachingDriveMetrics(driveMetrics: DriveMetrics, cacheConfiguration: CacheConfiguration) :
+class CachingDriveMetrics(driveMetrics: DriveMetrics, cacheFactory: CacheFactory) :
     DriveMetrics {
-    private val drivesCache: Supplier<List<Drive>> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ driveMetrics.drives() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
-    private val driveLoadsCache: Supplier<List<DriveLoad>> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ driveMetrics.driveLoads() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
-    private val driveQueryCache: LoadingCache<String, Optional<Drive>> = CacheBuilder.newBuilder()
-        .expireAfterWrite(cacheConfiguration.duration, cacheConfiguration.unit)
-        .build(object : CacheLoader<String, Optional<Drive>>() {
-            @Throws(Exception::class)
-            override fun load(s: String): Optional<Drive> {
-                return driveMetrics.driveByName(s)
-            }
-        })
-    private val driveLoadsQueryCache: LoadingCache<String, Optional<DriveLoad>> =
-        CacheBuilder.newBuilder()
-            .expireAfterWrite(cacheConfiguration.duration, cacheConfiguration.unit)
-            .build(object : CacheLoader<String, Optional<DriveLoad>>() {
-                @Throws(Exception::class)
-                override fun load(s: String): Optional<DriveLoad> {
-                    return driveMetrics.driveLoadByName(s)
-                }
-            })
+    private val drivesCache: Supplier<List<Drive>> = cacheFactory.value("drives") { driveMetrics.drives() }
+    private val driveLoadsCache: Supplier<List<DriveLoad>> = cacheFactory.value("driveLoads") { driveMetrics.driveLoads() }
+    private val driveQueryCache: KeyedCache<String, Optional<Drive>> =
+        cacheFactory.keyed("driveByName") { name: String -> driveMetrics.driveByName(name) }
+    private val driveLoadsQueryCache: KeyedCache<String, Optional<DriveLoad>> =
+        cacheFactory.keyed("driveLoadByName") { name: String -> driveMetrics.driveLoadByName(name) }
 
     override fun drives(): List<Drive> {
         return drivesCache.get()
@@ -48,10 +24,10 @@ class CachingDriveMetrics(driveMetrics: DriveMetrics, cacheConfiguration: CacheC
     }
 
     override fun driveByName(name: String): Optional<Drive> {
-        return driveQueryCache.getUnchecked(name)
+        return driveQueryCache.get(name)
     }
 
     override fun driveLoadByName(name: String): Optional<DriveLoad> {
-        return driveLoadsQueryCache.getUnchecked(name)
+        return driveLoadsQueryCache.get(name)
     }
-}
\ No newline at end of file
+}
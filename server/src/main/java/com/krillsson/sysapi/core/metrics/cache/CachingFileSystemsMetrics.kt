@@ -1,43 +1,20 @@
 package com.krillsson.sysapi.core.metrics.cache
 
 import com.google.common.base.Supplier
-import com.google.common.base.Suppliers
-import com.google.common.cache.CacheBuilder
-import com.google.common.cache.CacheLoader
-import com.google.common.cache.LoadingCache
-import com.krillsson.sysapi.config.CacheConfiguration
 import com.krillsson.sysapi.core.domain.filesystem.FileSystem
 import com.krillsson.sysapi.core.domain.filesystem.FileSystemLoad
 import com.krillsson.sysapi.core.metrics.FileSystemMetrics
-import java.util.*
 
-class CachingFileSystemMetrics(fileSystemMetrics: FileSystemMetrics, cacheConfiguration: CacheConfiguration) :
+class CachingFileSystemMetrics(fileSystemMetrics: FileSystemMetrics, cacheFactory: CacheFactory) :
     FileSystemMetrics {
-    private val fileSystemsCache: Supplier<List<FileSystem>> = Suppliers.memoizeWithExpiration(
-        { fileSystemMetrics.fileSystems() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
-    private val fileSystemLoadsCache: Supplier<List<FileSystemLoad>> = Suppliers.memoizeWithExpiration(
-        { fileSystemMetrics.fileSystemLoads() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
-    private val fileSystemQueryCache: LoadingCache<String, FileSystem?> = CacheBuilder.newBuilder()
-        .expireAfterWrite(cacheConfiguration.duration, cacheConfiguration.unit)
-        .build(object : CacheLoader<String, FileSystem>() {
-            @Throws(Exception::class)
-            override fun load(s: String): FileSystem? {
-                return fileSystemMetrics.fileSystemByName(s)
-            }
-        })
-    private val fileSystemLoadsQueryCache: LoadingCache<String, FileSystemLoad?> =
-        CacheBuilder.newBuilder()
-            .expireAfterWrite(cacheConfiguration.duration, cacheConfiguration.unit)
-            .build(object : CacheLoader<String, FileSystemLoad?>() {
-                @Throws(Exception::class)
-                override fun load(s: String): FileSystemLoad? {
-                    return fileSystemMetrics.fileSystemLoadByName(s)
-                }
-            })
+    private val fileSystemsCache: Supplier<List<FileSystem>> =
+        cacheFactory.value("fileSystems") { fileSystemMetrics.fileSystems() }
+    private val fileSystemLoadsCache: Supplier<List<FileSystemLoad>> =
+        cacheFactory.value("fileSystemLoads") { fileSystemMetrics.fileSystemLoads() }
+    private val fileSystemQueryCache: KeyedCache<String, FileSystem?> =
+        cacheFactory.keyed("fileSystemByName") { name: String -> fileSystemMetrics.fileSystemByName(name) }
+    private val fileSystemLoadsQueryCache: KeyedCache<String, FileSystemLoad?> =
+        cacheFactory.keyed("fileSystemLoadByName") { name: String -> fileSystemMetrics.fileSystemLoadByName(name) }
 
     override fun fileSystems(): List<FileSystem> {
         return fileSystemsCache.get()
@@ -48,10 +25,10 @@ class CachingFileSystemMetrics(fileSystemMetrics: FileSystemMetrics, cacheConfig
     }
 
     override fun fileSystemByName(name: String): FileSystem? {
-        return fileSystemQueryCache.getUnchecked(name)
+        return fileSystemQueryCache.get(name)
     }
 
     override fun fileSystemLoadByName(name: String): FileSystemLoad? {
-        return fileSystemLoadsQueryCache.getUnchecked(name)
+        return fileSystemLoadsQueryCache.get(name)
     }
-}
\ No newline at end of file
+}
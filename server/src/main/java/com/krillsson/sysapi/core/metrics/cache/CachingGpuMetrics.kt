@@ -1,8 +1,6 @@
 package com.krillsson.sysapi.core.metrics.cache
 
 import com.google.common.base.Supplier
-import com.google.common.base.Suppliers
-import com.krillsson.sysapi.config.CacheConfiguration
 import com.krillsson.sysapi.core.domain.gpu.Gpu
 import com.krillsson.sysapi.core.domain.gpu.GpuLoad
 import com.krillsson.sysapi.core.metrics.GpuMetrics
@@ -10,20 +8,11 @@ import oshi.hardware.Display
 
 class CachingGpuMetrics(
     gpuMetrics: GpuMetrics,
-    cacheConfiguration: CacheConfiguration
+    cacheFactory: CacheFactory
 ) : GpuMetrics {
-    private val gpusCache: Supplier<List<Gpu>> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ gpuMetrics.gpus() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
-    private val displaysCache: Supplier<List<Display>> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ gpuMetrics.displays() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
-    private val gpuLoadsCache: Supplier<List<GpuLoad>> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ gpuMetrics.gpuLoads() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
+    private val gpusCache: Supplier<List<Gpu>> = cacheFactory.value("gpus") { gpuMetrics.gpus() }
+    private val displaysCache: Supplier<List<Display>> = cacheFactory.value("displays") { gpuMetrics.displays() }
+    private val gpuLoadsCache: Supplier<List<GpuLoad>> = cacheFactory.value("gpuLoads") { gpuMetrics.gpuLoads() }
 
     override fun gpus(): List<Gpu> {
         return gpusCache.get()
@@ -36,4 +25,4 @@ class CachingGpuMetrics(
     override fun gpuLoads(): List<GpuLoad> {
         return gpuLoadsCache.get()
     }
-}
\ No newline at end of file
+}
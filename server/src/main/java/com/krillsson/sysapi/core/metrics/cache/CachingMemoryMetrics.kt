@@ -1,22 +1,16 @@
 package com.krillsson.sysapi.core.metrics.cache
 
 import com.google.common.base.Supplier
-import com.google.common.base.Suppliers
-import com.krillsson.sysapi.config.CacheConfiguration
 import com.krillsson.sysapi.core.domain.memory.MemoryInfo
 import com.krillsson.sysapi.core.domain.memory.MemoryLoad
 import com.krillsson.sysapi.core.metrics.MemoryMetrics
 
-class CachingMemoryMetrics(memoryMetrics: MemoryMetrics, cacheConfiguration: CacheConfiguration) :
+class CachingMemoryMetrics(memoryMetrics: MemoryMetrics, cacheFactory: CacheFactory) :
     MemoryMetrics {
-    private val globalMemoryLoadCache: Supplier<MemoryLoad> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ memoryMetrics.memoryLoad() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
-    private val globalMemoryInfoCache: Supplier<MemoryInfo> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ memoryMetrics.memoryInfo() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
+    private val globalMemoryLoadCache: Supplier<MemoryLoad> =
+        cacheFactory.value("memoryLoad") { memoryMetrics.memoryLoad() }
+    private val globalMemoryInfoCache: Supplier<MemoryInfo> =
+        cacheFactory.value("memoryInfo") { memoryMetrics.memoryInfo() }
 
     override fun memoryLoad(): MemoryLoad {
         return globalMemoryLoadCache.get()
@@ -25,4 +19,4 @@ class CachingMemoryMetrics(memoryMetrics: MemoryMetrics, cacheConfiguration: Cac
     override fun memoryInfo(): MemoryInfo {
         return globalMemoryInfoCache.get()
     }
-}
\ No newline at end of file
+}
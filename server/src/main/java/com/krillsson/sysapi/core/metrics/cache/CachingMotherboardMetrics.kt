@@ -1,24 +1,18 @@
 package com.krillsson.sysapi.core.metrics.cache
 
 import com.google.common.base.Supplier
-import com.google.common.base.Suppliers
-import com.krillsson.sysapi.config.CacheConfiguration
 import com.krillsson.sysapi.core.domain.motherboard.Motherboard
 import com.krillsson.sysapi.core.domain.sensors.HealthData
 import com.krillsson.sysapi.core.metrics.MotherboardMetrics
 
 class CachingMotherboardMetrics(
     motherboardMetrics: MotherboardMetrics,
-    cacheConfiguration: CacheConfiguration
+    cacheFactory: CacheFactory
 ) : MotherboardMetrics {
-    private val motherboardCache: Supplier<Motherboard> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ motherboardMetrics.motherboard() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
-    private val motherboardHealthCache: Supplier<List<HealthData>> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ motherboardMetrics.motherboardHealth() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
+    private val motherboardCache: Supplier<Motherboard> =
+        cacheFactory.value("motherboard") { motherboardMetrics.motherboard() }
+    private val motherboardHealthCache: Supplier<List<HealthData>> =
+        cacheFactory.value("motherboardHealth") { motherboardMetrics.motherboardHealth() }
 
     override fun motherboard(): Motherboard {
         return motherboardCache.get()
@@ -27,4 +21,4 @@ class CachingMotherboardMetrics(
     override fun motherboardHealth(): List<HealthData> {
         return motherboardHealthCache.get()
     }
-}
\ No newline at end of file
+}
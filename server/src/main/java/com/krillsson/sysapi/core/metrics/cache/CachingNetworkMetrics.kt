@@ -1,11 +1,6 @@
 package com.krillsson.sysapi.core.metrics.cache
 
 import com.google.common.base.Supplier
-import com.google.common.base.Suppliers
-import com.google.common.cache.CacheBuilder
-import com.google.common.cache.CacheLoader
-import com.google.common.cache.LoadingCache
-import com.krillsson.sysapi.config.CacheConfiguration
 import com.krillsson.sysapi.core.domain.network.Connectivity
 import com.krillsson.sysapi.core.domain.network.NetworkInterface
 import com.krillsson.sysapi.core.domain.network.NetworkInterfaceLoad
@@ -14,40 +9,18 @@ import java.util.*
 
 class CachingNetworkMetrics(
     networkMetrics: NetworkMetrics,
-    cacheConfiguration: CacheConfiguration
+    cacheFactory: CacheFactory
 ) : NetworkMetrics {
     private val networkInterfacesCache: Supplier<List<NetworkInterface>> =
-        Suppliers.memoizeWithExpiration(
-            Suppliers.synchronizedSupplier{ networkMetrics.networkInterfaces() },
-            cacheConfiguration.duration, cacheConfiguration.unit
-        )
+        cacheFactory.value("networkInterfaces") { networkMetrics.networkInterfaces() }
     private val networkInterfaceLoadsCache: Supplier<List<NetworkInterfaceLoad>> =
-        Suppliers.memoizeWithExpiration(
-            Suppliers.synchronizedSupplier{ networkMetrics.networkInterfaceLoads() },
-            cacheConfiguration.duration, cacheConfiguration.unit
-        )
-    private val connectivityCache: Supplier<Connectivity> = Suppliers.memoizeWithExpiration(
-        Suppliers.synchronizedSupplier{ networkMetrics.connectivity() },
-        cacheConfiguration.duration, cacheConfiguration.unit
-    )
-    private val networkInterfaceQueryCache: LoadingCache<String, Optional<NetworkInterface>> =
-        CacheBuilder.newBuilder()
-            .expireAfterWrite(cacheConfiguration.duration, cacheConfiguration.unit)
-            .build(object : CacheLoader<String, Optional<NetworkInterface>>() {
-                @Throws(Exception::class)
-                override fun load(s: String): Optional<NetworkInterface> {
-                    return networkMetrics.networkInterfaceById(s)
-                }
-            })
-    private val networkInterfaceLoadQueryCache: LoadingCache<String, Optional<NetworkInterfaceLoad>> =
-        CacheBuilder.newBuilder()
-            .expireAfterWrite(cacheConfiguration.duration, cacheConfiguration.unit)
-            .build(object : CacheLoader<String, Optional<NetworkInterfaceLoad>>() {
-                @Throws(Exception::class)
-                override fun load(s: String): Optional<NetworkInterfaceLoad> {
-                    return networkMetrics.networkInterfaceLoadById(s)
-                }
-            })
+        cacheFactory.value("networkInterfaceLoads") { networkMetrics.networkInterfaceLoads() }
+    private val connectivityCache: Supplier<Connectivity> =
+        cacheFactory.value("connectivity") { networkMetrics.connectivity() }
+    private val networkInterfaceQueryCache: KeyedCache<String, Optional<NetworkInterface>> =
+        cacheFactory.keyed("networkInterfaceById") { id: String -> networkMetrics.networkInterfaceById(id) }
+    private val networkInterfaceLoadQueryCache: KeyedCache<String, Optional<NetworkInterfaceLoad>> =
+        cacheFactory.keyed("networkInterfaceLoadById") { id: String -> networkMetrics.networkInterfaceLoadById(id) }
 
     override fun connectivity(): Connectivity {
         return connectivityCache.get()
@@ -58,7 +31,7 @@ class CachingNetworkMetrics(
     }
 
     override fun networkInterfaceById(id: String): Optional<NetworkInterface> {
-        return networkInterfaceQueryCache.getUnchecked(id)
+        return networkInterfaceQueryCache.get(id)
     }
 
     override fun networkInterfaceLoads(): List<NetworkInterfaceLoad> {
@@ -66,6 +39,6 @@ class CachingNetworkMetrics(
     }
 
     override fun networkInterfaceLoadById(id: String): Optional<NetworkInterfaceLoad> {
-        return networkInterfaceLoadQueryCache.getUnchecked(id)
+        return networkInterfaceLoadQueryCache.get(id)
     }
-}
\ No newline at end of file
+}
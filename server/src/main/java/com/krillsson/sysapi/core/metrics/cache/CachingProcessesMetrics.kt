@@ -1,53 +1,27 @@
 package com.krillsson.sysapi.core.metrics.cache
 
-import com.google.common.cache.Cache
-import com.google.common.cache.CacheBuilder
-import com.google.common.cache.CacheLoader
-import com.google.common.cache.LoadingCache
-import com.krillsson.sysapi.config.CacheConfiguration
 import com.krillsson.sysapi.core.domain.processes.Process
 import com.krillsson.sysapi.core.domain.processes.ProcessSort
 import com.krillsson.sysapi.core.domain.processes.ProcessesInfo
 import com.krillsson.sysapi.core.metrics.ProcessesMetrics
 import java.util.Optional
-import java.util.concurrent.ExecutionException
 
 /**
- * Using the process sort and limit arguments as the key for the ProcessInfo cache will cause
- * a real call for when one tiny thing in arguments changes. To prevent a huge cache we set max size of this cache to 1.
- * It might turn out that we don't want to cache processes at all because of the size in RAM.
+ * Process lists are not cached here: every sort and limit is a slice of orderings shared per process snapshot, which
+ * is cheaper than a cache keyed by sort and limit that any mix of clients would thrash.
  */
 class CachingProcessesMetrics(
     private val processesMetrics: ProcessesMetrics,
-    cacheConfiguration: CacheConfiguration
+    cacheFactory: CacheFactory
 ) : ProcessesMetrics {
-    private val processQueryCache: LoadingCache<Int, Optional<Process>> = CacheBuilder.newBuilder()
-        .expireAfterWrite(cacheConfiguration.duration, cacheConfiguration.unit)
-        .build(object : CacheLoader<Int?, Optional<Process>>() {
-            @Throws(Exception::class)
-            override fun load(s: Int?): Optional<Process> {
-                return processesMetrics.getProcessByPid(s!!)
-            }
-        })
-    private val processesInfoCache: Cache<String, ProcessesInfo> = CacheBuilder.newBuilder()
-        .maximumSize(1)
-        .expireAfterWrite(cacheConfiguration.duration, cacheConfiguration.unit)
-        .build()
+    private val processQueryCache: KeyedCache<Int, Optional<Process>> =
+        cacheFactory.keyed("processByPid") { pid: Int -> processesMetrics.getProcessByPid(pid) }
 
     override fun getProcessByPid(pid: Int): Optional<Process> {
-        return processQueryCache.getUnchecked(pid)
+        return processQueryCache.get(pid)
     }
 
     override fun processesInfo(sortBy: ProcessSort, limit: Int): ProcessesInfo {
-        return try {
-            processesInfoCache[sortBy.name + ":" + limit.toString(), {
-                processesMetrics.processesInfo(
-                    sortBy,
-                    limit
-                )
-            }]
-        } catch (e: ExecutionException) {
-            throw IllegalStateException(e)
-        }
+        return processesMetrics.processesInfo(sortBy, limit)
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package com.krillsson.sysapi.core.metrics.cache
+
+import com.google.common.base.Supplier
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import com.krillsson.sysapi.util.Ticker
+import org.slf4j.LoggerFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.function.LongSupplier
+
+/**
+ * Reloads stale cache entries in the background, once per tick.
+ *
+ * Only entries that have been read since they were loaded are reloaded. An entry that has not been read for
+ * [IDLE_FACTOR] times its maximum age is dropped instead, so a client returning after a long pause waits for one fresh
+ * load rather than being served a value that old.
+ *
+ * Each cache is revalidated on [executor] rather than on the ticker thread, so one slow loader neither delays the
+ * other caches nor the other tick listeners. A cache still revalidating from an earlier tick is skipped.
+ */
+internal class Revalidator(private val executor: Executor) : Ticker.TickListener {
+
+    interface Revalidating {
+        fun revalidate()
+    }
+
+    private class Registered(val cache: Revalidating) {
+        val inFlight = AtomicBoolean()
+    }
+
+    private val caches = CopyOnWriteArrayList<Registered>()
+
+    fun add(cache: Revalidating) {
+        caches.add(Registered(cache))
+    }
+
+    override fun onTick() {
+        caches.forEach { registered ->
+            if (!registered.inFlight.compareAndSet(false, true)) {
+                return@forEach
+            }
+            try {
+                executor.execute {
+                    try {
+                        registered.cache.revalidate()
+                    } finally {
+                        registered.inFlight.set(false)
+                    }
+                }
+            } catch (e: RejectedExecutionException) {
+                registered.inFlight.set(false)
+            }
+        }
+    }
+
+    companion object {
+        const val IDLE_FACTOR = 12
+        private const val THREADS = 2
+
+        fun newExecutor(): ExecutorService = Executors.newFixedThreadPool(
+            THREADS,
+            ThreadFactoryBuilder()
+                .setNameFormat("cache-revalidator-%d")
+                .setDaemon(true)
+                .build()
+        )
+    }
+}
+
+/**
+ * A single value served stale while it is reloaded on the tick. Readers only wait when there is no value at all.
+ */
+internal class RevalidatingValue<T>(
+    private val name: String,
+    private val loader: () -> T,
+    private val maxAgeNanos: Long,
+    private val nanoTime: LongSupplier,
+    private val metrics: CacheMetrics
+) : Supplier<T>, Revalidator.Revalidating {
+
+    private class Entry<T>(val value: T, val loadedAt: Long)
+
+    @Volatile
+    private var entry: Entry<T>? = null
+
+    @Volatile
+    private var readSinceLoad = false
+
+    override fun get(): T {
+        readSinceLoad = true
+        val current = entry ?: return loadFirst()
+        metrics.hit(nanoTime.asLong - current.loadedAt)
+        return current.value
+    }
+
+    /**
+     * Age of the value a reader would be served right now, 0 if there is none.
+     */
+    fun ageNanos(): Long {
+        val current = entry ?: return 0
+        return nanoTime.asLong - current.loadedAt
+    }
+
+    val isEmpty: Boolean get() = entry == null
+
+    @Synchronized
+    private fun loadFirst(): T {
+        entry?.let {
+            metrics.hit(nanoTime.asLong - it.loadedAt)
+            return it.value
+        }
+        metrics.miss()
+        return load().value
+    }
+
+    private fun load(): Entry<T> {
+        val loaded = Entry(metrics.load(loader), nanoTime.asLong)
+        entry = loaded
+        return loaded
+    }
+
+    override fun revalidate() {
+        val current = entry ?: return
+        val age = nanoTime.asLong - current.loadedAt
+        if (age < maxAgeNanos) {
+            return
+        }
+        if (!readSinceLoad) {
+            if (age >= maxAgeNanos * Revalidator.IDLE_FACTOR) {
+                entry = null
+            }
+            return
+        }
+        readSinceLoad = false
+        try {
+            load()
+        } catch (e: Exception) {
+            LOGGER.warn("Serving stale {}, reloading failed", name, e)
+        }
+    }
+
+    companion object {
+        private val LOGGER = LoggerFactory.getLogger(RevalidatingValue::class.java)
+    }
+}
+
+/**
+ * One [RevalidatingValue] per key, keys that go idle are forgotten.
+ */
+internal class RevalidatingKeyedCache<K : Any, V>(
+    private val name: String,
+    private val loader: (K) -> V,
+    private val maxAgeNanos: Long,
+    private val nanoTime: LongSupplier,
+    private val metrics: CacheMetrics
+) : KeyedCache<K, V>, Revalidator.Revalidating {
+
+    private val values = ConcurrentHashMap<K, RevalidatingValue<V>>()
+
+    override fun get(key: K): V {
+        return values.computeIfAbsent(key) {
+            RevalidatingValue("$name[$key]", { loader(key) }, maxAgeNanos, nanoTime, metrics)
+        }.get()
+    }
+
+    override fun revalidate() {
+        val iterator = values.values.iterator()
+        while (iterator.hasNext()) {
+            val value = iterator.next()
+            value.revalidate()
+            if (value.isEmpty) {
+                iterator.remove()
+            }
+        }
+    }
+}
@@ -3,51 +3,143 @@ package com.krillsson.sysapi.core.metrics.defaultimpl
 import com.krillsson.sysapi.core.domain.cpu.CoreLoad
 import com.krillsson.sysapi.util.Ticker
 import com.krillsson.sysapi.util.Ticker.TickListener
-import com.krillsson.sysapi.util.Utils
 import oshi.hardware.CentralProcessor
 import oshi.hardware.CentralProcessor.TickType
+import java.io.File
+import java.time.Duration
 
-class DefaultCpuLoadMetrics(private val processor: CentralProcessor, private val ticker: Ticker) : TickListener {
+/**
+ * Samples the CPU tick counters of the whole processor and of every core once per sampling interval, every tick if
+ * there is none.
+ *
+ * Counters are read into one of two reused arrays and compared in place with the other one. On Linux they are parsed
+ * straight from /proc/stat, elsewhere they are copied from OSHI. Besides the overall load every core reports which
+ * share of its time went to user, system, IO wait, steal and interrupts.
+ */
+class DefaultCpuLoadMetrics @JvmOverloads constructor(
+    private val processor: CentralProcessor,
+    private val ticker: Ticker,
+    private val statPath: String? = PROC_STAT.takeIf { File(it).canRead() },
+    private val samplingInterval: Duration? = null
+) : TickListener {
 
-    private var oldTicks: LongArray = LongArray(TickType.values().size)
-    private var oldProcTicks: Array<LongArray> = Array(processor.logicalProcessorCount) {
-        LongArray(
-            TickType.values().size
-        )
+    companion object {
+        private const val PROC_STAT = "/proc/stat"
+        private val TICK_TYPES = TickType.values().size
+        private val USER = TickType.USER.index
+        private val NICE = TickType.NICE.index
+        private val SYSTEM = TickType.SYSTEM.index
+        private val IDLE = TickType.IDLE.index
+        private val IOWAIT = TickType.IOWAIT.index
+        private val IRQ = TickType.IRQ.index
+        private val SOFTIRQ = TickType.SOFTIRQ.index
+        private val STEAL = TickType.STEAL.index
     }
 
-    var coreLoads = updateCoreLoads()
-    var systemUsage = updateSystemUsagePercent()
+    private val coreCount = processor.logicalProcessorCount
+    private val reader = if (statPath != null) ProcFileReader() else null
+
+    // row 0 is the whole processor, row n + 1 core n, TICK_TYPES counters per row in TickType order
+    private var previous = LongArray((coreCount + 1) * TICK_TYPES)
+    private var current = LongArray((coreCount + 1) * TICK_TYPES)
+
+    @Volatile
+    var coreLoads: List<CoreLoad> = emptyList()
+        private set
+
+    @Volatile
+    var systemUsage: Double = 0.0
+        private set
+
+    init {
+        // measured against zeroed counters the first values are averages since boot
+        sample()
+    }
 
     fun register() {
-        ticker.register(this)
+        ticker.register(this, samplingInterval)
     }
 
     override fun onTick() {
-        coreLoads = updateCoreLoads()
-        systemUsage = updateSystemUsagePercent()
+        sample()
+    }
+
+    private fun sample() {
+        System.arraycopy(previous, 0, current, 0, current.size)
+        if (!readFromProcStat()) {
+            readFromOshi()
+        }
+        systemUsage = busyPercent(0)
+        coreLoads = List(coreCount) { coreLoad(it + 1) }
+        val swap = previous
+        previous = current
+        current = swap
     }
 
-    private fun updateSystemUsagePercent(): Double {
-        return Utils.round(100.0 * processorTicks(), 2)
+    private fun readFromProcStat(): Boolean {
+        if (reader == null || statPath == null || !reader.read(statPath)) {
+            return false
+        }
+        do {
+            if (!reader.startsWith("cpu")) {
+                // the cpu lines come first
+                break
+            }
+            reader.position += 3
+            val row = if (reader.startsWith(" ")) 0 else reader.nextInt() + 1
+            if (row <= coreCount) {
+                val base = row * TICK_TYPES
+                for (i in 0 until TICK_TYPES) {
+                    current[base + i] = reader.nextLong()
+                }
+            }
+        } while (reader.nextLine())
+        return true
     }
 
-    private fun updateCoreLoads(): List<CoreLoad> {
-        val ticks = coreTicks()
-        return ticks.map {
-            CoreLoad(Utils.round(100.0 * it, 2))
+    private fun readFromOshi() {
+        System.arraycopy(processor.systemCpuLoadTicks, 0, current, 0, TICK_TYPES)
+        val cores = processor.processorCpuLoadTicks
+        for (core in 0 until minOf(coreCount, cores.size)) {
+            System.arraycopy(cores[core], 0, current, (core + 1) * TICK_TYPES, TICK_TYPES)
         }
     }
 
-    private fun processorTicks(): Double {
-        val d = processor.getSystemCpuLoadBetweenTicks(oldTicks)
-        oldTicks = processor.systemCpuLoadTicks
-        return d
+    private fun delta(base: Int, type: Int): Long {
+        return maxOf(current[base + type] - previous[base + type], 0L)
+    }
+
+    private fun total(base: Int): Long {
+        var total = 0L
+        for (i in 0 until TICK_TYPES) {
+            total += delta(base, i)
+        }
+        return total
+    }
+
+    private fun busyPercent(row: Int): Double {
+        val base = row * TICK_TYPES
+        val total = total(base)
+        return percent(total - delta(base, IDLE) - delta(base, IOWAIT), total)
+    }
+
+    private fun coreLoad(row: Int): CoreLoad {
+        val base = row * TICK_TYPES
+        val total = total(base)
+        return CoreLoad(
+            percent(total - delta(base, IDLE) - delta(base, IOWAIT), total),
+            percent(delta(base, USER) + delta(base, NICE), total),
+            percent(delta(base, SYSTEM), total),
+            percent(delta(base, IOWAIT), total),
+            percent(delta(base, STEAL), total),
+            percent(delta(base, IRQ) + delta(base, SOFTIRQ), total)
+        )
     }
 
-    private fun coreTicks(): DoubleArray {
-        val p = processor.getProcessorCpuLoadBetweenTicks(oldProcTicks)
-        oldProcTicks = processor.processorCpuLoadTicks
-        return p
+    /**
+     * Percent with two decimals, rounded without going through BigDecimal.
+     */
+    private fun percent(part: Long, total: Long): Double {
+        return if (total <= 0) 0.0 else Math.round(10000.0 * part / total) / 100.0
     }
-}
\ No newline at end of file
+}
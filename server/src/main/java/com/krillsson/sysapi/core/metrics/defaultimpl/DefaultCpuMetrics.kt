@@ -19,6 +19,7 @@ open class DefaultCpuMetrics(
 
     fun register() {
         cpuLoadMetrics.register()
+        cpuSensors.register()
     }
 
     override fun cpuInfo(): CpuInfo {
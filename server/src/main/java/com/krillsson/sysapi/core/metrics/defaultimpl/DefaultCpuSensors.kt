@@ -1,10 +1,36 @@
 package com.krillsson.sysapi.core.metrics.defaultimpl
 
 import com.krillsson.sysapi.core.domain.cpu.CpuHealth
+import com.krillsson.sysapi.util.Ticker
 import oshi.hardware.HardwareAbstractionLayer
-import java.util.Arrays
+import java.time.Duration
+
+/**
+ * On Linux, once [register]ed, temperatures and fans are read from sysfs by a [LinuxSensorCollector] every
+ * [samplingInterval] instead of through OSHI on every request.
+ */
+open class DefaultCpuSensors @JvmOverloads constructor(
+    private val hal: HardwareAbstractionLayer,
+    protected val ticker: Ticker? = null,
+    protected val samplingInterval: Duration? = null
+) {
+
+    @Volatile
+    private var collector: LinuxSensorCollector? = null
+
+    open fun register() {
+        val ticker = ticker ?: return
+        if (!LinuxSensorCollector.isSupported()) {
+            return
+        }
+        val collector = LinuxSensorCollector()
+        if (collector.hasSensors()) {
+            collector.onTick()
+            this.collector = collector
+            ticker.register(collector, samplingInterval)
+        }
+    }
 
-open class DefaultCpuSensors(private val hal: HardwareAbstractionLayer) {
     open fun cpuHealth(): CpuHealth {
         return CpuHealth(
             cpuTemperatures(),
@@ -19,14 +45,22 @@ open class DefaultCpuSensors(private val hal: HardwareAbstractionLayer) {
     }
 
     open fun cpuTemperatures(): List<Double> {
-        return listOf(hal.sensors.cpuTemperature)
+        return sampledTemperatures() ?: listOf(hal.sensors.cpuTemperature)
     }
 
     open fun cpuFanRpm(): Double {
+        collector?.fanRpm()?.let { return it.toDouble() }
         return hal.sensors.fanSpeeds.firstOrNull()?.toDouble() ?: 0.0
     }
 
     open fun cpuFanPercent(): Double {
         return 0.0
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the package and core temperatures last read from sysfs, null if they are not sampled
+     */
+    protected fun sampledTemperatures(): List<Double>? {
+        return collector?.temperatures()
+    }
+}
@@ -3,36 +3,89 @@ package com.krillsson.sysapi.core.metrics.defaultimpl
 import com.krillsson.sysapi.core.domain.disk.*
 import com.krillsson.sysapi.core.metrics.DiskMetrics
 import com.krillsson.sysapi.core.metrics.Empty
+import com.krillsson.sysapi.core.speed.BatchSource
+import com.krillsson.sysapi.core.speed.CounterGroup
+import com.krillsson.sysapi.core.speed.CounterRates
+import com.krillsson.sysapi.core.speed.CounterRegistry
+import com.krillsson.sysapi.core.speed.CounterSink
+import com.krillsson.sysapi.core.speed.CounterSource
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager
+import com.krillsson.sysapi.util.Ticker
 import org.apache.commons.lang3.StringUtils
 import oshi.hardware.HWDiskStore
 import oshi.hardware.HWPartition
 import oshi.hardware.HardwareAbstractionLayer
+import java.time.Duration
 import java.util.*
 
-open class DefaultDiskMetrics(
+open class DefaultDiskMetrics @JvmOverloads constructor(
     private val hal: HardwareAbstractionLayer,
-    private val speedMeasurementManager: SpeedMeasurementManager
+    private val ticker: Ticker,
+    private val speedMeasurementManager: SpeedMeasurementManager,
+    private val counterRegistry: CounterRegistry,
+    private val samplingInterval: Duration? = null
 ): DiskMetrics {
 
+    private var counters: CounterGroup<String>? = null
+    @Volatile
+    private var batch: BatchSource<DiskSample>? = null
+
+    private class Stores(val generation: Int, val stores: List<HWDiskStore>)
+
+    @Volatile
+    private var stores: Stores? = null
+
+    /**
+     * Changes whenever a disk was added or removed, 0 before [register].
+     */
+    val generation: Int
+        get() = batch?.generation ?: 0
+
     fun register() {
-        for (store in hal.diskStores) {
-            speedMeasurementManager.register(DiskSpeedSource(store.name, store))
+        val batch = if (LinuxDiskBatchSource.isSupported()) LinuxDiskBatchSource() else DiskBatchSource(hal)
+        batch.refresh()
+        this.batch = batch
+        ticker.register(batch, samplingInterval)
+        for (store in diskStores()) {
+            speedMeasurementManager.register(DiskSpeedSource(store.name, batch))
+        }
+        val widthBits = if (batch is LinuxDiskBatchSource) LinuxDiskBatchSource.counterWidthBits() else 64
+        counters = counterRegistry.register(DiskCounterSource(batch, widthBits))
+    }
+
+    /**
+     * The counters of the disk named [name] as of the last refresh on the tick, null before [register].
+     */
+    fun sample(name: String): DiskSample? = batch?.sample(name)
+
+    /**
+     * Model, serial, size and partitions only change when a device is added or removed, so OSHI is only asked to
+     * enumerate the disk stores again when the batch source has seen the set of devices change.
+     */
+    private fun diskStores(): List<HWDiskStore> {
+        val batch = batch ?: return hal.diskStores
+        val generation = batch.generation
+        val cached = stores
+        if (cached != null && cached.generation == generation) {
+            return cached.stores
         }
+        val current = hal.diskStores
+        stores = Stores(generation, current)
+        return current
     }
 
     override fun disks(): List<Disk> {
-        return hal.diskStores.map { store ->
+        return diskStores().map { store ->
             store.asDisk()
         }
     }
 
     override fun diskLoads(): List<DiskLoad> {
-        return hal.diskStores.map { d: HWDiskStore -> createDiskLoad(d) }
+        return diskStores().map { d: HWDiskStore -> createDiskLoad(d) }
     }
 
     override fun diskLoadByName(name: String): DiskLoad? {
-        return hal.diskStores
+        return diskStores()
             .filter { n: HWDiskStore -> n.name.equals(name, ignoreCase = true) }
             .map { d: HWDiskStore -> createDiskLoad(d) }
             .firstOrNull()
@@ -41,16 +94,26 @@ open class DefaultDiskMetrics(
     private fun diskMetrics(
         disk: HWDiskStore,
     ): DiskValues {
-        return DiskValues(
-            disk.reads,
-            disk.readBytes,
-            disk.writes,
-            disk.writeBytes
-        )
+        val sample = batch?.sample(disk.name)
+        return if (sample != null) {
+            DiskValues(
+                sample.reads,
+                sample.readBytes,
+                sample.writes,
+                sample.writeBytes
+            )
+        } else {
+            DiskValues(
+                disk.reads,
+                disk.readBytes,
+                disk.writes,
+                disk.writeBytes
+            )
+        }
     }
 
     override fun diskByName(name: String): Disk? {
-        return hal.diskStores
+        return diskStores()
             .filter { n: HWDiskStore -> n.name.equals(name, ignoreCase = true) }
             .map { store: HWDiskStore ->
                 store.asDisk()
@@ -63,10 +126,13 @@ open class DefaultDiskMetrics(
         val currentSpeedForName = speedMeasurementManager.getCurrentSpeedForName(
             diskStore.name
         )
+        val rates = counters?.rates(diskStore.name) ?: CounterRates.EMPTY
         return currentSpeedForName.map { s: SpeedMeasurementManager.CurrentSpeed ->
             DiskSpeed(
                 s.readPerSeconds,
-                s.writePerSeconds
+                s.writePerSeconds,
+                rates[DiskCounterSource.READS],
+                rates[DiskCounterSource.WRITES]
             )
         }
     }
@@ -81,22 +147,68 @@ open class DefaultDiskMetrics(
         return if (StringUtils.isEmpty(d.serial)) "n/a" else d.serial
     }
 
+    class DiskSample(
+        val reads: Long,
+        val readBytes: Long,
+        val writes: Long,
+        val writeBytes: Long
+    )
+
+    /**
+     * Enumerates all disk stores at once, on Linux updating stores one by one walks every block device each time.
+     * Only used where /proc/diskstats is not available, see [LinuxDiskBatchSource].
+     */
+    private class DiskBatchSource(private val hal: HardwareAbstractionLayer) : BatchSource<DiskSample>() {
+        override fun read(): Map<String, DiskSample> {
+            val diskStores = hal.diskStores
+            val samples = HashMap<String, DiskSample>(diskStores.size * 4 / 3 + 1)
+            for (store in diskStores) {
+                samples[store.name] = DiskSample(store.reads, store.readBytes, store.writes, store.writeBytes)
+            }
+            return samples
+        }
+    }
+
     private class DiskSpeedSource constructor(
         private val name: String,
-        private val hwDiskStore: HWDiskStore
+        private val batch: BatchSource<DiskSample>
     ) : SpeedMeasurementManager.SpeedSource {
         override fun getName(): String {
             return name
         }
 
         override fun getCurrentRead(): Long {
-            hwDiskStore.updateAttributes()
-            return hwDiskStore.readBytes
+            return batch.sample(name)?.readBytes ?: 0
         }
 
         override fun getCurrentWrite(): Long {
-            hwDiskStore.updateAttributes()
-            return hwDiskStore.writeBytes
+            return batch.sample(name)?.writeBytes ?: 0
+        }
+
+        override fun getRevision(): Long {
+            return batch.revision
+        }
+    }
+
+    private class DiskCounterSource(
+        private val batch: BatchSource<DiskSample>,
+        override val widthBits: Int
+    ) : CounterSource<String> {
+        override val name: String = "disk"
+        override val counterCount: Int = 2
+        override val revision: Long get() = batch.revision
+
+        override fun sample(sink: CounterSink<String>) {
+            for ((name, sample) in batch.samples) {
+                sink.values[READS] = sample.reads
+                sink.values[WRITES] = sample.writes
+                sink.commit(name)
+            }
+        }
+
+        companion object {
+            const val READS = 0
+            const val WRITES = 1
         }
     }
 
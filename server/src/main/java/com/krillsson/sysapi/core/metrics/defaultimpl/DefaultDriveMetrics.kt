@@ -26,69 +26,101 @@ import com.krillsson.sysapi.core.metrics.DriveMetrics
 import com.krillsson.sysapi.core.metrics.Empty
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager.CurrentSpeed
-import com.krillsson.sysapi.core.speed.SpeedMeasurementManager.SpeedSource
-import org.apache.commons.lang3.StringUtils
 import oshi.hardware.HWDiskStore
 import oshi.hardware.HWPartition
 import oshi.hardware.HardwareAbstractionLayer
-import oshi.software.os.FileSystem
 import oshi.software.os.OperatingSystem
 import java.util.*
-import java.util.stream.Collectors
+import java.util.concurrent.TimeUnit
+import java.util.function.Function
+import java.util.function.IntSupplier
+import java.util.function.LongSupplier
 
-open class DefaultDriveMetrics(
+/**
+ * Drives joined with the file store mounted from one of their partitions.
+ *
+ * The join is computed once and reused until a drive was added or removed ([deviceGeneration] changed), the
+ * [fileStores] were enumerated again, or it is older than [maxAgeNanos]. Serving a load then only reads the counters
+ * of the drive and the space of its file store.
+ *
+ * The counters come from [counters], the disk samples refreshed on the tick, as the disk stores kept in the join are
+ * never updated. Speeds are the ones measured for the disk of the same name.
+ */
+open class DefaultDriveMetrics @JvmOverloads constructor(
     private val operatingSystem: OperatingSystem,
     private val hal: HardwareAbstractionLayer,
-    private val speedMeasurementManager: SpeedMeasurementManager
+    private val speedMeasurementManager: SpeedMeasurementManager,
+    fileStores: FileStoreRegistry? = null,
+    private val deviceGeneration: IntSupplier = IntSupplier { 0 },
+    private val counters: Function<String, DefaultDiskMetrics.DiskSample?> = Function { null },
+    private val maxAgeNanos: Long = TimeUnit.MINUTES.toNanos(1),
+    private val nanoTime: LongSupplier = LongSupplier { System.nanoTime() }
 ) : DriveMetrics {
 
-    fun register() {
-        for (store in hal.diskStores) {
-            speedMeasurementManager.register(DiskSpeedSource(store.name, store))
-        }
-    }
+    private class Node(
+        val store: HWDiskStore,
+        // "n/a" when missing, as loads have always reported it, drives report "N/A"
+        val serial: String,
+        val partitions: List<Partition>,
+        val partition: HWPartition?,
+        val fileStore: FileStoreRegistry.Store?
+    )
+
+    private class Topology(
+        val deviceGeneration: Int,
+        val fileStoreGeneration: Int,
+        val builtAt: Long,
+        val nodes: List<Node>,
+        val byName: Map<String, Node>
+    )
+
+    private val fileStores by lazy { fileStores ?: FileStoreRegistry(operatingSystem.fileSystem) }
+
+    @Volatile
+    private var topology: Topology? = null
 
     override fun drives(): List<Drive> {
-        return hal.diskStores.map { store ->
-            store.asDrive()
-        }
+        return current().nodes.map { it.asDrive() }
     }
 
     override fun driveLoads(): List<DriveLoad> {
-        return hal.diskStores.stream().map { d: HWDiskStore -> createDiskLoad(d) }
-            .collect(Collectors.toList())
+        val fileSystem = operatingSystem.fileSystem
+        val openFileDescriptors = fileSystem.openFileDescriptors
+        val maxFileDescriptors = fileSystem.maxFileDescriptors
+        return current().nodes.map { createDiskLoad(it, openFileDescriptors, maxFileDescriptors) }
     }
 
     override fun driveLoadByName(name: String): Optional<DriveLoad> {
-        return hal.diskStores.stream()
-            .filter { n: HWDiskStore -> n.name.equals(name, ignoreCase = true) }
-            .map { d: HWDiskStore -> createDiskLoad(d) }
-            .findAny()
+        val node = current().byName[name.lowercase(Locale.ROOT)] ?: return Optional.empty()
+        val fileSystem = operatingSystem.fileSystem
+        return Optional.of(createDiskLoad(node, fileSystem.openFileDescriptors, fileSystem.maxFileDescriptors))
     }
 
     private fun diskMetrics(
         disk: HWDiskStore,
         partition: OsPartition,
-        fileSystem: FileSystem
+        openFileDescriptors: Long,
+        maxFileDescriptors: Long
     ): DriveValues {
+        val sample = counters.apply(disk.name)
+        if (sample == null) {
+            // not sampled on the tick, e.g. before the disks were registered
+            disk.updateAttributes()
+        }
         return DriveValues(
             partition.usableSpace,
             partition.totalSpace,
-            fileSystem.openFileDescriptors,
-            fileSystem.maxFileDescriptors,
-            disk.reads,
-            disk.readBytes,
-            disk.writes,
-            disk.writeBytes
+            openFileDescriptors,
+            maxFileDescriptors,
+            sample?.reads ?: disk.reads,
+            sample?.readBytes ?: disk.readBytes,
+            sample?.writes ?: disk.writes,
+            sample?.writeBytes ?: disk.writeBytes
         )
     }
 
     override fun driveByName(name: String): Optional<Drive> {
-        return hal.diskStores.stream()
-            .filter { n: HWDiskStore -> n.name.equals(name, ignoreCase = true) }
-            .map { store: HWDiskStore ->
-                store.asDrive()
-            }.findAny()
+        return Optional.ofNullable(current().byName[name.lowercase(Locale.ROOT)]?.asDrive())
     }
 
     protected open fun diskSpeedForStore(
@@ -110,77 +142,101 @@ open class DefaultDriveMetrics(
         return Empty.DRIVE_HEALTH
     }
 
-    private fun findAssociatedFileStore(diskStore: HWDiskStore): Optional<OsPartition> {
-        val fileStores = operatingSystem.fileSystem.fileStores
-        val partitions = diskStore.partitions
-
-        val intersectedId = fileStores
-            .map { it.uuid }
-            .intersect(partitions.map { it.uuid.uppercase() }.toSet())
-            .firstOrNull()
-
-        return intersectedId?.let { id ->
-            val osStore = fileStores.first { it.uuid.uppercase() == id }
-            val partition = partitions.first { it.uuid.uppercase() == id }
-            Optional.of(
-                OsPartition(
-                    partition.identification,
-                    partition.name,
-                    osStore.type,
-                    partition.uuid.uppercase(),
-                    partition.size,
-                    partition.major,
-                    partition.minor,
-                    osStore.mount,
-                    osStore.volume,
-                    osStore.logicalVolume,
-                    osStore.mount,
-                    osStore.description,
-                    osStore.usableSpace,
-                    osStore.totalSpace
-                )
-            )
-        } ?: Optional.empty()
+    private fun current(): Topology {
+        val current = topology
+        if (current != null && !isStale(current)) {
+            return current
+        }
+        return rebuild()
     }
 
-    private fun createDiskLoad(d: HWDiskStore): DriveLoad {
-        val partition = findAssociatedFileStore(d).orElse(Empty.OS_PARTITION)
-        val health = diskHealth(d.name)
-        val metrics = diskMetrics(d, partition, operatingSystem.fileSystem)
-        val speed = diskSpeedForStore(d, partition).orElse(Empty.DRIVE_SPEED)
-        return DriveLoad(d.name, getSerial(d), metrics, speed!!, health)
+    private fun isStale(topology: Topology): Boolean {
+        return topology.deviceGeneration != deviceGeneration.asInt ||
+                topology.fileStoreGeneration != fileStores.generation ||
+                nanoTime.asLong - topology.builtAt >= maxAgeNanos
     }
 
-    private fun getSerial(d: HWDiskStore): String {
-        return if (StringUtils.isEmpty(d.serial)) "n/a" else d.serial
+    @Synchronized
+    private fun rebuild(): Topology {
+        val previous = topology
+        if (previous != null && !isStale(previous)) {
+            return previous
+        }
+        // read before enumerating, a change during the enumeration triggers another rebuild
+        val deviceGeneration = deviceGeneration.asInt
+        val stores = fileStores.stores()
+        val fileStoreGeneration = fileStores.generation
+        val fileStoreIndex = HashMap<String, Int>(stores.size * 4 / 3 + 1)
+        stores.forEachIndexed { index, store ->
+            if (store.uuid.isNotEmpty()) {
+                fileStoreIndex.putIfAbsent(store.uuid.uppercase(Locale.ROOT), index)
+            }
+        }
+        val nodes = hal.diskStores.map { store ->
+            // the partition holding the first mounted file store of this drive
+            val partition = store.partitions
+                .filter { fileStoreIndex.containsKey(it.uuid.uppercase(Locale.ROOT)) }
+                .minByOrNull { fileStoreIndex.getValue(it.uuid.uppercase(Locale.ROOT)) }
+            Node(
+                store,
+                serial(store),
+                store.partitions.asPartitions(),
+                partition,
+                partition?.let { stores[fileStoreIndex.getValue(it.uuid.uppercase(Locale.ROOT))] }
+            )
+        }
+        val byName = HashMap<String, Node>(nodes.size * 4 / 3 + 1)
+        for (node in nodes) {
+            byName[node.store.name.lowercase(Locale.ROOT)] = node
+        }
+        val next = Topology(deviceGeneration, fileStoreGeneration, nanoTime.asLong, nodes, byName)
+        topology = next
+        return next
     }
 
-    private class DiskSpeedSource constructor(
-        private val name: String,
-        private val hwDiskStore: HWDiskStore
-    ) : SpeedSource {
-        override fun getName(): String {
-            return name
-        }
+    private fun osPartition(node: Node): OsPartition {
+        val partition = node.partition ?: return Empty.OS_PARTITION
+        val fileStore = node.fileStore ?: return Empty.OS_PARTITION
+        val fileSystem = fileStore.fileSystem
+        val load = fileStore.load
+        return OsPartition(
+            partition.identification,
+            partition.name,
+            fileSystem.type,
+            partition.uuid.uppercase(),
+            partition.size,
+            partition.major,
+            partition.minor,
+            fileSystem.mount,
+            fileSystem.volume,
+            fileStore.logicalVolume,
+            fileSystem.mount,
+            fileSystem.description,
+            load.usableSpace,
+            load.totalSpace
+        )
+    }
 
-        override fun getCurrentRead(): Long {
-            hwDiskStore.updateAttributes()
-            return hwDiskStore.readBytes
-        }
+    private fun createDiskLoad(node: Node, openFileDescriptors: Long, maxFileDescriptors: Long): DriveLoad {
+        val d = node.store
+        val partition = osPartition(node)
+        val health = diskHealth(d.name)
+        val metrics = diskMetrics(d, partition, openFileDescriptors, maxFileDescriptors)
+        val speed = diskSpeedForStore(d, partition).orElse(Empty.DRIVE_SPEED)
+        return DriveLoad(d.name, node.serial, metrics, speed!!, health)
+    }
 
-        override fun getCurrentWrite(): Long {
-            hwDiskStore.updateAttributes()
-            return hwDiskStore.writeBytes
-        }
+    private fun serial(store: HWDiskStore): String {
+        return store.serial.takeIf { !it.isNullOrBlank() } ?: "n/a"
     }
 
-    private fun HWDiskStore.asDrive() = Drive(
-        model,
-        name,
-        serial.takeIf { !it.isNullOrBlank() } ?: "N/A",
-        size,
-        findAssociatedFileStore(this).orElse(Empty.OS_PARTITION),
-        partitions.asPartitions()
+    private fun Node.asDrive() = Drive(
+        store.model,
+        store.name,
+        store.serial.takeIf { !it.isNullOrBlank() } ?: "N/A",
+        store.size,
+        osPartition(this),
+        partitions
     )
 
     private fun HWPartition.asPartition() = Partition(
@@ -195,4 +251,4 @@ open class DefaultDriveMetrics(
     )
 
     private fun List<HWPartition>.asPartitions() = map { it.asPartition() }
-}
\ No newline at end of file
+}
@@ -3,59 +3,39 @@ package com.krillsson.sysapi.core.metrics.defaultimpl
 import com.krillsson.sysapi.core.domain.filesystem.FileSystem
 import com.krillsson.sysapi.core.domain.filesystem.FileSystemLoad
 import com.krillsson.sysapi.core.metrics.FileSystemMetrics
-import oshi.software.os.OSFileStore
+import com.krillsson.sysapi.util.Ticker
 import oshi.software.os.OperatingSystem
+import java.time.Duration
 
 
-open class DefaultFileSystemMetrics(
-    private val operatingSystem: OperatingSystem
+open class DefaultFileSystemMetrics @JvmOverloads constructor(
+    operatingSystem: OperatingSystem,
+    private val ticker: Ticker,
+    private val samplingInterval: Duration? = null
 ) : FileSystemMetrics {
 
+    /**
+     * Shared with the drive metrics, which join drives with the file stores mounted from them.
+     */
+    val fileStores = FileStoreRegistry(operatingSystem.fileSystem)
+
+    fun register() {
+        ticker.register(fileStores, samplingInterval)
+    }
+
     override fun fileSystems(): List<FileSystem> {
-        return operatingSystem.fileSystem
-            .fileStores.map {
-                it.asFileSystem()
-            }
+        return fileStores.stores().map { it.fileSystem }
     }
 
     override fun fileSystemByName(name: String): FileSystem? {
-        return operatingSystem.fileSystem
-            .fileStores
-            .firstOrNull { it.name.equals(name, ignoreCase = true) }
-            ?.asFileSystem()
+        return fileStores.byName(name)?.fileSystem
     }
 
     override fun fileSystemLoads(): List<FileSystemLoad> {
-        return operatingSystem.fileSystem
-            .fileStores.map {
-                it.asFileSystemLoad()
-            }
+        return fileStores.stores().map { it.load }
     }
 
     override fun fileSystemLoadByName(name: String): FileSystemLoad? {
-        return operatingSystem.fileSystem
-            .fileStores
-            .firstOrNull { it.name.equals(name, ignoreCase = true) }
-            ?.asFileSystemLoad()
-    }
-
-    private fun OSFileStore.asFileSystemLoad(): FileSystemLoad{
-        return FileSystemLoad(
-            name,
-            freeSpace,
-            usableSpace,
-            totalSpace
-        )
-    }
-
-    private fun OSFileStore.asFileSystem(): FileSystem {
-        return FileSystem(
-            name,
-            description,
-            label,
-            type,
-            volume,
-            mount
-        )
+        return fileStores.byName(name)?.load
     }
-}
\ No newline at end of file
+}
@@ -18,6 +18,7 @@ open class DefaultMetrics(
     override fun initialize() {
         cpuMetrics.register()
         diskMetrics.register()
+        fileSystemMetrics.register()
         networkMetrics.register()
         processesMetrics.register()
     }
@@ -1,6 +1,9 @@
 package com.krillsson.sysapi.core.metrics.defaultimpl
 
+import com.krillsson.sysapi.config.SamplingConfiguration
+import com.krillsson.sysapi.config.Subsystem
 import com.krillsson.sysapi.core.connectivity.ConnectivityCheckManager
+import com.krillsson.sysapi.core.speed.CounterRegistry
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager
 import com.krillsson.sysapi.util.Ticker
 import com.krillsson.sysapi.util.asOperatingSystem
@@ -8,6 +11,8 @@ import com.krillsson.sysapi.util.asPlatform
 import oshi.PlatformEnum
 import oshi.hardware.HardwareAbstractionLayer
 import oshi.software.os.OperatingSystem
+import java.util.function.Function
+import java.util.function.IntSupplier
 
 object DefaultMetricsFactory {
     fun create(
@@ -16,17 +21,44 @@ object DefaultMetricsFactory {
         platformEnum: PlatformEnum,
         ticker: Ticker,
         measurementManager: SpeedMeasurementManager,
-        connectivityCheckManager: ConnectivityCheckManager
+        counterRegistry: CounterRegistry,
+        connectivityCheckManager: ConnectivityCheckManager,
+        processCollector: ProcessCollector,
+        sampling: SamplingConfiguration
     ): DefaultMetrics {
-        val defaultCpuLoadMetrics = DefaultCpuLoadMetrics(hal.processor, ticker)
-        val defaultCpuSensors = DefaultCpuSensors(hal)
+        val defaultCpuLoadMetrics = DefaultCpuLoadMetrics(
+            hal.processor,
+            ticker,
+            samplingInterval = sampling.interval(Subsystem.CPU)
+        )
+        val defaultCpuSensors = DefaultCpuSensors(hal, ticker, sampling.interval(Subsystem.SENSORS))
         val cpuMetrics = DefaultCpuMetrics(hal, os, defaultCpuSensors, defaultCpuLoadMetrics)
-        val diskMetrics = DefaultDiskMetrics(hal, measurementManager)
-        val fileSystemMetrics = DefaultFileSystemMetrics(os)
-        val networkMetrics = DefaultNetworkMetrics(ticker, hal, measurementManager, connectivityCheckManager)
+        val diskMetrics = DefaultDiskMetrics(
+            hal,
+            ticker,
+            measurementManager,
+            counterRegistry,
+            sampling.interval(Subsystem.DISKS)
+        )
+        val fileSystemMetrics = DefaultFileSystemMetrics(os, ticker, sampling.interval(Subsystem.FILE_SYSTEMS))
+        val driveMetrics = DefaultDriveMetrics(
+            os,
+            hal,
+            measurementManager,
+            fileSystemMetrics.fileStores,
+            IntSupplier { diskMetrics.generation },
+            Function { diskMetrics.sample(it) }
+        )
+        val networkMetrics = DefaultNetworkMetrics(
+            ticker,
+            hal,
+            measurementManager,
+            counterRegistry,
+            connectivityCheckManager,
+            sampling.interval(Subsystem.NETWORK)
+        )
         val gpuMetrics = DefaultGpuMetrics(hal)
-        val driveMetrics = DefaultDriveMetrics(os, hal, measurementManager)
-        val processesMetrics = DefaultProcessesMetrics(os, hal, ticker)
+        val processesMetrics = DefaultProcessesMetrics(os, ticker, processCollector, sampling.interval(Subsystem.PROCESSES))
         val motherboardMetrics = DefaultMotherboardMetrics(hal)
         val memoryMetrics = DefaultMemoryMetrics(hal, os)
         val systemMetrics = DefaultSystemMetrics(
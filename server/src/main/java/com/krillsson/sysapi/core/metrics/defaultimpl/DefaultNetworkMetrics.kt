@@ -23,46 +23,167 @@ package com.krillsson.sysapi.core.metrics.defaultimpl
 import com.krillsson.sysapi.core.connectivity.ConnectivityCheckManager
 import com.krillsson.sysapi.core.domain.network.*
 import com.krillsson.sysapi.core.metrics.NetworkMetrics
+import com.krillsson.sysapi.core.speed.BatchSource
+import com.krillsson.sysapi.core.speed.CounterGroup
+import com.krillsson.sysapi.core.speed.CounterRates
+import com.krillsson.sysapi.core.speed.CounterRegistry
+import com.krillsson.sysapi.core.speed.CounterSink
+import com.krillsson.sysapi.core.speed.CounterSource
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager.CurrentSpeed
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager.SpeedSource
 import com.krillsson.sysapi.util.Ticker
-import org.slf4j.LoggerFactory
 import oshi.hardware.HardwareAbstractionLayer
 import oshi.hardware.NetworkIF
-import java.net.SocketException
+import java.time.Duration
 import java.util.*
+import java.util.concurrent.TimeUnit
+import java.util.function.IntSupplier
+import java.util.function.LongSupplier
+import java.util.function.Supplier
 
-open class DefaultNetworkMetrics(
+open class DefaultNetworkMetrics @JvmOverloads constructor(
     private val ticker: Ticker,
     private val hal: HardwareAbstractionLayer,
     private val speedMeasurementManager: SpeedMeasurementManager,
-    private val connectivityCheckManager: ConnectivityCheckManager
+    private val counterRegistry: CounterRegistry,
+    private val connectivityCheckManager: ConnectivityCheckManager,
+    private val samplingInterval: Duration? = null
 ) : NetworkMetrics {
 
-    class NetworkSpeedSource(private val networkIF: NetworkIF) : SpeedSource {
+    private var counters: CounterGroup<String>? = null
+
+    @Volatile
+    private var batch: BatchSource<NetworkSample>? = null
+
+    protected val interfaces = NetworkInterfaceRegistry(hal, IntSupplier { batch?.generation ?: 0 })
+
+    private val speedSources = HashMap<String, NetworkSpeedSource>()
+
+    class NetworkSample(
+        val index: Int,
+        val bytesReceived: Long,
+        val bytesSent: Long,
+        val packetsReceived: Long,
+        val packetsSent: Long,
+        val inErrors: Long,
+        val outErrors: Long
+    )
+
+    /**
+     * Updates each NIC through OSHI, only used where /proc/net/dev is not available, see [LinuxNetworkBatchSource].
+     * The NICs are enumerated again every [enumerateEveryNanos] so hotplugged ones are picked up.
+     */
+    class NetworkBatchSource @JvmOverloads constructor(
+        private val enumerate: Supplier<List<NetworkIF>>,
+        private val enumerateEveryNanos: Long = TimeUnit.MINUTES.toNanos(1),
+        private val nanoTime: LongSupplier = LongSupplier { System.nanoTime() }
+    ) : BatchSource<NetworkSample>() {
+
+        // only touched by the tick
+        private var networkIFs: List<NetworkIF> = emptyList()
+        private var enumeratedAt: Long? = null
+
+        override fun read(): Map<String, NetworkSample> {
+            val now = nanoTime.asLong
+            val enumeratedAt = enumeratedAt
+            if (enumeratedAt == null || now - enumeratedAt >= enumerateEveryNanos) {
+                networkIFs = enumerate.get()
+                this.enumeratedAt = now
+            }
+            val samples = HashMap<String, NetworkSample>(networkIFs.size * 4 / 3 + 1)
+            for (networkIF in networkIFs) {
+                networkIF.updateAttributes()
+                samples[networkIF.name] = NetworkSample(
+                    networkIF.index,
+                    networkIF.bytesRecv,
+                    networkIF.bytesSent,
+                    networkIF.packetsRecv,
+                    networkIF.packetsSent,
+                    networkIF.inErrors,
+                    networkIF.outErrors
+                )
+            }
+            return samples
+        }
+    }
+
+    class NetworkSpeedSource(
+        private val name: String,
+        private val batch: BatchSource<NetworkSample>
+    ) : SpeedSource {
         override fun getName(): String {
-            return networkIF.name
+            return name
         }
 
         override fun getCurrentRead(): Long {
-            networkIF.updateAttributes()
-            return networkIF.bytesRecv
+            return batch.sample(name)?.bytesReceived ?: 0
         }
 
         override fun getCurrentWrite(): Long {
-            networkIF.updateAttributes()
-            return networkIF.bytesSent
+            return batch.sample(name)?.bytesSent ?: 0
+        }
+
+        override fun getRevision(): Long {
+            return batch.revision
+        }
+    }
+
+    class NetworkCounterSource(private val batch: BatchSource<NetworkSample>) : CounterSource<String> {
+        override val name: String = "network"
+        override val counterCount: Int = 4
+        override val revision: Long get() = batch.revision
+
+        override fun sample(sink: CounterSink<String>) {
+            for ((name, sample) in batch.samples) {
+                sink.values[PACKETS_RECEIVED] = sample.packetsReceived
+                sink.values[PACKETS_SENT] = sample.packetsSent
+                sink.values[IN_ERRORS] = sample.inErrors
+                sink.values[OUT_ERRORS] = sample.outErrors
+                sink.commit(name, sample.index.toLong())
+            }
+        }
+
+        companion object {
+            const val PACKETS_RECEIVED = 0
+            const val PACKETS_SENT = 1
+            const val IN_ERRORS = 2
+            const val OUT_ERRORS = 3
         }
     }
 
     fun register() {
         ticker.register(connectivityCheckManager)
-        speedMeasurementManager.register(
-            hal.networkIFs.map {
-                NetworkSpeedSource(it)
+        val batch = if (LinuxNetworkBatchSource.isSupported()) LinuxNetworkBatchSource() else NetworkBatchSource(Supplier { hal.networkIFs })
+        batch.refresh()
+        this.batch = batch
+        ticker.register(batch, samplingInterval)
+        interfaces.addListener { names -> updateSpeedSources(batch, names) }
+        ticker.registerPostTick(interfaces)
+        updateSpeedSources(batch, interfaces.descriptors().mapTo(HashSet()) { it.name })
+        counters = counterRegistry.register(NetworkCounterSource(batch))
+    }
+
+    /**
+     * Measure the speed of interfaces that were added since the last call, stop measuring those that were removed.
+     */
+    @Synchronized
+    private fun updateSpeedSources(batch: BatchSource<NetworkSample>, names: Set<String>) {
+        val iterator = speedSources.entries.iterator()
+        while (iterator.hasNext()) {
+            val (name, source) = iterator.next()
+            if (name !in names) {
+                speedMeasurementManager.unregister(source)
+                iterator.remove()
             }
-        )
+        }
+        for (name in names) {
+            if (name !in speedSources) {
+                val source = NetworkSpeedSource(name, batch)
+                speedSources[name] = source
+                speedMeasurementManager.register(source)
+            }
+        }
     }
 
     override fun connectivity(): Connectivity {
@@ -70,116 +191,86 @@ open class DefaultNetworkMetrics(
     }
 
     override fun networkInterfaces(): List<NetworkInterface> {
-        return hal.networkIFs
-            .map {
-                var isLoopback = false
-                try {
-                    isLoopback = it.queryNetworkInterface().isLoopback
-                } catch (e: SocketException) {
-                    //ignore
-                    LOGGER.warn("Socket exception while queering for loopback parameter", e)
-                }
-                it.asNetworkInterface(isLoopback)
-            }.toList()
+        return interfaces.descriptors().map { it.asNetworkInterface() }
     }
 
     override fun networkInterfaceById(id: String): Optional<NetworkInterface> {
-        return Optional.ofNullable(hal.networkIFs.firstOrNull {
-            it.name.equals(
-                id,
-                ignoreCase = true
-            )
-        }
-            ?.let {
-                var isLoopback = false
-                try {
-                    isLoopback = it.queryNetworkInterface().isLoopback
-                } catch (e: SocketException) {
-                    //ignore
-                    LOGGER.warn("Socket exception while queering for loopback parameter", e)
-                }
-                it.asNetworkInterface(isLoopback)
-            })
+        return Optional.ofNullable(interfaces.byName(id)?.asNetworkInterface())
     }
 
     override fun networkInterfaceLoads(): List<NetworkInterfaceLoad> {
-        return hal.networkIFs.map {
-            var up = false
-            try {
-                up = it.queryNetworkInterface().isUp
-            } catch (e: SocketException) {
-                LOGGER.error("Error occurred while getting status for NIC", e)
-            }
-            it.asNetworkInterfaceLoad(up, speedForInterfaceWithName(it.name))
-        }.toList()
+        return interfaces.descriptors().map { it.asNetworkInterfaceLoad() }
     }
 
     override fun networkInterfaceLoadById(id: String): Optional<NetworkInterfaceLoad> {
-        return Optional.ofNullable(hal.networkIFs.firstOrNull {
-            it.name.equals(
-                id,
-                ignoreCase = true
-            )
-        }
-            ?.let {
-                var up = false
-                try {
-                    up = it.queryNetworkInterface().isUp
-                } catch (e: SocketException) {
-                    LOGGER.error("Error occurred while getting status for NIC", e)
-                }
-                it.asNetworkInterfaceLoad(up, speedForInterfaceWithName(it.name))
-            })
+        return Optional.ofNullable(interfaces.byName(id)?.asNetworkInterfaceLoad())
     }
 
     protected open fun speedForInterfaceWithName(name: String?): NetworkInterfaceSpeed {
         val currentSpeedForName = speedMeasurementManager.getCurrentSpeedForName(
             name
         )
+        val rates = counters?.rates(name.orEmpty()) ?: CounterRates.EMPTY
         return currentSpeedForName.map { s: CurrentSpeed ->
             NetworkInterfaceSpeed(
                 s.readPerSeconds,
-                s.writePerSeconds
+                s.writePerSeconds,
+                rates[NetworkCounterSource.PACKETS_RECEIVED],
+                rates[NetworkCounterSource.PACKETS_SENT],
+                rates[NetworkCounterSource.IN_ERRORS],
+                rates[NetworkCounterSource.OUT_ERRORS]
             )
         }.orElse(EMPTY_INTERFACE_SPEED)
     }
 
-    private fun NetworkIF.asNetworkInterface(isLoopback: Boolean): NetworkInterface =
+    private fun NetworkInterfaceRegistry.Descriptor.asNetworkInterface(): NetworkInterface =
         NetworkInterface(
             name,
             displayName,
-            macaddr,
+            mac,
             speed,
             mtu,
-            isLoopback,
-            iPv4addr.asList(),
-            iPv6addr.asList()
+            loopback,
+            ipv4,
+            ipv6
         )
 
-    private fun NetworkIF.asNetworkInterfaceLoad(
-        up: Boolean,
-        nicSpeed: NetworkInterfaceSpeed
-    ): NetworkInterfaceLoad = NetworkInterfaceLoad(
-        name,
-        macaddr,
-        up,
-        NetworkInterfaceValues(
+    private fun NetworkInterfaceRegistry.Descriptor.asNetworkInterfaceLoad(): NetworkInterfaceLoad =
+        NetworkInterfaceLoad(
+            name,
+            mac,
+            interfaces.isUp(this),
+            asNetworkInterfaceValues(batch?.sample(name)),
+            speedForInterfaceWithName(name)
+        )
+
+    private fun NetworkInterfaceRegistry.Descriptor.asNetworkInterfaceValues(sample: NetworkSample?): NetworkInterfaceValues {
+        if (sample != null) {
+            return NetworkInterfaceValues(
+                speed,
+                sample.bytesReceived,
+                sample.bytesSent,
+                sample.packetsReceived,
+                sample.packetsSent,
+                sample.inErrors,
+                sample.outErrors
+            )
+        }
+        // not sampled by the batch source (yet)
+        networkIF.updateAttributes()
+        return NetworkInterfaceValues(
             speed,
-            bytesRecv,
-            bytesSent,
-            packetsRecv,
-            packetsSent,
-            inErrors,
-            outErrors
-        ),
-        nicSpeed
-    )
+            networkIF.bytesRecv,
+            networkIF.bytesSent,
+            networkIF.packetsRecv,
+            networkIF.packetsSent,
+            networkIF.inErrors,
+            networkIF.outErrors
+        )
+    }
 
     companion object {
         @JvmField
         protected val EMPTY_INTERFACE_SPEED = NetworkInterfaceSpeed(0, 0)
-        private val LOGGER = LoggerFactory.getLogger(
-            DefaultNetworkMetrics::class.java
-        )
     }
 }
\ No newline at end of file
@@ -0,0 +1,241 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import com.krillsson.sysapi.core.domain.filesystem.FileSystem
+import com.krillsson.sysapi.core.domain.filesystem.FileSystemLoad
+import com.krillsson.sysapi.util.Ticker
+import org.slf4j.LoggerFactory
+import oshi.software.os.OSFileStore
+import java.io.File
+import java.util.*
+import java.util.concurrent.*
+import java.util.function.LongSupplier
+
+/**
+ * Mount metadata of every file store, indexed by name, with free, usable and total space refreshed whenever the ticker
+ * runs the registry, which is at the file system sampling interval.
+ *
+ * Enumerating file stores through OSHI reparses the mount table and runs statvfs on every mount. Here they are only
+ * enumerated again when the content of /proc/self/mounts changed, or once [maxAgeNanos] passed where there is no such
+ * file. Space is read with one statvfs per mount on the [executor], waiting at most [timeoutMillis]: a mount that does
+ * not answer in time, e.g. a hung NFS server, keeps its last known space and is not asked again before the pending
+ * call returned. When the first enumeration does not finish in time, requests are served no file stores instead of
+ * each waiting again, and the ticker keeps waiting for the pending enumeration.
+ */
+class FileStoreRegistry @JvmOverloads constructor(
+    private val fileSystem: oshi.software.os.FileSystem,
+    private val mountsPath: String? = PROC_MOUNTS.takeIf { File(it).canRead() },
+    private val timeoutMillis: Long = DEFAULT_TIMEOUT_MILLIS,
+    private val maxAgeNanos: Long = TimeUnit.MINUTES.toNanos(1),
+    private val nanoTime: LongSupplier = LongSupplier { System.nanoTime() },
+    private val executor: ExecutorService = STATVFS_EXECUTOR
+) : Ticker.TickListener {
+
+    class Store internal constructor(
+        val fileSystem: FileSystem,
+        val uuid: String,
+        val logicalVolume: String,
+        internal val mount: String,
+        load: FileSystemLoad
+    ) {
+        @Volatile
+        var load: FileSystemLoad = load
+            internal set
+
+        // only touched while holding the registry lock
+        internal var pending: Future<FileSystemLoad>? = null
+    }
+
+    private class Stores(
+        val mounts: ByteArray?,
+        val loadedAt: Long,
+        val all: List<Store>,
+        val byName: Map<String, Store>,
+        val enumerated: Boolean = true
+    )
+
+    @Volatile
+    private var stores: Stores? = null
+
+    /**
+     * Changes whenever the file stores were enumerated again.
+     */
+    @Volatile
+    var generation: Int = 0
+        private set
+
+    private var pendingReload: Future<List<OSFileStore>>? = null
+    private val reader = ProcFileReader()
+
+    fun stores(): List<Store> = current().all
+
+    /**
+     * @param name matched ignoring case
+     */
+    fun byName(name: String): Store? = current().byName[name.lowercase(Locale.ROOT)]
+
+    @Synchronized
+    override fun onTick() {
+        val current = stores
+        val mountsRead = readMounts()
+        if (current == null || isStale(current, mountsRead)) {
+            if (reload(if (mountsRead) reader.content() else null) != null) {
+                // freshly enumerated stores come with their space
+                return
+            }
+        }
+        current?.let { refreshSpace(it.all) }
+    }
+
+    private fun current(): Stores {
+        return stores ?: loadFirst()
+    }
+
+    @Synchronized
+    private fun loadFirst(): Stores {
+        stores?.let { return it }
+        return reload(if (readMounts()) reader.content() else null) ?: checkNotNull(stores)
+    }
+
+    private fun isStale(stores: Stores, mountsRead: Boolean): Boolean {
+        return when {
+            !stores.enumerated -> true
+            mountsRead && stores.mounts != null -> !reader.contentEquals(stores.mounts)
+            else -> nanoTime.asLong - stores.loadedAt >= maxAgeNanos
+        }
+    }
+
+    /**
+     * @return null if enumerating did not finish in time, it is picked up by a later call. Until then there are no
+     * stores to serve when none were enumerated before.
+     */
+    private fun reload(mounts: ByteArray?): Stores? {
+        val pending = pendingReload ?: executor.submit(Callable { fileSystem.fileStores }).also { pendingReload = it }
+        val fileStores = try {
+            await(pending, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) ?: run {
+                LOGGER.warn("Enumerating file stores did not finish within {}ms", timeoutMillis)
+                return notEnumerated(mounts)
+            }
+        } catch (e: ExecutionException) {
+            LOGGER.error("Error occurred while enumerating file stores", e.cause)
+            return notEnumerated(mounts)
+        } finally {
+            if (pending.isDone) {
+                pendingReload = null
+            }
+        }
+        val previous = stores?.all?.associateBy { it.mount }.orEmpty()
+        val all = fileStores.map { fileStore ->
+            fileStore.asStore().also { store ->
+                // keep waiting for a hung statvfs instead of starting another one
+                store.pending = previous[store.mount]?.pending
+            }
+        }
+        val byName = HashMap<String, Store>(all.size * 4 / 3 + 1)
+        for (store in all) {
+            // names such as tmpfs are shared by several mounts, the first one is served like before
+            byName.putIfAbsent(store.fileSystem.name.lowercase(Locale.ROOT), store)
+        }
+        LOGGER.debug("Mount table changed, {} file stores", all.size)
+        return Stores(mounts, nanoTime.asLong, all, byName).also {
+            stores = it
+            generation++
+        }
+    }
+
+    private fun notEnumerated(mounts: ByteArray?): Stores? {
+        if (stores == null) {
+            stores = Stores(mounts, nanoTime.asLong, emptyList(), emptyMap(), enumerated = false)
+        }
+        return null
+    }
+
+    private fun refreshSpace(stores: List<Store>) {
+        val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)
+        val submitted = ArrayList<Store>(stores.size)
+        for (store in stores) {
+            val pending = store.pending
+            if (pending != null && !pending.isDone) {
+                continue
+            }
+            store.pending = executor.submit(Callable { store.readLoad() })
+            submitted.add(store)
+        }
+        for (store in submitted) {
+            val pending = store.pending ?: continue
+            try {
+                val load = await(pending, deadline)
+                if (load == null) {
+                    LOGGER.warn("statvfs on {} did not return within {}ms", store.mount, timeoutMillis)
+                    continue
+                }
+                store.load = load
+            } catch (e: ExecutionException) {
+                LOGGER.error("Error occurred while reading space of {}", store.mount, e.cause)
+            }
+            store.pending = null
+        }
+    }
+
+    /**
+     * @return null if [future] did not complete before [deadline]
+     */
+    private fun <T> await(future: Future<T>, deadline: Long): T? {
+        return try {
+            future.get(maxOf(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+        } catch (e: TimeoutException) {
+            null
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            null
+        }
+    }
+
+    /**
+     * Reads the mount table into [reader], false if it can not be read.
+     */
+    private fun readMounts(): Boolean {
+        val path = mountsPath ?: return false
+        return reader.read(path)
+    }
+
+    private fun Store.readLoad(): FileSystemLoad {
+        // each of these is a statvfs call
+        val file = File(mount)
+        return FileSystemLoad(fileSystem.name, file.freeSpace, file.usableSpace, file.totalSpace)
+    }
+
+    private fun OSFileStore.asStore(): Store {
+        return Store(
+            FileSystem(
+                name,
+                description,
+                label,
+                type,
+                volume,
+                mount
+            ),
+            uuid,
+            logicalVolume,
+            mount,
+            FileSystemLoad(
+                name,
+                freeSpace,
+                usableSpace,
+                totalSpace
+            )
+        )
+    }
+
+    companion object {
+        private const val PROC_MOUNTS = "/proc/self/mounts"
+        private const val DEFAULT_TIMEOUT_MILLIS = 2000L
+        private val STATVFS_EXECUTOR: ExecutorService = Executors.newCachedThreadPool(
+            ThreadFactoryBuilder()
+                .setNameFormat("statvfs-%d")
+                .setDaemon(true)
+                .build()
+        )
+        private val LOGGER = LoggerFactory.getLogger(FileStoreRegistry::class.java)
+    }
+}
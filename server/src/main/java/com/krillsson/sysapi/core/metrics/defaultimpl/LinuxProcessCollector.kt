@@ -0,0 +1,457 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl
+
+import com.fasterxml.jackson.annotation.JsonIgnore
+import com.krillsson.sysapi.core.domain.processes.Process
+import org.slf4j.LoggerFactory
+import oshi.hardware.HardwareAbstractionLayer
+import oshi.software.os.OSProcess
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Paths
+
+/**
+ * Collects processes straight from procfs, reading only what the per-tick table needs.
+ *
+ * Every tick reads just `/proc/<pid>/stat` and `/proc/<pid>/io` of each process, into a reused buffer: name, state,
+ * parent, priority, thread count, CPU times, start time, memory and IO counters, so IO rates are measured between ticks.
+ * Path, command line and owner are read lazily, the first time they are asked for, so only for the processes a request
+ * actually returns. The static details are read at most once per process and carried from tick to tick.
+ */
+class LinuxProcessCollector @JvmOverloads constructor(
+    private val hal: HardwareAbstractionLayer,
+    private val procPath: String = PROC
+) : ProcessCollector {
+
+    companion object {
+        private val LOGGER = LoggerFactory.getLogger(LinuxProcessCollector::class.java)
+        private const val PROC = "/proc"
+
+        /**
+         * Clock ticks per second of the times in `/proc/<pid>/stat`. USER_HZ is part of the kernel ABI and 100 on
+         * every architecture this runs on.
+         */
+        private const val USER_HZ = 100L
+
+        @JvmStatic
+        fun isSupported(): Boolean = File("$PROC/self/stat").canRead()
+    }
+
+    private val reader = ProcFileReader()
+    private val columns = StatColumns()
+    private val accounts = AccountNames()
+    private val bootTime = readBootTime()
+    private val pageSize: Long by lazy { hal.memory.pageSize }
+
+    override fun collect(table: ProcessTable): ProcessTableSnapshot {
+        val entries = File(procPath).list() ?: emptyArray()
+        columns.clear()
+        for (entry in entries) {
+            val pid = parsePid(entry)
+            if (pid >= 0) {
+                readStat(pid)
+            }
+        }
+        val cpuCount = hal.processor.logicalProcessorCount
+        val totalMemory = hal.memory.total
+        val now = System.currentTimeMillis()
+        return table.update(
+            columns.size,
+            { columns.pids[it] },
+            { startTimeOf(it) }
+        ) { index, prior -> createRow(index, prior as? ProcfsProcess, now, cpuCount, totalMemory) }
+    }
+
+    private fun readStat(pid: Int) {
+        // a process that exited since the directory was listed is simply skipped
+        if (!reader.read("$procPath/$pid/stat")) {
+            return
+        }
+        // the name is enclosed in parentheses and may itself contain spaces and parentheses
+        val nameStart = reader.indexOf('(', 0) + 1
+        val nameEnd = reader.lastIndexOf(')')
+        if (nameStart <= 0 || nameEnd < nameStart) {
+            return
+        }
+        reader.position = nameEnd + 1
+        reader.skipSpaces()
+        val state = reader.byteAt(reader.position)
+        reader.position++
+        val ppid = reader.nextInt() // 4
+        reader.skipFields(9) // 5 to 13
+        val utime = reader.nextLong() // 14
+        val stime = reader.nextLong() // 15
+        reader.skipFields(2) // 16, 17
+        val priority = reader.nextInt() // 18
+        reader.skipFields(1) // 19
+        val threads = reader.nextInt() // 20
+        reader.skipFields(1) // 21
+        val startTicks = reader.nextLong() // 22
+        val virtualSize = reader.nextLong() // 23
+        val rssPages = reader.nextLong() // 24
+        columns.add(pid, state, ppid, utime, stime, priority, threads, startTicks, virtualSize, rssPages)
+        columns.setName(columns.size - 1, reader, nameStart, nameEnd)
+    }
+
+    private fun startTimeOf(index: Int) = bootTime + columns.startTicks[index] * 1000 / USER_HZ
+
+    private fun createRow(index: Int, prior: ProcfsProcess?, now: Long, cpuCount: Int, totalMemory: Long): Process {
+        val pid = columns.pids[index]
+        val startTime = startTimeOf(index)
+        val upTime = maxOf(now - startTime, 1L)
+        val kernelTime = columns.stime[index] * 1000 / USER_HZ
+        val userTime = columns.utime[index] * 1000 / USER_HZ
+        val residentSetSize = columns.rssPages[index] * pageSize
+        val name = if (prior != null && columns.nameEquals(index, prior.name)) prior.name else columns.name(index)
+        val details = prior?.details ?: ProcessDetails("$procPath/$pid", accounts)
+        val io = readIo(pid, details)
+        val bytesRead = io?.first ?: 0
+        val bytesWritten = io?.second ?: 0
+        val elapsed = if (prior != null) upTime - prior.upTime else 0L
+        return ProcfsProcess(
+            name,
+            stateOf(columns.states[index]),
+            pid,
+            columns.ppids[index],
+            columns.threads[index],
+            columns.priorities[index],
+            columns.virtualSizes[index],
+            residentSetSize,
+            100.0 * residentSetSize / totalMemory,
+            kernelTime,
+            userTime,
+            upTime,
+            cpuPercent(kernelTime, userTime, upTime, prior, cpuCount),
+            startTime,
+            bytesRead,
+            bytesWritten,
+            if (prior != null) perSecond(bytesRead - prior.bytesRead, elapsed) else 0,
+            if (prior != null) perSecond(bytesWritten - prior.bytesWritten, elapsed) else 0,
+            details
+        )
+    }
+
+    /**
+     * Bytes read and written by the process, null if its `io` file is not readable.
+     */
+    private fun readIo(pid: Int, details: ProcessDetails): Pair<Long, Long>? {
+        // only readable for processes of the same user unless running as root, which does not change while it lives
+        if (!details.ioReadable) {
+            return null
+        }
+        if (!reader.read("$procPath/$pid/io")) {
+            details.ioReadable = false
+            return null
+        }
+        var bytesRead = 0L
+        var bytesWritten = 0L
+        do {
+            if (reader.startsWith("read_bytes:")) {
+                reader.skipFields(1)
+                bytesRead = reader.nextLong()
+            } else if (reader.startsWith("write_bytes:")) {
+                reader.skipFields(1)
+                bytesWritten = reader.nextLong()
+            }
+        } while (reader.nextLine())
+        return bytesRead to bytesWritten
+    }
+
+    private fun stateOf(state: Byte): OSProcess.State {
+        return when (state.toInt().toChar()) {
+            'R' -> OSProcess.State.RUNNING
+            'S' -> OSProcess.State.SLEEPING
+            'D' -> OSProcess.State.WAITING
+            'Z' -> OSProcess.State.ZOMBIE
+            'T', 't' -> OSProcess.State.STOPPED
+            else -> OSProcess.State.OTHER
+        }
+    }
+
+    private fun parsePid(entry: String): Int {
+        if (entry.isEmpty() || entry.length > 10) {
+            return -1
+        }
+        var pid = 0L
+        for (char in entry) {
+            if (char !in '0'..'9') {
+                return -1
+            }
+            pid = pid * 10 + (char - '0')
+        }
+        return if (pid <= Int.MAX_VALUE) pid.toInt() else -1
+    }
+
+    private fun readBootTime(): Long {
+        if (reader.read("$procPath/stat")) {
+            do {
+                if (reader.startsWith("btime ")) {
+                    reader.skipFields(1)
+                    return reader.nextLong() * 1000
+                }
+            } while (reader.nextLine())
+        }
+        LOGGER.warn("Unable to read boot time from {}/stat, process start times will be off", procPath)
+        return 0
+    }
+
+    /**
+     * One enumeration of `/proc/<pid>/stat`, kept in primitive columns that are reused from tick to tick.
+     */
+    private class StatColumns {
+        var size = 0
+            private set
+        var pids = IntArray(0)
+        var states = ByteArray(0)
+        var ppids = IntArray(0)
+        var utime = LongArray(0)
+        var stime = LongArray(0)
+        var priorities = IntArray(0)
+        var threads = IntArray(0)
+        var startTicks = LongArray(0)
+        var virtualSizes = LongArray(0)
+        var rssPages = LongArray(0)
+        private var nameOffsets = IntArray(0)
+        private var nameLengths = IntArray(0)
+        private var names = ByteArray(0)
+        private var namesSize = 0
+
+        fun clear() {
+            size = 0
+            namesSize = 0
+        }
+
+        fun add(
+            pid: Int,
+            state: Byte,
+            ppid: Int,
+            utime: Long,
+            stime: Long,
+            priority: Int,
+            threads: Int,
+            startTicks: Long,
+            virtualSize: Long,
+            rssPages: Long
+        ) {
+            if (size == pids.size) {
+                grow(maxOf(256, size * 2))
+            }
+            pids[size] = pid
+            states[size] = state
+            ppids[size] = ppid
+            this.utime[size] = utime
+            this.stime[size] = stime
+            priorities[size] = priority
+            this.threads[size] = threads
+            this.startTicks[size] = startTicks
+            virtualSizes[size] = virtualSize
+            this.rssPages[size] = rssPages
+            size++
+        }
+
+        fun setName(index: Int, reader: ProcFileReader, start: Int, end: Int) {
+            val length = end - start
+            if (namesSize + length > names.size) {
+                names = names.copyOf(maxOf(4096, (namesSize + length) * 2))
+            }
+            for (i in 0 until length) {
+                names[namesSize + i] = reader.byteAt(start + i)
+            }
+            nameOffsets[index] = namesSize
+            nameLengths[index] = length
+            namesSize += length
+        }
+
+        fun name(index: Int) = String(names, nameOffsets[index], nameLengths[index], Charsets.UTF_8)
+
+        fun nameEquals(index: Int, name: String): Boolean {
+            val length = nameLengths[index]
+            if (length != name.length) {
+                return false
+            }
+            val offset = nameOffsets[index]
+            for (i in 0 until length) {
+                if (names[offset + i] != name[i].code.toByte()) {
+                    return false
+                }
+            }
+            return true
+        }
+
+        private fun grow(capacity: Int) {
+            pids = pids.copyOf(capacity)
+            states = states.copyOf(capacity)
+            ppids = ppids.copyOf(capacity)
+            utime = utime.copyOf(capacity)
+            stime = stime.copyOf(capacity)
+            priorities = priorities.copyOf(capacity)
+            threads = threads.copyOf(capacity)
+            startTicks = startTicks.copyOf(capacity)
+            virtualSizes = virtualSizes.copyOf(capacity)
+            rssPages = rssPages.copyOf(capacity)
+            nameOffsets = nameOffsets.copyOf(capacity)
+            nameLengths = nameLengths.copyOf(capacity)
+        }
+    }
+}
+
+/**
+ * A process read from procfs. The expensive details are delegated to the [ProcessDetails] shared by every row of the
+ * same process.
+ */
+internal class ProcfsProcess(
+    name: String,
+    state: OSProcess.State,
+    processID: Int,
+    parentProcessID: Int,
+    threadCount: Int,
+    priority: Int,
+    virtualSize: Long,
+    residentSetSize: Long,
+    memoryPercent: Double,
+    kernelTime: Long,
+    userTime: Long,
+    upTime: Long,
+    cpuPercent: Double,
+    startTime: Long,
+    bytesRead: Long,
+    bytesWritten: Long,
+    bytesReadPerSecond: Long,
+    bytesWrittenPerSecond: Long,
+    @get:JsonIgnore
+    internal val details: ProcessDetails
+) : Process(
+    name,
+    "",
+    "",
+    "",
+    "",
+    "",
+    "",
+    state,
+    processID,
+    parentProcessID,
+    threadCount,
+    priority,
+    virtualSize,
+    residentSetSize,
+    memoryPercent,
+    kernelTime,
+    userTime,
+    upTime,
+    cpuPercent,
+    startTime,
+    bytesRead,
+    bytesWritten,
+    bytesReadPerSecond,
+    bytesWrittenPerSecond
+) {
+    override val path: String get() = details.path
+    override val commandLine: String get() = details.commandLine
+    override val user: String get() = details.user
+    override val userID: String get() = details.userID
+    override val group: String get() = details.group
+    override val groupID: String get() = details.groupID
+}
+
+/**
+ * The details of one process that are read on demand, at most once.
+ */
+internal class ProcessDetails(private val directory: String, private val accounts: AccountNames) {
+
+    private class Owner(val userID: String, val groupID: String)
+
+    val path: String by lazy {
+        try {
+            Files.readSymbolicLink(Paths.get(directory, "exe")).toString()
+        } catch (e: IOException) {
+            ""
+        } catch (e: SecurityException) {
+            ""
+        }
+    }
+
+    val commandLine: String by lazy {
+        val bytes = readBytes("cmdline") ?: return@lazy ""
+        String(bytes, Charsets.UTF_8).replace('\u0000', ' ').trim()
+    }
+
+    private val owner: Owner by lazy {
+        var userID = ""
+        var groupID = ""
+        readLines("status").forEach { line ->
+            when {
+                line.startsWith("Uid:") -> userID = firstValue(line)
+                line.startsWith("Gid:") -> groupID = firstValue(line)
+            }
+        }
+        Owner(userID, groupID)
+    }
+
+    val userID: String get() = owner.userID
+    val groupID: String get() = owner.groupID
+    val user: String by lazy { accounts.user(owner.userID) }
+    val group: String by lazy { accounts.group(owner.groupID) }
+
+    /**
+     * Cleared once reading the IO counters failed, they are then not read again for this process.
+     */
+    var ioReadable = true
+
+    private fun firstValue(line: String): String {
+        return line.substringAfter(':').trim().split('\t', ' ').firstOrNull().orEmpty()
+    }
+
+    private fun readBytes(file: String): ByteArray? {
+        return try {
+            Files.readAllBytes(Paths.get(directory, file))
+        } catch (e: IOException) {
+            null
+        } catch (e: SecurityException) {
+            null
+        }
+    }
+
+    private fun readLines(file: String): List<String> {
+        val bytes = readBytes(file) ?: return emptyList()
+        return String(bytes, Charsets.UTF_8).lines()
+    }
+}
+
+/**
+ * Resolves user and group IDs to names from /etc/passwd and /etc/group, re-read only when the files change.
+ */
+internal class AccountNames {
+
+    private class Names(val file: File) {
+        var lastModified = -1L
+        var names: Map<String, String> = emptyMap()
+    }
+
+    private val users = Names(File("/etc/passwd"))
+    private val groups = Names(File("/etc/group"))
+
+    fun user(id: String) = resolve(users, id)
+
+    fun group(id: String) = resolve(groups, id)
+
+    @Synchronized
+    private fun resolve(names: Names, id: String): String {
+        if (id.isEmpty()) {
+            return ""
+        }
+        val lastModified = names.file.lastModified()
+        if (lastModified != names.lastModified) {
+            names.lastModified = lastModified
+            names.names = try {
+                names.file.readLines()
+                    .map { it.split(':') }
+                    .filter { it.size > 2 }
+                    .associate { it[2] to it[0] }
+            } catch (e: IOException) {
+                emptyMap()
+            }
+        }
+        return names.names[id] ?: id
+    }
+}
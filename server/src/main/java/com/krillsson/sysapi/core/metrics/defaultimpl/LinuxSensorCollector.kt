@@ -0,0 +1,229 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl
+
+import com.krillsson.sysapi.util.Ticker
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/**
+ * CPU temperatures and fan speeds read straight from sysfs.
+ *
+ * OSHI probes several sysfs locations, and sometimes external tools, every time a sensor is asked for. Here the
+ * sensors are discovered once: every temperature of the CPU hwmon drivers (coretemp, k10temp, ...), so the package
+ * followed by each core, or the CPU thermal zones where there is no such driver, and the fans of those same drivers.
+ * Fans of other hwmon devices, e.g. a Super I/O chip, can be any fan in the case and are not taken for the CPU fan.
+ * Their files are kept open and all of them are read in one pass per tick into primitive arrays. When a read fails,
+ * e.g. because the driver was reloaded and its hwmon renumbered, the sensors are discovered again. The files are closed
+ * on [close], which the [Ticker] calls when it stops.
+ */
+class LinuxSensorCollector @JvmOverloads constructor(
+    private val hwmonPath: String = SYS_CLASS_HWMON,
+    private val thermalPath: String = SYS_CLASS_THERMAL
+) : Ticker.TickListener, AutoCloseable {
+
+    private class Sensors(val temperatures: List<FileChannel>, val fans: List<FileChannel>)
+
+    private class Readings(val temperatures: DoubleArray, val fanRpms: LongArray)
+
+    // guarded by this, replaced by the tick when a read fails
+    private var sensors: Sensors? = null
+    private var closed = false
+
+    // only touched by the tick
+    private val buffer = ByteBuffer.allocate(32)
+    private var temperatures = DoubleArray(0)
+    private var fanRpms = LongArray(0)
+
+    @Volatile
+    private var readings: Readings? = null
+
+    fun hasSensors(): Boolean = sensors().let { it.temperatures.isNotEmpty() || it.fans.isNotEmpty() }
+
+    /**
+     * @return degrees Celsius of the package and every core, null before the first tick or without CPU sensors
+     */
+    fun temperatures(): List<Double>? {
+        return readings?.temperatures?.takeIf { it.isNotEmpty() }?.asList()
+    }
+
+    /**
+     * @return the speed of the first fan of a CPU driver, null before the first tick or without such a fan
+     */
+    fun fanRpm(): Long? {
+        return readings?.fanRpms?.firstOrNull()
+    }
+
+    @Synchronized
+    override fun onTick() {
+        if (closed) {
+            return
+        }
+        val current = sensors()
+        if (!readAll(current)) {
+            LOGGER.debug("Reading a CPU sensor failed, discovering them again")
+            close(current)
+            readAll(discover().also { sensors = it })
+        }
+        readings = Readings(temperatures.copyOf(), fanRpms.copyOf())
+    }
+
+    @Synchronized
+    override fun close() {
+        closed = true
+        sensors?.let { close(it) }
+        sensors = null
+    }
+
+    @Synchronized
+    private fun sensors(): Sensors {
+        if (closed) {
+            return Sensors(emptyList(), emptyList())
+        }
+        return sensors ?: discover().also { sensors = it }
+    }
+
+    /**
+     * @return false if a sensor could not be read, its value is 0 until the next read
+     */
+    private fun readAll(sensors: Sensors): Boolean {
+        if (temperatures.size != sensors.temperatures.size) {
+            temperatures = DoubleArray(sensors.temperatures.size)
+        }
+        if (fanRpms.size != sensors.fans.size) {
+            fanRpms = LongArray(sensors.fans.size)
+        }
+        var succeeded = true
+        sensors.temperatures.forEachIndexed { index, channel ->
+            val value = read(channel)
+            temperatures[index] = (value ?: 0L) / 1000.0
+            succeeded = succeeded && value != FAILED
+        }
+        sensors.fans.forEachIndexed { index, channel ->
+            val value = read(channel)
+            fanRpms[index] = value ?: 0L
+            succeeded = succeeded && value != FAILED
+        }
+        return succeeded
+    }
+
+    private fun close(sensors: Sensors) {
+        (sensors.temperatures + sensors.fans).forEach { channel ->
+            try {
+                channel.close()
+            } catch (e: IOException) {
+                LOGGER.debug("Unable to close a CPU sensor", e)
+            }
+        }
+    }
+
+    /**
+     * Reads the integer in a sysfs attribute, reading from offset 0 makes the kernel render it anew.
+     *
+     * @return null if the attribute holds no number, [FAILED] if it could not be read
+     */
+    private fun read(channel: FileChannel): Long? {
+        buffer.clear()
+        val length = try {
+            channel.read(buffer, 0)
+        } catch (e: IOException) {
+            return FAILED
+        }
+        var value = 0L
+        var negative = false
+        var digits = 0
+        for (i in 0 until length) {
+            val b = buffer.get(i).toInt()
+            when {
+                b == '-'.code && digits == 0 -> negative = true
+                b in '0'.code..'9'.code -> {
+                    value = value * 10 + (b - '0'.code)
+                    digits++
+                }
+                else -> break
+            }
+        }
+        if (digits == 0) {
+            return null
+        }
+        return if (negative) -value else value
+    }
+
+    private fun discover(): Sensors {
+        val temperatures = ArrayList<FileChannel>()
+        val fans = ArrayList<FileChannel>()
+        for (device in children(hwmonPath, "hwmon")) {
+            val name = readText(File(device, "name"))
+            if (name in CPU_DRIVERS) {
+                attributes(device, "temp").forEach { file -> open(file)?.let { temperatures.add(it) } }
+                attributes(device, "fan").forEach { file -> open(file)?.let { fans.add(it) } }
+            }
+        }
+        if (temperatures.isEmpty()) {
+            for (zone in children(thermalPath, "thermal_zone")) {
+                val type = readText(File(zone, "type")) ?: continue
+                if (type in CPU_ZONES || type.contains("cpu", ignoreCase = true)) {
+                    open(File(zone, "temp"))?.let { temperatures.add(it) }
+                }
+            }
+        }
+        LOGGER.debug("Found {} CPU temperature and {} fan sensors", temperatures.size, fans.size)
+        return Sensors(temperatures, fans)
+    }
+
+    /**
+     * Directories named [prefix] followed by a number, in numerical order.
+     */
+    private fun children(path: String, prefix: String): List<File> {
+        val files = File(path).listFiles() ?: return emptyList()
+        return files
+            .filter { it.name.startsWith(prefix) && it.name.removePrefix(prefix).toIntOrNull() != null }
+            .sortedBy { it.name.removePrefix(prefix).toInt() }
+    }
+
+    /**
+     * The <prefix><number>_input files of a hwmon device in numerical order, so temp1 (the package) comes first.
+     */
+    private fun attributes(device: File, prefix: String): List<File> {
+        val files = device.listFiles() ?: return emptyList()
+        return files
+            .filter { it.name.startsWith(prefix) && it.name.endsWith(INPUT) && index(it.name, prefix) != null }
+            .sortedBy { index(it.name, prefix) }
+    }
+
+    private fun index(name: String, prefix: String): Int? {
+        return name.substring(prefix.length, name.length - INPUT.length).toIntOrNull()
+    }
+
+    private fun readText(file: File): String? {
+        return try {
+            file.readText().trim()
+        } catch (e: IOException) {
+            null
+        }
+    }
+
+    private fun open(file: File): FileChannel? {
+        return try {
+            FileChannel.open(file.toPath(), StandardOpenOption.READ)
+        } catch (e: IOException) {
+            LOGGER.debug("Unable to open {}", file, e)
+            null
+        }
+    }
+
+    companion object {
+        private const val SYS_CLASS_HWMON = "/sys/class/hwmon"
+        private const val SYS_CLASS_THERMAL = "/sys/class/thermal"
+        private const val INPUT = "_input"
+        private const val FAILED = Long.MIN_VALUE
+        private val CPU_DRIVERS = setOf("coretemp", "k10temp", "k8temp", "zenpower", "cpu_thermal", "soc_thermal")
+        private val CPU_ZONES = setOf("x86_pkg_temp", "soc_thermal", "soc-thermal")
+        private val LOGGER = LoggerFactory.getLogger(LinuxSensorCollector::class.java)
+
+        @JvmStatic
+        fun isSupported(): Boolean = File(SYS_CLASS_HWMON).isDirectory || File(SYS_CLASS_THERMAL).isDirectory
+    }
+}
@@ -0,0 +1,201 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl
+
+import com.krillsson.sysapi.util.Ticker
+import org.slf4j.LoggerFactory
+import oshi.hardware.HardwareAbstractionLayer
+import oshi.hardware.NetworkIF
+import java.io.File
+import java.io.IOException
+import java.net.SocketException
+import java.util.*
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import java.util.function.IntSupplier
+import java.util.function.LongSupplier
+
+/**
+ * Static descriptors of every NIC, indexed by name and by MAC address.
+ *
+ * Enumerating NICs through OSHI walks every interface through java.net.NetworkInterface, which dominates on hosts with
+ * hundreds of container veths. Descriptors are therefore only rebuilt when the network batch source has seen the set of
+ * interfaces change (its [com.krillsson.sysapi.core.speed.BatchSource.generation]), or when they are older than
+ * [maxAgeNanos] so changed addresses are picked up. On Linux the loopback flag and the up state are read from
+ * /sys/class/net/<name> instead of through java.net.
+ *
+ * Register with [Ticker.registerPostTick] to have [Listener]s told about added and removed interfaces on the tick
+ * the batch source saw them.
+ */
+class NetworkInterfaceRegistry @JvmOverloads constructor(
+    private val hal: HardwareAbstractionLayer,
+    private val generation: IntSupplier,
+    private val sysClassNetPath: String? = SYS_CLASS_NET.takeIf { File(it).isDirectory },
+    private val maxAgeNanos: Long = TimeUnit.MINUTES.toNanos(1),
+    private val nanoTime: LongSupplier = LongSupplier { System.nanoTime() }
+) : Ticker.TickListener {
+
+    class Descriptor(
+        val name: String,
+        val displayName: String,
+        val mac: String,
+        val speed: Long,
+        val mtu: Long,
+        val loopback: Boolean,
+        val ipv4: List<String>,
+        val ipv6: List<String>,
+        internal val networkIF: NetworkIF
+    )
+
+    fun interface Listener {
+        fun onInterfacesChanged(names: Set<String>)
+    }
+
+    private class Snapshot(
+        val generation: Int,
+        val builtAt: Long,
+        val all: List<Descriptor>,
+        val byName: Map<String, Descriptor>,
+        val byMac: Map<String, Descriptor>
+    )
+
+    @Volatile
+    private var snapshot: Snapshot? = null
+
+    private val listeners = CopyOnWriteArrayList<Listener>()
+
+    fun addListener(listener: Listener) {
+        listeners.add(listener)
+    }
+
+    fun descriptors(): List<Descriptor> = current().all
+
+    /**
+     * @param name matched ignoring case
+     */
+    fun byName(name: String): Descriptor? = current().byName[name.lowercase(Locale.ROOT)]
+
+    /**
+     * The first interface with this MAC address, bridges, bonds and VLANs share the address of their parent.
+     */
+    fun byMac(mac: String): Descriptor? = current().byMac[mac.lowercase(Locale.ROOT)]
+
+    /**
+     * The only dynamic property of a descriptor, read on every call. Like java.net, an interface is up when it is
+     * administratively up and has a link, which the kernel reports as IFF_RUNNING. The flags attribute in sysfs only
+     * holds the administrative state, so the link is taken from operstate, which is "unknown" for drivers that do not
+     * track it and are always running.
+     */
+    fun isUp(descriptor: Descriptor): Boolean {
+        val flags = readFlags(descriptor.name)
+        val operState = readAttribute(descriptor.name, "operstate")
+        if (flags != null && operState != null) {
+            return flags and IFF_UP != 0L && (operState == OPER_UP || operState == OPER_UNKNOWN)
+        }
+        return try {
+            descriptor.networkIF.queryNetworkInterface().isUp
+        } catch (e: SocketException) {
+            LOGGER.error("Error occurred while getting status for NIC", e)
+            false
+        }
+    }
+
+    override fun onTick() {
+        current()
+    }
+
+    private fun current(): Snapshot {
+        val current = snapshot
+        if (current != null && !isStale(current)) {
+            return current
+        }
+        return refresh()
+    }
+
+    private fun isStale(snapshot: Snapshot): Boolean {
+        return snapshot.generation != generation.asInt || nanoTime.asLong - snapshot.builtAt >= maxAgeNanos
+    }
+
+    @Synchronized
+    private fun refresh(): Snapshot {
+        val previous = snapshot
+        if (previous != null && !isStale(previous)) {
+            return previous
+        }
+        // read before enumerating, a change during the enumeration triggers another refresh
+        val generation = generation.asInt
+        val all = hal.networkIFs.map { it.asDescriptor() }
+        val byName = HashMap<String, Descriptor>(all.size * 4 / 3 + 1)
+        val byMac = HashMap<String, Descriptor>(all.size * 4 / 3 + 1)
+        for (descriptor in all) {
+            byName[descriptor.name.lowercase(Locale.ROOT)] = descriptor
+            byMac.putIfAbsent(descriptor.mac.lowercase(Locale.ROOT), descriptor)
+        }
+        val next = Snapshot(generation, nanoTime.asLong, all, byName, byMac)
+        snapshot = next
+        if (previous == null || previous.byName.keys != byName.keys) {
+            LOGGER.debug("Network interfaces changed, {} interfaces", all.size)
+            val names = all.mapTo(LinkedHashSet()) { it.name }
+            listeners.forEach { it.onInterfacesChanged(names) }
+        }
+        return next
+    }
+
+    private fun NetworkIF.asDescriptor(): Descriptor {
+        return Descriptor(
+            name,
+            displayName,
+            macaddr,
+            speed,
+            mtu,
+            isLoopback(this),
+            iPv4addr.asList(),
+            iPv6addr.asList(),
+            this
+        )
+    }
+
+    private fun isLoopback(networkIF: NetworkIF): Boolean {
+        val flags = readFlags(networkIF.name)
+        if (flags != null) {
+            return flags and IFF_LOOPBACK != 0L
+        }
+        return try {
+            networkIF.queryNetworkInterface().isLoopback
+        } catch (e: SocketException) {
+            LOGGER.warn("Socket exception while queering for loopback parameter", e)
+            false
+        }
+    }
+
+    /**
+     * @return the interface flags, e.g. 0x1003, or null if they are not available
+     */
+    private fun readFlags(name: String): Long? {
+        return try {
+            readAttribute(name, "flags")?.removePrefix("0x")?.toLong(16)
+        } catch (e: NumberFormatException) {
+            null
+        }
+    }
+
+    private fun readAttribute(name: String, attribute: String): String? {
+        val directory = sysClassNetPath ?: return null
+        val file = File(directory, "$name/$attribute")
+        if (!file.exists()) {
+            return null
+        }
+        return try {
+            file.readText().trim()
+        } catch (e: IOException) {
+            null
+        }
+    }
+
+    companion object {
+        private const val SYS_CLASS_NET = "/sys/class/net"
+        private const val IFF_UP = 0x1L
+        private const val IFF_LOOPBACK = 0x8L
+        private const val OPER_UP = "up"
+        private const val OPER_UNKNOWN = "unknown"
+        private val LOGGER = LoggerFactory.getLogger(NetworkInterfaceRegistry::class.java)
+    }
+}
@@ -0,0 +1,181 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl
+
+import java.io.FileInputStream
+import java.io.IOException
+import java.util.Arrays
+
+/**
+ * Reads small files under /proc and /sys into one reusable buffer and parses fields straight from the bytes, so
+ * reading a file per process or device every tick allocates no strings or line lists.
+ *
+ * [read] a file, then consume it with the cursor methods. Not thread safe, every collector owns its own reader.
+ */
+class ProcFileReader(initialCapacity: Int = 4096) {
+
+    private var buffer = ByteArray(initialCapacity)
+
+    var length = 0
+        private set
+
+    var position = 0
+
+    /**
+     * Read all of [path] and place the cursor at its start. Returns false if the file can not be read, e.g. because
+     * the process it describes has exited.
+     */
+    fun read(path: String): Boolean {
+        length = 0
+        position = 0
+        return try {
+            FileInputStream(path).use { input ->
+                while (true) {
+                    if (length == buffer.size) {
+                        buffer = buffer.copyOf(buffer.size * 2)
+                    }
+                    val read = input.read(buffer, length, buffer.size - length)
+                    if (read < 0) {
+                        break
+                    }
+                    length += read
+                }
+            }
+            true
+        } catch (e: IOException) {
+            length = 0
+            false
+        }
+    }
+
+    fun hasRemaining() = position < length
+
+    /**
+     * A copy of the file read last.
+     */
+    fun content(): ByteArray = buffer.copyOf(length)
+
+    /**
+     * Whether the file read last has exactly the bytes of [other].
+     */
+    fun contentEquals(other: ByteArray): Boolean = Arrays.equals(buffer, 0, length, other, 0, other.size)
+
+    fun byteAt(index: Int): Byte = buffer[index]
+
+    fun indexOf(char: Char, from: Int = position): Int {
+        val value = char.code.toByte()
+        for (i in from until length) {
+            if (buffer[i] == value) {
+                return i
+            }
+        }
+        return -1
+    }
+
+    fun lastIndexOf(char: Char): Int {
+        val value = char.code.toByte()
+        for (i in length - 1 downTo 0) {
+            if (buffer[i] == value) {
+                return i
+            }
+        }
+        return -1
+    }
+
+    fun skipSpaces() {
+        while (position < length && isSpace(buffer[position])) {
+            position++
+        }
+    }
+
+    /**
+     * Skip the next [count] space separated fields on the current line.
+     */
+    fun skipFields(count: Int) {
+        repeat(count) {
+            skipSpaces()
+            while (position < length && !isSpace(buffer[position]) && buffer[position] != NEWLINE) {
+                position++
+            }
+        }
+    }
+
+    /**
+     * Parse the next decimal field, 0 if there is none. Parsing stops at the first character that is not a digit.
+     */
+    fun nextLong(): Long {
+        skipSpaces()
+        var negative = false
+        if (position < length && buffer[position] == MINUS) {
+            negative = true
+            position++
+        }
+        var value = 0L
+        while (position < length) {
+            val digit = buffer[position] - ZERO
+            if (digit < 0 || digit > 9) {
+                break
+            }
+            value = value * 10 + digit
+            position++
+        }
+        return if (negative) -value else value
+    }
+
+    fun nextInt(): Int = nextLong().toInt()
+
+    /**
+     * The next space separated field on the current line as a string.
+     */
+    fun nextToken(): String {
+        skipSpaces()
+        val start = position
+        while (position < length && !isSpace(buffer[position]) && buffer[position] != NEWLINE) {
+            position++
+        }
+        return string(start, position)
+    }
+
+    /**
+     * Move to the start of the next line, returns false at the end of the file.
+     */
+    fun nextLine(): Boolean {
+        while (position < length && buffer[position] != NEWLINE) {
+            position++
+        }
+        if (position < length) {
+            position++
+        }
+        return position < length
+    }
+
+    /**
+     * Whether the bytes at the cursor are [prefix], without moving the cursor.
+     */
+    fun startsWith(prefix: String): Boolean = matches(position, prefix)
+
+    /**
+     * Whether the bytes at [start] are the ASCII characters of [text].
+     */
+    fun matches(start: Int, text: String): Boolean {
+        if (start < 0 || start + text.length > length) {
+            return false
+        }
+        for (i in text.indices) {
+            if (buffer[start + i] != text[i].code.toByte()) {
+                return false
+            }
+        }
+        return true
+    }
+
+    fun string(start: Int, end: Int): String = String(buffer, start, end - start, Charsets.UTF_8)
+
+    private fun isSpace(value: Byte) = value == SPACE || value == TAB
+
+    companion object {
+        private const val SPACE: Byte = 32
+        private const val TAB: Byte = 9
+        private const val NEWLINE: Byte = 10
+        private const val MINUS: Byte = 45
+        private const val ZERO: Byte = 48
+    }
+}
@@ -0,0 +1,30 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl
+
+import oshi.hardware.HardwareAbstractionLayer
+import oshi.software.os.OperatingSystem
+
+/**
+ * Enumerates every process once per tick for [DefaultProcessesMetrics].
+ */
+interface ProcessCollector {
+    /**
+     * Enumerate all processes and merge them into [table].
+     */
+    fun collect(table: ProcessTable): ProcessTableSnapshot
+}
+
+/**
+ * Collects through OSHI, works on every platform but reads every detail of every process.
+ */
+class OshiProcessCollector(
+    private val operatingSystem: OperatingSystem,
+    private val hal: HardwareAbstractionLayer
+) : ProcessCollector {
+    override fun collect(table: ProcessTable): ProcessTableSnapshot {
+        return table.update(
+            operatingSystem.processes,
+            hal.processor.logicalProcessorCount,
+            hal.memory.total
+        )
+    }
+}
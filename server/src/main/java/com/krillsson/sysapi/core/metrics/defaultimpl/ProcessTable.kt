@@ -0,0 +1,209 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl
+
+import com.krillsson.sysapi.core.domain.processes.Process
+import com.krillsson.sysapi.core.domain.processes.ProcessSort
+import com.krillsson.sysapi.util.ProcessOrderings
+import oshi.software.os.OSProcess
+import java.util.*
+import java.util.function.IntToLongFunction
+import java.util.function.IntUnaryOperator
+
+/**
+ * Immutable table of all processes at one point in time, ordered by PID.
+ *
+ * [added], [removed] and [changed] hold the PIDs that differ from the previous table. A reused PID is reported as both
+ * removed and added.
+ */
+class ProcessTableSnapshot internal constructor(
+    private val pids: IntArray,
+    private val rows: Array<Process>,
+    val threadCount: Long,
+    val added: IntArray,
+    val removed: IntArray,
+    val changed: IntArray
+) {
+    val size: Int get() = pids.size
+
+    val processes: List<Process> = Collections.unmodifiableList(rows.asList())
+
+    private val orderings = ProcessOrderings(processes, ProcessSort.PID)
+
+    /**
+     * The first [limit] processes according to [sort], shared by every request against this snapshot.
+     */
+    fun top(sort: ProcessSort, limit: Int): List<Process> = orderings.top(sort, limit)
+
+    operator fun get(pid: Int): Process? {
+        val index = Arrays.binarySearch(pids, pid)
+        return if (index >= 0) rows[index] else null
+    }
+
+    internal fun pidAt(index: Int) = pids[index]
+
+    internal fun rowAt(index: Int) = rows[index]
+
+    companion object {
+        @JvmField
+        val EMPTY = ProcessTableSnapshot(IntArray(0), emptyArray<Process>(), 0, IntArray(0), IntArray(0), IntArray(0))
+    }
+}
+
+/**
+ * Creates the row for the process at a position of an enumeration.
+ */
+fun interface ProcessRowFactory {
+    /**
+     * [prior] is the row of the same process in the previous table, null for a process seen for the first time. Its
+     * CPU time and IO counters are the baseline for load and rates.
+     */
+    fun create(index: Int, prior: Process?): Process
+}
+
+/**
+ * Keeps the latest [ProcessTableSnapshot] and builds the next one by merging a new enumeration with it.
+ *
+ * Only one thread may call [update], any thread may read [snapshot].
+ */
+class ProcessTable {
+
+    @Volatile
+    var snapshot: ProcessTableSnapshot = ProcessTableSnapshot.EMPTY
+        private set
+
+    fun update(processes: List<OSProcess>, cpuCount: Int, totalMemory: Long): ProcessTableSnapshot {
+        return update(
+            processes.size,
+            { processes[it].processID },
+            { processes[it].startTime }
+        ) { index, prior -> processes[index].asProcess(prior, cpuCount, totalMemory) }
+    }
+
+    /**
+     * Merge an enumeration of [count] processes. [pidAt] and [startTimeAt] identify the process at each position, a
+     * PID whose start time changed has been reused and is treated as a new process.
+     */
+    fun update(count: Int, pidAt: IntUnaryOperator, startTimeAt: IntToLongFunction, rows: ProcessRowFactory): ProcessTableSnapshot {
+        val previous = snapshot
+
+        // sort by PID without boxing: PID in the high bits, position in the enumeration in the low bits
+        val order = LongArray(count) { (pidAt.applyAsInt(it).toLong() shl 32) or it.toLong() }
+        order.sort()
+
+        val pids = IntArray(count)
+        val table = arrayOfNulls<Process>(count)
+        val added = IntList()
+        val removed = IntList()
+        val changed = IntList()
+        var threadCount = 0L
+        var p = 0
+        for (i in 0 until count) {
+            val index = (order[i] and 0xFFFFFFFFL).toInt()
+            val pid = (order[i] ushr 32).toInt()
+            while (p < previous.size && previous.pidAt(p) < pid) {
+                removed.add(previous.pidAt(p++))
+            }
+            val prior = if (p < previous.size && previous.pidAt(p) == pid) previous.rowAt(p++) else null
+            val sameProcess = prior != null && prior.startTime == startTimeAt.applyAsLong(index)
+            if (prior != null && !sameProcess) {
+                removed.add(pid)
+            }
+            val row = rows.create(index, if (sameProcess) prior else null)
+            if (!sameProcess) {
+                added.add(pid)
+            } else if (row.differsFrom(prior!!)) {
+                changed.add(pid)
+            }
+            pids[i] = pid
+            table[i] = row
+            threadCount += row.threadCount
+        }
+        while (p < previous.size) {
+            removed.add(previous.pidAt(p++))
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        val next = ProcessTableSnapshot(
+            pids,
+            table as Array<Process>,
+            threadCount,
+            added.toArray(),
+            removed.toArray(),
+            changed.toArray()
+        )
+        snapshot = next
+        return next
+    }
+
+    private fun OSProcess.asProcess(prior: Process?, cpuCount: Int, totalMemory: Long): Process {
+        val elapsed = if (prior != null) upTime - prior.upTime else 0L
+        return Process(
+            name,
+            path,
+            commandLine,
+            user,
+            userID,
+            group,
+            groupID,
+            state,
+            processID,
+            parentProcessID,
+            threadCount,
+            priority,
+            virtualSize,
+            residentSetSize,
+            100.0 * residentSetSize / totalMemory,
+            kernelTime,
+            userTime,
+            upTime,
+            cpuPercent(kernelTime, userTime, upTime, prior, cpuCount),
+            startTime,
+            bytesRead,
+            bytesWritten,
+            if (prior != null) perSecond(bytesRead - prior.bytesRead, elapsed) else 0,
+            if (prior != null) perSecond(bytesWritten - prior.bytesWritten, elapsed) else 0
+        )
+    }
+
+    /**
+     * Only compares what every collector reads eagerly, lazily read details must not be forced here.
+     */
+    private fun Process.differsFrom(prior: Process): Boolean {
+        return kernelTime != prior.kernelTime ||
+            userTime != prior.userTime ||
+            residentSetSize != prior.residentSetSize ||
+            threadCount != prior.threadCount ||
+            state != prior.state
+    }
+
+    private class IntList {
+        private var values = IntArray(16)
+        private var size = 0
+
+        fun add(value: Int) {
+            if (size == values.size) {
+                values = values.copyOf(size * 2)
+            }
+            values[size++] = value
+        }
+
+        fun toArray(): IntArray = values.copyOf(size)
+    }
+}
+
+/**
+ * CPU load in percent of all [cpuCount] CPUs since [prior], or over the whole lifetime of a process seen for the
+ * first time. Times in milliseconds.
+ */
+internal fun cpuPercent(kernelTime: Long, userTime: Long, upTime: Long, prior: Process?, cpuCount: Int): Double {
+    val elapsed = if (prior != null) upTime - prior.upTime else 0L
+    val cpuLoad = when {
+        prior != null && elapsed > 0 -> (userTime + kernelTime - prior.userTime - prior.kernelTime).toDouble() / elapsed
+        upTime > 0 -> (userTime + kernelTime).toDouble() / upTime
+        else -> 0.0
+    }
+    return 100.0 * cpuLoad / cpuCount
+}
+
+internal fun perSecond(delta: Long, elapsedMillis: Long): Long {
+    return if (delta <= 0 || elapsedMillis <= 0) 0 else delta * 1000 / elapsedMillis
+}
@@ -0,0 +1,177 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl
+
+import com.krillsson.sysapi.core.metrics.defaultimpl.DefaultDiskMetrics.DiskSample
+import com.krillsson.sysapi.core.metrics.defaultimpl.DefaultNetworkMetrics.NetworkSample
+import com.krillsson.sysapi.core.speed.BatchSource
+import java.io.File
+import java.util.Locale
+
+/**
+ * Reads the counters of every network interface from one read of /proc/net/dev per tick.
+ *
+ * Interface indexes, used to tell a re-created interface from a counter reset, come from /sys/class/net and are only
+ * re-read when the set of interfaces changes.
+ */
+class LinuxNetworkBatchSource @JvmOverloads constructor(
+    private val netDevPath: String = NET_DEV,
+    private val sysClassNetPath: String = SYS_CLASS_NET
+) : BatchSource<NetworkSample>() {
+
+    companion object {
+        private const val NET_DEV = "/proc/net/dev"
+        private const val SYS_CLASS_NET = "/sys/class/net"
+
+        @JvmStatic
+        fun isSupported(): Boolean = File(NET_DEV).canRead()
+    }
+
+    private val reader = ProcFileReader()
+    private val names = LineNames("")
+    private var indexes: Map<String, Int> = emptyMap()
+
+    override fun read(): Map<String, NetworkSample> {
+        if (!reader.read(netDevPath)) {
+            return emptyMap()
+        }
+        val next = HashMap<String, NetworkSample>(samples.size * 4 / 3 + 1)
+        // two header lines
+        reader.nextLine()
+        var line = 0
+        while (reader.nextLine()) {
+            reader.skipSpaces()
+            val nameStart = reader.position
+            val nameEnd = reader.indexOf(':')
+            if (nameEnd < 0) {
+                break
+            }
+            val name = names.nameAt(line++, reader, nameStart, nameEnd)
+            reader.position = nameEnd + 1
+            val bytesReceived = reader.nextLong()
+            val packetsReceived = reader.nextLong()
+            val inErrors = reader.nextLong()
+            reader.skipFields(5) // drop fifo frame compressed multicast
+            val bytesSent = reader.nextLong()
+            val packetsSent = reader.nextLong()
+            val outErrors = reader.nextLong()
+            next[name] = NetworkSample(
+                indexes[name] ?: 0,
+                bytesReceived,
+                bytesSent,
+                packetsReceived,
+                packetsSent,
+                inErrors,
+                outErrors
+            )
+        }
+        if (next.keys != indexes.keys) {
+            indexes = readIndexes(next.keys)
+            for (entry in next.entries) {
+                entry.setValue(entry.value.withIndex(indexes[entry.key] ?: 0))
+            }
+        }
+        return next
+    }
+
+    private fun readIndexes(names: Set<String>): Map<String, Int> {
+        return names.associateWith { name ->
+            if (reader.read("$sysClassNetPath/$name/ifindex")) reader.nextInt() else 0
+        }
+    }
+
+    private fun NetworkSample.withIndex(index: Int) = NetworkSample(
+        index,
+        bytesReceived,
+        bytesSent,
+        packetsReceived,
+        packetsSent,
+        inErrors,
+        outErrors
+    )
+}
+
+/**
+ * Reads the counters of every block device from one read of /proc/diskstats per tick.
+ *
+ * Devices are keyed as `/dev/<name>`, the way OSHI names its disk stores. Sectors in /proc/diskstats are always 512
+ * bytes, regardless of the sector size of the device. The kernel keeps the counters in an unsigned long, so they are
+ * [counterWidthBits] wide and wrap around on 32 bit systems such as Raspbian.
+ */
+class LinuxDiskBatchSource @JvmOverloads constructor(
+    private val diskStatsPath: String = DISK_STATS
+) : BatchSource<DiskSample>() {
+
+    companion object {
+        private const val DISK_STATS = "/proc/diskstats"
+        private const val SECTOR_SIZE = 512L
+
+        private val ARCHITECTURES_32_BIT = setOf("x86", "i386", "i486", "i586", "i686", "arm", "armv6l", "armv7l", "armhf")
+
+        @JvmStatic
+        fun isSupported(): Boolean = File(DISK_STATS).canRead()
+
+        @JvmStatic
+        @JvmOverloads
+        fun counterWidthBits(arch: String = System.getProperty("os.arch")): Int {
+            return if (arch.lowercase(Locale.ROOT) in ARCHITECTURES_32_BIT) 32 else 64
+        }
+    }
+
+    private val reader = ProcFileReader()
+    private val names = LineNames("/dev/")
+
+    override fun read(): Map<String, DiskSample> {
+        if (!reader.read(diskStatsPath)) {
+            return emptyMap()
+        }
+        val next = HashMap<String, DiskSample>(samples.size * 4 / 3 + 1)
+        var line = 0
+        while (reader.hasRemaining()) {
+            reader.skipFields(2) // major minor
+            reader.skipSpaces()
+            val nameStart = reader.position
+            reader.skipFields(1)
+            val nameEnd = reader.position
+            if (nameEnd > nameStart) {
+                val name = names.nameAt(line++, reader, nameStart, nameEnd)
+                val reads = reader.nextLong()
+                reader.skipFields(1) // reads merged
+                val sectorsRead = reader.nextLong()
+                reader.skipFields(1) // time spent reading
+                val writes = reader.nextLong()
+                reader.skipFields(1) // writes merged
+                val sectorsWritten = reader.nextLong()
+                next[name] = DiskSample(reads, sectorsRead * SECTOR_SIZE, writes, sectorsWritten * SECTOR_SIZE)
+            }
+            if (!reader.nextLine()) {
+                break
+            }
+        }
+        return next
+    }
+}
+
+/**
+ * Remembers the device name on each line of a procfs table, so a name is only turned into a new string when the
+ * device on that line changes.
+ */
+private class LineNames(private val prefix: String) {
+    private val raw = ArrayList<String>()
+    private val keys = ArrayList<String>()
+
+    fun nameAt(line: Int, reader: ProcFileReader, start: Int, end: Int): String {
+        if (line < raw.size) {
+            val known = raw[line]
+            if (known.length == end - start && reader.matches(start, known)) {
+                return keys[line]
+            }
+            val name = reader.string(start, end)
+            raw[line] = name
+            keys[line] = prefix + name
+            return keys[line]
+        }
+        val name = reader.string(start, end)
+        raw.add(name)
+        keys.add(prefix + name)
+        return keys[line]
+    }
+}
@@ -1,12 +1,27 @@
 package com.krillsson.sysapi.core.metrics.rasbian
 
+import com.krillsson.sysapi.core.domain.sensors.DataType
+import com.krillsson.sysapi.core.domain.sensors.HealthData
 import com.krillsson.sysapi.core.metrics.defaultimpl.DefaultCpuSensors
+import com.krillsson.sysapi.util.Ticker
 import org.slf4j.LoggerFactory
 import oshi.hardware.HardwareAbstractionLayer
-import oshi.util.ExecutingCommand
 import oshi.util.FileUtil
+import java.time.Duration
 
-open class RaspbianCpuSensors(hal: HardwareAbstractionLayer) : DefaultCpuSensors(hal) {
+/**
+ * CPU temperature from sysfs, core voltage, ARM and core clocks and throttling from vcgencmd.
+ *
+ * vcgencmd spawns a process for every reading, so once [register]ed its values are sampled on the ticker every
+ * [samplingInterval] (30 seconds unless configured) and requests only read the last sample. The clocks and the
+ * get_throttled flags are served as [healthData], the flags as their raw bit mask: bit 0 under-voltage, bit 1 ARM
+ * frequency capped, bit 2 throttled, bit 3 soft temperature limit, and bits 16 to 19 the same since boot.
+ */
+open class RaspbianCpuSensors @JvmOverloads constructor(
+    hal: HardwareAbstractionLayer,
+    ticker: Ticker? = null,
+    samplingInterval: Duration? = null
+) : DefaultCpuSensors(hal, ticker, samplingInterval), Ticker.TickListener {
 
     companion object {
         private val LOGGER = LoggerFactory.getLogger(
@@ -14,14 +29,77 @@ open class RaspbianCpuSensors(hal: HardwareAbstractionLayer) : DefaultCpuSensors
         )
         private const val CPU_TEMP_FILE_LOCATION = "/sys/class/thermal/thermal_zone0/temp"
         private const val VCGENCMD = "vcgencmd"
-        private const val VCGENCMD_VOLT = VCGENCMD + "measure_volts core"
+        private val VCGENCMD_VOLT = listOf(VCGENCMD, "measure_volts", "core")
+        private val VCGENCMD_THROTTLED = listOf(VCGENCMD, "get_throttled")
+        private val VCGENCMD_CLOCK_ARM = listOf(VCGENCMD, "measure_clock", "arm")
+        private val VCGENCMD_CLOCK_CORE = listOf(VCGENCMD, "measure_clock", "core")
+        private const val HZ_PER_MHZ = 1_000_000.0
+        private const val UNDER_VOLTAGE = 0x1L
+        private const val THROTTLED = 0x4L
+        private val DEFAULT_SAMPLING_INTERVAL = Duration.ofSeconds(30)
+    }
+
+    private val reader = VcgencmdReader()
+
+    @Volatile
+    private var voltage: Double? = null
+
+    @Volatile
+    private var health: List<HealthData> = emptyList()
+
+    // only touched by the tick
+    private var throttled = 0L
+
+    override fun register() {
+        super.register()
+        val ticker = ticker ?: return
+        onTick()
+        ticker.register(this, samplingInterval ?: DEFAULT_SAMPLING_INTERVAL)
+    }
+
+    override fun onTick() {
+        voltage = readVoltage() ?: super.cpuVoltage()
+        val flags = readThrottled()
+        health = listOfNotNull(
+            readClockMhz(VCGENCMD_CLOCK_ARM)?.let { HealthData("ARM clock", it, DataType.CLOCK) },
+            readClockMhz(VCGENCMD_CLOCK_CORE)?.let { HealthData("Core clock", it, DataType.CLOCK) },
+            flags?.let { HealthData("Throttled", it.toDouble(), DataType.FLAGS) }
+        )
+        if (flags != null && flags != throttled) {
+            if (flags and (UNDER_VOLTAGE or THROTTLED) != 0L) {
+                LOGGER.warn("CPU is under-voltage or throttled, get_throttled: 0x{}", java.lang.Long.toHexString(flags))
+            } else {
+                LOGGER.info("Throttling flags changed, get_throttled: 0x{}", java.lang.Long.toHexString(flags))
+            }
+            throttled = flags
+        }
     }
 
     override fun cpuTemperatures(): List<Double> {
-        return listOf(FileUtil.getLongFromFile(CPU_TEMP_FILE_LOCATION) / 1000.0)
+        return sampledTemperatures() ?: listOf(FileUtil.getLongFromFile(CPU_TEMP_FILE_LOCATION) / 1000.0)
     }
 
+    /**
+     * @return the clocks in MHz and the get_throttled flags of the last sample, empty before [register]
+     */
+    fun healthData(): List<HealthData> = health
+
     public override fun cpuVoltage(): Double {
+        return voltage ?: readVoltage() ?: super.cpuVoltage()
+    }
+
+    open fun executeCommand(): String? {
+        return executeCommand(VCGENCMD_VOLT)
+    }
+
+    open fun executeCommand(command: List<String>): String? {
+        return synchronized(reader) { reader.read(command) }
+    }
+
+    /**
+     * @return null if vcgencmd did not answer
+     */
+    private fun readVoltage(): Double? {
         val vcgenCmdAnswer = executeCommand()
         if (vcgenCmdAnswer != null && vcgenCmdAnswer.length > 1) {
             val trimmed = vcgenCmdAnswer.replace("volt=", "").replace("V", "")
@@ -37,10 +115,22 @@ open class RaspbianCpuSensors(hal: HardwareAbstractionLayer) : DefaultCpuSensors
                 0.0
             }
         }
-        return super.cpuVoltage()
+        return null
     }
 
-    open fun executeCommand(): String? {
-        return ExecutingCommand.getFirstAnswer(VCGENCMD_VOLT)
+    /**
+     * @return the flags of e.g. throttled=0x50005, null if vcgencmd did not answer
+     */
+    private fun readThrottled(): Long? {
+        val answer = executeCommand(VCGENCMD_THROTTLED) ?: return null
+        return answer.substringAfter("0x", "").toLongOrNull(16)
+    }
+
+    /**
+     * @return the clock of e.g. frequency(48)=1500398464 in MHz, null if vcgencmd did not answer
+     */
+    private fun readClockMhz(command: List<String>): Double? {
+        val answer = executeCommand(command) ?: return null
+        return answer.substringAfter("=", "").toLongOrNull()?.let { it / HZ_PER_MHZ }
     }
-}
\ No newline at end of file
+}
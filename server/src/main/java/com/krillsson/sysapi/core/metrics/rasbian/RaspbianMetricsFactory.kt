@@ -1,7 +1,10 @@
 package com.krillsson.sysapi.core.metrics.rasbian
 
+import com.krillsson.sysapi.config.SamplingConfiguration
+import com.krillsson.sysapi.config.Subsystem
 import com.krillsson.sysapi.core.connectivity.ConnectivityCheckManager
 import com.krillsson.sysapi.core.metrics.defaultimpl.*
+import com.krillsson.sysapi.core.speed.CounterRegistry
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager
 import com.krillsson.sysapi.util.Ticker
 import com.krillsson.sysapi.util.asOperatingSystem
@@ -9,6 +12,8 @@ import com.krillsson.sysapi.util.asPlatform
 import oshi.PlatformEnum
 import oshi.hardware.HardwareAbstractionLayer
 import oshi.software.os.OperatingSystem
+import java.util.function.Function
+import java.util.function.IntSupplier
 
 object RaspbianMetricsFactory {
     fun create(
@@ -17,18 +22,45 @@ object RaspbianMetricsFactory {
         platformEnum: PlatformEnum,
         ticker: Ticker,
         measurementManager: SpeedMeasurementManager,
+        counterRegistry: CounterRegistry,
         connectivityCheckManager: ConnectivityCheckManager,
+        processCollector: ProcessCollector,
+        sampling: SamplingConfiguration
     ): RaspbianMetrics {
-        val defaultCpuLoadMetrics = DefaultCpuLoadMetrics(hal.processor, ticker)
-        val raspbianCpuSensors = RaspbianCpuSensors(hal)
+        val defaultCpuLoadMetrics = DefaultCpuLoadMetrics(
+            hal.processor,
+            ticker,
+            samplingInterval = sampling.interval(Subsystem.CPU)
+        )
+        val raspbianCpuSensors = RaspbianCpuSensors(hal, ticker, sampling.interval(Subsystem.SENSORS))
         val cpuMetrics = DefaultCpuMetrics(hal, os, raspbianCpuSensors, defaultCpuLoadMetrics)
-        val networkMetrics = DefaultNetworkMetrics(ticker, hal, measurementManager, connectivityCheckManager)
+        val networkMetrics = DefaultNetworkMetrics(
+            ticker,
+            hal,
+            measurementManager,
+            counterRegistry,
+            connectivityCheckManager,
+            sampling.interval(Subsystem.NETWORK)
+        )
         val gpuMetrics = DefaultGpuMetrics(hal)
-        val driveMetrics = DefaultDriveMetrics(os, hal, measurementManager)
-        val diskMetrics = DefaultDiskMetrics(hal, measurementManager)
-        val fileSystemMetrics = DefaultFileSystemMetrics(os)
-        val processesMetrics = DefaultProcessesMetrics(os, hal, ticker)
-        val motherboardMetrics = DefaultMotherboardMetrics(hal)
+        val diskMetrics = DefaultDiskMetrics(
+            hal,
+            ticker,
+            measurementManager,
+            counterRegistry,
+            sampling.interval(Subsystem.DISKS)
+        )
+        val fileSystemMetrics = DefaultFileSystemMetrics(os, ticker, sampling.interval(Subsystem.FILE_SYSTEMS))
+        val driveMetrics = DefaultDriveMetrics(
+            os,
+            hal,
+            measurementManager,
+            fileSystemMetrics.fileStores,
+            IntSupplier { diskMetrics.generation },
+            Function { diskMetrics.sample(it) }
+        )
+        val processesMetrics = DefaultProcessesMetrics(os, ticker, processCollector, sampling.interval(Subsystem.PROCESSES))
+        val motherboardMetrics = RaspbianMotherboardMetrics(hal, raspbianCpuSensors)
         val memoryMetrics = DefaultMemoryMetrics(hal, os)
         val systemMetrics = DefaultSystemMetrics(
             cpuMetrics,
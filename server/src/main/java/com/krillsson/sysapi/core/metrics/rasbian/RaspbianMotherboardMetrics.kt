@@ -0,0 +1,18 @@
+package com.krillsson.sysapi.core.metrics.rasbian
+
+import com.krillsson.sysapi.core.domain.sensors.HealthData
+import com.krillsson.sysapi.core.metrics.defaultimpl.DefaultMotherboardMetrics
+import oshi.hardware.HardwareAbstractionLayer
+
+/**
+ * Serves the clocks and throttling flags sampled from vcgencmd as the health of the board.
+ */
+class RaspbianMotherboardMetrics(
+    hal: HardwareAbstractionLayer,
+    private val cpuSensors: RaspbianCpuSensors
+) : DefaultMotherboardMetrics(hal) {
+
+    override fun motherboardHealth(): List<HealthData> {
+        return cpuSensors.healthData()
+    }
+}
@@ -0,0 +1,80 @@
+package com.krillsson.sysapi.core.metrics.rasbian
+
+import org.slf4j.LoggerFactory
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs vcgencmd with prebuilt command lines and reads the first line of its answer into a reused buffer.
+ *
+ * vcgencmd has no mode that keeps it running between commands, so every reading still spawns a process; callers are
+ * expected to read on a slow schedule and cache the result. Not thread safe.
+ */
+class VcgencmdReader @JvmOverloads constructor(
+    private val timeoutMillis: Long = 2000,
+    maxOutputBytes: Int = DEFAULT_MAX_OUTPUT_BYTES
+) {
+
+    private val builders = HashMap<List<String>, ProcessBuilder>()
+    private val buffer = ByteArray(maxOutputBytes)
+
+    /**
+     * Waits at most [timeoutMillis] for vcgencmd to exit before reading its answer, a hung vcgencmd is killed. Answers
+     * longer than the buffer are cut off.
+     *
+     * @return the first line of the answer, or null if vcgencmd is missing, failed or timed out
+     */
+    fun read(command: List<String>): String? {
+        val builder = builders.getOrPut(command) { ProcessBuilder(command).redirectErrorStream(true) }
+        val process = try {
+            builder.start()
+        } catch (e: IOException) {
+            LOGGER.debug("Unable to run {}", command, e)
+            return null
+        }
+        return try {
+            // the answer is a line or two, it fits in the pipe while waiting
+            if (!process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("{} did not exit within {}ms and was killed", command, timeoutMillis)
+                process.destroyForcibly()
+                return null
+            }
+            if (process.exitValue() != 0) {
+                return null
+            }
+            var length = 0
+            process.inputStream.use { input ->
+                while (length < buffer.size) {
+                    val read = input.read(buffer, length, buffer.size - length)
+                    if (read < 0) {
+                        break
+                    }
+                    length += read
+                }
+                if (length == buffer.size && input.read() >= 0) {
+                    LOGGER.warn("Answer of {} is longer than {} bytes and was cut off", command, buffer.size)
+                }
+            }
+            var end = 0
+            while (end < length && buffer[end] != NEWLINE) {
+                end++
+            }
+            String(buffer, 0, end, Charsets.US_ASCII).trim()
+        } catch (e: IOException) {
+            LOGGER.debug("Error while reading answer of {}", command, e)
+            null
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            process.destroyForcibly()
+            null
+        } finally {
+            process.destroy()
+        }
+    }
+
+    companion object {
+        private const val NEWLINE = '\n'.code.toByte()
+        private const val DEFAULT_MAX_OUTPUT_BYTES = 4096
+        private val LOGGER = LoggerFactory.getLogger(VcgencmdReader::class.java)
+    }
+}
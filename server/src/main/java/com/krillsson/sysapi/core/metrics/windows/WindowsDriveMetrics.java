@@ -27,7 +27,9 @@ import com.krillsson.sysapi.core.domain.drives.DriveSpeed;
 import com.krillsson.sysapi.core.domain.drives.OsPartition;
 import com.krillsson.sysapi.core.domain.sensors.DataType;
 import com.krillsson.sysapi.core.domain.sensors.HealthData;
+import com.krillsson.sysapi.core.metrics.defaultimpl.DefaultDiskMetrics;
 import com.krillsson.sysapi.core.metrics.defaultimpl.DefaultDriveMetrics;
+import com.krillsson.sysapi.core.metrics.defaultimpl.FileStoreRegistry;
 import com.krillsson.sysapi.util.Streams;
 import ohmwrapper.DriveMonitor;
 import org.slf4j.Logger;
@@ -38,6 +40,8 @@ import oshi.software.os.OperatingSystem;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 
 import static com.krillsson.sysapi.core.metrics.windows.util.NullSafeOhmMonitor.nullSafeGetValue;
@@ -51,6 +55,10 @@ public class WindowsDriveMetrics extends DefaultDriveMetrics {
         super(operatingSystem, hal, speedMeasurementManager);
     }
 
+    public WindowsDriveMetrics(OperatingSystem operatingSystem, HardwareAbstractionLayer hal, SpeedMeasurementManager speedMeasurementManager, FileStoreRegistry fileStores, IntSupplier deviceGeneration, Function<String, DefaultDiskMetrics.DiskSample> counters) {
+        super(operatingSystem, hal, speedMeasurementManager, fileStores, deviceGeneration, counters);
+    }
+
     public void setMonitorManager(DelegatingOHMManager monitorManager) {
         this.monitorManager = monitorManager;
     }
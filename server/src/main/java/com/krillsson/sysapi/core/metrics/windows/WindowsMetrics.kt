@@ -13,7 +13,7 @@ class WindowsMetrics(
     gpuMetrics: WindowsGpuMetrics,
     driveMetrics: WindowsDriveMetrics,
     diskMetrics: DefaultDiskMetrics,
-    fileSystemMetrics: DefaultFileSystemMetrics,
+    private val fileSystemMetrics: DefaultFileSystemMetrics,
     processesMetrics: DefaultProcessesMetrics,
     motherboardMetrics: WindowsMotherboardMetrics,
     memoryMetrics: MemoryMetrics,
@@ -32,5 +32,7 @@ class WindowsMetrics(
 ) {
     override fun initialize() {
         /* OHM has its own manager impl */
+        // file stores are read through OSHI on Windows as well
+        fileSystemMetrics.register()
     }
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package com.krillsson.sysapi.core.metrics.windows
 
+import com.krillsson.sysapi.config.SamplingConfiguration
+import com.krillsson.sysapi.config.Subsystem
 import com.krillsson.sysapi.core.connectivity.ConnectivityCheckManager
 import com.krillsson.sysapi.core.metrics.defaultimpl.*
+import com.krillsson.sysapi.core.speed.CounterRegistry
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager
 import com.krillsson.sysapi.util.Ticker
 import com.krillsson.sysapi.util.Utils
@@ -10,6 +13,8 @@ import com.krillsson.sysapi.util.asPlatform
 import oshi.PlatformEnum
 import oshi.hardware.HardwareAbstractionLayer
 import oshi.software.os.OperatingSystem
+import java.util.function.Function
+import java.util.function.IntSupplier
 
 object WindowsMetricsFactory {
     fun create(
@@ -19,24 +24,55 @@ object WindowsMetricsFactory {
         ticker: Ticker,
         utils: Utils,
         measurementManager: SpeedMeasurementManager,
-        connectivityCheckManager: ConnectivityCheckManager
+        counterRegistry: CounterRegistry,
+        connectivityCheckManager: ConnectivityCheckManager,
+        sampling: SamplingConfiguration
     ): WindowsMetrics? {
         val ohmFactory = OHMManagerFactory()
         if (ohmFactory.prerequisitesFilled() && ohmFactory.initialize()) {
 
             val monitorManager = ohmFactory.monitorManager
-            val defaultCpuLoadMetrics = DefaultCpuLoadMetrics(hal.processor, ticker)
+            val defaultCpuLoadMetrics = DefaultCpuLoadMetrics(
+                hal.processor,
+                ticker,
+                samplingInterval = sampling.interval(Subsystem.CPU)
+            )
 
             val cpuMetrics =
                 WindowsCpuMetrics(hal, os, defaultCpuLoadMetrics, monitorManager, ticker, utils)
             val networkMetrics =
-                WindowsNetworkMetrics(ticker, hal, measurementManager, connectivityCheckManager, monitorManager)
+                WindowsNetworkMetrics(
+                    ticker,
+                    hal,
+                    measurementManager,
+                    counterRegistry,
+                    connectivityCheckManager,
+                    monitorManager,
+                    sampling.interval(Subsystem.NETWORK)
+                )
             val gpuMetrics = WindowsGpuMetrics(hal, monitorManager)
-            val driveMetrics =
-                WindowsDriveMetrics(os, hal, measurementManager)
-            val diskMetrics = DefaultDiskMetrics(hal, measurementManager)
-            val fileSystemMetrics = DefaultFileSystemMetrics(os)
-            val processesMetrics = DefaultProcessesMetrics(os, hal, ticker)
+            val diskMetrics = DefaultDiskMetrics(
+                hal,
+                ticker,
+                measurementManager,
+                counterRegistry,
+                sampling.interval(Subsystem.DISKS)
+            )
+            val fileSystemMetrics = DefaultFileSystemMetrics(os, ticker, sampling.interval(Subsystem.FILE_SYSTEMS))
+            val driveMetrics = WindowsDriveMetrics(
+                os,
+                hal,
+                measurementManager,
+                fileSystemMetrics.fileStores,
+                IntSupplier { diskMetrics.generation },
+                Function { diskMetrics.sample(it) }
+            )
+            val processesMetrics = DefaultProcessesMetrics(
+                os,
+                ticker,
+                OshiProcessCollector(os, hal),
+                sampling.interval(Subsystem.PROCESSES)
+            )
             val motherboardMetrics = WindowsMotherboardMetrics(hal, monitorManager)
             val memoryMetrics = DefaultMemoryMetrics(hal, os)
             val systemMetrics = DefaultSystemMetrics(
@@ -23,14 +23,16 @@ package com.krillsson.sysapi.core.metrics.windows;
 import com.krillsson.sysapi.core.connectivity.ConnectivityCheckManager;
 import com.krillsson.sysapi.core.domain.network.NetworkInterfaceSpeed;
 import com.krillsson.sysapi.core.metrics.defaultimpl.DefaultNetworkMetrics;
+import com.krillsson.sysapi.core.metrics.defaultimpl.NetworkInterfaceRegistry;
+import com.krillsson.sysapi.core.speed.CounterRegistry;
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager;
 import com.krillsson.sysapi.util.Ticker;
 import ohmwrapper.NetworkMonitor;
 import ohmwrapper.NicInfo;
 import org.slf4j.Logger;
 import oshi.hardware.HardwareAbstractionLayer;
-import oshi.hardware.NetworkIF;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Optional;
@@ -40,30 +42,25 @@ public class WindowsNetworkMetrics extends DefaultNetworkMetrics {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(WindowsNetworkMetrics.class);
 
     private DelegatingOHMManager monitorManager;
-    private HardwareAbstractionLayer hal;
 
 
-    public WindowsNetworkMetrics(Ticker ticker, HardwareAbstractionLayer hal, SpeedMeasurementManager speedMeasurementManager, ConnectivityCheckManager connectivityCheckManager, DelegatingOHMManager monitorManager) {
-        super(ticker, hal, speedMeasurementManager, connectivityCheckManager);
-        this.hal = hal;
+    public WindowsNetworkMetrics(Ticker ticker, HardwareAbstractionLayer hal, SpeedMeasurementManager speedMeasurementManager, CounterRegistry counterRegistry, ConnectivityCheckManager connectivityCheckManager, DelegatingOHMManager monitorManager, Duration samplingInterval) {
+        super(ticker, hal, speedMeasurementManager, counterRegistry, connectivityCheckManager, samplingInterval);
         this.monitorManager = monitorManager;
     }
 
     @Override
     protected NetworkInterfaceSpeed speedForInterfaceWithName(String name) {
-        Optional<NetworkIF> networkOptional = hal.getNetworkIFs().stream()
-                .filter(n -> name.equals(n.getName()))
-                .findAny();
-        if (!networkOptional.isPresent()) {
+        NetworkInterfaceRegistry.Descriptor descriptor = getInterfaces().byName(name);
+        if (descriptor == null) {
             throw new NoSuchElementException(String.format("No NIC with id %s was found", name));
         }
-        NetworkIF networkIF = networkOptional.get();
 
         monitorManager.update();
         NetworkMonitor networkMonitor = monitorManager.getNetworkMonitor();
         NicInfo[] nics = networkMonitor.getNics();
         Optional<NicInfo> nicInfoOptional = Arrays.stream(nics)
-                .filter(n -> networkIF.getMacaddr().equalsIgnoreCase(n.getPhysicalAddress()))
+                .filter(n -> descriptor.getMac().equalsIgnoreCase(n.getPhysicalAddress()))
                 .findAny();
 
         if (!nicInfoOptional.isPresent()) {
@@ -10,7 +10,7 @@ class CpuTemperatureMonitor(override val id: UUID, override val config: MonitorC
 
     companion object {
         val selector: NumericalValueSelector = { load, _ ->
-            MonitoredValue.NumericalValue(load.cpuLoad.cpuHealth.temperatures.firstOrNull()?.toLong() ?: 0)
+            MonitoredValue.NumericalValue(load.cpuLoad.cpuHealth.temperatures.maxOrNull()?.toLong() ?: 0)
         }
     }
 
@@ -1,9 +1,7 @@
 package com.krillsson.sysapi.core.query;
 
 import com.google.common.eventbus.EventBus;
-import com.krillsson.sysapi.core.domain.processes.ProcessSort;
 import com.krillsson.sysapi.core.domain.system.SystemLoad;
-import com.krillsson.sysapi.core.metrics.Metrics;
 import io.dropwizard.lifecycle.Managed;
 
 import java.util.concurrent.ScheduledExecutorService;
@@ -12,21 +10,21 @@ import java.util.concurrent.TimeUnit;
 public abstract class MetricQueryManager<T extends MetricQueryEvent> implements Managed {
 
     private final ScheduledExecutorService executorService;
-    private final Metrics provider;
+    private final SystemLoadSnapshotManager snapshots;
     private final EventBus eventBus;
     private final long period;
     private final TimeUnit unit;
 
-    public MetricQueryManager(ScheduledExecutorService executorService, long period, TimeUnit unit, Metrics provider, EventBus eventBus) {
+    public MetricQueryManager(ScheduledExecutorService executorService, long period, TimeUnit unit, SystemLoadSnapshotManager snapshots, EventBus eventBus) {
         this.executorService = executorService;
-        this.provider = provider;
+        this.snapshots = snapshots;
         this.eventBus = eventBus;
         this.period = period;
         this.unit = unit;
     }
 
     private void query() {
-        eventBus.post(event(provider.systemMetrics().systemLoad(ProcessSort.MEMORY, -1)));
+        eventBus.post(event(snapshots.latest().getLoad()));
     }
 
     protected abstract T event(SystemLoad load);
@@ -0,0 +1,19 @@
+package com.krillsson.sysapi.core.query
+
+import com.krillsson.sysapi.core.metrics.Metrics
+import com.krillsson.sysapi.core.metrics.SystemMetrics
+
+/**
+ * [Metrics] where the system load is read from the shared per-tick snapshot.
+ */
+class SnapshotMetrics(
+    private val metrics: Metrics,
+    snapshots: SystemLoadSnapshotManager
+) : Metrics by metrics {
+
+    private val systemMetrics = SnapshotSystemMetrics(snapshots, metrics.systemMetrics())
+
+    override fun systemMetrics(): SystemMetrics {
+        return systemMetrics
+    }
+}
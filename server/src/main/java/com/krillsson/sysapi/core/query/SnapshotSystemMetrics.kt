@@ -0,0 +1,45 @@
+package com.krillsson.sysapi.core.query
+
+import com.krillsson.sysapi.core.domain.processes.Process
+import com.krillsson.sysapi.core.domain.processes.ProcessSort
+import com.krillsson.sysapi.core.domain.system.SystemInfo
+import com.krillsson.sysapi.core.domain.system.SystemLoad
+import com.krillsson.sysapi.core.metrics.SystemMetrics
+
+/**
+ * Serves [systemLoad] from the latest [SystemLoadSnapshot] so that API requests never trigger a collection of their own.
+ */
+class SnapshotSystemMetrics(
+    private val snapshots: SystemLoadSnapshotManager,
+    private val systemMetrics: SystemMetrics
+) : SystemMetrics {
+
+    override fun systemLoad(sort: ProcessSort, limit: Int): SystemLoad {
+        val snapshot = snapshots.latest()
+        val load = snapshot.load
+        return if (sort == ProcessSort.MEMORY && limit <= 0) {
+            load
+        } else {
+            load.withProcesses(snapshot.processOrderings.top(sort, limit))
+        }
+    }
+
+    override fun systemInfo(): SystemInfo {
+        return systemMetrics.systemInfo()
+    }
+
+    private fun SystemLoad.withProcesses(processes: List<Process>) = SystemLoad(
+        uptime,
+        systemLoadAverage,
+        cpuLoad,
+        networkInterfaceLoads,
+        connectivity,
+        driveLoads,
+        diskLoads,
+        fileSystemLoads,
+        memory,
+        processes,
+        gpuLoads,
+        motherboardHealth
+    )
+}
@@ -0,0 +1,21 @@
+package com.krillsson.sysapi.core.query
+
+import com.krillsson.sysapi.core.domain.processes.ProcessSort
+import com.krillsson.sysapi.core.domain.system.SystemLoad
+import com.krillsson.sysapi.util.ProcessOrderings
+import java.time.OffsetDateTime
+
+/**
+ * An immutable [SystemLoad] collected once per tick. The version increases by one for every
+ * collection so consumers can tell whether they have already seen a snapshot.
+ */
+class SystemLoadSnapshot(
+    val version: Long,
+    val sampledAt: OffsetDateTime,
+    val load: SystemLoad
+) {
+    /**
+     * Orderings of [SystemLoad.processes], which are collected sorted by memory.
+     */
+    val processOrderings = ProcessOrderings(load.processes, ProcessSort.MEMORY)
+}
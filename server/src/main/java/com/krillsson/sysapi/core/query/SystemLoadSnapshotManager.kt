@@ -0,0 +1,59 @@
+package com.krillsson.sysapi.core.query
+
+import com.krillsson.sysapi.core.domain.processes.ProcessSort
+import com.krillsson.sysapi.core.metrics.SystemMetrics
+import com.krillsson.sysapi.util.Clock
+import com.krillsson.sysapi.util.Ticker
+import com.krillsson.sysapi.util.logger
+import com.krillsson.sysapi.util.measureTimeMillis
+import io.dropwizard.lifecycle.Managed
+
+/**
+ * Collects one full [com.krillsson.sysapi.core.domain.system.SystemLoad] per tick and shares it
+ * between history, monitoring and the API instead of each of them collecting their own.
+ */
+class SystemLoadSnapshotManager(
+    private val systemMetrics: SystemMetrics,
+    private val ticker: Ticker,
+    private val clock: Clock
+) : Ticker.TickListener, Managed {
+
+    private val logger by logger()
+
+    private var version = 0L
+
+    @Volatile
+    private var latest: SystemLoadSnapshot? = null
+
+    override fun onTick() {
+        collect()
+    }
+
+    /**
+     * The most recently published snapshot. Only collects on the calling thread if nothing has been published yet.
+     */
+    fun latest(): SystemLoadSnapshot {
+        return latest ?: synchronized(this) {
+            latest ?: collect()
+        }
+    }
+
+    @Synchronized
+    private fun collect(): SystemLoadSnapshot {
+        val result = measureTimeMillis {
+            systemMetrics.systemLoad(ProcessSort.MEMORY, -1)
+        }
+        val snapshot = SystemLoadSnapshot(++version, clock.now(), result.second)
+        logger.trace("Took {} to collect snapshot {}", "${result.first.toInt()}ms", snapshot.version)
+        latest = snapshot
+        return snapshot
+    }
+
+    override fun start() {
+        ticker.registerPostTick(this)
+    }
+
+    override fun stop() {
+        ticker.unregister(this)
+    }
+}
@@ -0,0 +1,53 @@
+package com.krillsson.sysapi.core.speed
+
+import com.krillsson.sysapi.util.Ticker
+
+/**
+ * Refreshes the counters of a whole class of devices, e.g. all NICs or all disks, in one pass per tick.
+ *
+ * [SpeedMeasurementManager.SpeedSource]s and [CounterSource]s for those devices read the published [samples] instead
+ * of querying the OS themselves, so a device is read once per tick no matter how many counters are derived from it.
+ * Register with [Ticker.register], consumers run in the post-tick phase and always see the refresh of the same tick.
+ */
+abstract class BatchSource<T : Any> : Ticker.TickListener {
+
+    @Volatile
+    var samples: Map<String, T> = emptyMap()
+        private set
+
+    /**
+     * Incremented whenever the set of devices changes, e.g. on hotplug. Static device info derived from an older
+     * generation is stale.
+     */
+    @Volatile
+    var generation: Int = 0
+        private set
+
+    /**
+     * Incremented on every refresh. A source registered with a period longer than the tick is not refreshed on every
+     * tick, consumers use the revision to skip a batch they have already seen.
+     */
+    @Volatile
+    var revision: Long = 0
+        private set
+
+    /**
+     * Read the counters of every device, keyed by device name.
+     */
+    protected abstract fun read(): Map<String, T>
+
+    fun sample(name: String): T? = samples[name]
+
+    fun refresh() {
+        val next = read()
+        if (next.keys != samples.keys) {
+            generation++
+        }
+        samples = next
+        revision++
+    }
+
+    override fun onTick() {
+        refresh()
+    }
+}
@@ -0,0 +1,177 @@
+package com.krillsson.sysapi.core.speed
+
+import com.krillsson.sysapi.util.Ticker
+import com.krillsson.sysapi.util.logger
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.function.LongSupplier
+
+/**
+ * Turns monotonic counters such as packets, errors, IO operations and process IO into per second rates.
+ *
+ * Every registered [CounterSource] is sampled once per tick and all of its counters are diffed in that same pass.
+ * A counter that goes backwards is treated as a wraparound if the source declares a width below 64 bits and the
+ * wrapped delta is plausible, otherwise as a reset. An instance whose identity changes (a re-created NIC, a reused PID)
+ * starts over instead of producing a bogus delta against its predecessor.
+ */
+class CounterRegistry(private val nanoTime: LongSupplier) : Ticker.TickListener {
+
+    private val logger by logger()
+
+    private val groups = CopyOnWriteArrayList<CounterGroup<*>>()
+
+    fun <K : Any> register(source: CounterSource<K>): CounterGroup<K> {
+        logger.debug("Registering {} counters", source.name)
+        val group = CounterGroup(source)
+        groups.add(group)
+        return group
+    }
+
+    fun unregister(group: CounterGroup<*>) {
+        groups.remove(group)
+    }
+
+    override fun onTick() {
+        val now = nanoTime.asLong
+        for (group in groups) {
+            try {
+                group.sample(now)
+            } catch (e: Exception) {
+                logger.error("Error while sampling {} counters", group.name, e)
+            }
+        }
+    }
+}
+
+/**
+ * A class of devices or entities exposing the same set of counters, e.g. all NICs.
+ */
+interface CounterSource<K : Any> {
+    val name: String
+
+    /**
+     * Number of counters reported per instance, indexes are defined by the source.
+     */
+    val counterCount: Int
+
+    /**
+     * Width of the underlying counters, below 64 enables wraparound handling.
+     */
+    val widthBits: Int get() = 64
+
+    /**
+     * Changes whenever the counters were read anew, sources read less often than every tick are only diffed when it
+     * did. [UNVERSIONED] sources are diffed on every tick.
+     */
+    val revision: Long get() = UNVERSIONED
+
+    /**
+     * Read the counters of every instance once and report them to the [sink].
+     */
+    fun sample(sink: CounterSink<K>)
+
+    companion object {
+        const val UNVERSIONED = 0L
+    }
+}
+
+interface CounterSink<K : Any> {
+    /**
+     * Scratch array of [CounterSource.counterCount] values, filled by the source before each [commit].
+     */
+    val values: LongArray
+
+    /**
+     * @param identity changes when the instance behind [key] was replaced, e.g. the start time of a process
+     */
+    fun commit(key: K, identity: Long = 0)
+}
+
+/**
+ * Immutable per second rates for the counters of one instance. Counters without a rate yet read as 0.
+ */
+class CounterRates(private val perSecond: LongArray) {
+    operator fun get(counter: Int): Long = if (counter < perSecond.size) perSecond[counter] else 0
+
+    companion object {
+        @JvmField
+        val EMPTY = CounterRates(LongArray(0))
+    }
+}
+
+class CounterGroup<K : Any> internal constructor(private val source: CounterSource<K>) : CounterSink<K> {
+
+    private class Entry(val identity: Long, val values: LongArray, var nanos: Long, var generation: Long)
+
+    val name: String get() = source.name
+
+    override val values = LongArray(source.counterCount)
+
+    private val entries = HashMap<K, Entry>()
+    private var next: HashMap<K, CounterRates>? = null
+    private var now = 0L
+    private var generation = 0L
+    private var revision = CounterSource.UNVERSIONED
+
+    @Volatile
+    private var published: Map<K, CounterRates> = emptyMap()
+
+    fun rates(key: K): CounterRates = published[key] ?: CounterRates.EMPTY
+
+    internal fun sample(now: Long) {
+        val revision = source.revision
+        if (revision != CounterSource.UNVERSIONED && revision == this.revision) {
+            return
+        }
+        this.revision = revision
+        this.now = now
+        generation++
+        next = HashMap(published.size * 4 / 3 + 1)
+        source.sample(this)
+        entries.values.removeIf { it.generation != generation }
+        published = checkNotNull(next)
+        next = null
+    }
+
+    override fun commit(key: K, identity: Long) {
+        val pending = checkNotNull(next) { "${source.name} committed counters outside of a sample" }
+        val entry = entries[key]
+        if (entry == null || entry.identity != identity) {
+            entries[key] = Entry(identity, values.copyOf(), now, generation)
+            pending[key] = CounterRates.EMPTY
+            return
+        }
+        val elapsed = now - entry.nanos
+        val perSecond = LongArray(values.size)
+        for (i in values.indices) {
+            perSecond[i] = perSecond(delta(entry.values[i], values[i]), elapsed)
+            entry.values[i] = values[i]
+        }
+        entry.nanos = now
+        entry.generation = generation
+        pending[key] = CounterRates(perSecond)
+    }
+
+    private fun delta(previous: Long, current: Long): Long {
+        val delta = current - previous
+        if (delta >= 0) {
+            return delta
+        }
+        val width = source.widthBits
+        if (width < 64) {
+            val wrapped = delta + (1L shl width)
+            if (wrapped in 0 until (1L shl (width - 1))) {
+                return wrapped
+            }
+        }
+        // counter was reset, the new value is the new baseline
+        return 0
+    }
+
+    private fun perSecond(delta: Long, elapsedNanos: Long): Long {
+        return if (delta <= 0 || elapsedNanos <= 0) 0 else (delta * NANOS_PER_SECOND / elapsedNanos).toLong()
+    }
+
+    companion object {
+        private const val NANOS_PER_SECOND = 1_000_000_000.0
+    }
+}
@@ -0,0 +1,167 @@
+package com.krillsson.sysapi.core.speed;
+
+/**
+ * Fixed size ring buffer of read/write counter samples for one {@link SpeedMeasurementManager.SpeedSource}.
+ * <p>
+ * Only ever touched by the sampling thread. Readers get the immutable {@link SpeedMeasurementManager.CurrentSpeed}
+ * that is published after every sample.
+ */
+class RateSeries {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    private static final long ONE_SECOND = 1_000_000_000L;
+    private static final long TEN_SECONDS = 10 * ONE_SECOND;
+    private static final long SIXTY_SECONDS = 60 * ONE_SECOND;
+
+    private final long[] timestamps;
+    private final long[] reads;
+    private final long[] writes;
+    private int head = -1;
+    private int size = 0;
+    private long revision = SpeedMeasurementManager.SpeedSource.UNVERSIONED;
+
+    private boolean ewmaInitialized = false;
+    private double readEwmaTenSeconds;
+    private double writeEwmaTenSeconds;
+    private double readEwmaSixtySeconds;
+    private double writeEwmaSixtySeconds;
+
+    RateSeries(int capacity) {
+        this.timestamps = new long[capacity];
+        this.reads = new long[capacity];
+        this.writes = new long[capacity];
+    }
+
+    /**
+     * Number of samples needed to cover the longest horizon when sampling every {@code intervalNanos}.
+     */
+    static int capacityFor(long intervalNanos) {
+        long samples = (SIXTY_SECONDS + intervalNanos - 1) / Math.max(1, intervalNanos);
+        return (int) Math.max(2, samples + 1);
+    }
+
+    /**
+     * @return false if this revision of the source was already added
+     */
+    boolean nextRevision(long revision) {
+        if (revision != SpeedMeasurementManager.SpeedSource.UNVERSIONED && revision == this.revision) {
+            return false;
+        }
+        this.revision = revision;
+        return true;
+    }
+
+    /**
+     * @return false if the counters went backwards, the series is then restarted from this sample
+     */
+    boolean add(long nanos, long read, long write) {
+        if (size > 0 && (read < reads[head] || write < writes[head])) {
+            clear();
+            append(nanos, read, write);
+            return false;
+        }
+        append(nanos, read, write);
+        if (size > 1) {
+            updateEwma();
+        }
+        return true;
+    }
+
+    boolean hasRate() {
+        return size > 1;
+    }
+
+    SpeedMeasurementManager.CurrentSpeed currentSpeed() {
+        if (!hasRate()) {
+            return SpeedMeasurementManager.CurrentSpeed.ZERO;
+        }
+        return new SpeedMeasurementManager.CurrentSpeed(
+                new SpeedMeasurementManager.Rates(
+                        rate(reads, ONE_SECOND),
+                        rate(reads, TEN_SECONDS),
+                        rate(reads, SIXTY_SECONDS),
+                        (long) readEwmaTenSeconds,
+                        (long) readEwmaSixtySeconds
+                ),
+                new SpeedMeasurementManager.Rates(
+                        rate(writes, ONE_SECOND),
+                        rate(writes, TEN_SECONDS),
+                        rate(writes, SIXTY_SECONDS),
+                        (long) writeEwmaTenSeconds,
+                        (long) writeEwmaSixtySeconds
+                )
+        );
+    }
+
+    private void append(long nanos, long read, long write) {
+        head = (head + 1) % timestamps.length;
+        timestamps[head] = nanos;
+        reads[head] = read;
+        writes[head] = write;
+        size = Math.min(size + 1, timestamps.length);
+    }
+
+    private void clear() {
+        head = -1;
+        size = 0;
+        ewmaInitialized = false;
+    }
+
+    private int index(int age) {
+        return (head - age + timestamps.length) % timestamps.length;
+    }
+
+    /**
+     * Rate over the oldest sample that is still within the horizon.
+     * When samples are further apart than the horizon the previous sample is used instead.
+     */
+    private long rate(long[] values, long horizonNanos) {
+        long now = timestamps[head];
+        int oldest = 1;
+        for (int age = 2; age < size; age++) {
+            if (now - timestamps[index(age)] > horizonNanos) {
+                break;
+            }
+            oldest = age;
+        }
+        int start = index(oldest);
+        return perSecond(values[head] - values[start], now - timestamps[start]);
+    }
+
+    private void updateEwma() {
+        int previous = index(1);
+        long elapsed = timestamps[head] - timestamps[previous];
+        if (elapsed <= 0) {
+            return;
+        }
+        double readRate = perSecondExact(reads[head] - reads[previous], elapsed);
+        double writeRate = perSecondExact(writes[head] - writes[previous], elapsed);
+        if (!ewmaInitialized) {
+            readEwmaTenSeconds = readEwmaSixtySeconds = readRate;
+            writeEwmaTenSeconds = writeEwmaSixtySeconds = writeRate;
+            ewmaInitialized = true;
+            return;
+        }
+        double alphaTen = alpha(elapsed, TEN_SECONDS);
+        double alphaSixty = alpha(elapsed, SIXTY_SECONDS);
+        readEwmaTenSeconds += alphaTen * (readRate - readEwmaTenSeconds);
+        writeEwmaTenSeconds += alphaTen * (writeRate - writeEwmaTenSeconds);
+        readEwmaSixtySeconds += alphaSixty * (readRate - readEwmaSixtySeconds);
+        writeEwmaSixtySeconds += alphaSixty * (writeRate - writeEwmaSixtySeconds);
+    }
+
+    private static double alpha(long elapsedNanos, long timeConstantNanos) {
+        return 1.0 - Math.exp(-(double) elapsedNanos / timeConstantNanos);
+    }
+
+    private static long perSecond(long delta, long elapsedNanos) {
+        return (long) perSecondExact(delta, elapsedNanos);
+    }
+
+    private static double perSecondExact(long delta, long elapsedNanos) {
+        if (delta <= 0 || elapsedNanos <= 0) {
+            return 0d;
+        }
+        return delta * NANOS_PER_SECOND / elapsedNanos;
+    }
+}
@@ -1,30 +1,44 @@
 package com.krillsson.sysapi.core.speed;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.krillsson.sysapi.util.Ticker;
 import io.dropwizard.lifecycle.Managed;
 import org.slf4j.Logger;
 
-import java.time.Clock;
 import java.time.Duration;
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-
-public class SpeedMeasurementManager implements Managed {
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples the read/write counters of every registered {@link SpeedSource} on every tick its source was refreshed in and
+ * derives rates from them.
+ * <p>
+ * Sampling runs in the post-tick phase of the {@link Ticker}, after {@link BatchSource}s have refreshed the devices the
+ * speed sources read from.
+ * <p>
+ * Samples are taken with a monotonic clock (nanoTime) and kept per source in a {@link RateSeries} ring buffer covering
+ * the last 60 seconds. After each sample an immutable {@link CurrentSpeed} is published, so readers on other threads
+ * never block and never see a half updated value.
+ */
+public class SpeedMeasurementManager implements Managed, Ticker.TickListener {
 
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(SpeedMeasurementManager.class);
-    private final long measurementInterval;
-    private final ScheduledExecutorService executorService;
-    private final Clock clock;
-    private final HashMap<String, SpeedMeasurement> speedMeasurementStore = new HashMap<>();
-    private final HashMap<String, CurrentSpeed> currentSpeedStore = new HashMap<>();
-    private final List<SpeedSource> speedSources = new ArrayList<>();
-
-    public SpeedMeasurementManager(ScheduledExecutorService executorService, Clock clock, int measurementInterval) {
-        this.executorService = executorService;
-        this.clock = clock;
-        this.measurementInterval = Duration.ofSeconds(measurementInterval).getSeconds();
+    private final Ticker ticker;
+    private final LongSupplier nanoTime;
+    private final int seriesCapacity;
+    private final Map<String, RateSeries> seriesStore = new ConcurrentHashMap<>();
+    private final Map<String, CurrentSpeed> currentSpeedStore = new ConcurrentHashMap<>();
+    private final List<SpeedSource> speedSources = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param samplingInterval the shortest interval any source is sampled at
+     */
+    public SpeedMeasurementManager(Ticker ticker, LongSupplier nanoTime, Duration samplingInterval) {
+        this.ticker = ticker;
+        this.nanoTime = nanoTime;
+        this.seriesCapacity = RateSeries.capacityFor(samplingInterval.toNanos());
     }
 
     public void register(Collection<SpeedSource> sources) {
@@ -39,96 +53,147 @@ public class SpeedMeasurementManager implements Managed {
 
     public void unregister(SpeedSource speedSource) {
         speedSources.remove(speedSource);
+        seriesStore.remove(speedSource.getName());
+        currentSpeedStore.remove(speedSource.getName());
     }
 
     public Optional<CurrentSpeed> getCurrentSpeedForName(String name) {
         return Optional.ofNullable(currentSpeedStore.get(name));
     }
 
-    private void execute() {
+    @Override
+    public void onTick() {
         for (SpeedSource speedSource : speedSources) {
-            SpeedMeasurement start = speedMeasurementStore.get(speedSource.getName());
-            SpeedMeasurement end = new SpeedMeasurement(
-                    speedSource.getCurrentRead(),
-                    speedSource.getCurrentWrite(),
-                    LocalDateTime.now(clock)
-            );
-            if (start != null) {
-                final long readPerSecond = measureSpeed(
-                        start.getSampledAt(),
-                        end.getSampledAt(),
-                        start.getRead(),
-                        end.getRead()
-                );
-                final long writePerSecond = measureSpeed(
-                        start.getSampledAt(),
-                        end.getSampledAt(),
-                        start.getWrite(),
-                        end.getWrite()
-                );
-
+            String name = speedSource.getName();
+            RateSeries series = seriesStore.computeIfAbsent(name, key -> {
+                LOGGER.debug("Initializing measurement for {}", key);
+                return new RateSeries(seriesCapacity);
+            });
+            if (!series.nextRevision(speedSource.getRevision())) {
+                continue;
+            }
+            long read = speedSource.getCurrentRead();
+            long write = speedSource.getCurrentWrite();
+            long now = nanoTime.getAsLong();
+            if (!series.add(now, read, write)) {
+                LOGGER.debug("Counters for {} went backwards, restarting measurement", name);
+            }
+            if (series.hasRate() || currentSpeedStore.containsKey(name)) {
+                CurrentSpeed currentSpeed = series.currentSpeed();
                 LOGGER.trace(
                         "Current speed for {}: read: {}/s write: {}/s",
-                        speedSource.getName(),
-                        readPerSecond,
-                        writePerSecond
+                        name,
+                        currentSpeed.getReadPerSeconds(),
+                        currentSpeed.getWritePerSeconds()
                 );
-
-                currentSpeedStore.put(speedSource.getName(), new CurrentSpeed(readPerSecond, writePerSecond));
-                speedMeasurementStore.put(speedSource.getName(), end);
-            } else {
-                LOGGER.debug("Initializing measurement for {}", speedSource.getName());
-                speedMeasurementStore.put(speedSource.getName(), end);
+                currentSpeedStore.put(name, currentSpeed);
             }
-
         }
     }
 
-    private long measureSpeed(LocalDateTime start, LocalDateTime end, long valueStart, long valueEnd) {
-        double duration = Duration.between(start, end).getSeconds();
-        double deltaValue = (valueEnd - valueStart);
-        if (deltaValue <= 0 || duration <= 0) {
-            return 0L;
-        }
-        double valuePerSecond = deltaValue / duration;
-        return (long) valuePerSecond;
-    }
-
     @Override
     public void start() throws Exception {
-        executorService.scheduleAtFixedRate(this::execute, 1, measurementInterval, TimeUnit.SECONDS);
+        ticker.registerPostTick(this);
     }
 
     @Override
     public void stop() throws Exception {
+        ticker.unregister(this);
         speedSources.clear();
-        executorService.shutdownNow();
     }
 
     public interface SpeedSource {
+        long UNVERSIONED = 0;
+
         String getName();
 
         long getCurrentRead();
 
         long getCurrentWrite();
+
+        /**
+         * Changes whenever the counters were read anew, a source read less often than every tick is only sampled
+         * when it did. {@link #UNVERSIONED} sources are sampled on every tick.
+         */
+        default long getRevision() {
+            return UNVERSIONED;
+        }
+    }
+
+    /**
+     * Rates in units per second over different horizons.
+     * Horizons shorter than the sampling interval fall back to the rate between the two latest samples.
+     */
+    public static class Rates {
+        private final long oneSecond;
+        private final long tenSeconds;
+        private final long sixtySeconds;
+        private final long ewmaTenSeconds;
+        private final long ewmaSixtySeconds;
+
+        public Rates(long oneSecond, long tenSeconds, long sixtySeconds, long ewmaTenSeconds, long ewmaSixtySeconds) {
+            this.oneSecond = oneSecond;
+            this.tenSeconds = tenSeconds;
+            this.sixtySeconds = sixtySeconds;
+            this.ewmaTenSeconds = ewmaTenSeconds;
+            this.ewmaSixtySeconds = ewmaSixtySeconds;
+        }
+
+        static Rates constant(long perSecond) {
+            return new Rates(perSecond, perSecond, perSecond, perSecond, perSecond);
+        }
+
+        public long getOneSecond() {
+            return oneSecond;
+        }
+
+        public long getTenSeconds() {
+            return tenSeconds;
+        }
+
+        public long getSixtySeconds() {
+            return sixtySeconds;
+        }
+
+        public long getEwmaTenSeconds() {
+            return ewmaTenSeconds;
+        }
+
+        public long getEwmaSixtySeconds() {
+            return ewmaSixtySeconds;
+        }
     }
 
     public static class CurrentSpeed {
-        private final long readPerSeconds;
-        private final long writePerSeconds;
+        static final CurrentSpeed ZERO = new CurrentSpeed(0, 0);
+
+        private final Rates read;
+        private final Rates write;
 
         @VisibleForTesting
         public CurrentSpeed(long readPerSeconds, long writePerSeconds) {
-            this.readPerSeconds = readPerSeconds;
-            this.writePerSeconds = writePerSeconds;
+            this(Rates.constant(readPerSeconds), Rates.constant(writePerSeconds));
+        }
+
+        public CurrentSpeed(Rates read, Rates write) {
+            this.read = read;
+            this.write = write;
         }
 
         public long getReadPerSeconds() {
-            return readPerSeconds;
+            return read.getOneSecond();
         }
 
         public long getWritePerSeconds() {
-            return writePerSeconds;
+            return write.getOneSecond();
+        }
+
+        public Rates getRead() {
+            return read;
+        }
+
+        public Rates getWrite() {
+            return write;
         }
     }
 }
@@ -3,6 +3,7 @@ package com.krillsson.sysapi.graphql
 import com.krillsson.sysapi.core.domain.system.OperatingSystem
 import com.krillsson.sysapi.core.domain.system.Platform
 import com.krillsson.sysapi.core.history.HistoryRepository
+import com.krillsson.sysapi.core.history.rollup.HistoryRollups
 import com.krillsson.sysapi.core.metrics.Metrics
 import com.krillsson.sysapi.core.monitoring.MonitorManager
 import com.krillsson.sysapi.core.monitoring.event.EventManager
@@ -69,6 +70,7 @@ class GraphQLConfiguration {
         monitorManager: MonitorManager,
         eventManager: EventManager,
         historyManager: HistoryRepository,
+        historyRollups: HistoryRollups,
         dockerClient: DockerClient,
         operatingSystem: OperatingSystem,
         platform: Platform,
@@ -79,6 +81,7 @@ class GraphQLConfiguration {
             monitorManager,
             eventManager,
             historyManager,
+            historyRollups,
             dockerClient,
             operatingSystem,
             platform,
@@ -26,6 +26,7 @@ import com.krillsson.sysapi.core.domain.system.Platform
 import com.krillsson.sysapi.core.domain.system.SystemLoad
 import com.krillsson.sysapi.core.history.HistoryRepository
 import com.krillsson.sysapi.core.history.db.BasicHistorySystemLoadEntity
+import com.krillsson.sysapi.core.history.rollup.HistoryRollups
 import com.krillsson.sysapi.core.metrics.Metrics
 import com.krillsson.sysapi.core.monitoring.Monitor
 import com.krillsson.sysapi.core.monitoring.MonitorManager
@@ -36,6 +37,7 @@ import com.krillsson.sysapi.util.EnvironmentUtils
 import graphql.kickstart.tools.GraphQLQueryResolver
 import graphql.kickstart.tools.GraphQLResolver
 import oshi.hardware.UsbDevice
+import java.time.Duration
 import java.time.OffsetDateTime
 
 class QueryResolver : GraphQLQueryResolver {
@@ -44,6 +46,7 @@ class QueryResolver : GraphQLQueryResolver {
     lateinit var monitorManager: MonitorManager
     lateinit var eventManager: EventManager
     lateinit var historyRepository: HistoryRepository
+    lateinit var historyRollups: HistoryRollups
     lateinit var operatingSystem: OperatingSystem
     lateinit var platform: Platform
     lateinit var dockerClient: DockerClient
@@ -54,6 +57,7 @@ class QueryResolver : GraphQLQueryResolver {
         monitorManager: MonitorManager,
         eventManager: EventManager,
         historyManager: HistoryRepository,
+        historyRollups: HistoryRollups,
         dockerClient: DockerClient,
         operatingSystem: OperatingSystem,
         platform: Platform,
@@ -63,6 +67,7 @@ class QueryResolver : GraphQLQueryResolver {
         this.monitorManager = monitorManager
         this.eventManager = eventManager
         this.historyRepository = historyManager
+        this.historyRollups = historyRollups
         this.operatingSystem = operatingSystem
         this.platform = platform
         this.dockerClient = dockerClient
@@ -98,6 +103,25 @@ class QueryResolver : GraphQLQueryResolver {
         return historyRepository.getHistoryLimitedToDates(from, to)
     }
 
+    fun historySeriesBetweenDates(
+        from: OffsetDateTime,
+        to: OffsetDateTime,
+        resolutionSeconds: Int,
+        series: List<String>?
+    ): HistorySeries {
+        require(resolutionSeconds >= 0) { "resolutionSeconds must not be negative, was $resolutionSeconds" }
+        val tier = historyRollups.tierFor(from, Duration.ofSeconds(resolutionSeconds.toLong()))
+        val values = historyRollups.query(tier, from, to, series)
+            .groupBy { it.series }
+            .map { (name, rollups) ->
+                HistorySeriesValues(
+                    name,
+                    rollups.map { HistoryRollupPoint(it.date, it.samples, it.min, it.max, it.mean, it.last) }
+                )
+            }
+        return HistorySeries(tier, tier.resolution.seconds.toInt(), values)
+    }
+
     fun monitors(): List<com.krillsson.sysapi.graphql.domain.Monitor> {
         return monitorManager.getAll().map { it.asMonitor() }
     }
@@ -426,14 +450,22 @@ class QueryResolver : GraphQLQueryResolver {
             networkInterfaceLoad.speed.let {
                 NetworkInterfaceReadWriteRate(
                     it.receiveBytesPerSecond,
-                    it.sendBytesPerSecond
+                    it.sendBytesPerSecond,
+                    it.packetsReceivedPerSecond,
+                    it.packetsSentPerSecond,
+                    it.inErrorsPerSecond,
+                    it.outErrorsPerSecond
                 )
             }
     }
 
     data class NetworkInterfaceReadWriteRate(
         val receiveBytesPerSecond: Long,
-        val sendBytesPerSecond: Long
+        val sendBytesPerSecond: Long,
+        val packetsReceivedPerSecond: Long,
+        val packetsSentPerSecond: Long,
+        val inErrorsPerSecond: Long,
+        val outErrorsPerSecond: Long
     )
 
     inner class MemoryLoadResolver : GraphQLResolver<MemoryLoad> {
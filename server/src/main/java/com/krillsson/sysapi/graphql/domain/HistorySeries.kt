@@ -0,0 +1,24 @@
+package com.krillsson.sysapi.graphql.domain
+
+import com.krillsson.sysapi.core.domain.history.HistoryTier
+import java.time.OffsetDateTime
+
+data class HistorySeries(
+    val tier: HistoryTier,
+    val resolutionSeconds: Int,
+    val series: List<HistorySeriesValues>
+)
+
+data class HistorySeriesValues(
+    val name: String,
+    val points: List<HistoryRollupPoint>
+)
+
+data class HistoryRollupPoint(
+    val dateTime: OffsetDateTime,
+    val samples: Int,
+    val min: Double,
+    val max: Double,
+    val mean: Double,
+    val last: Double
+)
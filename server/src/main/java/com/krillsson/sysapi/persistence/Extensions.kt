@@ -21,7 +21,8 @@ fun createHibernateBundle() = object : HibernateBundle<SysAPIConfiguration>(
     HealthData::class.java,
     CpuHealth::class.java,
     CoreLoad::class.java,
-    DriveHealthData::class.java
+    DriveHealthData::class.java,
+    HistoryRollupEntity::class.java
 ) {
 
     override fun createHibernate5Module(): Hibernate5Module {
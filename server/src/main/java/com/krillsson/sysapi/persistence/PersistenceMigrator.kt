@@ -12,7 +12,7 @@ import io.dropwizard.flyway.FlywayBundle
 import io.dropwizard.hibernate.UnitOfWork
 import org.flywaydb.core.Flyway
 import org.flywaydb.core.api.FlywayException
-import java.util.*
+import java.sql.SQLException
 
 open class PersistenceMigrator(
     private val config: SysAPIConfiguration,
@@ -25,6 +25,8 @@ open class PersistenceMigrator(
     val logger by logger()
 
     fun migrate() {
+        // before the first tables of a new database are created, it then needs no VACUUM
+        enableIncrementalVacuum()
         getFlyway()?.let { migrateSql(it) }
         migrateJsonToSql()
     }
@@ -49,6 +51,53 @@ open class PersistenceMigrator(
         }
     }
 
+    /**
+     * Lets the history purge return freed pages with incremental_vacuum, see
+     * [com.krillsson.sysapi.core.history.HistoryPurger]. A new database is switched before any table is created.
+     * Switching an existing database only takes effect after a full VACUUM, which rewrites the whole file, so it is only
+     * run when [com.krillsson.sysapi.config.HistoryPurgingConfiguration.enableIncrementalVacuum] is set.
+     */
+    private fun enableIncrementalVacuum() {
+        val dataSource = config.database.build(metrics, "AutoVacuum")
+        try {
+            dataSource.connection.use { connection ->
+                connection.createStatement().use { statement ->
+                    fun query(sql: String, default: Long) = statement.executeQuery(sql).use { result ->
+                        if (result.next()) result.getLong(1) else default
+                    }
+                    if (query("PRAGMA auto_vacuum", AUTO_VACUUM_INCREMENTAL) == AUTO_VACUUM_INCREMENTAL) {
+                        return
+                    }
+                    connection.autoCommit = true
+                    if (query("SELECT count(*) FROM sqlite_master", 0) == 0L) {
+                        statement.execute("PRAGMA auto_vacuum = INCREMENTAL")
+                        return
+                    }
+                    val megabytes = query("PRAGMA page_count", 0) * query("PRAGMA page_size", 0) / BYTES_PER_MEGABYTE
+                    if (!config.metricsConfig.history.purging.enableIncrementalVacuum) {
+                        logger.info(
+                            "Database migration - purged history is not returned to the file system, set " +
+                                    "history.purging.enableIncrementalVacuum to rewrite the $megabytes MB database " +
+                                    "once at startup, which needs as much free disk space again"
+                        )
+                        return
+                    }
+                    logger.warn(
+                        "Database migration - enabling incremental auto_vacuum, rewriting the $megabytes MB " +
+                                "database needs as much free disk space again and may take minutes"
+                    )
+                    statement.execute("PRAGMA auto_vacuum = INCREMENTAL")
+                    statement.execute("VACUUM")
+                    logger.info("Database migration - incremental auto_vacuum enabled")
+                }
+            }
+        } catch (e: SQLException) {
+            logger.error("Unable to enable incremental auto_vacuum", e)
+        } finally {
+            dataSource.stop()
+        }
+    }
+
     private fun getFlyway(): Flyway? {
         return try {
             flywayBundle.getFlywayFactory(config)
@@ -63,6 +112,11 @@ open class PersistenceMigrator(
     }
 
     private fun StoredSystemHistoryEntry.asEntity(): HistorySystemLoadEntity {
-        return value.asEntity(UUID.randomUUID(), date)
+        return value.asEntity(date)
+    }
+
+    companion object {
+        private const val AUTO_VACUUM_INCREMENTAL = 2L
+        private const val BYTES_PER_MEGABYTE = 1024 * 1024
     }
 }
\ No newline at end of file
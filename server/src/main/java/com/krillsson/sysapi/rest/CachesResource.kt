@@ -0,0 +1,53 @@
+/*
+ * Sys-Api (https://github.com/Krillsson/sys-api)
+ *
+ * Copyright 2017 Christian Jensen / Krillsson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Maintainers:
+ * contact[at]christian-jensen[dot]se
+ */
+package com.krillsson.sysapi.rest
+
+import com.codahale.metrics.MetricRegistry
+import com.krillsson.sysapi.auth.BasicAuthorizer
+import com.krillsson.sysapi.core.domain.cache.CacheStatistics
+import com.krillsson.sysapi.core.metrics.cache.CacheMetrics
+import javax.annotation.security.RolesAllowed
+import javax.ws.rs.*
+import javax.ws.rs.core.MediaType
+import javax.ws.rs.core.Response
+
+@Path("caches")
+@Produces(MediaType.APPLICATION_JSON)
+@RolesAllowed(BasicAuthorizer.AUTHENTICATED_ROLE)
+class CachesResource(private val registry: MetricRegistry) {
+
+    @GET
+    fun getRoot(): List<CacheStatistics> {
+        return CacheMetrics.statistics(registry)
+    }
+
+    @GET
+    @Path("{name}")
+    fun getCacheByName(@PathParam("name") name: String): CacheStatistics {
+        return CacheMetrics.statistics(registry).firstOrNull { it.name == name }
+            ?: throw WebApplicationException(
+                String.format(
+                    "No cache with name %s was found.",
+                    name
+                ), Response.Status.NOT_FOUND
+            )
+    }
+}
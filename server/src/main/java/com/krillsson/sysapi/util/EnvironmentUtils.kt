@@ -38,6 +38,7 @@ fun JerseyEnvironment.registerJerseyResources(
     historyManager: LegacyHistoryManager,
     monitorManager: MonitorManager,
     eventManager: EventManager,
+    metricRegistry: MetricRegistry,
     endpoints: Array<String>
 ) {
     register(
@@ -57,6 +58,7 @@ fun JerseyEnvironment.registerJerseyResources(
     register(MotherboardResource(provider.motherboardMetrics()))
     register(EventResource(eventManager))
     register(MonitorResource(monitorManager, eventManager))
+    register(CachesResource(metricRegistry))
     register(
         MetaInfoResource(
             BuildConfig.APP_VERSION,
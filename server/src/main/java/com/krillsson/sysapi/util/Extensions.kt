@@ -2,6 +2,7 @@ package com.krillsson.sysapi.util
 
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.databind.SerializationFeature
+import com.krillsson.sysapi.core.domain.processes.Process
 import com.krillsson.sysapi.core.domain.processes.ProcessSort
 import com.krillsson.sysapi.core.domain.system.OperatingSystem
 import com.krillsson.sysapi.core.domain.system.Platform
@@ -11,6 +12,7 @@ import oshi.PlatformEnum
 import oshi.software.os.OSProcess
 import java.time.OffsetDateTime
 import java.time.format.DateTimeFormatter
+import java.util.*
 
 fun oshi.software.os.OperatingSystem.asOperatingSystem(): OperatingSystem {
     return OperatingSystem(
@@ -40,6 +42,40 @@ fun ProcessSort.asOshiProcessSort(): Comparator<OSProcess> {
     }
 }
 
+fun ProcessSort.asProcessComparator(): Comparator<Process> {
+    return when (this) {
+        ProcessSort.CPU -> compareByDescending<Process> { it.cpuPercent }
+        ProcessSort.MEMORY -> compareByDescending<Process> { it.residentSetSize }
+        ProcessSort.OLDEST -> compareByDescending<Process> { it.upTime }
+        ProcessSort.NEWEST -> compareBy<Process> { it.upTime }
+        ProcessSort.PID -> compareBy<Process> { it.processID }
+        ProcessSort.PARENTPID -> compareBy<Process> { it.parentProcessID }
+        ProcessSort.NAME -> compareBy<Process, String>(String.CASE_INSENSITIVE_ORDER) { it.name }
+    }
+}
+
+/**
+ * The first [limit] elements as if sorted with [comparator], or all of them sorted when [limit] is not positive.
+ * Keeps a bounded heap of [limit] elements, so the top 10 out of thousands costs O(n log k) instead of a full sort.
+ */
+fun <T> List<T>.sortedTop(limit: Int, comparator: Comparator<T>): List<T> {
+    if (limit <= 0 || limit >= size) {
+        return sortedWith(comparator)
+    }
+    val heap = PriorityQueue(limit, comparator.reversed())
+    for (element in this) {
+        if (heap.size < limit) {
+            heap.add(element)
+        } else if (comparator.compare(element, heap.peek()) < 0) {
+            heap.poll()
+            heap.add(element)
+        }
+    }
+    val result = ArrayList(heap)
+    result.sortWith(comparator)
+    return result
+}
+
 fun OffsetDateTime.asString() = format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)
 
 fun <R : Any> R.logger(): Lazy<Logger> {
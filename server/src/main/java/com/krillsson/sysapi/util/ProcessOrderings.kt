@@ -0,0 +1,48 @@
+package com.krillsson.sysapi.util
+
+import com.krillsson.sysapi.core.domain.processes.Process
+import com.krillsson.sysapi.core.domain.processes.ProcessSort
+import java.util.*
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Orderings of one fixed list of processes for every [ProcessSort], shared by all requests against that list.
+ *
+ * The longest prefix computed so far is kept per sort. A request is a slice of it, and only a request for more
+ * processes than any before it does new work, using [sortedTop]. Any mix of sorts and limits costs at most a
+ * handful of selections per list instead of one per request.
+ */
+class ProcessOrderings(private val processes: List<Process>, presorted: ProcessSort? = null) {
+
+    private class Prefix(val processes: List<Process>, val complete: Boolean)
+
+    private val prefixes = AtomicReferenceArray<Prefix>(ProcessSort.values().size)
+
+    init {
+        if (presorted != null) {
+            prefixes.set(presorted.ordinal, Prefix(processes, true))
+        }
+    }
+
+    /**
+     * The first [limit] processes according to [sort], or all of them when [limit] is not positive.
+     */
+    fun top(sort: ProcessSort, limit: Int): List<Process> {
+        val cached = prefixes.get(sort.ordinal)
+        if (cached != null && (cached.complete || limit in 1..cached.processes.size)) {
+            return cached.processes.limitTo(limit)
+        }
+        val selected = Collections.unmodifiableList(processes.sortedTop(limit, sort.asProcessComparator()))
+        val prefix = Prefix(selected, limit <= 0 || limit >= processes.size)
+        prefixes.updateAndGet(sort.ordinal) { current ->
+            if (current == null || (!current.complete && (prefix.complete || prefix.processes.size > current.processes.size))) {
+                prefix
+            } else {
+                current
+            }
+        }
+        return selected
+    }
+
+    private fun List<Process>.limitTo(limit: Int) = if (limit <= 0 || limit >= size) this else subList(0, limit)
+}
@@ -1,5 +1,7 @@
 package com.krillsson.sysapi.util;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import io.dropwizard.lifecycle.Managed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -7,46 +9,162 @@ import org.slf4j.LoggerFactory;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Drives all {@link TickListener}s on a fixed interval.
+ * <p>
+ * Listeners registered with {@link #register(TickListener)} run concurrently on the listener executor and are given
+ * a deadline per tick. Listeners registered with a period through {@link #register(TickListener, Duration)} only run
+ * on the ticks where their period has passed, and a period shorter than the interval shortens the interval. A
+ * listener that is still running from a previous tick is skipped instead of queued, and an exception in one listener
+ * never affects the others or the schedule.
+ * Listeners registered with {@link #registerPostTick(TickListener)} run in registration order on the tick thread
+ * once all regular listeners have finished or passed their deadline, so they can rely on values updated in the tick.
+ * Listeners that are {@link AutoCloseable} are closed when the ticker stops.
+ */
 public class Ticker implements Managed {
 
     public interface TickListener {
         void onTick();
     }
 
+    public static final String PREFIX = "ticker";
+    private static final Logger LOGGER = LoggerFactory.getLogger(Ticker.class);
+
     private final ScheduledExecutorService executorService;
-    private final long measurementInterval;
-    private final List<TickListener> listeners = new ArrayList<>();
+    private final ExecutorService listenerExecutor;
+    private final long intervalNanos;
+    private final long listenerDeadlineNanos;
+    private final LongSupplier nanoTime;
+    private volatile long tickNanos;
+    private volatile long tickDeadlineNanos;
+    private volatile boolean ticking;
+    private final List<ListenerState> listeners = new CopyOnWriteArrayList<>();
+    private final List<ListenerState> postTickListeners = new CopyOnWriteArrayList<>();
 
-    private final Logger LOGGER = LoggerFactory.getLogger(Ticker.class);
+    public Ticker(ScheduledExecutorService executorService, ExecutorService listenerExecutor, Duration interval) {
+        this(executorService, listenerExecutor, interval, interval);
+    }
 
-    public Ticker(ScheduledExecutorService executorService, int measurementInterval) {
+    public Ticker(ScheduledExecutorService executorService, ExecutorService listenerExecutor, Duration interval, Duration listenerDeadline) {
+        this(executorService, listenerExecutor, interval, listenerDeadline, System::nanoTime);
+    }
+
+    public Ticker(ScheduledExecutorService executorService, ExecutorService listenerExecutor, Duration interval, Duration listenerDeadline, LongSupplier nanoTime) {
         this.executorService = executorService;
-        this.measurementInterval = Duration.ofSeconds(measurementInterval).getSeconds();
+        this.listenerExecutor = listenerExecutor;
+        this.intervalNanos = interval.toNanos();
+        this.listenerDeadlineNanos = listenerDeadline.toNanos();
+        this.nanoTime = nanoTime;
+        this.tickNanos = intervalNanos;
+        this.tickDeadlineNanos = listenerDeadlineNanos;
     }
 
     public void register(TickListener listener) {
-        listeners.add(listener);
+        register(listener, null);
+    }
+
+    /**
+     * @param period how often the listener should run, rounded to whole ticks. {@code null} runs it on every tick.
+     */
+    public void register(TickListener listener, Duration period) {
+        long periodNanos = period == null ? 0 : period.toNanos();
+        if (ticking && periodNanos > 0 && periodNanos < tickNanos) {
+            LOGGER.warn("{} was registered with a period shorter than the running tick, it will run on every tick", listener.getClass().getSimpleName());
+        }
+        listeners.add(new ListenerState(listener, periodNanos));
+    }
+
+    public void registerPostTick(TickListener listener) {
+        postTickListeners.add(new ListenerState(listener, 0));
     }
 
     public void unregister(TickListener tickListener) {
-        listeners.remove(tickListener);
+        listeners.removeIf(state -> state.listener == tickListener);
+        postTickListeners.removeIf(state -> state.listener == tickListener);
+    }
+
+    /**
+     * Reports {@link #statistics()} as {@code ticker.listeners}, and the skipped, overran and failed ticks of all
+     * listeners together as {@code ticker.skipped}, {@code ticker.overran} and {@code ticker.failed}.
+     */
+    public void registerMetrics(MetricRegistry registry) {
+        registry.register(MetricRegistry.name(PREFIX, "listeners"), (Gauge<List<TickStatistics>>) this::statistics);
+        registry.register(MetricRegistry.name(PREFIX, "skipped"), (Gauge<Long>) () -> total(TickStatistics::getSkipped));
+        registry.register(MetricRegistry.name(PREFIX, "overran"), (Gauge<Long>) () -> total(TickStatistics::getOverran));
+        registry.register(MetricRegistry.name(PREFIX, "failed"), (Gauge<Long>) () -> total(TickStatistics::getFailed));
+    }
+
+    private long total(ToLongFunction<TickStatistics> statistic) {
+        return statistics().stream().mapToLong(statistic).sum();
+    }
+
+    public List<TickStatistics> statistics() {
+        return Stream.concat(listeners.stream(), postTickListeners.stream())
+                .map(ListenerState::statistics)
+                .collect(Collectors.toList());
     }
 
     @Override
     public void start() throws Exception {
-        executorService.scheduleAtFixedRate(this::execute, 1, measurementInterval, TimeUnit.SECONDS);
+        long tick = intervalNanos;
+        for (ListenerState state : listeners) {
+            if (state.periodNanos > 0 && state.periodNanos < tick) {
+                tick = state.periodNanos;
+            }
+        }
+        if (tick < intervalNanos) {
+            LOGGER.info("Ticking every {}ms to honour the shortest sampling period", TimeUnit.NANOSECONDS.toMillis(tick));
+        }
+        tickNanos = tick;
+        tickDeadlineNanos = Math.min(listenerDeadlineNanos, tick);
+        ticking = true;
+        executorService.scheduleAtFixedRate(this::execute, TimeUnit.SECONDS.toNanos(1), tick, TimeUnit.NANOSECONDS);
     }
 
     private void execute() {
-        for (TickListener listener : listeners) {
-            try {
-                listener.onTick();
-            } catch (Exception e) {
-                LOGGER.error("Error while executing ticker", e);
-                throw new RuntimeException(e);
+        // anything escaping the scheduled task cancels it and every metric would freeze
+        try {
+            tick();
+        } catch (Throwable t) {
+            LOGGER.error("Unexpected error during tick", t);
+        }
+    }
+
+    private void tick() {
+        long now = nanoTime.getAsLong();
+        long deadline = now + tickDeadlineNanos;
+        // ticks drift by the time the previous tick took, allow half a tick so a period is not stretched by a whole one
+        long tolerance = tickNanos / 2;
+        List<ListenerState> started = new ArrayList<>(listeners.size());
+        for (ListenerState state : listeners) {
+            if (state.isDue(now, tolerance) && state.submit(listenerExecutor)) {
+                state.scheduleNext(now);
+                started.add(state);
+            }
+        }
+        for (ListenerState state : started) {
+            if (!state.await(Math.max(0, deadline - nanoTime.getAsLong()))) {
+                // Thread was interrupted, we are shutting down
+                return;
+            }
+        }
+        for (ListenerState state : postTickListeners) {
+            if (state.tryStart()) {
+                state.run();
             }
         }
     }
@@ -54,5 +172,174 @@ public class Ticker implements Managed {
     @Override
     public void stop() throws Exception {
         executorService.shutdownNow();
+        listenerExecutor.shutdownNow();
+        Stream.concat(listeners.stream(), postTickListeners.stream())
+                .map(state -> state.listener)
+                .filter(listener -> listener instanceof AutoCloseable)
+                .forEach(listener -> {
+                    try {
+                        ((AutoCloseable) listener).close();
+                    } catch (Exception e) {
+                        LOGGER.warn("Error while closing {}", listener.getClass().getSimpleName(), e);
+                    }
+                });
+    }
+
+    public static class TickStatistics {
+        private final String name;
+        private final long lastDurationMillis;
+        private final long maxDurationMillis;
+        private final long ticks;
+        private final long skipped;
+        private final long overran;
+        private final long failed;
+
+        TickStatistics(String name, long lastDurationMillis, long maxDurationMillis, long ticks, long skipped, long overran, long failed) {
+            this.name = name;
+            this.lastDurationMillis = lastDurationMillis;
+            this.maxDurationMillis = maxDurationMillis;
+            this.ticks = ticks;
+            this.skipped = skipped;
+            this.overran = overran;
+            this.failed = failed;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getLastDurationMillis() {
+            return lastDurationMillis;
+        }
+
+        public long getMaxDurationMillis() {
+            return maxDurationMillis;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getOverran() {
+            return overran;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+    }
+
+    private static class ListenerState {
+        private final TickListener listener;
+        private final long periodNanos;
+        private final String name;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final LongAdder ticks = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder overran = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private volatile long lastDurationNanos;
+        private volatile long maxDurationNanos;
+        private Future<?> future;
+        private boolean scheduled;
+        private long dueAt;
+
+        ListenerState(TickListener listener, long periodNanos) {
+            this.listener = listener;
+            this.periodNanos = periodNanos;
+            String simpleName = listener.getClass().getSimpleName();
+            this.name = simpleName.isEmpty() ? listener.getClass().getName() : simpleName;
+        }
+
+        /**
+         * Only called from the tick thread.
+         */
+        boolean isDue(long now, long tolerance) {
+            return periodNanos <= 0 || !scheduled || now - dueAt >= -tolerance;
+        }
+
+        /**
+         * Only called from the tick thread, once the listener was actually started, so a listener skipped because its
+         * previous run is still in flight stays due on the next tick.
+         */
+        void scheduleNext(long now) {
+            scheduled = true;
+            dueAt = now + periodNanos;
+        }
+
+        boolean tryStart() {
+            if (running.compareAndSet(false, true)) {
+                return true;
+            }
+            skipped.increment();
+            LOGGER.warn("Skipping tick for {}: previous tick is still running", name);
+            return false;
+        }
+
+        boolean submit(ExecutorService executor) {
+            if (!tryStart()) {
+                return false;
+            }
+            try {
+                future = executor.submit(this::run);
+                return true;
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+                return false;
+            }
+        }
+
+        /**
+         * @return false if the calling thread was interrupted while waiting
+         */
+        boolean await(long timeoutNanos) {
+            try {
+                future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                overran.increment();
+                LOGGER.warn("{} did not finish before the tick deadline, it will be skipped until it does", name);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                LOGGER.error("Unexpected error while waiting for {}", name, e);
+            }
+            return true;
+        }
+
+        void run() {
+            long start = System.nanoTime();
+            try {
+                listener.onTick();
+            } catch (Throwable t) {
+                failed.increment();
+                LOGGER.error("Error while executing ticker for {}", name, t);
+            } finally {
+                long duration = System.nanoTime() - start;
+                lastDurationNanos = duration;
+                if (duration > maxDurationNanos) {
+                    maxDurationNanos = duration;
+                }
+                ticks.increment();
+                running.set(false);
+                LOGGER.trace("{} took {}ms", name, TimeUnit.NANOSECONDS.toMillis(duration));
+            }
+        }
+
+        TickStatistics statistics() {
+            return new TickStatistics(
+                    name,
+                    TimeUnit.NANOSECONDS.toMillis(lastDurationNanos),
+                    TimeUnit.NANOSECONDS.toMillis(maxDurationNanos),
+                    ticks.sum(),
+                    skipped.sum(),
+                    overran.sum(),
+                    failed.sum()
+            );
+        }
     }
 }
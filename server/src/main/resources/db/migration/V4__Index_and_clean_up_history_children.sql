@@ -0,0 +1,32 @@
+-- the purge selects the oldest entries by date and deletes their rows child-first by these columns
+CREATE INDEX idx_historysystemloadentity_date ON HistorySystemLoadEntity (date);
+CREATE INDEX idx_coreload_cpuloadid ON CoreLoad (cpuLoadId);
+CREATE INDEX idx_cpuload_temperatures_cpuload_id ON CpuLoad_temperatures (CpuLoad_id);
+CREATE INDEX idx_drivehealthdata_driveloadid ON DriveHealthData (driveLoadId);
+CREATE INDEX idx_driveload_historyid ON DriveLoad (historyId);
+CREATE INDEX idx_diskload_historyid ON DiskLoad (historyId);
+CREATE INDEX idx_filesystemload_historyid ON FileSystemLoad (historyId);
+CREATE INDEX idx_gpuload_historyid ON GpuLoad (historyId);
+CREATE INDEX idx_healthdata_historyid ON HealthData (historyId);
+CREATE INDEX idx_networkinterfaceload_historyid ON NetworkInterfaceLoad (historyId);
+
+-- rows orphaned by earlier purges, which only deleted from HistorySystemLoadEntity
+DELETE FROM DriveLoad WHERE historyId NOT IN (SELECT id FROM HistorySystemLoadEntity);
+DELETE FROM DiskLoad WHERE historyId NOT IN (SELECT id FROM HistorySystemLoadEntity);
+DELETE FROM FileSystemLoad WHERE historyId NOT IN (SELECT id FROM HistorySystemLoadEntity);
+DELETE FROM GpuLoad WHERE historyId NOT IN (SELECT id FROM HistorySystemLoadEntity);
+DELETE FROM HealthData WHERE historyId NOT IN (SELECT id FROM HistorySystemLoadEntity);
+DELETE FROM NetworkInterfaceLoad WHERE historyId NOT IN (SELECT id FROM HistorySystemLoadEntity);
+
+-- drive health data was written with the id of its history entry instead of its drive, relink it where the entry has
+-- a single drive. With several drives there is no telling whose it was, it is deleted as an orphan below
+UPDATE DriveHealthData
+SET driveLoadId = (SELECT l.id FROM DriveLoad l WHERE l.historyId = DriveHealthData.driveLoadId)
+WHERE driveLoadId IN (SELECT l.historyId FROM DriveLoad l GROUP BY l.historyId HAVING COUNT(*) = 1);
+DELETE FROM DriveHealthData WHERE driveLoadId NOT IN (SELECT id FROM DriveLoad);
+
+DELETE FROM CpuLoad WHERE id NOT IN (SELECT cpuLoad_id FROM HistorySystemLoadEntity WHERE cpuLoad_id IS NOT NULL);
+DELETE FROM CoreLoad WHERE cpuLoadId NOT IN (SELECT id FROM CpuLoad);
+DELETE FROM CpuLoad_temperatures WHERE CpuLoad_id NOT IN (SELECT id FROM CpuLoad);
+DELETE FROM Connectivity WHERE id NOT IN (SELECT connectivity_id FROM HistorySystemLoadEntity WHERE connectivity_id IS NOT NULL);
+DELETE FROM MemoryLoad WHERE id NOT IN (SELECT memory_id FROM HistorySystemLoadEntity WHERE memory_id IS NOT NULL);
@@ -0,0 +1,336 @@
+-- every history table is rebuilt with an INTEGER primary key, an alias of the rowid, and links by integer ids
+ALTER TABLE HistorySystemLoadEntity RENAME TO HistorySystemLoadEntity_old;
+ALTER TABLE CpuLoad RENAME TO CpuLoad_old;
+ALTER TABLE CpuLoad_temperatures RENAME TO CpuLoad_temperatures_old;
+ALTER TABLE CoreLoad RENAME TO CoreLoad_old;
+ALTER TABLE Connectivity RENAME TO Connectivity_old;
+ALTER TABLE MemoryLoad RENAME TO MemoryLoad_old;
+ALTER TABLE DriveLoad RENAME TO DriveLoad_old;
+ALTER TABLE DriveHealthData RENAME TO DriveHealthData_old;
+ALTER TABLE DiskLoad RENAME TO DiskLoad_old;
+ALTER TABLE FileSystemLoad RENAME TO FileSystemLoad_old;
+ALTER TABLE GpuLoad RENAME TO GpuLoad_old;
+ALTER TABLE HealthData RENAME TO HealthData_old;
+ALTER TABLE NetworkInterfaceLoad RENAME TO NetworkInterfaceLoad_old;
+
+-- entries are numbered in the order they were recorded, their cpu, connectivity and memory rows take the same number
+CREATE TABLE history_ids
+(
+    id   INTEGER  NOT NULL,
+    uuid char(36) NOT NULL,
+    CONSTRAINT pk_history_ids PRIMARY KEY (id)
+);
+INSERT INTO history_ids (uuid)
+SELECT id
+FROM HistorySystemLoadEntity_old
+WHERE date IS NOT NULL
+-- by instant, ordering the raw column would sort every epoch millis date before any datetime text
+ORDER BY CASE
+             WHEN typeof(date) IN ('integer', 'real') THEN CAST(date AS INTEGER)
+             ELSE CAST(ROUND((julianday(date) - 2440587.5) * 86400000) AS INTEGER)
+             END,
+         id;
+CREATE UNIQUE INDEX idx_history_ids_uuid ON history_ids (uuid);
+
+CREATE TABLE Connectivity
+(
+    id                 INTEGER      NOT NULL,
+    externalIp         VARCHAR(255) NULL,
+    previousExternalIp VARCHAR(255) NULL,
+    localIp            VARCHAR(255) NULL,
+    connected          BIT(1)       NOT NULL,
+    CONSTRAINT pk_connectivity PRIMARY KEY (id)
+);
+
+CREATE TABLE CpuLoad
+(
+    id                INTEGER NOT NULL,
+    usagePercentage   DOUBLE  NOT NULL,
+    systemLoadAverage DOUBLE  NOT NULL,
+    processCount      INT     NOT NULL,
+    threadCount       INT     NOT NULL,
+    voltage           DOUBLE  NOT NULL,
+    fanRpm            DOUBLE  NOT NULL,
+    fanPercent        DOUBLE  NOT NULL,
+    CONSTRAINT pk_cpuload PRIMARY KEY (id)
+);
+
+CREATE TABLE CoreLoad
+(
+    id         INTEGER NOT NULL,
+    cpuLoadId  INTEGER NULL,
+    percentage DOUBLE  NOT NULL,
+    CONSTRAINT pk_coreload PRIMARY KEY (id),
+    CONSTRAINT FK_CORELOAD_ON_CPULOADID FOREIGN KEY (cpuLoadId) REFERENCES CpuLoad (id)
+);
+
+CREATE TABLE CpuLoad_temperatures
+(
+    CpuLoad_id   INTEGER NOT NULL,
+    temperatures DOUBLE  NULL,
+    CONSTRAINT fk_cpuload_temperatures_on_cpu_load FOREIGN KEY (CpuLoad_id) REFERENCES CpuLoad (id)
+);
+
+CREATE TABLE MemoryLoad
+(
+    id                INTEGER NOT NULL,
+    numberOfProcesses INT     NOT NULL,
+    swapTotalBytes    BIGINT  NOT NULL,
+    swapUsedBytes     BIGINT  NOT NULL,
+    totalBytes        BIGINT  NOT NULL,
+    availableBytes    BIGINT  NOT NULL,
+    usedPercent       DOUBLE  NOT NULL,
+    CONSTRAINT pk_memoryload PRIMARY KEY (id)
+);
+
+CREATE TABLE HistorySystemLoadEntity
+(
+    id                INTEGER NOT NULL,
+    date              BIGINT  NOT NULL,
+    uptime            BIGINT  NOT NULL,
+    systemLoadAverage DOUBLE  NOT NULL,
+    cpuLoad_id        INTEGER NULL,
+    connectivity_id   INTEGER NULL,
+    memory_id         INTEGER NULL,
+    CONSTRAINT pk_historysystemloadentity PRIMARY KEY (id),
+    CONSTRAINT FK_HISTORYSYSTEMLOADENTITY_ON_CONNECTIVITY FOREIGN KEY (connectivity_id) REFERENCES Connectivity (id),
+    CONSTRAINT FK_HISTORYSYSTEMLOADENTITY_ON_CPULOAD FOREIGN KEY (cpuLoad_id) REFERENCES CpuLoad (id),
+    CONSTRAINT FK_HISTORYSYSTEMLOADENTITY_ON_MEMORY FOREIGN KEY (memory_id) REFERENCES MemoryLoad (id)
+);
+
+CREATE TABLE DriveLoad
+(
+    id                  INTEGER      NOT NULL,
+    historyId           INTEGER      NULL,
+    name                VARCHAR(255) NULL,
+    serial              VARCHAR(255) NULL,
+    temperature         DOUBLE       NOT NULL,
+    usableSpace         BIGINT       NOT NULL,
+    totalSpace          BIGINT       NOT NULL,
+    openFileDescriptors BIGINT       NOT NULL,
+    maxFileDescriptors  BIGINT       NOT NULL,
+    `reads`             BIGINT       NOT NULL,
+    readBytes           BIGINT       NOT NULL,
+    writes              BIGINT       NOT NULL,
+    writeBytes          BIGINT       NOT NULL,
+    readBytesPerSecond  BIGINT       NOT NULL,
+    writeBytesPerSecond BIGINT       NOT NULL,
+    CONSTRAINT pk_driveload PRIMARY KEY (id),
+    CONSTRAINT FK_DRIVELOAD_ON_HISTORYID FOREIGN KEY (historyId) REFERENCES HistorySystemLoadEntity (id)
+);
+
+CREATE TABLE DriveHealthData
+(
+    id            INTEGER      NOT NULL,
+    driveLoadId   INTEGER      NULL,
+    `description` VARCHAR(255) NULL,
+    data          DOUBLE       NOT NULL,
+    dataType      INT          NULL,
+    CONSTRAINT pk_drivehealthdata PRIMARY KEY (id),
+    CONSTRAINT FK_DRIVEHEALTHDATA_ON_DRIVELOADID FOREIGN KEY (driveLoadId) REFERENCES DriveLoad (id)
+);
+
+CREATE TABLE DiskLoad
+(
+    id                  INTEGER      NOT NULL,
+    historyId           INTEGER      NULL,
+    name                VARCHAR(255) NULL,
+    serial              VARCHAR(255) NULL,
+    `reads`             BIGINT       NOT NULL,
+    readBytes           BIGINT       NOT NULL,
+    writes              BIGINT       NOT NULL,
+    writeBytes          BIGINT       NOT NULL,
+    readBytesPerSecond  BIGINT       NOT NULL,
+    writeBytesPerSecond BIGINT       NOT NULL,
+    CONSTRAINT pk_diskload PRIMARY KEY (id),
+    CONSTRAINT FK_DISKLOAD_ON_HISTORYID FOREIGN KEY (historyId) REFERENCES HistorySystemLoadEntity (id)
+);
+
+CREATE TABLE FileSystemLoad
+(
+    id               INTEGER      NOT NULL,
+    historyId        INTEGER      NULL,
+    name             VARCHAR(255) NULL,
+    freeSpaceBytes   BIGINT       NOT NULL,
+    usableSpaceBytes BIGINT       NOT NULL,
+    totalSpaceBytes  BIGINT       NOT NULL,
+    CONSTRAINT pk_filesystemload PRIMARY KEY (id),
+    CONSTRAINT FK_FILESYSTEMLOAD_ON_HISTORYID FOREIGN KEY (historyId) REFERENCES HistorySystemLoadEntity (id)
+);
+
+CREATE TABLE GpuLoad
+(
+    id          INTEGER      NOT NULL,
+    historyId   INTEGER      NULL,
+    name        VARCHAR(255) NULL,
+    coreLoad    DOUBLE       NOT NULL,
+    memoryLoad  DOUBLE       NOT NULL,
+    fanRpm      DOUBLE       NOT NULL,
+    fanPercent  DOUBLE       NOT NULL,
+    temperature DOUBLE       NOT NULL,
+    CONSTRAINT pk_gpuload PRIMARY KEY (id),
+    CONSTRAINT FK_GPULOAD_ON_HISTORYID FOREIGN KEY (historyId) REFERENCES HistorySystemLoadEntity (id)
+);
+
+CREATE TABLE HealthData
+(
+    id            INTEGER      NOT NULL,
+    historyId     INTEGER      NULL,
+    `description` VARCHAR(255) NULL,
+    data          DOUBLE       NOT NULL,
+    dataType      INT          NULL,
+    CONSTRAINT pk_healthdata PRIMARY KEY (id),
+    CONSTRAINT FK_HEALTHDATA_ON_HISTORYID FOREIGN KEY (historyId) REFERENCES HistorySystemLoadEntity (id)
+);
+
+CREATE TABLE NetworkInterfaceLoad
+(
+    id                    INTEGER      NOT NULL,
+    historyId             INTEGER      NULL,
+    name                  VARCHAR(255) NULL,
+    mac                   VARCHAR(255) NULL,
+    isUp                  BIT(1)       NOT NULL,
+    speed                 BIGINT       NOT NULL,
+    bytesReceived         BIGINT       NOT NULL,
+    bytesSent             BIGINT       NOT NULL,
+    packetsReceived       BIGINT       NOT NULL,
+    packetsSent           BIGINT       NOT NULL,
+    inErrors              BIGINT       NOT NULL,
+    outErrors             BIGINT       NOT NULL,
+    receiveBytesPerSecond BIGINT       NOT NULL,
+    sendBytesPerSecond    BIGINT       NOT NULL,
+    CONSTRAINT pk_networkinterfaceload PRIMARY KEY (id),
+    CONSTRAINT FK_NETWORKINTERFACELOAD_ON_HISTORYID FOREIGN KEY (historyId) REFERENCES HistorySystemLoadEntity (id)
+);
+
+-- dates were bound as timestamps, which the driver stores as epoch milliseconds unless configured to store text
+INSERT INTO HistorySystemLoadEntity (id, date, uptime, systemLoadAverage, cpuLoad_id, connectivity_id, memory_id)
+SELECT h.id,
+       CASE
+           WHEN typeof(e.date) IN ('integer', 'real') THEN CAST(e.date AS INTEGER)
+           ELSE CAST(ROUND((julianday(e.date) - 2440587.5) * 86400000) AS INTEGER)
+           END,
+       e.uptime,
+       e.systemLoadAverage,
+       CASE WHEN e.cpuLoad_id IS NULL THEN NULL ELSE h.id END,
+       CASE WHEN e.connectivity_id IS NULL THEN NULL ELSE h.id END,
+       CASE WHEN e.memory_id IS NULL THEN NULL ELSE h.id END
+FROM HistorySystemLoadEntity_old e
+         JOIN history_ids h ON h.uuid = e.id
+WHERE e.date IS NOT NULL;
+
+INSERT INTO CpuLoad (id, usagePercentage, systemLoadAverage, processCount, threadCount, voltage, fanRpm, fanPercent)
+SELECT h.id, c.usagePercentage, c.systemLoadAverage, c.processCount, c.threadCount, c.voltage, c.fanRpm, c.fanPercent
+FROM CpuLoad_old c
+         JOIN HistorySystemLoadEntity_old e ON e.cpuLoad_id = c.id
+         JOIN history_ids h ON h.uuid = e.id;
+
+INSERT INTO CoreLoad (cpuLoadId, percentage)
+SELECT h.id, c.percentage
+FROM CoreLoad_old c
+         JOIN HistorySystemLoadEntity_old e ON e.cpuLoad_id = c.cpuLoadId
+         JOIN history_ids h ON h.uuid = e.id;
+
+INSERT INTO CpuLoad_temperatures (CpuLoad_id, temperatures)
+SELECT h.id, t.temperatures
+FROM CpuLoad_temperatures_old t
+         JOIN HistorySystemLoadEntity_old e ON e.cpuLoad_id = t.CpuLoad_id
+         JOIN history_ids h ON h.uuid = e.id;
+
+INSERT INTO Connectivity (id, externalIp, previousExternalIp, localIp, connected)
+SELECT h.id, c.externalIp, c.previousExternalIp, c.localIp, c.connected
+FROM Connectivity_old c
+         JOIN HistorySystemLoadEntity_old e ON e.connectivity_id = c.id
+         JOIN history_ids h ON h.uuid = e.id;
+
+INSERT INTO MemoryLoad (id, numberOfProcesses, swapTotalBytes, swapUsedBytes, totalBytes, availableBytes, usedPercent)
+SELECT h.id, m.numberOfProcesses, m.swapTotalBytes, m.swapUsedBytes, m.totalBytes, m.availableBytes, m.usedPercent
+FROM MemoryLoad_old m
+         JOIN HistorySystemLoadEntity_old e ON e.memory_id = m.id
+         JOIN history_ids h ON h.uuid = e.id;
+
+-- drive loads are numbered first so their health data can follow them
+CREATE TABLE drive_load_ids
+(
+    id        INTEGER  NOT NULL,
+    uuid      char(36) NOT NULL,
+    historyId INTEGER  NOT NULL,
+    CONSTRAINT pk_drive_load_ids PRIMARY KEY (id)
+);
+INSERT INTO drive_load_ids (uuid, historyId)
+SELECT d.id, h.id
+FROM DriveLoad_old d
+         JOIN history_ids h ON h.uuid = d.historyId
+ORDER BY h.id;
+CREATE UNIQUE INDEX idx_drive_load_ids_uuid ON drive_load_ids (uuid);
+
+INSERT INTO DriveLoad (id, historyId, name, serial, temperature, usableSpace, totalSpace, openFileDescriptors,
+                       maxFileDescriptors, `reads`, readBytes, writes, writeBytes, readBytesPerSecond,
+                       writeBytesPerSecond)
+SELECT i.id, i.historyId, d.name, d.serial, d.temperature, d.usableSpace, d.totalSpace, d.openFileDescriptors,
+       d.maxFileDescriptors, d.`reads`, d.readBytes, d.writes, d.writeBytes, d.readBytesPerSecond,
+       d.writeBytesPerSecond
+FROM DriveLoad_old d
+         JOIN drive_load_ids i ON i.uuid = d.id;
+
+INSERT INTO DriveHealthData (driveLoadId, `description`, data, dataType)
+SELECT i.id, d.`description`, d.data, d.dataType
+FROM DriveHealthData_old d
+         JOIN drive_load_ids i ON i.uuid = d.driveLoadId;
+
+INSERT INTO DiskLoad (historyId, name, serial, `reads`, readBytes, writes, writeBytes, readBytesPerSecond,
+                      writeBytesPerSecond)
+SELECT h.id, d.name, d.serial, d.`reads`, d.readBytes, d.writes, d.writeBytes, d.readBytesPerSecond,
+       d.writeBytesPerSecond
+FROM DiskLoad_old d
+         JOIN history_ids h ON h.uuid = d.historyId;
+
+INSERT INTO FileSystemLoad (historyId, name, freeSpaceBytes, usableSpaceBytes, totalSpaceBytes)
+SELECT h.id, f.name, f.freeSpaceBytes, f.usableSpaceBytes, f.totalSpaceBytes
+FROM FileSystemLoad_old f
+         JOIN history_ids h ON h.uuid = f.historyId;
+
+INSERT INTO GpuLoad (historyId, name, coreLoad, memoryLoad, fanRpm, fanPercent, temperature)
+SELECT h.id, g.name, g.coreLoad, g.memoryLoad, g.fanRpm, g.fanPercent, g.temperature
+FROM GpuLoad_old g
+         JOIN history_ids h ON h.uuid = g.historyId;
+
+INSERT INTO HealthData (historyId, `description`, data, dataType)
+SELECT h.id, d.`description`, d.data, d.dataType
+FROM HealthData_old d
+         JOIN history_ids h ON h.uuid = d.historyId;
+
+INSERT INTO NetworkInterfaceLoad (historyId, name, mac, isUp, speed, bytesReceived, bytesSent, packetsReceived,
+                                  packetsSent, inErrors, outErrors, receiveBytesPerSecond, sendBytesPerSecond)
+SELECT h.id, n.name, n.mac, n.isUp, n.speed, n.bytesReceived, n.bytesSent, n.packetsReceived,
+       n.packetsSent, n.inErrors, n.outErrors, n.receiveBytesPerSecond, n.sendBytesPerSecond
+FROM NetworkInterfaceLoad_old n
+         JOIN history_ids h ON h.uuid = n.historyId;
+
+DROP TABLE DriveHealthData_old;
+DROP TABLE DriveLoad_old;
+DROP TABLE DiskLoad_old;
+DROP TABLE FileSystemLoad_old;
+DROP TABLE GpuLoad_old;
+DROP TABLE HealthData_old;
+DROP TABLE NetworkInterfaceLoad_old;
+DROP TABLE HistorySystemLoadEntity_old;
+DROP TABLE CoreLoad_old;
+DROP TABLE CpuLoad_temperatures_old;
+DROP TABLE CpuLoad_old;
+DROP TABLE Connectivity_old;
+DROP TABLE MemoryLoad_old;
+DROP TABLE drive_load_ids;
+DROP TABLE history_ids;
+
+-- range queries seek the date index instead of scanning the table, the purge deletes children by these columns
+CREATE INDEX idx_historysystemloadentity_date ON HistorySystemLoadEntity (date);
+CREATE INDEX idx_coreload_cpuloadid ON CoreLoad (cpuLoadId);
+CREATE INDEX idx_cpuload_temperatures_cpuload_id ON CpuLoad_temperatures (CpuLoad_id);
+CREATE INDEX idx_drivehealthdata_driveloadid ON DriveHealthData (driveLoadId);
+CREATE INDEX idx_driveload_historyid ON DriveLoad (historyId);
+CREATE INDEX idx_diskload_historyid ON DiskLoad (historyId);
+CREATE INDEX idx_filesystemload_historyid ON FileSystemLoad (historyId);
+CREATE INDEX idx_gpuload_historyid ON GpuLoad (historyId);
+CREATE INDEX idx_healthdata_historyid ON HealthData (historyId);
+CREATE INDEX idx_networkinterfaceload_historyid ON NetworkInterfaceLoad (historyId);
@@ -0,0 +1,16 @@
+-- min, max, mean and last of each series per bucket of a tier, bucket is the start of the bucket in epoch millis
+CREATE TABLE HistoryRollup
+(
+    id      INTEGER      NOT NULL,
+    tier    INT          NOT NULL,
+    bucket  BIGINT       NOT NULL,
+    series  VARCHAR(255) NOT NULL,
+    samples INT          NOT NULL,
+    minimum DOUBLE       NOT NULL,
+    maximum DOUBLE       NOT NULL,
+    mean    DOUBLE       NOT NULL,
+    last    DOUBLE       NOT NULL,
+    CONSTRAINT pk_historyrollup PRIMARY KEY (id)
+);
+
+CREATE UNIQUE INDEX idx_historyrollup_tier_bucket_series ON HistoryRollup (tier, bucket, series);
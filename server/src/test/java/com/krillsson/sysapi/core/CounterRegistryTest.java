@@ -0,0 +1,148 @@
+package com.krillsson.sysapi.core;
+
+import com.krillsson.sysapi.core.speed.CounterGroup;
+import com.krillsson.sysapi.core.speed.CounterRegistry;
+import com.krillsson.sysapi.core.speed.CounterSink;
+import com.krillsson.sysapi.core.speed.CounterSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CounterRegistryTest {
+
+    static final String EN_0 = "en0";
+
+    LongSupplier nanoTime;
+    CounterRegistry registry;
+    FakeSource source;
+
+    @Before
+    public void setUp() throws Exception {
+        nanoTime = mock(LongSupplier.class);
+        when(nanoTime.getAsLong()).thenReturn(seconds(0), seconds(5), seconds(10));
+        registry = new CounterRegistry(nanoTime);
+        source = new FakeSource(64);
+    }
+
+    @Test
+    public void shouldComputeRatesForAllCounters() {
+        CounterGroup<String> group = registry.register(source);
+
+        source.set(0, 100, 10);
+        registry.onTick();
+        source.set(0, 600, 60);
+        registry.onTick();
+
+        assertEquals(100L, group.rates(EN_0).get(0));
+        assertEquals(10L, group.rates(EN_0).get(1));
+    }
+
+    @Test
+    public void counterResetShouldNotGiveNegativeRate() {
+        CounterGroup<String> group = registry.register(source);
+
+        source.set(0, 1000, 1000);
+        registry.onTick();
+        source.set(0, 10, 2000);
+        registry.onTick();
+
+        assertEquals(0L, group.rates(EN_0).get(0));
+        assertEquals(200L, group.rates(EN_0).get(1));
+    }
+
+    @Test
+    public void changedIdentityStartsOver() {
+        CounterGroup<String> group = registry.register(source);
+
+        source.set(0, 100, 100);
+        registry.onTick();
+        source.set(1, 5000, 5000);
+        registry.onTick();
+
+        assertEquals(0L, group.rates(EN_0).get(0));
+        assertEquals(0L, group.rates(EN_0).get(1));
+    }
+
+    @Test
+    public void narrowCountersWrapAround() {
+        source = new FakeSource(32);
+        CounterGroup<String> group = registry.register(source);
+
+        source.set(0, 0xFFFFFFFFL - 499, 0);
+        registry.onTick();
+        source.set(0, 500, 0);
+        registry.onTick();
+
+        assertEquals(200L, group.rates(EN_0).get(0));
+    }
+
+    @Test
+    public void unchangedRevisionIsNotDiffedAgain() {
+        CounterGroup<String> group = registry.register(source);
+
+        source.revision = 1;
+        source.set(0, 0, 0);
+        registry.onTick();
+        registry.onTick();
+        source.revision = 2;
+        source.set(0, 1000, 0);
+        registry.onTick();
+
+        assertEquals(100L, group.rates(EN_0).get(0));
+    }
+
+    static long seconds(long seconds) {
+        return TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    static class FakeSource implements CounterSource<String> {
+        private final int widthBits;
+        private long identity;
+        private long revision;
+        private long first;
+        private long second;
+
+        FakeSource(int widthBits) {
+            this.widthBits = widthBits;
+        }
+
+        void set(long identity, long first, long second) {
+            this.identity = identity;
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public String getName() {
+            return "fake";
+        }
+
+        @Override
+        public int getCounterCount() {
+            return 2;
+        }
+
+        @Override
+        public int getWidthBits() {
+            return widthBits;
+        }
+
+        @Override
+        public long getRevision() {
+            return revision;
+        }
+
+        @Override
+        public void sample(CounterSink<String> sink) {
+            sink.getValues()[0] = first;
+            sink.getValues()[1] = second;
+            sink.commit(EN_0, identity);
+        }
+    }
+}
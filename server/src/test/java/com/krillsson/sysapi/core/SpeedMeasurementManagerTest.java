@@ -1,21 +1,17 @@
 package com.krillsson.sysapi.core;
 
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager;
+import com.krillsson.sysapi.util.Ticker;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.ArgumentCaptor;
 
-import java.time.Clock;
-import java.time.Instant;
-import java.time.ZoneId;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Optional;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 import static org.junit.Assert.*;
-import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.*;
 
 public class SpeedMeasurementManagerTest {
@@ -23,8 +19,8 @@ public class SpeedMeasurementManagerTest {
     static final String EN_0 = "en0";
     static final String EN_1 = "en1";
     SpeedMeasurementManager measurementManager;
-    ScheduledExecutorService executorService;
-    Clock clock;
+    Ticker ticker;
+    LongSupplier nanoTime;
     SpeedMeasurementManager.SpeedSource speedSource;
     SpeedMeasurementManager.SpeedSource secondSpeedSource;
 
@@ -36,10 +32,10 @@ public class SpeedMeasurementManagerTest {
         secondSpeedSource = mock(SpeedMeasurementManager.SpeedSource.class);
         when(secondSpeedSource.getName()).thenReturn(EN_1);
 
-        executorService = mock(ScheduledExecutorService.class);
-        clock = mock(Clock.class);
+        ticker = mock(Ticker.class);
+        nanoTime = mock(LongSupplier.class);
 
-        measurementManager = new SpeedMeasurementManager(executorService, clock, 5);
+        measurementManager = new SpeedMeasurementManager(ticker, nanoTime, Duration.ofSeconds(5));
     }
 
     @Test
@@ -48,24 +44,14 @@ public class SpeedMeasurementManagerTest {
         when(speedSource.getCurrentRead()).thenReturn(1000L, 2000L);
         when(speedSource.getCurrentWrite()).thenReturn(2000L, 4000L);
 
-        ArgumentCaptor<Runnable> argumentCaptor = ArgumentCaptor.forClass(Runnable.class);
-        when(executorService.scheduleAtFixedRate(
-                argumentCaptor.capture(),
-                anyLong(),
-                anyLong(),
-                any(TimeUnit.class)
-        )).thenReturn(null);
-
         measurementManager.register(speedSource);
         measurementManager.start();
 
-        Runnable value = argumentCaptor.getValue();
-
         //first run will only initialize
-        value.run();
+        measurementManager.onTick();
 
         // second run will give you a value
-        value.run();
+        measurementManager.onTick();
 
         Optional<SpeedMeasurementManager.CurrentSpeed> en0 = measurementManager.getCurrentSpeedForName(EN_0);
 
@@ -80,24 +66,14 @@ public class SpeedMeasurementManagerTest {
         when(speedSource.getCurrentRead()).thenReturn(0L, 0L);
         when(speedSource.getCurrentWrite()).thenReturn(0L, 0L);
 
-        ArgumentCaptor<Runnable> argumentCaptor = ArgumentCaptor.forClass(Runnable.class);
-        when(executorService.scheduleAtFixedRate(
-                argumentCaptor.capture(),
-                anyLong(),
-                anyLong(),
-                any(TimeUnit.class)
-        )).thenReturn(null);
-
         measurementManager.register(speedSource);
         measurementManager.start();
 
-        Runnable value = argumentCaptor.getValue();
-
         //first run will only initialize
-        value.run();
+        measurementManager.onTick();
 
         // second run will give you a value
-        value.run();
+        measurementManager.onTick();
 
         Optional<SpeedMeasurementManager.CurrentSpeed> en0 = measurementManager.getCurrentSpeedForName(EN_0);
 
@@ -115,24 +91,14 @@ public class SpeedMeasurementManagerTest {
         when(secondSpeedSource.getCurrentRead()).thenReturn(3000L, 12000L);
         when(secondSpeedSource.getCurrentWrite()).thenReturn(8000L, 16000L);
 
-        ArgumentCaptor<Runnable> argumentCaptor = ArgumentCaptor.forClass(Runnable.class);
-        when(executorService.scheduleAtFixedRate(
-                argumentCaptor.capture(),
-                anyLong(),
-                anyLong(),
-                any(TimeUnit.class)
-        )).thenReturn(null);
-
         measurementManager.register(Arrays.asList(speedSource, secondSpeedSource));
         measurementManager.start();
 
-        Runnable value = argumentCaptor.getValue();
-
         //first run will only initialize
-        value.run();
+        measurementManager.onTick();
 
         // second run will give you a value
-        value.run();
+        measurementManager.onTick();
 
         Optional<SpeedMeasurementManager.CurrentSpeed> en0 = measurementManager.getCurrentSpeedForName(EN_0);
         Optional<SpeedMeasurementManager.CurrentSpeed> en1 = measurementManager.getCurrentSpeedForName(EN_1);
@@ -153,63 +119,94 @@ public class SpeedMeasurementManagerTest {
         when(speedSource.getCurrentRead()).thenReturn(1000L, 2000L);
         when(speedSource.getCurrentWrite()).thenReturn(2000L, 4000L);
 
-        ArgumentCaptor<Runnable> argumentCaptor = ArgumentCaptor.forClass(Runnable.class);
-        when(executorService.scheduleAtFixedRate(
-                argumentCaptor.capture(),
-                anyLong(),
-                anyLong(),
-                any(TimeUnit.class)
-        )).thenReturn(null);
-
         measurementManager.register(speedSource);
         measurementManager.start();
         measurementManager.unregister(speedSource);
 
-        Runnable value = argumentCaptor.getValue();
-
-        value.run();
-        value.run();
+        measurementManager.onTick();
+        measurementManager.onTick();
 
         Optional<SpeedMeasurementManager.CurrentSpeed> en0Optional = measurementManager.getCurrentSpeedForName(EN_0);
         assertFalse(en0Optional.isPresent());
     }
 
     @Test
-    public void stoppingManagerShutsDownExecutorService() throws Exception {
-        when(executorService.scheduleAtFixedRate(
-                any(Runnable.class),
-                anyLong(),
-                anyLong(),
-                any(TimeUnit.class)
-        )).thenReturn(null);
-
+    public void startingAndStoppingManagerRegistersWithTicker() throws Exception {
         measurementManager.start();
+        verify(ticker).registerPostTick(measurementManager);
+
         measurementManager.stop();
+        verify(ticker).unregister(measurementManager);
+    }
 
-        verify(executorService).shutdownNow();
+    @Test
+    public void counterResetShouldNotGiveNegativeSpeed() throws Exception {
+        setupClockMock();
+        when(speedSource.getCurrentRead()).thenReturn(1000L, 2000L, 500L);
+        when(speedSource.getCurrentWrite()).thenReturn(2000L, 4000L, 100L);
+
+        measurementManager.register(speedSource);
+        measurementManager.start();
+
+        measurementManager.onTick();
+        measurementManager.onTick();
+        measurementManager.onTick();
+
+        Optional<SpeedMeasurementManager.CurrentSpeed> en0 = measurementManager.getCurrentSpeedForName(EN_0);
+
+        assertTrue(en0.isPresent());
+        assertEquals(0L, en0.get().getReadPerSeconds());
+        assertEquals(0L, en0.get().getWritePerSeconds());
     }
 
-    void setupClockMock() {
-        //clock.getZone().getRules().getOffset(now);
-        ZoneId zoneId = ZoneId.systemDefault();
-        when(clock.getZone()).thenReturn(zoneId);
+    @Test
+    public void longerHorizonsAverageOverMultipleSamples() throws Exception {
+        when(nanoTime.getAsLong()).thenReturn(0L, seconds(5), seconds(10));
+        when(speedSource.getCurrentRead()).thenReturn(0L, 1000L, 1500L);
+        when(speedSource.getCurrentWrite()).thenReturn(0L, 0L, 0L);
+
+        measurementManager.register(speedSource);
+        measurementManager.start();
 
-        Instant first = Instant.now();                  // e.g. 12:00:00
-        Instant second = first.plusSeconds(5);          // 12:00:05
-        Instant thirdAndAfter = second.plusSeconds(5);  // 12:00:10
+        measurementManager.onTick();
+        measurementManager.onTick();
+        measurementManager.onTick();
 
-        when(clock.instant()).thenReturn(first, second, thirdAndAfter);
+        SpeedMeasurementManager.CurrentSpeed en0 = measurementManager.getCurrentSpeedForName(EN_0).get();
+
+        assertEquals(100L, en0.getRead().getOneSecond());
+        assertEquals(150L, en0.getRead().getTenSeconds());
+        assertEquals(150L, en0.getRead().getSixtySeconds());
+        assertEquals(0L, en0.getWrite().getSixtySeconds());
     }
 
-    void setupClockMockForTwoSources() {
-        //clock.getZone().getRules().getOffset(now);
-        ZoneId zoneId = ZoneId.systemDefault();
-        when(clock.getZone()).thenReturn(zoneId);
+    @Test
+    public void sourceNotRefreshedSinceLastTickIsNotSampledAgain() throws Exception {
+        when(nanoTime.getAsLong()).thenReturn(seconds(0), seconds(10));
+        when(speedSource.getRevision()).thenReturn(1L, 1L, 2L);
+        when(speedSource.getCurrentRead()).thenReturn(0L, 1000L);
+        when(speedSource.getCurrentWrite()).thenReturn(0L, 0L);
 
-        Instant first = Instant.now();                  // e.g. 12:00:00
-        Instant second = first.plusSeconds(5);          // 12:00:05
-        Instant thirdAndAfter = second.plusSeconds(5);  // 12:00:10
+        measurementManager.register(speedSource);
+        measurementManager.start();
+
+        measurementManager.onTick();
+        measurementManager.onTick();
+        measurementManager.onTick();
+
+        assertEquals(100L, measurementManager.getCurrentSpeedForName(EN_0).get().getReadPerSeconds());
+        verify(nanoTime, times(2)).getAsLong();
+    }
+
+    static long seconds(long seconds) {
+        return TimeUnit.SECONDS.toNanos(seconds);
+    }
 
-        when(clock.instant()).thenReturn(first, first, second, second, thirdAndAfter, thirdAndAfter);
+    void setupClockMock() {
+        when(nanoTime.getAsLong()).thenReturn(seconds(0), seconds(5), seconds(10));
+    }
+
+    void setupClockMockForTwoSources() {
+        when(nanoTime.getAsLong()).thenReturn(seconds(0), seconds(0), seconds(5), seconds(5), seconds(10), seconds(10));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+package com.krillsson.sysapi.core.history;
+
+import com.krillsson.sysapi.config.HistoryPurgingConfiguration;
+import com.krillsson.sysapi.util.Clock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class HistoryPurgerTest {
+
+    private static final OffsetDateTime NOW = OffsetDateTime.of(2022, 10, 3, 8, 0, 0, 0, ZoneOffset.UTC);
+
+    HistoryRepository history;
+    ScheduledExecutorService executor;
+    HistoryPurger purger;
+
+    @Before
+    public void setUp() {
+        history = mock(HistoryRepository.class);
+        executor = mock(ScheduledExecutorService.class);
+        Clock clock = new Clock();
+        clock.useFixedClockAt(NOW);
+        purger = new HistoryPurger(
+                new HistoryPurgingConfiguration(14, ChronoUnit.DAYS, 6, TimeUnit.HOURS),
+                history,
+                clock,
+                100,
+                10,
+                executor
+        );
+    }
+
+    @Test
+    public void purgeIsScheduledEveryPurgeEvery() {
+        purger.start();
+
+        verify(executor).scheduleWithFixedDelay(
+                any(Runnable.class),
+                eq(TimeUnit.MINUTES.toMillis(1)),
+                eq(TimeUnit.HOURS.toMillis(6)),
+                eq(TimeUnit.MILLISECONDS)
+        );
+    }
+
+    @Test
+    public void backlogIsDeletedInChunksUntilAChunkIsNotFull() {
+        when(history.purgeOldest(any(OffsetDateTime.class), anyInt())).thenReturn(100, 100, 37);
+
+        assertEquals(237, purger.purge());
+
+        verify(history, times(3)).purgeOldest(
+                argThat(maxAge -> maxAge.toInstant().equals(NOW.minusDays(14).toInstant())),
+                eq(100)
+        );
+    }
+
+    @Test
+    public void failingChunkEndsThePurge() {
+        when(history.purgeOldest(any(OffsetDateTime.class), anyInt()))
+                .thenReturn(100)
+                .thenThrow(new IllegalStateException("database is locked"));
+
+        assertEquals(100, purger.purge());
+    }
+
+    @Test
+    public void vacuumRunsWhileFreePagesAreShrinking() {
+        when(history.vacuum(anyInt())).thenReturn(25, 15, 5, 0);
+
+        assertEquals(0, purger.vacuum());
+
+        verify(history, times(4)).vacuum(10);
+    }
+
+    @Test
+    public void vacuumStopsWhenFreePagesDoNotShrink() {
+        when(history.vacuum(anyInt())).thenReturn(25, 25);
+
+        assertEquals(25, purger.vacuum());
+
+        verify(history, times(2)).vacuum(10);
+    }
+}
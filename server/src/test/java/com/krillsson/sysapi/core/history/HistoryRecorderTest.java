@@ -0,0 +1,100 @@
+package com.krillsson.sysapi.core.history;
+
+import com.google.common.eventbus.EventBus;
+import com.krillsson.sysapi.core.domain.history.SystemHistoryEntry;
+import com.krillsson.sysapi.core.domain.system.SystemLoad;
+import com.krillsson.sysapi.util.Clock;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class HistoryRecorderTest {
+
+    EventBus eventBus;
+    HistoryRepository history;
+
+    @Before
+    public void setUp() {
+        eventBus = new EventBus();
+        history = mock(HistoryRepository.class);
+    }
+
+    @Test
+    public void queuedSamplesAreWrittenWhenStopping() throws Exception {
+        HistoryRecorder recorder = new HistoryRecorder(eventBus, history, new Clock(), 16, 8);
+        recorder.start();
+
+        for (int i = 0; i < 10; i++) {
+            eventBus.post(event());
+        }
+        recorder.stop();
+
+        assertEquals(10, recorder.getWritten());
+        assertEquals(0, recorder.getDropped());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void samplesAreWrittenInBatches() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).doNothing().when(history).recordAll(anyList());
+        HistoryRecorder recorder = new HistoryRecorder(eventBus, history, new Clock(), 16, 8);
+        recorder.start();
+        eventBus.post(event());
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 5; i++) {
+            eventBus.post(event());
+        }
+        release.countDown();
+        recorder.stop();
+
+        ArgumentCaptor<List<SystemHistoryEntry>> batches = ArgumentCaptor.forClass(List.class);
+        verify(history, times(2)).recordAll(batches.capture());
+        assertEquals(1, batches.getAllValues().get(0).size());
+        assertEquals(5, batches.getAllValues().get(1).size());
+    }
+
+    @Test
+    public void slowWriterDropsSamplesInsteadOfBlockingTheEventBus() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(history).recordAll(anyList());
+        HistoryRecorder recorder = new HistoryRecorder(eventBus, history, new Clock(), 2, 8);
+        recorder.start();
+        eventBus.post(event());
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 5; i++) {
+            eventBus.post(event());
+        }
+
+        assertEquals(3, recorder.getDropped());
+        assertEquals(2, recorder.getQueued());
+        release.countDown();
+        recorder.stop();
+        assertEquals(3, recorder.getWritten());
+    }
+
+    private HistoryMetricQueryEvent event() {
+        return new HistoryMetricQueryEvent(mock(SystemLoad.class, RETURNS_MOCKS));
+    }
+}
@@ -0,0 +1,226 @@
+package com.krillsson.sysapi.core.history.columnar;
+
+import com.krillsson.sysapi.core.domain.cpu.CoreLoad;
+import com.krillsson.sysapi.core.domain.cpu.CpuHealth;
+import com.krillsson.sysapi.core.domain.cpu.CpuLoad;
+import com.krillsson.sysapi.core.domain.filesystem.FileSystemLoad;
+import com.krillsson.sysapi.core.domain.history.HistorySystemLoad;
+import com.krillsson.sysapi.core.domain.history.SystemHistoryEntry;
+import com.krillsson.sysapi.core.domain.memory.MemoryLoad;
+import com.krillsson.sysapi.core.domain.network.Connectivity;
+import com.krillsson.sysapi.core.domain.network.NetworkInterfaceLoad;
+import com.krillsson.sysapi.core.domain.network.NetworkInterfaceSpeed;
+import com.krillsson.sysapi.core.domain.network.NetworkInterfaceValues;
+import com.krillsson.sysapi.core.history.db.BasicHistorySystemLoadEntity;
+import com.krillsson.sysapi.util.Clock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ColumnarHistoryRepositoryTest {
+
+    private static final OffsetDateTime MORNING = OffsetDateTime.of(2022, 10, 3, 8, 0, 0, 0, ZoneOffset.UTC);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    File directory;
+    Clock clock;
+    ColumnarHistoryRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder("history");
+        clock = new Clock();
+        repository = new ColumnarHistoryRepository(directory, clock, ZoneOffset.UTC);
+    }
+
+    @After
+    public void tearDown() {
+        repository.stop();
+    }
+
+    @Test
+    public void recordedLoadsAreReadBack() {
+        clock.useFixedClockAt(MORNING);
+        repository.record(load(100, "eth0"));
+        clock.useFixedClockAt(MORNING.plusMinutes(10));
+        repository.record(load(700, "eth0", "wlan0"));
+
+        List<SystemHistoryEntry> entries = repository.getExtended();
+
+        assertEquals(2, entries.size());
+        assertEquals(MORNING.toInstant(), entries.get(0).getDate().toInstant());
+        HistorySystemLoad first = entries.get(0).getValue();
+        assertEquals(100, first.getUptime());
+        assertEquals(Arrays.asList("eth0"), names(first.getNetworkInterfaceLoads()));
+        assertEquals(0.25, first.getCpuLoad().getCoreLoads().get(1).getPercentage(), 0.0);
+        assertEquals(Arrays.asList(48.0), first.getCpuLoad().getCpuHealth().getTemperatures());
+        assertEquals("1.2.3.4", first.getConnectivity().getExternalIp());
+        assertNull(first.getConnectivity().getPreviousExternalIp());
+        HistorySystemLoad second = entries.get(1).getValue();
+        assertEquals(Arrays.asList("eth0", "wlan0"), names(second.getNetworkInterfaceLoads()));
+        assertEquals(7000, second.getNetworkInterfaceLoads().get(1).getValues().getBytesReceived());
+        assertEquals(4000, second.getFileSystemLoads().get(0).getTotalSpaceBytes());
+    }
+
+    @Test
+    public void rangeReadsOnlyReturnEntriesBetweenDates() {
+        clock.useFixedClockAt(MORNING.minusHours(9));
+        repository.record(load(1, "eth0"));
+        clock.useFixedClockAt(MORNING);
+        repository.record(load(2, "eth0"));
+        clock.useFixedClockAt(MORNING.plusHours(2));
+        repository.record(load(3, "eth0"));
+
+        List<BasicHistorySystemLoadEntity> entries = repository.getHistoryLimitedToDates(
+                MORNING.minusHours(1),
+                MORNING.plusHours(1)
+        );
+
+        assertEquals(1, entries.size());
+        assertEquals(2, entries.get(0).getUptime());
+    }
+
+    @Test
+    public void loadsAreFoundById() {
+        clock.useFixedClockAt(MORNING);
+        repository.record(load(1, "eth0"));
+        repository.record(load(2, "eth0", "wlan0"));
+
+        BasicHistorySystemLoadEntity entry = repository.get().get(1);
+
+        assertEquals(Arrays.asList("eth0", "wlan0"), names(repository.getNetworkInterfaceLoadsById(entry.getId())));
+        assertEquals(2, repository.getCpuLoadById(entry.getId()).getCoreLoads().size());
+    }
+
+    @Test
+    public void purgeDeletesExpiredDays() {
+        clock.useFixedClockAt(MORNING.minusDays(2));
+        repository.record(load(1, "eth0"));
+        clock.useFixedClockAt(MORNING);
+        repository.record(load(2, "eth0"));
+
+        repository.purge(1, ChronoUnit.DAYS);
+
+        List<BasicHistorySystemLoadEntity> entries = repository.get();
+        assertEquals(1, entries.size());
+        assertEquals(2, entries.get(0).getUptime());
+        assertFalse(new File(directory, MORNING.minusDays(2).toLocalDate().toString()).exists());
+    }
+
+    @Test
+    public void purgedRowsStayHiddenAfterARestart() {
+        clock.useFixedClockAt(MORNING);
+        repository.record(load(1, "eth0"));
+        clock.useFixedClockAt(MORNING.plusHours(2));
+        repository.record(load(2, "eth0"));
+        clock.useFixedClockAt(MORNING.plusHours(1).plusDays(1));
+        repository.purge(1, ChronoUnit.DAYS);
+        repository.stop();
+
+        repository = new ColumnarHistoryRepository(directory, clock, ZoneOffset.UTC);
+
+        List<BasicHistorySystemLoadEntity> entries = repository.get();
+        assertEquals(1, entries.size());
+        assertEquals(2, entries.get(0).getUptime());
+    }
+
+    @Test
+    public void rowsAppendedPastTheGrownColumnsAreReadBackAndCutOffOnClose() {
+        int rows = 3000;
+        for (int row = 0; row < rows; row++) {
+            clock.useFixedClockAt(MORNING.plusSeconds(row));
+            repository.record(load(row, "eth0"));
+            if (row % 1000 == 0) {
+                assertEquals(row + 1, repository.get().size());
+            }
+        }
+        assertEquals(rows - 1, repository.get().get(rows - 1).getUptime());
+        repository.stop();
+
+        File[] columns = new File(directory, MORNING.toLocalDate().toString()).listFiles((dir, name) -> name.endsWith(".col"));
+        assertTrue(columns.length > 1);
+        for (File column : columns) {
+            assertEquals(column.getName(), rows * 8L, column.length());
+        }
+        repository = new ColumnarHistoryRepository(directory, clock, ZoneOffset.UTC);
+        assertEquals(rows, repository.get().size());
+    }
+
+    @Test
+    public void tornWritesAreDroppedWhenOpenedAgain() throws Exception {
+        clock.useFixedClockAt(MORNING);
+        repository.record(load(1, "eth0"));
+        repository.stop();
+        File day = new File(directory, MORNING.toLocalDate().toString());
+        append(new File(day, "time.col"), 3);
+        append(new File(day, "catalog.dat"), 5);
+
+        repository = new ColumnarHistoryRepository(directory, clock, ZoneOffset.UTC);
+        clock.useFixedClockAt(MORNING.plusMinutes(1));
+        repository.record(load(2, "eth0", "wlan0"));
+
+        List<SystemHistoryEntry> entries = repository.getExtended();
+        assertEquals(2, entries.size());
+        assertEquals(Arrays.asList("eth0"), names(entries.get(0).getValue().getNetworkInterfaceLoads()));
+        assertEquals(Arrays.asList("eth0", "wlan0"), names(entries.get(1).getValue().getNetworkInterfaceLoads()));
+    }
+
+    private void append(File file, int bytes) throws IOException {
+        try (FileOutputStream output = new FileOutputStream(file, true)) {
+            output.write(new byte[bytes]);
+        }
+    }
+
+    private List<String> names(List<NetworkInterfaceLoad> loads) {
+        return loads.stream().map(NetworkInterfaceLoad::getName).collect(Collectors.toList());
+    }
+
+    private HistorySystemLoad load(long uptime, String... interfaces) {
+        List<NetworkInterfaceLoad> networkInterfaceLoads = Arrays.stream(interfaces)
+                .map(name -> new NetworkInterfaceLoad(
+                        name,
+                        "00:11:22:33:44:55",
+                        true,
+                        new NetworkInterfaceValues(1000, uptime * 10, uptime * 20, 0, 0, 0, 0),
+                        new NetworkInterfaceSpeed(100, 200)
+                ))
+                .collect(Collectors.toList());
+        return new HistorySystemLoad(
+                uptime,
+                1.5,
+                new CpuLoad(
+                        0.5,
+                        1.5,
+                        Arrays.asList(new CoreLoad(0.75), new CoreLoad(0.25)),
+                        new CpuHealth(Collections.singletonList(48.0), 1.2, 0, 0),
+                        120,
+                        800
+                ),
+                networkInterfaceLoads,
+                new Connectivity("1.2.3.4", null, "192.168.0.2", true),
+                Collections.emptyList(),
+                Collections.emptyList(),
+                Collections.singletonList(new FileSystemLoad("/dev/sda1", 1000, 900, 4000)),
+                new MemoryLoad(120, 0, 0, 8000, 4000, 50.0),
+                Collections.emptyList(),
+                Collections.emptyList()
+        );
+    }
+}
@@ -0,0 +1,36 @@
+package com.krillsson.sysapi.core.history.db;
+
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EpochMillisConverterTest {
+
+    EpochMillisConverter converter = new EpochMillisConverter();
+
+    @Test
+    public void datesAreStoredAsEpochMillis() {
+        OffsetDateTime date = OffsetDateTime.of(2022, 10, 3, 10, 0, 0, 250_000_000, ZoneOffset.ofHours(2));
+
+        assertEquals(Long.valueOf(1664784000250L), converter.convertToDatabaseColumn(date));
+    }
+
+    @Test
+    public void storedDatesAreTheSameInstant() {
+        OffsetDateTime date = OffsetDateTime.of(2022, 10, 3, 10, 0, 0, 250_000_000, ZoneOffset.ofHours(2));
+
+        OffsetDateTime read = converter.convertToEntityAttribute(converter.convertToDatabaseColumn(date));
+
+        assertEquals(date.toInstant(), read.toInstant());
+    }
+
+    @Test
+    public void missingDatesStayMissing() {
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+}
@@ -0,0 +1,213 @@
+package com.krillsson.sysapi.core.history.db;
+
+import org.flywaydb.core.Flyway;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class HistoryMigrationTest {
+
+    private static final OffsetDateTime TEXT_DATE = OffsetDateTime.of(2022, 10, 1, 8, 0, 0, 0, ZoneOffset.UTC);
+    private static final OffsetDateTime EPOCH_DATE = OffsetDateTime.of(2022, 10, 2, 8, 0, 0, 0, ZoneOffset.UTC);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    String url;
+    SessionFactory sessionFactory;
+    Session session;
+
+    @Before
+    public void setUp() throws Exception {
+        url = "jdbc:sqlite:" + folder.newFile("database.sqlite").getAbsolutePath();
+        Flyway.configure()
+                .dataSource(url, null, null)
+                .locations("classpath:db/migration")
+                .target("4")
+                .load()
+                .migrate();
+        try (Connection connection = DriverManager.getConnection(url); Statement statement = connection.createStatement()) {
+            for (String sql : fixture().split(";\n")) {
+                if (!sql.isBlank()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+        Flyway.configure()
+                .dataSource(url, null, null)
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+    }
+
+    @After
+    public void tearDown() {
+        if (session != null) {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    public void everyRowIsCarriedOver() throws Exception {
+        assertEquals(2, count("HistorySystemLoadEntity"));
+        assertEquals(2, count("CpuLoad"));
+        assertEquals(3, count("CoreLoad"));
+        assertEquals(2, count("CpuLoad_temperatures"));
+        assertEquals(2, count("Connectivity"));
+        assertEquals(2, count("MemoryLoad"));
+        assertEquals(2, count("DriveLoad"));
+        assertEquals(2, count("DriveHealthData"));
+        assertEquals(2, count("DiskLoad"));
+        assertEquals(2, count("FileSystemLoad"));
+        assertEquals(1, count("GpuLoad"));
+        assertEquals(1, count("HealthData"));
+        assertEquals(2, count("NetworkInterfaceLoad"));
+    }
+
+    @Test
+    public void entriesAreNumberedByDateAndDatesAreEpochMillis() throws Exception {
+        assertEquals(
+                "1:" + TEXT_DATE.toInstant().toEpochMilli() + ":integer," +
+                        "2:" + EPOCH_DATE.toInstant().toEpochMilli() + ":integer",
+                query("SELECT id || ':' || date || ':' || typeof(date) FROM HistorySystemLoadEntity ORDER BY id")
+        );
+    }
+
+    @Test
+    public void childrenAreLinkedToTheirRenumberedParents() throws Exception {
+        assertEquals("1:1:1:1,2:2:2:2",
+                query("SELECT id || ':' || cpuLoad_id || ':' || connectivity_id || ':' || memory_id " +
+                        "FROM HistorySystemLoadEntity ORDER BY id"));
+        assertEquals("1:5.0,1:15.0,2:25.0",
+                query("SELECT cpuLoadId || ':' || percentage FROM CoreLoad ORDER BY cpuLoadId, percentage"));
+        assertEquals("1:45.0,2:55.0",
+                query("SELECT CpuLoad_id || ':' || temperatures FROM CpuLoad_temperatures ORDER BY CpuLoad_id"));
+        assertEquals("sda:1,sdb:2", query("SELECT name || ':' || historyId FROM DriveLoad ORDER BY name"));
+        assertEquals("sda health:sda,sdb health:sdb",
+                query("SELECT h.description || ':' || l.name FROM DriveHealthData h " +
+                        "JOIN DriveLoad l ON l.id = h.driveLoadId ORDER BY h.description"));
+        assertEquals("sda:1,sdb:2", query("SELECT name || ':' || historyId FROM DiskLoad ORDER BY name"));
+        assertEquals("1,2", query("SELECT historyId FROM FileSystemLoad ORDER BY historyId"));
+        assertEquals("1", query("SELECT historyId FROM GpuLoad"));
+        assertEquals("2", query("SELECT historyId FROM HealthData"));
+        assertEquals("1,2", query("SELECT historyId FROM NetworkInterfaceLoad ORDER BY historyId"));
+    }
+
+    @Test
+    public void findAllBetweenMatchesTheConvertedDates() {
+        openSession();
+        HistorySystemLoadDAO dao = new HistorySystemLoadDAO(sessionFactory);
+
+        List<HistorySystemLoadEntity> entries = dao.findAllBetween(TEXT_DATE.minusHours(1), TEXT_DATE.plusHours(1));
+
+        assertEquals(1, entries.size());
+        HistorySystemLoadEntity entry = entries.get(0);
+        assertEquals(TEXT_DATE.toInstant(), entry.getDate().toInstant());
+        assertEquals(10.0, entry.getCpuLoad().getUsagePercentage(), 0.0);
+        assertEquals(2, entry.getCpuLoad().getCoreLoads().size());
+        assertEquals(1, entry.getDriveLoads().size());
+        assertEquals("sda health", entry.getDriveLoads().get(0).getHealthData().get(0).getDescription());
+        assertEquals(2, dao.findAllBetween(TEXT_DATE, EPOCH_DATE).size());
+    }
+
+    @Test
+    public void childrenAreFoundByHistoryId() {
+        openSession();
+
+        assertEquals(20.0, new CpuLoadDAO(sessionFactory).findByHistoryId(2L).getUsagePercentage(), 0.0);
+        List<DriveLoad> driveLoads = new DriveLoadDAO(sessionFactory).findById(2L);
+        assertEquals(1, driveLoads.size());
+        assertEquals("sdb", driveLoads.get(0).getName());
+    }
+
+    @Test
+    public void purgeOldestDeletesTheEntryAndEveryRowRecordedWithIt() throws Exception {
+        openSession();
+        session.beginTransaction();
+
+        int deleted = new HistorySystemLoadDAO(sessionFactory).purgeOldest(EPOCH_DATE, 10);
+        session.getTransaction().commit();
+
+        assertEquals(1, deleted);
+        assertEquals("2", query("SELECT id FROM HistorySystemLoadEntity"));
+        assertEquals("2", query("SELECT id FROM CpuLoad"));
+        assertEquals("2", query("SELECT cpuLoadId FROM CoreLoad"));
+        assertEquals("2", query("SELECT CpuLoad_id FROM CpuLoad_temperatures"));
+        assertEquals("2", query("SELECT id FROM Connectivity"));
+        assertEquals("2", query("SELECT id FROM MemoryLoad"));
+        assertEquals("sdb", query("SELECT name FROM DriveLoad"));
+        assertEquals("sdb health", query("SELECT description FROM DriveHealthData"));
+        assertEquals("2", query("SELECT historyId FROM DiskLoad"));
+        assertEquals("2", query("SELECT historyId FROM FileSystemLoad"));
+        assertEquals(0, count("GpuLoad"));
+        assertEquals("2", query("SELECT historyId FROM HealthData"));
+        assertEquals("2", query("SELECT historyId FROM NetworkInterfaceLoad"));
+    }
+
+    private void openSession() {
+        Configuration configuration = new Configuration()
+                .setProperty("hibernate.connection.url", url)
+                .setProperty("hibernate.connection.driver_class", "org.sqlite.JDBC")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.SQLiteDialect")
+                .setProperty("hibernate.current_session_context_class", "managed");
+        for (Class<?> entity : new Class<?>[]{
+                HistorySystemLoadEntity.class, Connectivity.class, CpuLoad.class, NetworkInterfaceLoad.class,
+                DriveLoad.class, DiskLoad.class, FileSystemLoad.class, MemoryLoad.class, GpuLoad.class,
+                HealthData.class, CpuHealth.class, CoreLoad.class, DriveHealthData.class
+        }) {
+            configuration.addAnnotatedClass(entity);
+        }
+        sessionFactory = configuration.buildSessionFactory();
+        session = sessionFactory.openSession();
+        ManagedSessionContext.bind(session);
+    }
+
+    private int count(String table) throws SQLException {
+        return Integer.parseInt(query("SELECT COUNT(*) FROM " + table));
+    }
+
+    private String query(String sql) throws SQLException {
+        StringBuilder builder = new StringBuilder();
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            while (result.next()) {
+                if (builder.length() > 0) {
+                    builder.append(',');
+                }
+                builder.append(result.getString(1));
+            }
+        }
+        return builder.toString();
+    }
+
+    private String fixture() throws IOException {
+        try (InputStream stream = getClass().getResourceAsStream("/db/v4_history.sql")) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.krillsson.sysapi.core.history.rollup;
+
+import com.krillsson.sysapi.config.HistoryConfiguration;
+import com.krillsson.sysapi.config.HistoryPurgingConfiguration;
+import com.krillsson.sysapi.config.HistoryRetentionConfiguration;
+import com.krillsson.sysapi.config.HistoryRollupConfiguration;
+import com.krillsson.sysapi.config.HistoryStorage;
+import com.krillsson.sysapi.core.domain.history.HistoryRollup;
+import com.krillsson.sysapi.core.domain.history.HistorySystemLoad;
+import com.krillsson.sysapi.core.domain.history.HistoryTier;
+import com.krillsson.sysapi.core.domain.history.SystemHistoryEntry;
+import com.krillsson.sysapi.core.history.HistoryRepository;
+import com.krillsson.sysapi.util.Clock;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class HistoryRollupsTest {
+
+    private static final OffsetDateTime NOW = OffsetDateTime.of(2022, 10, 3, 8, 0, 0, 0, ZoneOffset.UTC);
+    private static final String LOAD = "system.systemLoadAverage";
+
+    HistoryRollupRepository repository;
+    HistoryRepository history;
+    HistoryRollups rollups;
+
+    @Before
+    public void setUp() {
+        repository = mock(HistoryRollupRepository.class);
+        history = mock(HistoryRepository.class);
+        Clock clock = new Clock();
+        clock.useFixedClockAt(NOW);
+        HistoryConfiguration configuration = new HistoryConfiguration(
+                new HistoryPurgingConfiguration(14, ChronoUnit.DAYS, 1, TimeUnit.DAYS),
+                30,
+                TimeUnit.MINUTES,
+                HistoryStorage.SQLITE,
+                new HistoryRollupConfiguration(
+                        new HistoryRetentionConfiguration(30, ChronoUnit.DAYS),
+                        new HistoryRetentionConfiguration(365, ChronoUnit.DAYS)
+                )
+        );
+        rollups = new HistoryRollups(repository, history, configuration, clock);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void bucketIsWrittenWhenASampleFallsInTheNextOne() {
+        rollups.add(Arrays.asList(
+                entry(NOW.plusSeconds(10), 1.0),
+                entry(NOW.plusSeconds(40), 3.0),
+                entry(NOW.plusSeconds(65), 2.0)
+        ));
+
+        ArgumentCaptor<List<HistoryRollup>> written = ArgumentCaptor.forClass(List.class);
+        verify(repository).merge(eq(HistoryTier.MINUTE), written.capture());
+        HistoryRollup load = find(written.getValue(), LOAD);
+        assertEquals(NOW.toInstant(), load.getDate().toInstant());
+        assertEquals(2, load.getSamples());
+        assertEquals(1.0, load.getMin(), 0.0);
+        assertEquals(3.0, load.getMax(), 0.0);
+        assertEquals(2.0, load.getMean(), 0.0);
+        assertEquals(3.0, load.getLast(), 0.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void openHourIsWrittenAndRestartedWhenAMinuteCloses() {
+        rollups.add(Arrays.asList(
+                entry(NOW.plusSeconds(10), 1.0),
+                entry(NOW.plusSeconds(70), 3.0),
+                entry(NOW.plusSeconds(130), 2.0)
+        ));
+
+        ArgumentCaptor<List<HistoryRollup>> written = ArgumentCaptor.forClass(List.class);
+        verify(repository).merge(eq(HistoryTier.HOUR), written.capture());
+        List<HistoryRollup> hour = written.getValue().stream()
+                .filter(it -> it.getSeries().equals(LOAD))
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(
+                new HistoryRollup(LOAD, NOW, 1, 1.0, 1.0, 1.0, 1.0),
+                new HistoryRollup(LOAD, NOW, 1, 3.0, 3.0, 3.0, 3.0)
+        ), hour);
+    }
+
+    @Test
+    public void queryMergesTheWrittenPartOfTheOpenHourWithTheRest() {
+        rollups.add(Arrays.asList(entry(NOW.plusSeconds(10), 1.0), entry(NOW.plusSeconds(70), 3.0)));
+        when(repository.findAllBetween(eq(HistoryTier.HOUR), any(), any(), any())).thenReturn(
+                Collections.singletonList(new HistoryRollup(LOAD, NOW, 1, 1.0, 1.0, 1.0, 1.0))
+        );
+
+        List<HistoryRollup> result = rollups.query(
+                HistoryTier.HOUR,
+                NOW.minusHours(1),
+                NOW.plusHours(1),
+                Collections.singletonList(LOAD)
+        );
+
+        assertEquals(Collections.singletonList(new HistoryRollup(LOAD, NOW, 2, 1.0, 3.0, 2.0, 3.0)), result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void backfillRollsUpTheRecordedSamplesWhenNothingIsStored() {
+        when(repository.isEmpty()).thenReturn(true);
+        when(history.getExtendedHistoryLimitedToDates(any(), any())).thenReturn(Collections.emptyList());
+        OffsetDateTime recorded = NOW.minusHours(2).plusSeconds(10);
+        when(history.getExtendedHistoryLimitedToDates(
+                argThat(from -> from.toInstant().equals(NOW.minusHours(2).toInstant())),
+                any()
+        )).thenReturn(Arrays.asList(
+                entry(recorded.plusSeconds(60), 3.0),
+                entry(recorded, 1.0)
+        ));
+
+        rollups.backfill();
+
+        verify(history, times(14 * 24)).getExtendedHistoryLimitedToDates(any(), any());
+        ArgumentCaptor<List<HistoryRollup>> written = ArgumentCaptor.forClass(List.class);
+        verify(repository).merge(eq(HistoryTier.MINUTE), written.capture());
+        HistoryRollup load = find(written.getValue(), LOAD);
+        assertEquals(NOW.minusHours(2).toInstant(), load.getDate().toInstant());
+        assertEquals(1.0, load.getLast(), 0.0);
+    }
+
+    @Test
+    public void backfillIsSkippedOnceRollupsAreStored() {
+        when(repository.isEmpty()).thenReturn(false);
+
+        rollups.backfill();
+
+        verifyNoInteractions(history);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void flushWritesTheOpenBucketOfEveryTier() {
+        rollups.add(Collections.singletonList(entry(NOW, 1.0)));
+
+        rollups.flush();
+
+        ArgumentCaptor<List<HistoryRollup>> written = ArgumentCaptor.forClass(List.class);
+        verify(repository).merge(eq(HistoryTier.MINUTE), written.capture());
+        verify(repository).merge(eq(HistoryTier.HOUR), written.capture());
+        assertEquals(1, find(written.getAllValues().get(1), LOAD).getSamples());
+    }
+
+    @Test
+    public void queryMergesTheOpenBucketIntoTheStoredOne() {
+        rollups.add(Collections.singletonList(entry(NOW.plusSeconds(30), 4.0)));
+        when(repository.findAllBetween(eq(HistoryTier.MINUTE), any(), any(), any())).thenReturn(
+                Collections.singletonList(new HistoryRollup(LOAD, NOW, 1, 2.0, 2.0, 2.0, 2.0))
+        );
+
+        List<HistoryRollup> result = rollups.query(
+                HistoryTier.MINUTE,
+                NOW.minusHours(1),
+                NOW.plusHours(1),
+                Collections.singletonList(LOAD)
+        );
+
+        assertEquals(1, result.size());
+        assertEquals(new HistoryRollup(LOAD, NOW, 2, 2.0, 4.0, 3.0, 4.0), result.get(0));
+    }
+
+    @Test
+    public void coarsestTierMeetingTheResolutionIsPicked() {
+        assertEquals(HistoryTier.RAW, rollups.tierFor(NOW.minusDays(1), Duration.ofSeconds(30)));
+        assertEquals(HistoryTier.MINUTE, rollups.tierFor(NOW.minusDays(1), Duration.ofMinutes(5)));
+        assertEquals(HistoryTier.HOUR, rollups.tierFor(NOW.minusDays(1), Duration.ofDays(1)));
+    }
+
+    @Test
+    public void coarserTierIsPickedWhenTheFinerIsNotKeptThatLong() {
+        assertEquals(HistoryTier.MINUTE, rollups.tierFor(NOW.minusDays(20), Duration.ofSeconds(30)));
+        assertEquals(HistoryTier.HOUR, rollups.tierFor(NOW.minusDays(100), Duration.ofSeconds(30)));
+        assertEquals(HistoryTier.HOUR, rollups.tierFor(NOW.minusYears(2), Duration.ofSeconds(30)));
+    }
+
+    private SystemHistoryEntry entry(OffsetDateTime date, double load) {
+        HistorySystemLoad value = mock(HistorySystemLoad.class, RETURNS_MOCKS);
+        when(value.getSystemLoadAverage()).thenReturn(load);
+        return new SystemHistoryEntry(UUID.randomUUID(), date, value);
+    }
+
+    private HistoryRollup find(List<HistoryRollup> rollups, String series) {
+        return rollups.stream().filter(it -> it.getSeries().equals(series)).findFirst().orElseThrow();
+    }
+}
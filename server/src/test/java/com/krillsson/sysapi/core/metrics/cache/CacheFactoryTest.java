@@ -0,0 +1,200 @@
+package com.krillsson.sysapi.core.metrics.cache;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.krillsson.sysapi.config.CacheConfiguration;
+import com.krillsson.sysapi.config.CacheMode;
+import com.krillsson.sysapi.core.domain.cache.CacheStatistics;
+import com.krillsson.sysapi.util.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class CacheFactoryTest {
+
+    Ticker ticker;
+    AtomicLong now;
+    AtomicInteger loads;
+    CacheFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        ticker = mock(Ticker.class);
+        now = new AtomicLong();
+        loads = new AtomicInteger();
+        factory = new CacheFactory(
+                new CacheConfiguration(true, 5, TimeUnit.SECONDS, CacheMode.STALE_WHILE_REVALIDATE),
+                ticker,
+                now::get,
+                new MetricRegistry(),
+                MoreExecutors.directExecutor()
+        );
+    }
+
+    @Test
+    public void staleValueIsServedUntilTheTickReloadsIt() {
+        Supplier<Integer> cache = factory.value("test", loads::incrementAndGet);
+        Ticker.TickListener revalidator = revalidator();
+
+        assertEquals(1, (int) cache.get());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        assertEquals(1, (int) cache.get());
+
+        revalidator.onTick();
+        assertEquals(2, (int) cache.get());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void unreadValueIsNotReloaded() {
+        Supplier<Integer> cache = factory.value("test", loads::incrementAndGet);
+        Ticker.TickListener revalidator = revalidator();
+        cache.get();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        revalidator.onTick();
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        revalidator.onTick();
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void idleValueIsDroppedAndLoadedAgainOnRead() {
+        Supplier<Integer> cache = factory.value("test", loads::incrementAndGet);
+        Ticker.TickListener revalidator = revalidator();
+        cache.get();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        revalidator.onTick();
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        revalidator.onTick();
+
+        assertEquals(2, loads.get());
+        assertEquals(3, (int) cache.get());
+    }
+
+    @Test
+    public void failedReloadKeepsLastGoodValue() {
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<Integer> cache = factory.value("test", () -> {
+            if (calls.incrementAndGet() > 1) {
+                throw new IllegalStateException("sensor gone");
+            }
+            return 42;
+        });
+        Ticker.TickListener revalidator = revalidator();
+        cache.get();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+
+        revalidator.onTick();
+
+        assertEquals(42, (int) cache.get());
+    }
+
+    @Test
+    public void cachesWithLongerMaxAgeShareTheRevalidator() {
+        AtomicInteger slowLoads = new AtomicInteger();
+        Supplier<Integer> fast = factory.value("fast", loads::incrementAndGet);
+        Supplier<Integer> slow = factory.withMaxAge(Duration.ofMinutes(1)).value("slow", slowLoads::incrementAndGet);
+        Ticker.TickListener revalidator = revalidator();
+        fast.get();
+        slow.get();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+
+        revalidator.onTick();
+
+        assertEquals(2, loads.get());
+        assertEquals(1, slowLoads.get());
+    }
+
+    @Test
+    public void cacheIsNotRevalidatedAgainWhileItsReloadRuns() {
+        List<Runnable> submitted = new ArrayList<>();
+        CacheFactory queued = new CacheFactory(
+                new CacheConfiguration(true, 5, TimeUnit.SECONDS, CacheMode.STALE_WHILE_REVALIDATE),
+                ticker,
+                now::get,
+                new MetricRegistry(),
+                submitted::add
+        );
+        Supplier<Integer> cache = queued.value("test", loads::incrementAndGet);
+        Ticker.TickListener revalidator = revalidator();
+        cache.get();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        cache.get();
+
+        revalidator.onTick();
+        revalidator.onTick();
+        assertEquals(1, submitted.size());
+        assertEquals(1, (int) cache.get());
+
+        submitted.remove(0).run();
+        revalidator.onTick();
+        assertEquals(1, submitted.size());
+        assertEquals(2, (int) cache.get());
+    }
+
+    @Test
+    public void keyedCacheAcceptsMissingValues() {
+        KeyedCache<String, String> cache = factory.keyed("test", key -> key.equals("sda") ? "disk" : null);
+
+        assertEquals("disk", cache.get("sda"));
+        assertNull(cache.get("sdz"));
+    }
+
+    @Test
+    public void expiringKeyedCacheAcceptsMissingValues() {
+        CacheFactory expiring = new CacheFactory(
+                new CacheConfiguration(true, 5, TimeUnit.SECONDS, CacheMode.EXPIRE_AFTER_WRITE),
+                ticker
+        );
+        KeyedCache<String, String> cache = expiring.keyed("test", key -> null);
+
+        assertNull(cache.get("sdz"));
+    }
+
+    @Test
+    public void hitsMissesAndServedAgeAreRecorded() {
+        MetricRegistry registry = new MetricRegistry();
+        CacheFactory instrumented = new CacheFactory(
+                new CacheConfiguration(true, 5, TimeUnit.SECONDS, CacheMode.EXPIRE_AFTER_WRITE),
+                ticker,
+                now::get,
+                registry
+        );
+        Supplier<Integer> cache = instrumented.value("test", loads::incrementAndGet);
+
+        cache.get();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        cache.get();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        cache.get();
+
+        CacheStatistics statistics = CacheMetrics.statistics(registry).get(0);
+        assertEquals("test", statistics.getName());
+        assertEquals(1, statistics.getHits());
+        assertEquals(2, statistics.getMisses());
+        assertEquals(2, statistics.getLoads());
+        assertEquals(2000.0, statistics.getServedAge().getMax(), 0.001);
+    }
+
+    private Ticker.TickListener revalidator() {
+        ArgumentCaptor<Ticker.TickListener> captor = ArgumentCaptor.forClass(Ticker.TickListener.class);
+        verify(ticker).register(captor.capture());
+        return captor.getValue();
+    }
+}
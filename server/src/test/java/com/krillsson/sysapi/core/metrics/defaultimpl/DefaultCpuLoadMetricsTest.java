@@ -0,0 +1,75 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl;
+
+import com.krillsson.sysapi.core.domain.cpu.CoreLoad;
+import com.krillsson.sysapi.util.Ticker;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import oshi.hardware.CentralProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DefaultCpuLoadMetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    CentralProcessor processor;
+    File stat;
+
+    @Before
+    public void setUp() throws Exception {
+        processor = mock(CentralProcessor.class);
+        when(processor.getLogicalProcessorCount()).thenReturn(2);
+        stat = folder.newFile("stat");
+    }
+
+    @Test
+    public void breaksDownLoadPerCoreBetweenTicks() throws Exception {
+        //                 user nice system idle iowait irq softirq steal
+        write("cpu  0 0 0 0 0 0 0 0\n" +
+                "cpu0 0 0 0 0 0 0 0 0\n" +
+                "cpu1 0 0 0 0 0 0 0 0\n" +
+                "intr 1 2 3\n");
+        DefaultCpuLoadMetrics metrics = new DefaultCpuLoadMetrics(processor, mock(Ticker.class), stat.getPath());
+
+        write("cpu  60 0 30 90 10 5 5 0\n" +
+                "cpu0 40 10 20 10 10 0 0 10\n" +
+                "cpu1 10 0 10 80 0 0 0 0\n" +
+                "intr 1 2 3\n");
+        metrics.onTick();
+
+        assertEquals(50.0, metrics.getSystemUsage(), 0.001);
+        CoreLoad first = metrics.getCoreLoads().get(0);
+        assertEquals(80.0, first.getPercentage(), 0.001);
+        assertEquals(50.0, first.getUser(), 0.001);
+        assertEquals(20.0, first.getSystem(), 0.001);
+        assertEquals(10.0, first.getIoWait(), 0.001);
+        assertEquals(10.0, first.getSteal(), 0.001);
+        CoreLoad second = metrics.getCoreLoads().get(1);
+        assertEquals(20.0, second.getPercentage(), 0.001);
+    }
+
+    @Test
+    public void idleCoreHasNoLoad() throws Exception {
+        write("cpu  0 0 0 0 0 0 0 0\ncpu0 0 0 0 0 0 0 0 0\ncpu1 0 0 0 0 0 0 0 0\n");
+        DefaultCpuLoadMetrics metrics = new DefaultCpuLoadMetrics(processor, mock(Ticker.class), stat.getPath());
+
+        metrics.onTick();
+
+        assertEquals(0.0, metrics.getSystemUsage(), 0.001);
+        assertEquals(0.0, metrics.getCoreLoads().get(1).getPercentage(), 0.001);
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(stat.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
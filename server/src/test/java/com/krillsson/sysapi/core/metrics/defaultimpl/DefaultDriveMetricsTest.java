@@ -2,9 +2,12 @@ package com.krillsson.sysapi.core.metrics.defaultimpl;
 
 import com.krillsson.sysapi.core.domain.drives.Drive;
 import com.krillsson.sysapi.core.domain.drives.DriveLoad;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import oshi.hardware.HWDiskStore;
 import oshi.hardware.HWPartition;
 import oshi.hardware.HardwareAbstractionLayer;
@@ -12,20 +15,31 @@ import oshi.software.os.FileSystem;
 import oshi.software.os.OSFileStore;
 import oshi.software.os.OperatingSystem;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.RETURNS_MOCKS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DefaultDriveMetricsTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     String DEV_SDA1 = "/dev/sda1";
     String DEV_SDA2 = "/dev/sda2";
     DefaultDriveMetrics provider;
@@ -46,13 +60,32 @@ public class DefaultDriveMetricsTest {
     HWPartition disk2Partition2;
     OSFileStore disk2OsPartition;
 
+    Map<String, DefaultDiskMetrics.DiskSample> samples = new HashMap<>();
+
     @Before
     public void setUp() throws Exception {
         measurementManager = mock(SpeedMeasurementManager.class);
         os = mock(OperatingSystem.class);
         fs = mock(FileSystem.class);
         hal = mock(HardwareAbstractionLayer.class);
-        provider = new DefaultDriveMetrics(os, hal, measurementManager);
+        File mounts = folder.newFile("mounts");
+        Files.write(mounts.toPath(), "/dev/sda1 / ext4 rw 0 0\n".getBytes(StandardCharsets.UTF_8));
+        FileStoreRegistry fileStores = new FileStoreRegistry(
+                fs,
+                mounts.getPath(),
+                100,
+                TimeUnit.MINUTES.toNanos(1),
+                System::nanoTime,
+                MoreExecutors.newDirectExecutorService()
+        );
+        provider = new DefaultDriveMetrics(
+                os,
+                hal,
+                measurementManager,
+                fileStores,
+                () -> 0,
+                name -> samples.get(name)
+        );
 
         disk1 = mock(HWDiskStore.class, RETURNS_MOCKS);
         when(disk1.getName()).thenReturn(DEV_SDA1);
@@ -86,7 +119,6 @@ public class DefaultDriveMetricsTest {
         when(hal.getDiskStores()).thenReturn(Arrays.asList(disk1, disk2));
 
         when(os.getFileSystem().getFileStores()).thenReturn(Arrays.asList(disk1OsPartition, disk2OsPartition));
-        provider.register();
     }
 
 
@@ -133,6 +165,30 @@ public class DefaultDriveMetricsTest {
         assertFalse(diskInfo.isPresent());
     }
 
+    @Test
+    public void drivesAreNotJoinedWithFileStoresAgainOnEveryRead() {
+        provider.driveLoads();
+        provider.driveLoads();
+        provider.driveLoadByName(DEV_SDA2);
+
+        verify(hal, times(1)).getDiskStores();
+        verify(fs, times(1)).getFileStores();
+    }
+
+    @Test
+    public void countersAreTheOnesSampledOnTheTick() {
+        samples.put(DEV_SDA1, new DefaultDiskMetrics.DiskSample(1, 512, 2, 1024));
+        provider.driveLoads();
+        samples.put(DEV_SDA1, new DefaultDiskMetrics.DiskSample(3, 1536, 4, 2048));
+
+        DriveLoad load = provider.driveLoadByName(DEV_SDA1).get();
+
+        assertThat(load.getValues().getReads(), is(3L));
+        assertThat(load.getValues().getReadBytes(), is(1536L));
+        assertThat(load.getValues().getWrites(), is(4L));
+        assertThat(load.getValues().getWriteBytes(), is(2048L));
+    }
+
     @Test
     public void shouldHandleSpeedMeasurementManagerReturningEmpty() {
         when(measurementManager.getCurrentSpeedForName(DEV_SDA1)).thenReturn(Optional.empty());
@@ -3,6 +3,7 @@ package com.krillsson.sysapi.core.metrics.defaultimpl;
 import com.krillsson.sysapi.core.connectivity.ConnectivityCheckManager;
 import com.krillsson.sysapi.core.domain.network.NetworkInterface;
 import com.krillsson.sysapi.core.domain.network.NetworkInterfaceLoad;
+import com.krillsson.sysapi.core.speed.CounterRegistry;
 import com.krillsson.sysapi.core.speed.SpeedMeasurementManager;
 import com.krillsson.sysapi.util.Ticker;
 import org.junit.Before;
@@ -12,8 +13,11 @@ import oshi.hardware.NetworkIF;
 
 import java.net.SocketException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.*;
@@ -43,6 +47,7 @@ public class DefaultNetworkMetricsTest {
                 ticker,
                 hal,
                 speedMeasurementManager,
+                new CounterRegistry(System::nanoTime),
                 connectivityCheckManager
         );
 
@@ -118,6 +123,29 @@ public class DefaultNetworkMetricsTest {
         assertFalse(en2.isPresent());
     }
 
+    @Test
+    public void oshiBatchSourcePicksUpHotpluggedNics() {
+        AtomicLong now = new AtomicLong();
+        when(hal.getNetworkIFs()).thenReturn(Collections.singletonList(nic1));
+        DefaultNetworkMetrics.NetworkBatchSource batch = new DefaultNetworkMetrics.NetworkBatchSource(
+                hal::getNetworkIFs,
+                TimeUnit.MINUTES.toNanos(1),
+                now::get
+        );
+        batch.refresh();
+        int generation = batch.getGeneration();
+
+        when(hal.getNetworkIFs()).thenReturn(Arrays.asList(nic1, nic2));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        batch.refresh();
+        assertNull(batch.sample("en1"));
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        batch.refresh();
+        assertEquals(124L, batch.sample("en1").getBytesReceived());
+        assertEquals(generation + 1, batch.getGeneration());
+    }
+
     @Test
     public void shouldHandleJavaNetworkInterfaceThrowingExceptionsInIsUp() throws Exception {
         when(networkInterface1.isUp()).thenThrow(new SocketException("Shrug"));
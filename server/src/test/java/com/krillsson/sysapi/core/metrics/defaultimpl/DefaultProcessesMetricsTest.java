@@ -6,12 +6,14 @@ import com.krillsson.sysapi.util.Ticker;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import oshi.hardware.CentralProcessor;
 import oshi.hardware.GlobalMemory;
 import oshi.hardware.HardwareAbstractionLayer;
 import oshi.hardware.VirtualMemory;
 import oshi.software.os.OSProcess;
 import oshi.software.os.OperatingSystem;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
@@ -36,10 +38,13 @@ public class DefaultProcessesMetricsTest {
 
         when(hal.getMemory()).thenReturn(memory);
         when(memory.getVirtualMemory()).thenReturn(virtualMemory);
+        CentralProcessor processor = mock(CentralProcessor.class);
+        when(processor.getLogicalProcessorCount()).thenReturn(1);
+        when(hal.getProcessor()).thenReturn(processor);
         os = mock(OperatingSystem.class);
         ticker = mock(Ticker.class);
 
-        provider = new DefaultProcessesMetrics(os, hal, ticker);
+        provider = new DefaultProcessesMetrics(os, ticker, new OshiProcessCollector(os, hal));
     }
 
     @Test
@@ -50,6 +55,28 @@ public class DefaultProcessesMetricsTest {
         assertTrue(processesInfo.getProcesses().isEmpty());
     }
 
+    @Test
+    public void shouldOnlyReturnTopProcessesWhenLimited() {
+        when(memory.getTotal()).thenReturn(4000L);
+        when(os.getProcesses()).thenReturn(Arrays.asList(process(3, 300L), process(1, 100L), process(4, 400L), process(2, 200L)));
+        provider.onTick();
+
+        ProcessesInfo processesInfo = provider.processesInfo(ProcessSort.MEMORY, 2);
+
+        assertEquals(2, processesInfo.getProcesses().size());
+        assertEquals(4, processesInfo.getProcesses().get(0).getProcessID());
+        assertEquals(3, processesInfo.getProcesses().get(1).getProcessID());
+        assertEquals(4L, processesInfo.getProcessCount());
+    }
+
+    private OSProcess process(int pid, long residentSetSize) {
+        OSProcess process = mock(OSProcess.class, RETURNS_MOCKS);
+        when(process.getProcessID()).thenReturn(pid);
+        when(process.getResidentSetSize()).thenReturn(residentSetSize);
+        when(process.getState()).thenReturn(OSProcess.State.RUNNING);
+        return process;
+    }
+
     @Test
     @Ignore
     public void shouldProperlyAssignPercentageUsedOfMemory() {
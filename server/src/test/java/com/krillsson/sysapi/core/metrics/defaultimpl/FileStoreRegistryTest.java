@@ -0,0 +1,207 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import oshi.software.os.FileSystem;
+import oshi.software.os.OSFileStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class FileStoreRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    FileSystem fileSystem;
+    File mounts;
+    File mountPoint;
+    AtomicLong now;
+    SwitchableExecutor executor;
+    FileStoreRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        fileSystem = mock(FileSystem.class);
+        mounts = folder.newFile("mounts");
+        mountPoint = folder.newFolder("data");
+        now = new AtomicLong();
+        executor = new SwitchableExecutor();
+        mounts("/dev/sda1 / ext4 rw 0 0\n");
+        List<OSFileStore> stores = Collections.singletonList(store("/dev/sda1", mountPoint.getPath()));
+        when(fileSystem.getFileStores()).thenReturn(stores);
+        registry = new FileStoreRegistry(
+                fileSystem,
+                mounts.getPath(),
+                100,
+                TimeUnit.MINUTES.toNanos(1),
+                now::get,
+                executor
+        );
+    }
+
+    @Test
+    public void findsStoresByNameIgnoringCase() {
+        assertEquals("/dev/sda1", registry.byName("/DEV/SDA1").getFileSystem().getName());
+        assertNull(registry.byName("/dev/sdb1"));
+    }
+
+    @Test
+    public void sharedNameFindsTheFirstStore() {
+        when(fileSystem.getFileStores()).thenReturn(Arrays.asList(
+                store("tmpfs", "/run"),
+                store("tmpfs", "/dev/shm")
+        ));
+
+        assertEquals("/run", registry.byName("tmpfs").getFileSystem().getMount());
+        assertEquals(2, registry.stores().size());
+    }
+
+    @Test
+    public void unchangedMountTableIsNotEnumeratedAgain() {
+        registry.stores();
+        registry.onTick();
+        registry.onTick();
+
+        verify(fileSystem, times(1)).getFileStores();
+    }
+
+    @Test
+    public void changedMountTableIsEnumeratedAgain() throws Exception {
+        registry.stores();
+        mounts("/dev/sda1 / ext4 rw 0 0\n/dev/sdb1 /mnt ext4 rw 0 0\n");
+
+        registry.onTick();
+
+        verify(fileSystem, times(2)).getFileStores();
+    }
+
+    @Test
+    public void mountTableWithTheSameHashIsStillComparedByContent() throws Exception {
+        // "Aa" and "BB" have the same 31 based hash
+        mounts("/dev/sda1 /Aa ext4 rw 0 0\n");
+        registry.stores();
+        mounts("/dev/sda1 /BB ext4 rw 0 0\n");
+
+        registry.onTick();
+
+        verify(fileSystem, times(2)).getFileStores();
+    }
+
+    @Test
+    public void requestsWaitForTheFirstEnumerationOnlyOnce() {
+        executor.hang = true;
+        assertTrue(registry.stores().isEmpty());
+
+        long start = System.nanoTime();
+        assertTrue(registry.stores().isEmpty());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+
+        executor.hang = false;
+        executor.runHung();
+        registry.onTick();
+        assertEquals(1, registry.stores().size());
+        verify(fileSystem, times(1)).getFileStores();
+    }
+
+    @Test
+    public void spaceIsRefreshedOnTick() {
+        registry.onTick();
+
+        assertEquals(mountPoint.getTotalSpace(), registry.byName("/dev/sda1").getLoad().getTotalSpace());
+    }
+
+    @Test
+    public void hungStatvfsKeepsLastKnownSpace() {
+        registry.stores();
+        executor.hang = true;
+
+        registry.onTick();
+        registry.onTick();
+
+        assertEquals(1000, registry.byName("/dev/sda1").getLoad().getTotalSpace());
+        assertEquals(1, executor.submitted);
+    }
+
+    private void mounts(String content) throws IOException {
+        Files.write(mounts.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private OSFileStore store(String name, String mount) {
+        OSFileStore store = mock(OSFileStore.class);
+        when(store.getName()).thenReturn(name);
+        when(store.getDescription()).thenReturn("Local Disk");
+        when(store.getLabel()).thenReturn("");
+        when(store.getType()).thenReturn("ext4");
+        when(store.getVolume()).thenReturn(name);
+        when(store.getLogicalVolume()).thenReturn("");
+        when(store.getUUID()).thenReturn("2f3a8c1e-0b7d-4e6a-9c55-3d1f0a6b7e21");
+        when(store.getMount()).thenReturn(mount);
+        when(store.getFreeSpace()).thenReturn(400L);
+        when(store.getUsableSpace()).thenReturn(300L);
+        when(store.getTotalSpace()).thenReturn(1000L);
+        return store;
+    }
+
+    /**
+     * Runs tasks on the calling thread, or holds them back until {@link #runHung()} while {@link #hang} is set.
+     */
+    static class SwitchableExecutor extends AbstractExecutorService {
+        boolean hang;
+        int submitted;
+        final List<Runnable> hung = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            if (hang) {
+                submitted++;
+                hung.add(command);
+                return;
+            }
+            command.run();
+        }
+
+        void runHung() {
+            hung.forEach(Runnable::run);
+            hung.clear();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
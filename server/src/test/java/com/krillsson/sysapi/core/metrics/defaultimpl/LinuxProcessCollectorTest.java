@@ -0,0 +1,142 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.krillsson.sysapi.core.domain.processes.Process;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import oshi.hardware.CentralProcessor;
+import oshi.hardware.GlobalMemory;
+import oshi.hardware.HardwareAbstractionLayer;
+import oshi.software.os.OSProcess;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LinuxProcessCollectorTest {
+
+    @Rule
+    public TemporaryFolder proc = new TemporaryFolder();
+
+    HardwareAbstractionLayer hal;
+    ProcessTable table;
+
+    @Before
+    public void setUp() throws Exception {
+        hal = mock(HardwareAbstractionLayer.class);
+        GlobalMemory memory = mock(GlobalMemory.class);
+        when(memory.getTotal()).thenReturn(4096L * 100);
+        when(memory.getPageSize()).thenReturn(4096L);
+        when(hal.getMemory()).thenReturn(memory);
+        CentralProcessor processor = mock(CentralProcessor.class);
+        when(processor.getLogicalProcessorCount()).thenReturn(1);
+        when(hal.getProcessor()).thenReturn(processor);
+        table = new ProcessTable();
+
+        write("stat", "cpu  1 2 3 4\nbtime 1000\nprocesses 42\n");
+    }
+
+    @Test
+    public void parsesStatOfEveryProcess() throws Exception {
+        write("1/stat", stat(1, "systemd", 'S', 0, 150, 50, 4, 10));
+        write("42/stat", stat(42, "tmux: server (1)", 'R', 1, 10, 0, 1, 500));
+        write("self/stat", stat(42, "self", 'R', 1, 10, 0, 1, 500));
+
+        ProcessTableSnapshot snapshot = new LinuxProcessCollector(hal, proc.getRoot().getPath()).collect(table);
+
+        assertEquals(2, snapshot.getSize());
+        assertEquals(5, snapshot.getThreadCount());
+        Process init = snapshot.get(1);
+        assertEquals("systemd", init.getName());
+        assertEquals(OSProcess.State.SLEEPING, init.getState());
+        assertEquals(1500, init.getUserTime());
+        assertEquals(500, init.getKernelTime());
+        assertEquals(1000 * 1000 + 100, init.getStartTime());
+        assertEquals(10 * 4096, init.getResidentSetSize());
+        Process server = snapshot.get(42);
+        assertEquals("tmux: server (1)", server.getName());
+        assertEquals(1, server.getParentProcessID());
+        assertEquals(OSProcess.State.RUNNING, server.getState());
+    }
+
+    @Test
+    public void detailsAreReadLazilyAndOnce() throws Exception {
+        write("7/stat", stat(7, "sleep", 'S', 1, 0, 0, 1, 200));
+        LinuxProcessCollector collector = new LinuxProcessCollector(hal, proc.getRoot().getPath());
+        Process first = collector.collect(table).get(7);
+
+        write("7/cmdline", "sleep\u00001000\u0000");
+        assertEquals("sleep 1000", first.getCommandLine());
+
+        write("7/cmdline", "changed");
+        Process second = collector.collect(table).get(7);
+        assertNotSame(first, second);
+        assertEquals("sleep 1000", second.getCommandLine());
+        assertSame(first.getName(), second.getName());
+    }
+
+    @Test
+    public void ioIsReadOnEveryTickAndRatedBetweenTicks() throws Exception {
+        write("7/stat", stat(7, "sleep", 'S', 1, 0, 0, 1, 200));
+        write("7/io", io(1000, 2000));
+        LinuxProcessCollector collector = new LinuxProcessCollector(hal, proc.getRoot().getPath());
+        Process first = collector.collect(table).get(7);
+        assertEquals(1000, first.getBytesRead());
+        assertEquals(0, first.getBytesReadPerSecond());
+
+        Thread.sleep(20);
+        write("7/io", io(5000, 2000));
+        Process second = collector.collect(table).get(7);
+
+        assertEquals(5000, second.getBytesRead());
+        assertEquals(2000, second.getBytesWritten());
+        assertTrue(second.getBytesReadPerSecond() > 0);
+        assertEquals(0, second.getBytesWrittenPerSecond());
+    }
+
+    @Test
+    public void detailsAreNotSerialized() throws Exception {
+        write("7/stat", stat(7, "sleep", 'S', 1, 0, 0, 1, 200));
+        Process process = new LinuxProcessCollector(hal, proc.getRoot().getPath()).collect(table).get(7);
+
+        String json = new ObjectMapper().writeValueAsString(process);
+
+        assertFalse(json.contains("details"));
+        assertTrue(json.contains("\"name\":\"sleep\""));
+    }
+
+    @Test
+    public void exitedProcessesAreSkipped() throws Exception {
+        write("7/stat", stat(7, "sleep", 'S', 1, 0, 0, 1, 200));
+        assertTrue(new File(proc.getRoot(), "8").mkdir());
+
+        ProcessTableSnapshot snapshot = new LinuxProcessCollector(hal, proc.getRoot().getPath()).collect(table);
+
+        assertEquals(1, snapshot.getSize());
+        assertNull(snapshot.get(8));
+    }
+
+    private String stat(int pid, String name, char state, int ppid, long utime, long stime, int threads, long startTicks) {
+        return pid + " (" + name + ") " + state + " " + ppid + " " + pid + " " + pid + " 0 -1 4194560 100 0 0 0 " +
+                utime + " " + stime + " 0 0 20 0 " + threads + " 0 " + startTicks + " 1000000 10 " +
+                "18446744073709551615 1 1 0 0 0 0 0 0 0 0 0 0 17 0 0 0 0 0 0\n";
+    }
+
+    private String io(long readBytes, long writeBytes) {
+        return "rchar: 0\nwchar: 0\nsyscr: 0\nsyscw: 0\nread_bytes: " + readBytes + "\nwrite_bytes: " + writeBytes +
+                "\ncancelled_write_bytes: 0\n";
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(proc.getRoot(), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
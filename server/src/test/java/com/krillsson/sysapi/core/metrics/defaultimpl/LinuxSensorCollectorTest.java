@@ -0,0 +1,132 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class LinuxSensorCollectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    File hwmon;
+    File thermal;
+
+    @Before
+    public void setUp() throws Exception {
+        hwmon = folder.newFolder("hwmon");
+        thermal = folder.newFolder("thermal");
+    }
+
+    @Test
+    public void readsPackageAndEveryCoreInOrder() throws Exception {
+        write(hwmon, "hwmon0/name", "acpitz");
+        write(hwmon, "hwmon0/temp1_input", "27800");
+        write(hwmon, "hwmon1/name", "coretemp");
+        write(hwmon, "hwmon1/temp1_input", "52000");
+        write(hwmon, "hwmon1/temp2_input", "50000");
+        write(hwmon, "hwmon1/temp10_input", "49000");
+        write(hwmon, "hwmon1/temp2_label", "Core 0");
+        LinuxSensorCollector collector = new LinuxSensorCollector(hwmon.getPath(), thermal.getPath());
+
+        collector.onTick();
+
+        assertEquals(Arrays.asList(52.0, 50.0, 49.0), collector.temperatures());
+    }
+
+    @Test
+    public void valuesAreReadAgainOnEveryTick() throws Exception {
+        write(hwmon, "hwmon0/name", "k10temp");
+        write(hwmon, "hwmon0/temp1_input", "40000");
+        write(hwmon, "hwmon0/fan1_input", "1200\n");
+        LinuxSensorCollector collector = new LinuxSensorCollector(hwmon.getPath(), thermal.getPath());
+        collector.onTick();
+
+        write(hwmon, "hwmon0/temp1_input", "65500");
+        write(hwmon, "hwmon0/fan1_input", "2400\n");
+        collector.onTick();
+
+        assertEquals(Arrays.asList(65.5), collector.temperatures());
+        assertEquals(Long.valueOf(2400), collector.fanRpm());
+    }
+
+    @Test
+    public void fansOfOtherDevicesAreNotTakenForTheCpuFan() throws Exception {
+        write(hwmon, "hwmon0/name", "k10temp");
+        write(hwmon, "hwmon0/temp1_input", "40000");
+        write(hwmon, "hwmon1/name", "nct6775");
+        write(hwmon, "hwmon1/fan1_input", "1200\n");
+        LinuxSensorCollector collector = new LinuxSensorCollector(hwmon.getPath(), thermal.getPath());
+
+        collector.onTick();
+
+        assertNull(collector.fanRpm());
+    }
+
+    @Test
+    public void sensorsAreDiscoveredAgainWhenAReadFails() throws Exception {
+        write(hwmon, "hwmon0/name", "coretemp");
+        // a directory opens like the attribute but fails every read
+        new File(hwmon, "hwmon0/temp1_input").mkdirs();
+        LinuxSensorCollector collector = new LinuxSensorCollector(hwmon.getPath(), thermal.getPath());
+        collector.onTick();
+        assertEquals(Arrays.asList(0.0), collector.temperatures());
+
+        new File(hwmon, "hwmon0/temp1_input").delete();
+        write(hwmon, "hwmon0/temp1_input", "45000");
+        collector.onTick();
+
+        assertEquals(Arrays.asList(45.0), collector.temperatures());
+    }
+
+    @Test
+    public void nothingIsReadOnceClosed() throws Exception {
+        write(hwmon, "hwmon0/name", "coretemp");
+        write(hwmon, "hwmon0/temp1_input", "40000");
+        LinuxSensorCollector collector = new LinuxSensorCollector(hwmon.getPath(), thermal.getPath());
+        collector.onTick();
+
+        collector.close();
+        write(hwmon, "hwmon0/temp1_input", "65500");
+        collector.onTick();
+
+        assertEquals(Arrays.asList(40.0), collector.temperatures());
+    }
+
+    @Test
+    public void fallsBackToCpuThermalZones() throws Exception {
+        write(thermal, "thermal_zone0/type", "acpitz");
+        write(thermal, "thermal_zone0/temp", "27800");
+        write(thermal, "thermal_zone1/type", "x86_pkg_temp");
+        write(thermal, "thermal_zone1/temp", "48000");
+        LinuxSensorCollector collector = new LinuxSensorCollector(hwmon.getPath(), thermal.getPath());
+
+        collector.onTick();
+
+        assertEquals(Arrays.asList(48.0), collector.temperatures());
+        assertNull(collector.fanRpm());
+    }
+
+    @Test
+    public void nothingIsServedBeforeTheFirstTick() {
+        LinuxSensorCollector collector = new LinuxSensorCollector(hwmon.getPath(), thermal.getPath());
+
+        assertNull(collector.temperatures());
+        assertFalse(collector.hasSensors());
+    }
+
+    private void write(File root, String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,148 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import oshi.hardware.HardwareAbstractionLayer;
+import oshi.hardware.NetworkIF;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class NetworkInterfaceRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    HardwareAbstractionLayer hal;
+    AtomicInteger generation;
+    AtomicLong now;
+    File sysClassNet;
+    NetworkInterfaceRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        hal = mock(HardwareAbstractionLayer.class);
+        generation = new AtomicInteger(1);
+        now = new AtomicLong();
+        sysClassNet = folder.newFolder("net");
+        when(hal.getNetworkIFs()).thenReturn(Arrays.asList(nic("lo", "00:00:00:00:00:00"), nic("eth0", "00:1B:63:84:45:E6")));
+        flags("lo", "0x9");
+        operState("lo", "unknown");
+        flags("eth0", "0x1002");
+        operState("eth0", "down");
+        registry = new NetworkInterfaceRegistry(
+                hal,
+                generation::get,
+                sysClassNet.getPath(),
+                TimeUnit.MINUTES.toNanos(1),
+                now::get
+        );
+    }
+
+    @Test
+    public void findsInterfacesByNameAndMac() {
+        assertEquals("eth0", registry.byName("ETH0").getName());
+        assertEquals("eth0", registry.byMac("00:1b:63:84:45:e6").getName());
+        assertNull(registry.byName("eth1"));
+    }
+
+    @Test
+    public void readsFlagsFromSysfs() throws Exception {
+        NetworkInterfaceRegistry.Descriptor loopback = registry.byName("lo");
+        NetworkInterfaceRegistry.Descriptor ethernet = registry.byName("eth0");
+
+        assertTrue(loopback.getLoopback());
+        assertTrue(registry.isUp(loopback));
+        assertFalse(ethernet.getLoopback());
+        assertFalse(registry.isUp(ethernet));
+
+        flags("eth0", "0x1003");
+        operState("eth0", "up");
+        assertTrue(registry.isUp(ethernet));
+    }
+
+    @Test
+    public void administrativelyUpInterfaceWithoutCarrierIsDown() throws Exception {
+        flags("eth0", "0x1003");
+        operState("eth0", "down");
+
+        assertFalse(registry.isUp(registry.byName("eth0")));
+    }
+
+    @Test
+    public void interfacesAreOnlyEnumeratedAgainWhenTheSetChanged() {
+        registry.descriptors();
+        registry.onTick();
+        registry.byName("eth0");
+        verify(hal, times(1)).getNetworkIFs();
+
+        generation.incrementAndGet();
+        registry.onTick();
+        verify(hal, times(2)).getNetworkIFs();
+    }
+
+    @Test
+    public void interfacesAreEnumeratedAgainWhenOld() {
+        registry.descriptors();
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+
+        registry.onTick();
+
+        verify(hal, times(2)).getNetworkIFs();
+    }
+
+    @Test
+    public void listenersAreToldAboutAddedInterfaces() {
+        List<Set<String>> changes = new ArrayList<>();
+        registry.addListener(changes::add);
+        registry.onTick();
+
+        when(hal.getNetworkIFs()).thenReturn(Arrays.asList(nic("lo", "00:00:00:00:00:00"), nic("veth1", "02:42:ac:11:00:02")));
+        generation.incrementAndGet();
+        registry.onTick();
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        registry.onTick();
+
+        assertEquals(2, changes.size());
+        assertTrue(changes.get(1).contains("veth1"));
+        assertFalse(changes.get(1).contains("eth0"));
+    }
+
+    private NetworkIF nic(String name, String mac) {
+        NetworkIF nic = mock(NetworkIF.class);
+        when(nic.getName()).thenReturn(name);
+        when(nic.getDisplayName()).thenReturn(name);
+        when(nic.getMacaddr()).thenReturn(mac);
+        when(nic.getIPv4addr()).thenReturn(new String[0]);
+        when(nic.getIPv6addr()).thenReturn(new String[0]);
+        return nic;
+    }
+
+    private void flags(String name, String flags) throws IOException {
+        attribute(name, "flags", flags);
+    }
+
+    private void operState(String name, String operState) throws IOException {
+        attribute(name, "operstate", operState);
+    }
+
+    private void attribute(String name, String attribute, String value) throws IOException {
+        File directory = new File(sysClassNet, name);
+        directory.mkdirs();
+        Files.write(new File(directory, attribute).toPath(), (value + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
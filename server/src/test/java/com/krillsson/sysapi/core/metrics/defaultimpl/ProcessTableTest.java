@@ -0,0 +1,106 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl;
+
+import com.krillsson.sysapi.core.domain.processes.Process;
+import com.krillsson.sysapi.core.domain.processes.ProcessSort;
+import org.junit.Before;
+import org.junit.Test;
+import oshi.software.os.OSProcess;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Answers.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ProcessTableTest {
+
+    ProcessTable table;
+
+    @Before
+    public void setUp() throws Exception {
+        table = new ProcessTable();
+    }
+
+    @Test
+    public void firstEnumerationAddsEverythingOrderedByPid() {
+        ProcessTableSnapshot snapshot = table.update(Arrays.asList(process(30, 1), process(10, 1), process(20, 1)), 1, 1000);
+
+        assertArrayEquals(new int[]{10, 20, 30}, snapshot.getAdded());
+        assertEquals(0, snapshot.getRemoved().length);
+        assertEquals(10, snapshot.getProcesses().get(0).getProcessID());
+        assertEquals(30, snapshot.get(30).getProcessID());
+        assertNull(snapshot.get(40));
+    }
+
+    @Test
+    public void diffsAgainstPreviousEnumeration() {
+        table.update(Arrays.asList(process(10, 1), process(20, 1), process(30, 1)), 1, 1000);
+
+        OSProcess busier = process(20, 1);
+        when(busier.getUserTime()).thenReturn(500L);
+        ProcessTableSnapshot snapshot = table.update(Arrays.asList(process(10, 1), busier, process(40, 1)), 1, 1000);
+
+        assertArrayEquals(new int[]{40}, snapshot.getAdded());
+        assertArrayEquals(new int[]{30}, snapshot.getRemoved());
+        assertArrayEquals(new int[]{20}, snapshot.getChanged());
+        assertSame(snapshot, table.getSnapshot());
+    }
+
+    @Test
+    public void reusedPidIsRemovedAndAdded() {
+        table.update(Arrays.asList(process(10, 1)), 1, 1000);
+
+        ProcessTableSnapshot snapshot = table.update(Arrays.asList(process(10, 2)), 1, 1000);
+
+        assertArrayEquals(new int[]{10}, snapshot.getAdded());
+        assertArrayEquals(new int[]{10}, snapshot.getRemoved());
+        assertEquals(0, snapshot.getChanged().length);
+    }
+
+    @Test
+    public void cpuAndIoAreMeasuredBetweenEnumerations() {
+        OSProcess first = process(10, 1);
+        when(first.getUpTime()).thenReturn(1000L);
+        when(first.getUserTime()).thenReturn(100L);
+        when(first.getBytesRead()).thenReturn(0L);
+        table.update(Arrays.asList(first), 2, 1000);
+
+        OSProcess second = process(10, 1);
+        when(second.getUpTime()).thenReturn(2000L);
+        when(second.getUserTime()).thenReturn(600L);
+        when(second.getBytesRead()).thenReturn(4096L);
+        ProcessTableSnapshot snapshot = table.update(Arrays.asList(second), 2, 1000);
+
+        assertEquals(25.0, snapshot.get(10).getCpuPercent(), 0.001);
+        assertEquals(4096L, snapshot.get(10).getBytesReadPerSecond());
+    }
+
+    @Test
+    public void orderingsAreSharedBetweenRequests() {
+        OSProcess small = process(10, 1);
+        when(small.getResidentSetSize()).thenReturn(100L);
+        OSProcess large = process(20, 1);
+        when(large.getResidentSetSize()).thenReturn(300L);
+        OSProcess medium = process(30, 1);
+        when(medium.getResidentSetSize()).thenReturn(200L);
+        ProcessTableSnapshot snapshot = table.update(Arrays.asList(small, large, medium), 1, 1000);
+
+        List<Process> topTwo = snapshot.top(ProcessSort.MEMORY, 2);
+        assertEquals(20, topTwo.get(0).getProcessID());
+        assertEquals(30, topTwo.get(1).getProcessID());
+        assertSame(topTwo.get(0), snapshot.top(ProcessSort.MEMORY, 1).get(0));
+        assertEquals(3, snapshot.top(ProcessSort.MEMORY, 0).size());
+        assertSame(snapshot.getProcesses(), snapshot.top(ProcessSort.PID, 0));
+    }
+
+    private OSProcess process(int pid, long startTime) {
+        OSProcess process = mock(OSProcess.class, RETURNS_MOCKS);
+        when(process.getProcessID()).thenReturn(pid);
+        when(process.getStartTime()).thenReturn(startTime);
+        when(process.getState()).thenReturn(OSProcess.State.RUNNING);
+        when(process.getUpTime()).thenReturn(1000L);
+        return process;
+    }
+}
@@ -0,0 +1,92 @@
+package com.krillsson.sysapi.core.metrics.defaultimpl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ProcfsBatchSourcesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsEveryInterfaceFromNetDev() throws Exception {
+        File netDev = write("net/dev",
+                "Inter-|   Receive                                                |  Transmit\n" +
+                " face |bytes    packets errs drop fifo frame compressed multicast|bytes    packets errs drop fifo colls carrier compressed\n" +
+                "    lo:    1000      10    0    0    0     0          0         0     1000      10    0    0    0     0       0          0\n" +
+                "  eth0:123456789 1000    2    0    0     0          0         5 987654    900    3    0    0     0       0          0\n");
+        write("class/net/eth0/ifindex", "2\n");
+        LinuxNetworkBatchSource source = new LinuxNetworkBatchSource(netDev.getPath(), new File(folder.getRoot(), "class/net").getPath());
+
+        source.refresh();
+
+        assertEquals(2, source.getSamples().size());
+        DefaultNetworkMetrics.NetworkSample eth0 = source.sample("eth0");
+        assertEquals(123456789L, eth0.getBytesReceived());
+        assertEquals(1000L, eth0.getPacketsReceived());
+        assertEquals(2L, eth0.getInErrors());
+        assertEquals(987654L, eth0.getBytesSent());
+        assertEquals(900L, eth0.getPacketsSent());
+        assertEquals(3L, eth0.getOutErrors());
+        assertEquals(2, eth0.getIndex());
+        assertEquals(0, source.sample("lo").getIndex());
+    }
+
+    @Test
+    public void readsEveryDeviceFromDiskstats() throws Exception {
+        File diskStats = write("diskstats",
+                "   8       0 sda 100 5 2000 40 50 7 800 30 0 60 70 0 0 0 0\n" +
+                "   8       1 sda1 90 5 1800 35 45 7 700 25 0 55 60 0 0 0 0\n");
+        LinuxDiskBatchSource source = new LinuxDiskBatchSource(diskStats.getPath());
+
+        source.refresh();
+
+        DefaultDiskMetrics.DiskSample sda = source.sample("/dev/sda");
+        assertEquals(100L, sda.getReads());
+        assertEquals(2000L * 512, sda.getReadBytes());
+        assertEquals(50L, sda.getWrites());
+        assertEquals(800L * 512, sda.getWriteBytes());
+        assertNotNull(source.sample("/dev/sda1"));
+    }
+
+    @Test
+    public void generationOnlyChangesWithTheSetOfDevices() throws Exception {
+        File diskStats = write("diskstats", "   8       0 sda 100 5 2000 40 50 7 800 30 0 60 70\n");
+        LinuxDiskBatchSource source = new LinuxDiskBatchSource(diskStats.getPath());
+        source.refresh();
+        int generation = source.getGeneration();
+
+        write("diskstats", "   8       0 sda 200 5 4000 40 60 7 900 30 0 60 70\n");
+        source.refresh();
+        assertEquals(generation, source.getGeneration());
+        assertEquals(200L, source.sample("/dev/sda").getReads());
+
+        write("diskstats", "   8       0 sda 200 5 4000 40 60 7 900 30 0 60 70\n" +
+                "   8      16 sdb 1 0 8 0 0 0 0 0 0 0 0\n");
+        source.refresh();
+        assertNotEquals(generation, source.getGeneration());
+    }
+
+    @Test
+    public void diskCountersAreAsWideAsAnUnsignedLong() {
+        assertEquals(32, LinuxDiskBatchSource.counterWidthBits("arm"));
+        assertEquals(32, LinuxDiskBatchSource.counterWidthBits("i386"));
+        assertEquals(64, LinuxDiskBatchSource.counterWidthBits("aarch64"));
+        assertEquals(64, LinuxDiskBatchSource.counterWidthBits("amd64"));
+    }
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -1,15 +1,26 @@
 package com.krillsson.sysapi.core.metrics.rasbian;
 
+import com.krillsson.sysapi.core.domain.sensors.DataType;
+import com.krillsson.sysapi.core.domain.sensors.HealthData;
 import com.krillsson.sysapi.core.metrics.defaultimpl.DefaultDriveMetrics;
 import com.krillsson.sysapi.core.metrics.defaultimpl.DefaultNetworkMetrics;
+import com.krillsson.sysapi.util.Ticker;
 import com.krillsson.sysapi.util.Utils;
 import org.junit.Before;
 import org.junit.Test;
 import oshi.hardware.HardwareAbstractionLayer;
 import oshi.software.os.OperatingSystem;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class RaspbianLinuxInfoProviderTest {
 
@@ -54,22 +65,67 @@ public class RaspbianLinuxInfoProviderTest {
         assertEquals(0.0, voltage, 0.0);
     }
 
+    @Test
+    public void registeredSensorsServeTheLastSample() throws Exception {
+        Ticker ticker = mock(Ticker.class);
+        TestableRaspbianLinuxInfoProvider sampled = new TestableRaspbianLinuxInfoProvider(hal, ticker);
+        sampled.setCommandOutput("volt=1.2000V");
+        sampled.register();
+
+        sampled.setCommandOutput("volt=1.3000V");
+
+        assertEquals(1.2, sampled.cpuVoltage(), 0.0);
+        verify(ticker).register(eq(sampled), any(Duration.class));
+    }
+
+    @Test
+    public void clocksAndThrottlingAreServedAsHealthData() throws Exception {
+        Ticker ticker = mock(Ticker.class);
+        TestableRaspbianLinuxInfoProvider sampled = new TestableRaspbianLinuxInfoProvider(hal, ticker);
+        sampled.setCommandOutput("volt=1.2000V");
+        sampled.setAnswer("measure_clock", "frequency(48)=1500398464");
+        sampled.setAnswer("get_throttled", "throttled=0x50005");
+        sampled.register();
+
+        List<HealthData> health = new RaspbianMotherboardMetrics(hal, sampled).motherboardHealth();
+
+        assertEquals(3, health.size());
+        assertEquals(DataType.CLOCK, health.get(0).getDataType());
+        assertEquals(1500.398464, health.get(0).getData(), 0.000001);
+        assertEquals(DataType.FLAGS, health.get(2).getDataType());
+        assertEquals(0x50005, health.get(2).getData(), 0.0);
+    }
+
     private static class TestableRaspbianLinuxInfoProvider extends RaspbianCpuSensors {
 
         private String commandOutput;
+        private final Map<String, String> answers = new HashMap<>();
 
         public TestableRaspbianLinuxInfoProvider(HardwareAbstractionLayer hal) {
             super(hal);
         }
 
+        public TestableRaspbianLinuxInfoProvider(HardwareAbstractionLayer hal, Ticker ticker) {
+            super(hal, ticker);
+        }
+
 
         public void setCommandOutput(String commandOutput) {
             this.commandOutput = commandOutput;
         }
 
+        public void setAnswer(String subcommand, String answer) {
+            answers.put(subcommand, answer);
+        }
+
         @Override
         public String executeCommand() {
             return commandOutput;
         }
+
+        @Override
+        public String executeCommand(List<String> command) {
+            return answers.get(command.get(1));
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.krillsson.sysapi.core.metrics.rasbian;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class VcgencmdReaderTest {
+
+    @Before
+    public void setUp() {
+        // stands in for vcgencmd
+        assumeTrue(new File("/bin/sh").canExecute());
+    }
+
+    @Test
+    public void firstLineOfTheAnswerIsRead() {
+        VcgencmdReader reader = new VcgencmdReader(2000, 64);
+
+        assertEquals("volt=1.2000V", reader.read(Arrays.asList("/bin/sh", "-c", "printf 'volt=1.2000V\\nsecond\\n'")));
+    }
+
+    @Test
+    public void hungCommandIsKilledAfterTheTimeout() {
+        VcgencmdReader reader = new VcgencmdReader(100, 64);
+
+        long start = System.nanoTime();
+        assertNull(reader.read(Arrays.asList("/bin/sh", "-c", "sleep 10")));
+
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+    }
+
+    @Test
+    public void longAnswerIsCutOff() {
+        VcgencmdReader reader = new VcgencmdReader(2000, 8);
+
+        assertEquals("12345678", reader.read(Arrays.asList("/bin/sh", "-c", "printf '1234567890'")));
+    }
+
+    @Test
+    public void failingCommandReadsNothing() {
+        VcgencmdReader reader = new VcgencmdReader(2000, 64);
+
+        assertNull(reader.read(Arrays.asList("/bin/sh", "-c", "exit 1")));
+    }
+}
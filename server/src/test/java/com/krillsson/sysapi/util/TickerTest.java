@@ -0,0 +1,235 @@
+package com.krillsson.sysapi.util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class TickerTest {
+
+    private static final Duration TICK = Duration.ofSeconds(10);
+
+    ScheduledExecutorService scheduler;
+    AtomicLong now;
+    Ticker ticker;
+    List<Long> runs;
+    ListAppender<ILoggingEvent> log;
+
+    @Before
+    public void setUp() {
+        scheduler = mock(ScheduledExecutorService.class);
+        now = new AtomicLong();
+        ticker = new Ticker(scheduler, MoreExecutors.newDirectExecutorService(), TICK, TICK, now::get);
+        runs = new ArrayList<>();
+        log = new ListAppender<>();
+        log.start();
+        ((Logger) LoggerFactory.getLogger(Ticker.class)).addAppender(log);
+    }
+
+    @After
+    public void tearDown() {
+        ((Logger) LoggerFactory.getLogger(Ticker.class)).detachAppender(log);
+    }
+
+    @Test
+    public void listenerWithoutPeriodRunsOnEveryTick() throws Exception {
+        ticker.register(this::recordRun);
+        Runnable tick = start(TICK);
+
+        tickAt(tick, 0, 10, 20);
+
+        assertEquals(List.of(0L, 10L, 20L), runs);
+    }
+
+    @Test
+    public void periodIsRoundedToTheNearestWholeTick() throws Exception {
+        List<Long> longer = new ArrayList<>();
+        ticker.register(this::recordRun, Duration.ofSeconds(24));
+        ticker.register(() -> longer.add(TimeUnit.NANOSECONDS.toSeconds(now.get())), Duration.ofSeconds(26));
+        Runnable tick = start(TICK);
+
+        tickAt(tick, 0, 10, 20, 30, 40, 50, 60);
+
+        assertEquals(List.of(0L, 20L, 40L, 60L), runs);
+        assertEquals(List.of(0L, 30L, 60L), longer);
+    }
+
+    @Test
+    public void ticksArrivingWithinHalfATickOfTheDueTimeRunTheListener() throws Exception {
+        ticker.register(this::recordRun, Duration.ofSeconds(20));
+        Runnable tick = start(TICK);
+
+        tickAtMillis(tick, 0, 9_800, 19_600, 29_400, 39_200);
+
+        assertEquals(List.of(0L, 19L, 39L), runs);
+    }
+
+    @Test
+    public void shortestPeriodShortensTheTick() throws Exception {
+        ticker.register(this::recordRun, Duration.ofSeconds(2));
+        ticker.register(() -> { }, Duration.ofMinutes(1));
+
+        start(Duration.ofSeconds(2));
+    }
+
+    @Test
+    public void periodShorterThanTheRunningTickIsWarnedAboutAndRunsOnEveryTick() throws Exception {
+        Runnable tick = start(TICK);
+
+        ticker.register(this::recordRun, Duration.ofSeconds(1));
+        tickAt(tick, 0, 10, 20);
+
+        assertEquals(List.of(0L, 10L, 20L), runs);
+        assertTrue(log.list.stream().anyMatch(event ->
+                event.getLevel() == Level.WARN && event.getFormattedMessage().contains("shorter than the running tick")
+        ));
+    }
+
+    @Test
+    public void listenerStillRunningWhenDueRunsOnTheNextTick() throws Exception {
+        ExecutorService listenerExecutor = Executors.newSingleThreadExecutor();
+        try {
+            ticker = new Ticker(scheduler, listenerExecutor, TICK, Duration.ofMillis(10), now::get);
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ticker.register(() -> {
+                recordRun();
+                started.countDown();
+                awaitUninterruptibly(release);
+            }, Duration.ofSeconds(20));
+            Runnable tick = start(TICK);
+
+            tickAt(tick, 0);
+            started.await();
+            tickAt(tick, 10, 20);
+            release.countDown();
+            // the executor runs tasks in order, so the first run has completed once this one did
+            listenerExecutor.submit(() -> { }).get();
+            tickAt(tick, 30);
+
+            assertEquals(List.of(0L, 30L), runs);
+        } finally {
+            listenerExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void errorInAPostTickListenerDoesNotStopTheTicks() throws Exception {
+        ticker.register(this::recordRun);
+        ticker.registerPostTick(() -> {
+            throw new NoClassDefFoundError("oshi/SystemInfo");
+        });
+        Runnable tick = start(TICK);
+
+        tickAt(tick, 0, 10);
+
+        assertEquals(List.of(0L, 10L), runs);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void statisticsAreReportedAsGauges() throws Exception {
+        MetricRegistry registry = new MetricRegistry();
+        ticker.registerMetrics(registry);
+        ticker.register(this::recordRun);
+        ticker.register(() -> {
+            throw new IllegalStateException("sensor gone");
+        });
+        Runnable tick = start(TICK);
+
+        tickAt(tick, 0, 10);
+
+        assertEquals(2L, registry.getGauges().get("ticker.failed").getValue());
+        assertEquals(0L, registry.getGauges().get("ticker.skipped").getValue());
+        List<Ticker.TickStatistics> listeners =
+                (List<Ticker.TickStatistics>) registry.getGauges().get("ticker.listeners").getValue();
+        assertEquals(2, listeners.size());
+        assertEquals(2, listeners.get(0).getTicks());
+    }
+
+    @Test
+    public void closeableListenersAreClosedOnStop() throws Exception {
+        Closing listener = new Closing();
+        ticker.register(listener);
+        ticker.registerPostTick(() -> { });
+
+        ticker.stop();
+
+        assertTrue(listener.closed);
+    }
+
+    private static class Closing implements Ticker.TickListener, AutoCloseable {
+        boolean closed;
+
+        @Override
+        public void onTick() {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void recordRun() {
+        runs.add(TimeUnit.NANOSECONDS.toSeconds(now.get()));
+    }
+
+    private Runnable start(Duration expectedTick) throws Exception {
+        ticker.start();
+        ArgumentCaptor<Runnable> tick = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).scheduleAtFixedRate(
+                tick.capture(),
+                anyLong(),
+                eq(expectedTick.toNanos()),
+                eq(TimeUnit.NANOSECONDS)
+        );
+        return tick.getValue();
+    }
+
+    private void tickAt(Runnable tick, long... seconds) {
+        for (long second : seconds) {
+            now.set(TimeUnit.SECONDS.toNanos(second));
+            tick.run();
+        }
+    }
+
+    private void tickAtMillis(Runnable tick, long... millis) {
+        for (long milli : millis) {
+            now.set(TimeUnit.MILLISECONDS.toNanos(milli));
+            tick.run();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+-- two entries as V4 stored them, one dated by datetime text and one by epoch millis
+INSERT INTO CpuLoad (id, usagePercentage, systemLoadAverage, processCount, threadCount, voltage, fanRpm, fanPercent) VALUES ('c0000000-0000-0000-0000-000000000001', 10.0, 0.5, 100, 400, 1.2, 1000.0, 40.0);
+INSERT INTO CpuLoad (id, usagePercentage, systemLoadAverage, processCount, threadCount, voltage, fanRpm, fanPercent) VALUES ('c0000000-0000-0000-0000-000000000002', 20.0, 1.5, 110, 410, 1.3, 1100.0, 45.0);
+INSERT INTO CoreLoad (id, cpuLoadId, percentage) VALUES ('e0000000-0000-0000-0000-000000000001', 'c0000000-0000-0000-0000-000000000001', 5.0);
+INSERT INTO CoreLoad (id, cpuLoadId, percentage) VALUES ('e0000000-0000-0000-0000-000000000002', 'c0000000-0000-0000-0000-000000000001', 15.0);
+INSERT INTO CoreLoad (id, cpuLoadId, percentage) VALUES ('e0000000-0000-0000-0000-000000000003', 'c0000000-0000-0000-0000-000000000002', 25.0);
+INSERT INTO CpuLoad_temperatures (CpuLoad_id, temperatures) VALUES ('c0000000-0000-0000-0000-000000000001', 45.0);
+INSERT INTO CpuLoad_temperatures (CpuLoad_id, temperatures) VALUES ('c0000000-0000-0000-0000-000000000002', 55.0);
+INSERT INTO Connectivity (id, externalIp, previousExternalIp, localIp, connected) VALUES ('n0000000-0000-0000-0000-000000000001', '1.1.1.1', NULL, '10.0.0.2', 1);
+INSERT INTO Connectivity (id, externalIp, previousExternalIp, localIp, connected) VALUES ('n0000000-0000-0000-0000-000000000002', '2.2.2.2', '1.1.1.1', '10.0.0.2', 1);
+INSERT INTO MemoryLoad (id, numberOfProcesses, swapTotalBytes, swapUsedBytes, totalBytes, availableBytes, usedPercent) VALUES ('m0000000-0000-0000-0000-000000000001', 100, 0, 0, 1000, 600, 40.0);
+INSERT INTO MemoryLoad (id, numberOfProcesses, swapTotalBytes, swapUsedBytes, totalBytes, availableBytes, usedPercent) VALUES ('m0000000-0000-0000-0000-000000000002', 110, 0, 0, 1000, 500, 50.0);
+INSERT INTO HistorySystemLoadEntity (id, date, uptime, systemLoadAverage, cpuLoad_id, connectivity_id, memory_id) VALUES ('h0000000-0000-0000-0000-000000000001', '2022-10-01 08:00:00', 60, 0.5, 'c0000000-0000-0000-0000-000000000001', 'n0000000-0000-0000-0000-000000000001', 'm0000000-0000-0000-0000-000000000001');
+INSERT INTO HistorySystemLoadEntity (id, date, uptime, systemLoadAverage, cpuLoad_id, connectivity_id, memory_id) VALUES ('h0000000-0000-0000-0000-000000000002', 1664697600000, 120, 1.5, 'c0000000-0000-0000-0000-000000000002', 'n0000000-0000-0000-0000-000000000002', 'm0000000-0000-0000-0000-000000000002');
+INSERT INTO DriveLoad (id, historyId, name, serial, temperature, usableSpace, totalSpace, openFileDescriptors, maxFileDescriptors, `reads`, readBytes, writes, writeBytes, readBytesPerSecond, writeBytesPerSecond) VALUES ('d0000000-0000-0000-0000-000000000001', 'h0000000-0000-0000-0000-000000000001', 'sda', 'S1', 30.0, 500, 1000, 10, 100, 1, 512, 2, 1024, 0, 0);
+INSERT INTO DriveLoad (id, historyId, name, serial, temperature, usableSpace, totalSpace, openFileDescriptors, maxFileDescriptors, `reads`, readBytes, writes, writeBytes, readBytesPerSecond, writeBytesPerSecond) VALUES ('d0000000-0000-0000-0000-000000000002', 'h0000000-0000-0000-0000-000000000002', 'sdb', 'S2', 35.0, 400, 1000, 12, 100, 3, 1536, 4, 2048, 10, 20);
+INSERT INTO DriveHealthData (id, driveLoadId, `description`, data, dataType) VALUES ('g0000000-0000-0000-0000-000000000001', 'd0000000-0000-0000-0000-000000000001', 'sda health', 99.0, 0);
+INSERT INTO DriveHealthData (id, driveLoadId, `description`, data, dataType) VALUES ('g0000000-0000-0000-0000-000000000002', 'd0000000-0000-0000-0000-000000000002', 'sdb health', 98.0, 0);
+INSERT INTO DiskLoad (id, historyId, name, serial, `reads`, readBytes, writes, writeBytes, readBytesPerSecond, writeBytesPerSecond) VALUES ('k0000000-0000-0000-0000-000000000001', 'h0000000-0000-0000-0000-000000000001', 'sda', 'S1', 1, 512, 2, 1024, 0, 0);
+INSERT INTO DiskLoad (id, historyId, name, serial, `reads`, readBytes, writes, writeBytes, readBytesPerSecond, writeBytesPerSecond) VALUES ('k0000000-0000-0000-0000-000000000002', 'h0000000-0000-0000-0000-000000000002', 'sdb', 'S2', 3, 1536, 4, 2048, 10, 20);
+INSERT INTO FileSystemLoad (id, historyId, name, freeSpaceBytes, usableSpaceBytes, totalSpaceBytes) VALUES ('f0000000-0000-0000-0000-000000000001', 'h0000000-0000-0000-0000-000000000001', '/', 500, 500, 1000);
+INSERT INTO FileSystemLoad (id, historyId, name, freeSpaceBytes, usableSpaceBytes, totalSpaceBytes) VALUES ('f0000000-0000-0000-0000-000000000002', 'h0000000-0000-0000-0000-000000000002', '/', 400, 400, 1000);
+INSERT INTO GpuLoad (id, historyId, name, coreLoad, memoryLoad, fanRpm, fanPercent, temperature) VALUES ('p0000000-0000-0000-0000-000000000001', 'h0000000-0000-0000-0000-000000000001', 'gpu', 5.0, 10.0, 0.0, 0.0, 40.0);
+INSERT INTO HealthData (id, historyId, `description`, data, dataType) VALUES ('b0000000-0000-0000-0000-000000000001', 'h0000000-0000-0000-0000-000000000002', 'board', 42.0, 0);
+INSERT INTO NetworkInterfaceLoad (id, historyId, name, mac, isUp, speed, bytesReceived, bytesSent, packetsReceived, packetsSent, inErrors, outErrors, receiveBytesPerSecond, sendBytesPerSecond) VALUES ('i0000000-0000-0000-0000-000000000001', 'h0000000-0000-0000-0000-000000000001', 'eth0', '00:00:00:00:00:01', 1, 1000, 10, 20, 1, 2, 0, 0, 0, 0);
+INSERT INTO NetworkInterfaceLoad (id, historyId, name, mac, isUp, speed, bytesReceived, bytesSent, packetsReceived, packetsSent, inErrors, outErrors, receiveBytesPerSecond, sendBytesPerSecond) VALUES ('i0000000-0000-0000-0000-000000000002', 'h0000000-0000-0000-0000-000000000002', 'eth0', '00:00:00:00:00:01', 1, 1000, 30, 40, 3, 4, 0, 0, 100, 200);